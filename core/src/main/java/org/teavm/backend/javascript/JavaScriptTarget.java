@@ -51,6 +51,7 @@ import org.teavm.backend.javascript.intrinsics.ref.ReferenceQueueTransformer;
 import org.teavm.backend.javascript.intrinsics.ref.WeakReferenceDependencyListener;
 import org.teavm.backend.javascript.intrinsics.ref.WeakReferenceGenerator;
 import org.teavm.backend.javascript.intrinsics.ref.WeakReferenceTransformer;
+import org.teavm.backend.javascript.profile.ProfileInstrumentation;
 import org.teavm.backend.javascript.rendering.NameFrequencyEstimator;
 import org.teavm.backend.javascript.rendering.Renderer;
 import org.teavm.backend.javascript.rendering.RenderingContext;
@@ -62,6 +63,10 @@ import org.teavm.backend.javascript.spi.InjectedBy;
 import org.teavm.backend.javascript.spi.Injector;
 import org.teavm.backend.javascript.spi.MethodContributor;
 import org.teavm.backend.javascript.spi.MethodContributorContext;
+import org.teavm.backend.javascript.splitting.ChunkLoader;
+import org.teavm.backend.javascript.splitting.ClassFragmentWriter;
+import org.teavm.backend.javascript.splitting.CodeSplitter;
+import org.teavm.backend.javascript.splitting.SplitPointTransformer;
 import org.teavm.backend.javascript.templating.JavaScriptTemplateFactory;
 import org.teavm.cache.EmptyMethodNodeCache;
 import org.teavm.cache.MethodNodeCache;
@@ -95,6 +100,7 @@ import org.teavm.model.instructions.InvocationType;
 import org.teavm.model.instructions.InvokeInstruction;
 import org.teavm.model.instructions.RaiseInstruction;
 import org.teavm.model.instructions.StringConstantInstruction;
+import org.teavm.model.optimization.InliningFilterFactory;
 import org.teavm.model.transformation.BoundCheckInsertion;
 import org.teavm.model.transformation.NullCheckFilter;
 import org.teavm.model.transformation.NullCheckInsertion;
@@ -112,6 +118,8 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
     private static final NumberFormat STATS_PERCENT_FORMAT = new DecimalFormat("0.000 %");
     private static final MethodReference CURRENT_THREAD = new MethodReference(Thread.class,
             "currentThread", Thread.class);
+    private static final MethodReference LOAD_CHUNK = new MethodReference(ChunkLoader.class, "load",
+            String.class, void.class);
 
     private TeaVMTargetController controller;
     private boolean obfuscated = true;
@@ -132,17 +140,29 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
     private final Map<String, String> importedModules = new LinkedHashMap<>();
     private JavaScriptTemplateFactory templateFactory;
     private JSModuleType moduleType = JSModuleType.UMD;
+    private JSLongRepresentation longRepresentation = JSLongRepresentation.BIGINT;
     private List<ExportedDeclaration> exports = new ArrayList<>();
     private int maxTopLevelNames = 80_000;
+    private int decompilationThreads = 1;
+    private boolean codeSplitting;
+    private boolean classFragments;
+    private boolean profileInstrumentation;
 
     @Override
     public List<ClassHolderTransformer> getTransformers() {
         return List.of(
                 new WeakReferenceTransformer(),
-                new ReferenceQueueTransformer()
+                new ReferenceQueueTransformer(),
+                new SplitPointTransformer(this::isCodeSplittingActive),
+                new ProfileInstrumentation(this::isProfileInstrumentation)
         );
     }
 
+    @Override
+    public InliningFilterFactory getInliningFilter() {
+        return caller -> callee -> !isCodeSplittingActive() || !SplitPointTransformer.isImplementation(callee);
+    }
+
     @Override
     public List<DependencyListener> getDependencyListeners() {
         return Collections.emptyList();
@@ -208,6 +228,68 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
         this.astCache = methodAstCache;
     }
 
+    public int getDecompilationThreads() {
+        return decompilationThreads;
+    }
+
+    /**
+     * Specifies number of threads that decompile method bodies to AST in parallel with rendering.
+     * Generated code does not depend on this setting.
+     */
+    public void setDecompilationThreads(int decompilationThreads) {
+        this.decompilationThreads = decompilationThreads;
+    }
+
+    public boolean isCodeSplitting() {
+        return codeSplitting;
+    }
+
+    /**
+     * Specifies whether bodies of methods marked with {@link org.teavm.interop.SplitPoint} should be moved
+     * to separate files which are loaded on first call. Only supported with {@link JSModuleType#ES2015},
+     * for other module types split points are compiled as ordinary methods.
+     */
+    public void setCodeSplitting(boolean codeSplitting) {
+        this.codeSplitting = codeSplitting;
+    }
+
+    private boolean isCodeSplittingActive() {
+        return codeSplitting && moduleType == JSModuleType.ES2015 && !classFragments;
+    }
+
+    public boolean isClassFragments() {
+        return classFragments;
+    }
+
+    /**
+     * Specifies whether each class should be written to a separate module which name contains hash of its content.
+     * When a single class changes between builds, only the module of this class and the main module get
+     * new content, so other files are reused by {@link org.teavm.vm.IncrementalDirectoryBuildTarget} and
+     * by browser cache. Intended for development builds: names are not minified in this mode. Only supported with
+     * {@link JSModuleType#ES2015}, for other module types a single file is produced. Takes precedence over
+     * {@link #setCodeSplitting(boolean)}.
+     */
+    public void setClassFragments(boolean classFragments) {
+        this.classFragments = classFragments;
+    }
+
+    private boolean isClassFragmentsActive() {
+        return classFragments && moduleType == JSModuleType.ES2015;
+    }
+
+    public boolean isProfileInstrumentation() {
+        return profileInstrumentation;
+    }
+
+    /**
+     * Specifies whether generated code should collect execution profile, available via
+     * {@link org.teavm.backend.javascript.profile.JSProfiler#dump()}. Profile can be passed to
+     * {@link org.teavm.vm.TeaVM#setProfile(org.teavm.model.profile.ExecutionProfile)} of subsequent builds.
+     */
+    public void setProfileInstrumentation(boolean profileInstrumentation) {
+        this.profileInstrumentation = profileInstrumentation;
+    }
+
     public DebugInformationEmitter getDebugEmitter() {
         return debugEmitter;
     }
@@ -224,6 +306,16 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
         this.moduleType = moduleType;
     }
 
+    /**
+     * Specifies how Java long values are represented in generated code. By default they are mapped to
+     * {@code BigInt}. With {@link JSLongRepresentation#INT_PAIR} they are stored as pairs of 32-bit integers,
+     * and long arithmetic on local variables is compiled to plain int operations, which avoids the cost of
+     * {@code BigInt} in engines where it's slow.
+     */
+    public void setLongRepresentation(JSLongRepresentation longRepresentation) {
+        this.longRepresentation = longRepresentation;
+    }
+
     @Override
     public VariableCategoryProvider variableCategoryProvider() {
         return new DefaultVariableCategoryProvider();
@@ -302,6 +394,12 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
                     method.use();
                     agent.linkMethod(new MethodReference(Thread.class, "setCurrentThread", Thread.class, void.class))
                             .use();
+                } else if (method.getReference().equals(LOAD_CHUNK)) {
+                    var cons = agent.linkMethod(new MethodReference(IllegalStateException.class, "<init>",
+                            String.class, void.class));
+                    cons.getVariable(0).propagate(agent.getType(IllegalStateException.class.getName()));
+                    cons.getVariable(1).propagate(agent.getType(String.class.getName()));
+                    cons.use();
                 }
             }
         });
@@ -335,7 +433,7 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
     public void emit(ListableClassHolderSource classes, BuildTarget target, String outputName) {
         try (OutputStream output = target.createResource(outputName);
                 Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8)) {
-            emit(classes, writer, target);
+            emit(classes, writer, target, outputName);
         } catch (IOException e) {
             throw new RenderingException(e);
         }
@@ -359,10 +457,28 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
     public void afterOptimizations(Program program, MethodReader method) {
     }
 
-    private void emit(ListableClassHolderSource classes, Writer writer, BuildTarget target) {
-        var aliasProvider = obfuscated
-                ? new MinifyingAliasProvider(maxTopLevelNames)
-                : new DefaultAliasProvider(maxTopLevelNames);
+    private void emit(ListableClassHolderSource classes, Writer writer, BuildTarget target, String outputName) {
+        if (codeSplitting && !isCodeSplittingActive()) {
+            controller.getDiagnostics().warning(null, classFragments
+                    ? "Code splitting is not performed when class fragments are enabled, "
+                            + "split points are compiled as ordinary methods"
+                    : "Code splitting is only supported for ES2015 modules, "
+                            + "split points are compiled as ordinary methods");
+        }
+        if (classFragments && !isClassFragmentsActive()) {
+            controller.getDiagnostics().warning(null, "Class fragments are only supported for ES2015 modules, "
+                    + "writing all classes to a single file");
+        }
+        var fragmentsActive = isClassFragmentsActive();
+        if (fragmentsActive && obfuscated) {
+            controller.getDiagnostics().warning(null, "Names are not minified when class fragments are enabled");
+        }
+
+        // Code splitting moves names to additional scope by itself, so automatic scoping must not interfere
+        var topLevelNames = isCodeSplittingActive() || fragmentsActive ? Integer.MAX_VALUE : maxTopLevelNames;
+        var aliasProvider = obfuscated && !fragmentsActive
+                ? new MinifyingAliasProvider(topLevelNames)
+                : new DefaultAliasProvider(topLevelNames);
         DefaultNamingStrategy naming = new DefaultNamingStrategy(aliasProvider, controller.getUnprocessedClassSource());
         DebugInformationEmitter debugEmitterToUse = debugEmitter;
         if (debugEmitterToUse == null) {
@@ -384,6 +500,8 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
             }
         };
         renderingContext.setMinifying(obfuscated);
+        renderingContext.setClassStringPools(fragmentsActive);
+        renderingContext.setLongRepresentation(longRepresentation);
 
         if (controller.wasCancelled()) {
             return;
@@ -408,6 +526,19 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
                 controller.getEntryPoint());
         renderer.setProperties(controller.getProperties());
         renderer.setProgressConsumer(controller::reportProgress);
+        renderer.setDecompilationThreads(decompilationThreads);
+        var splitter = isCodeSplittingActive()
+                ? new CodeSplitter(rememberingWriter, renderer, classes, outputName)
+                : null;
+        if (splitter != null) {
+            renderer.setDeclarationListener(splitter);
+        }
+        var fragmentWriter = fragmentsActive
+                ? new ClassFragmentWriter(rememberingWriter, renderer, classes, outputName)
+                : null;
+        if (fragmentWriter != null) {
+            renderer.setDeclarationListener(fragmentWriter);
+        }
 
         for (var listener : rendererListeners) {
             listener.begin(renderer, target);
@@ -415,11 +546,21 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
         if (!renderer.render(classes, controller.isFriendlyToDebugger())) {
             return;
         }
+        if (splitter != null) {
+            splitter.prepare();
+        }
+        if (fragmentWriter != null) {
+            fragmentWriter.prepare();
+        }
         var declarations = rememberingWriter.save();
         rememberingWriter.clear();
 
         renderer.renderStringPool();
-        renderer.renderStringConstants();
+        var stringPool = rememberingWriter.save();
+        rememberingWriter.clear();
+        if (splitter == null && fragmentWriter == null) {
+            renderer.renderStringConstants();
+        }
         renderer.renderCompatibilityStubs();
 
         var alias = "$rt_export_main";
@@ -443,8 +584,16 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
         rememberingWriter.clear();
 
         var runtimeRenderer = new RuntimeRenderer(classes, rememberingWriter, controller.getClassInitializerInfo());
+        runtimeRenderer.setLongRepresentation(longRepresentation);
         runtimeRenderer.prepareAstParts(renderer.isThreadLibraryUsed());
         declarations.replay(runtimeRenderer.sink, RememberedSource.FILTER_REF);
+        if (splitter != null) {
+            splitter.replay(runtimeRenderer.sink);
+        }
+        if (fragmentWriter != null) {
+            fragmentWriter.replay(runtimeRenderer.sink);
+        }
+        stringPool.replay(runtimeRenderer.sink, RememberedSource.FILTER_REF);
         epilogue.replay(runtimeRenderer.sink, RememberedSource.FILTER_REF);
         runtimeRenderer.removeUnusedParts();
         runtimeRenderer.renderRuntime();
@@ -466,13 +615,45 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
         runtime.replay(frequencyEstimator, RememberedSource.FILTER_REF);
         runtimeEpilogue.replay(frequencyEstimator, RememberedSource.FILTER_REF);
         declarations.replay(frequencyEstimator, RememberedSource.FILTER_REF);
+        if (splitter != null) {
+            splitter.replay(frequencyEstimator);
+        }
+        if (fragmentWriter != null) {
+            fragmentWriter.replay(frequencyEstimator);
+        }
+        stringPool.replay(frequencyEstimator, RememberedSource.FILTER_REF);
         epilogue.replay(frequencyEstimator, RememberedSource.FILTER_REF);
         frequencyEstimator.apply(naming);
 
+        var hasAdditionalScope = frequencyEstimator.hasAdditionalScope();
+        if (splitter != null || fragmentWriter != null) {
+            rememberingWriter.appendFunction("$rt_exports");
+            for (var module : importedModules.values()) {
+                rememberingWriter.appendFunction(module);
+            }
+            for (var export : exports) {
+                export.name.accept(rememberingWriter);
+            }
+            var exportedNames = rememberingWriter.save();
+            rememberingWriter.clear();
+            var mainSources = List.of(runtime, runtimeEpilogue, stringPool, epilogue);
+            if (splitter != null) {
+                splitter.partition(naming, mainSources, exportedNames);
+                hasAdditionalScope |= splitter.hasChunks();
+            } else {
+                fragmentWriter.partition(naming, mainSources, exportedNames);
+                fragmentWriter.renderFragments(builder, naming.additionalScopeName());
+                hasAdditionalScope |= fragmentWriter.hasFragments();
+            }
+        }
+
         var sourceWriter = builder.build(writer);
         sourceWriter.setDebugInformationEmitter(debugEmitterToUse);
         printWrapperStart(sourceWriter);
-        if (frequencyEstimator.hasAdditionalScope()) {
+        if (fragmentWriter != null) {
+            fragmentWriter.writeImports(sourceWriter);
+        }
+        if (hasAdditionalScope) {
             sourceWriter.append("let ").append(naming.additionalScopeName()).ws().append('=').ws()
                     .append("{};").softNewLine();
         }
@@ -480,12 +661,34 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
         int start = sourceWriter.getOffset();
         runtime.write(sourceWriter, 0);
         declarations.write(sourceWriter, 0);
+        if (splitter != null) {
+            splitter.writeMainDeclarations(sourceWriter);
+            splitter.writeChunkTable(sourceWriter, naming.additionalScopeName());
+        }
+        if (fragmentWriter != null) {
+            fragmentWriter.writeDeclarations(sourceWriter, naming.additionalScopeName());
+            fragmentWriter.writeMetadata(sourceWriter);
+        }
         runtimeEpilogue.write(sourceWriter, 0);
+        stringPool.write(sourceWriter, 0);
+        if (splitter != null) {
+            splitter.writeMainConstants(sourceWriter);
+        }
+        if (fragmentWriter != null) {
+            fragmentWriter.writeConstants(sourceWriter);
+        }
         epilogue.write(sourceWriter, 0);
 
         printModuleEnd(sourceWriter);
         sourceWriter.finish();
 
+        if (splitter != null) {
+            splitter.writeChunks(target, builder, naming.additionalScopeName());
+        }
+        if (fragmentWriter != null) {
+            fragmentWriter.writeFragments(target);
+        }
+
         int totalSize = sourceWriter.getOffset() - start;
         printStats(sourceWriter, totalSize);
     }
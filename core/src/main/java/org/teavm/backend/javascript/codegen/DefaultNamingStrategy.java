@@ -17,6 +17,7 @@ package org.teavm.backend.javascript.codegen;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import org.teavm.model.AccessLevel;
 import org.teavm.model.ClassReader;
 import org.teavm.model.ClassReaderSource;
@@ -135,6 +136,25 @@ public class DefaultNamingStrategy implements NamingStrategy {
         aliasProvider.reserveName(name);
     }
 
+    /**
+     * Turns already assigned top-level names into members of additional scope object, so that the declarations
+     * can be accessed from code outside of the module. Names are kept as they are, so the caller must make sure
+     * they don't clash with names that were put into additional scope by alias provider.
+     */
+    public void moveToAdditionalScope(Set<String> names) {
+        moveToAdditionalScope(privateAliases, names);
+        moveToAdditionalScope(classAliases, names);
+        moveToAdditionalScope(staticFieldAliases, names);
+        moveToAdditionalScope(functionAliases, names);
+        moveToAdditionalScope(classInitAliases, names);
+    }
+
+    private static <K> void moveToAdditionalScope(Map<K, ScopedName> aliases, Set<String> names) {
+        aliases.replaceAll((key, alias) -> !alias.scoped && names.contains(alias.name)
+                ? new ScopedName(alias.name, true)
+                : alias);
+    }
+
     private MethodReference getRealMethod(MethodReference methodRef) {
         String className = methodRef.getClassName();
         while (className != null) {
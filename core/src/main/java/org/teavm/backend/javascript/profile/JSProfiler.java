@@ -0,0 +1,61 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.javascript.profile;
+
+import org.teavm.backend.javascript.spi.GeneratedBy;
+
+/**
+ * Runtime support of profile instrumentation. Calls to these methods are inserted by
+ * {@link ProfileInstrumentation}; application is expected to call {@link #dump()} when
+ * it finishes running a representative workload and to save the result to a profile file.
+ */
+public final class JSProfiler {
+    private static boolean busy;
+
+    private JSProfiler() {
+    }
+
+    @GeneratedBy(JSProfilerGenerator.class)
+    public static native void enter(String method);
+
+    @GeneratedBy(JSProfilerGenerator.class)
+    public static native void branch(String site, boolean taken);
+
+    public static void receiver(String site, Object receiver) {
+        if (busy || receiver == null) {
+            return;
+        }
+        var cls = receiver.getClass();
+        if (!recordReceiver(site, cls)) {
+            // Getting class name executes instrumented code, which reports receivers as well
+            busy = true;
+            registerClassName(cls, cls.getName());
+            busy = false;
+        }
+    }
+
+    /**
+     * Returns collected profile in the format understood by {@link org.teavm.model.profile.ExecutionProfile}.
+     */
+    @GeneratedBy(JSProfilerGenerator.class)
+    public static native String dump();
+
+    @GeneratedBy(JSProfilerGenerator.class)
+    private static native boolean recordReceiver(String site, Class<?> cls);
+
+    @GeneratedBy(JSProfilerGenerator.class)
+    private static native void registerClassName(Class<?> cls, String name);
+}
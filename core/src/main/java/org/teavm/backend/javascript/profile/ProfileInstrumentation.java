@@ -0,0 +1,163 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.javascript.profile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ClassHolderTransformer;
+import org.teavm.model.ClassHolderTransformerContext;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.TextLocation;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.BinaryBranchingInstruction;
+import org.teavm.model.instructions.BranchingInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.instructions.StringConstantInstruction;
+import org.teavm.model.profile.ProfileSites;
+
+/**
+ * Instruments methods to collect execution profile. Entry of each method reports invocation to
+ * {@link JSProfiler#enter(String)}, each virtual call reports class of its receiver and each edge
+ * of a conditional branch reports whether the branch was taken. Sites are identified by keys
+ * produced by {@link ProfileSites}, so that optimizing build can map them back to its instructions.
+ */
+public class ProfileInstrumentation implements ClassHolderTransformer {
+    private static final String JSO_OBJECT = "org.teavm.jso.JSObject";
+    private static final MethodReference ENTER_METHOD = new MethodReference(JSProfiler.class, "enter",
+            String.class, void.class);
+    private static final MethodReference RECEIVER_METHOD = new MethodReference(JSProfiler.class, "receiver",
+            String.class, Object.class, void.class);
+    private static final MethodReference BRANCH_METHOD = new MethodReference(JSProfiler.class, "branch",
+            String.class, boolean.class, void.class);
+
+    private final BooleanSupplier enabled;
+
+    public ProfileInstrumentation(BooleanSupplier enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void transformClass(ClassHolder cls, ClassHolderTransformerContext context) {
+        if (!enabled.getAsBoolean() || cls.getName().startsWith(JSProfiler.class.getPackage().getName() + ".")
+                || cls.getName().startsWith("org.teavm.runtime.")
+                || context.getHierarchy().isSuperType(JSO_OBJECT, cls.getName(), false)) {
+            return;
+        }
+        for (MethodHolder method : cls.getMethods()) {
+            Program program = method.getProgram();
+            if (program != null && program.basicBlockCount() > 0) {
+                instrument(method.getReference(), program, context);
+            }
+        }
+    }
+
+    private void instrument(MethodReference method, Program program, ClassHolderTransformerContext context) {
+        var callSites = ProfileSites.callSites(program);
+        var branches = ProfileSites.branches(program);
+
+        for (var entry : callSites.entrySet()) {
+            var invoke = entry.getKey();
+            if (invoke.getType() != InvocationType.VIRTUAL
+                    || context.getHierarchy().isSuperType(JSO_OBJECT, invoke.getMethod().getClassName(), false)) {
+                continue;
+            }
+            var site = stringConstant(program, method + " " + entry.getValue(), invoke.getLocation());
+            var call = call(RECEIVER_METHOD, invoke.getLocation(), site.getReceiver(), invoke.getInstance());
+            invoke.insertPrevious(site);
+            invoke.insertPrevious(call);
+        }
+
+        for (var entry : branches.entrySet()) {
+            var block = entry.getKey();
+            var branch = block.getLastInstruction();
+            var targets = ProfileSites.branchTargets(branch);
+            if (targets[0] == targets[1]) {
+                continue;
+            }
+            var site = method + " " + entry.getValue();
+            var taken = instrumentEdge(program, block, targets[0], site, true, branch.getLocation());
+            var notTaken = instrumentEdge(program, block, targets[1], site, false, branch.getLocation());
+            if (branch instanceof BranchingInstruction) {
+                ((BranchingInstruction) branch).setConsequent(taken);
+                ((BranchingInstruction) branch).setAlternative(notTaken);
+            } else {
+                ((BinaryBranchingInstruction) branch).setConsequent(taken);
+                ((BinaryBranchingInstruction) branch).setAlternative(notTaken);
+            }
+        }
+
+        var location = program.basicBlockAt(0).getFirstInstruction() != null
+                ? program.basicBlockAt(0).getFirstInstruction().getLocation()
+                : null;
+        var name = stringConstant(program, method.toString(), location);
+        List<Instruction> prologue = new ArrayList<>();
+        prologue.add(name);
+        prologue.add(call(ENTER_METHOD, location, name.getReceiver()));
+        program.basicBlockAt(0).addFirstAll(prologue);
+    }
+
+    private BasicBlock instrumentEdge(Program program, BasicBlock source, BasicBlock target, String site,
+            boolean taken, TextLocation location) {
+        var edge = program.createBasicBlock();
+        var siteConstant = stringConstant(program, site, location);
+        edge.add(siteConstant);
+        var takenConstant = new IntegerConstantInstruction();
+        takenConstant.setConstant(taken ? 1 : 0);
+        takenConstant.setReceiver(program.createVariable());
+        takenConstant.setLocation(location);
+        edge.add(takenConstant);
+        edge.add(call(BRANCH_METHOD, location, siteConstant.getReceiver(), takenConstant.getReceiver()));
+        var jump = new JumpInstruction();
+        jump.setTarget(target);
+        jump.setLocation(location);
+        edge.add(jump);
+
+        for (var phi : target.getPhis()) {
+            for (var incoming : phi.getIncomings()) {
+                if (incoming.getSource() == source) {
+                    incoming.setSource(edge);
+                }
+            }
+        }
+        return edge;
+    }
+
+    private static StringConstantInstruction stringConstant(Program program, String value, TextLocation location) {
+        var constant = new StringConstantInstruction();
+        constant.setConstant(value);
+        constant.setReceiver(program.createVariable());
+        constant.setLocation(location);
+        return constant;
+    }
+
+    private static InvokeInstruction call(MethodReference method, TextLocation location, Variable... arguments) {
+        var call = new InvokeInstruction();
+        call.setType(InvocationType.SPECIAL);
+        call.setMethod(method);
+        call.setArguments(arguments);
+        call.setLocation(location);
+        return call;
+    }
+}
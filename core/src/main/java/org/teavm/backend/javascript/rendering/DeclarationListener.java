@@ -0,0 +1,27 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.javascript.rendering;
+
+import org.teavm.model.MethodReference;
+
+/**
+ * Receives notifications when {@link Renderer} completes a group of top-level declarations that can be placed
+ * into output independently of others. Group is either a single method with its helper declarations, or
+ * a class constructor function together with static fields and class initializer.
+ */
+public interface DeclarationListener {
+    void declarationsRendered(String className, MethodReference method);
+}
@@ -0,0 +1,778 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.javascript.rendering;
+
+import java.util.List;
+import org.teavm.ast.AssignmentStatement;
+import org.teavm.ast.BinaryExpr;
+import org.teavm.ast.BinaryOperation;
+import org.teavm.ast.BoundCheckExpr;
+import org.teavm.ast.ConstantExpr;
+import org.teavm.ast.Expr;
+import org.teavm.ast.OperationType;
+import org.teavm.ast.PrimitiveCastExpr;
+import org.teavm.ast.QualificationExpr;
+import org.teavm.ast.RecursiveVisitor;
+import org.teavm.ast.RegularMethodNode;
+import org.teavm.ast.ReturnStatement;
+import org.teavm.ast.Statement;
+import org.teavm.ast.SubscriptExpr;
+import org.teavm.ast.UnaryExpr;
+import org.teavm.ast.UnaryOperation;
+import org.teavm.ast.UnwrapArrayExpr;
+import org.teavm.ast.VariableExpr;
+import org.teavm.ast.VariableNode;
+import org.teavm.backend.javascript.codegen.SourceWriter;
+import org.teavm.model.MethodReference;
+import org.teavm.model.ValueType;
+import org.teavm.model.util.VariableType;
+
+/**
+ * <p>Keeps long local variables of a method as two int variables, so that long arithmetic
+ * on locals is rendered as plain int operations instead of calls to {@code Long_*} functions,
+ * each of which allocates a new object.</p>
+ *
+ * <p>For variable with index {@code i}, low word is stored in variable {@code i} and high word
+ * in variable {@code variableCount + i}. Long expression is lowered into sequence of temporary
+ * variables, which are declared in a block around the statement. Values are boxed back
+ * to {@code Long} objects whenever they leave the method, i.e. when passed as an argument, returned
+ * or stored to a field or an array.</p>
+ *
+ * <p>Variables that may leave the method additionally get a box slot {@code 2 * variableCount + i},
+ * which holds {@code Long} object for the current value of the variable. The slot is filled lazily
+ * on first escape and reset on every assignment, so that a value is boxed at most once per definition.
+ * When a variable is assigned from an existing object (a parameter, a call result, a field), this
+ * object is kept in the slot and is never boxed again.</p>
+ */
+class LongPairLowering {
+    private final StatementRenderer renderer;
+    private final SourceWriter writer;
+    private boolean[] pairVariables;
+    private boolean[] boxedVariables;
+    private int variableCount;
+    private int tempCount;
+    private boolean blockOpen;
+
+    LongPairLowering(StatementRenderer renderer, SourceWriter writer) {
+        this.renderer = renderer;
+        this.writer = writer;
+    }
+
+    void startMethod(RegularMethodNode method, int variableCount) {
+        this.variableCount = variableCount;
+        pairVariables = new boolean[variableCount];
+        for (VariableNode variable : method.getVariables()) {
+            if (variable.getType() == VariableType.LONG) {
+                pairVariables[variable.getIndex()] = true;
+            }
+        }
+        MethodReference reference = method.getReference();
+        for (int i = 0; i < reference.parameterCount(); ++i) {
+            if (reference.parameterType(i) == ValueType.LONG) {
+                pairVariables[i + 1] = true;
+            }
+        }
+        boxedVariables = new boolean[variableCount];
+        method.getBody().acceptVisitor(new EscapeFinder());
+    }
+
+    void reset() {
+        pairVariables = null;
+        boxedVariables = null;
+    }
+
+    void collectHighWordNames(List<String> names) {
+        if (pairVariables == null) {
+            return;
+        }
+        for (int i = 0; i < variableCount; ++i) {
+            if (pairVariables[i]) {
+                names.add(highWordName(i));
+            }
+        }
+        for (int i = 0; i < variableCount; ++i) {
+            if (boxedVariables[i]) {
+                names.add(boxName(i));
+            }
+        }
+    }
+
+    void unpackParameters(MethodReference method) {
+        if (pairVariables == null) {
+            return;
+        }
+        for (int i = 1; i <= method.parameterCount(); ++i) {
+            if (pairVariables[i]) {
+                String name = renderer.variableName(i);
+                if (boxedVariables[i]) {
+                    writer.append(boxName(i)).ws().append("=").ws().append(name).append(";").softNewLine();
+                }
+                writer.append(highWordName(i)).ws().append("=").ws().append(name).append(".hi;").softNewLine();
+                writer.append(name).ws().append("=").ws().append(name).append(".lo;").softNewLine();
+            }
+        }
+    }
+
+    boolean isPairVariable(int index) {
+        return pairVariables != null && index < variableCount && pairVariables[index];
+    }
+
+    private String highWordName(int index) {
+        return renderer.variableName(variableCount + index);
+    }
+
+    private String boxName(int index) {
+        return renderer.variableName(2 * variableCount + index);
+    }
+
+    boolean isLowered(Statement statement) {
+        if (statement instanceof AssignmentStatement) {
+            return canLower((AssignmentStatement) statement);
+        } else if (statement instanceof ReturnStatement) {
+            return canLower((ReturnStatement) statement);
+        }
+        return false;
+    }
+
+    private boolean canLower(AssignmentStatement statement) {
+        if (pairVariables == null || statement.isAsync() || statement.getLeftValue() == null) {
+            return false;
+        }
+        Expr target = statement.getLeftValue();
+        if (target instanceof VariableExpr) {
+            return isPairVariable(((VariableExpr) target).getIndex());
+        }
+        return isLowerable(statement.getRightValue()) && isStorage(target);
+    }
+
+    private boolean canLower(ReturnStatement statement) {
+        return pairVariables != null && statement.getResult() != null && isLowerable(statement.getResult());
+    }
+
+    private static boolean isLowerable(Expr expr) {
+        return isArithmetic(expr) || isIntToLong(expr);
+    }
+
+    private static boolean isIntToLong(Expr expr) {
+        if (!(expr instanceof PrimitiveCastExpr)) {
+            return false;
+        }
+        PrimitiveCastExpr cast = (PrimitiveCastExpr) expr;
+        return cast.getSource() == OperationType.INT && cast.getTarget() == OperationType.LONG;
+    }
+
+    private static boolean isArithmetic(Expr expr) {
+        if (expr instanceof BinaryExpr) {
+            BinaryExpr binary = (BinaryExpr) expr;
+            return binary.getType() == OperationType.LONG && !isComparison(binary);
+        } else if (expr instanceof UnaryExpr) {
+            UnaryExpr unary = (UnaryExpr) expr;
+            if (unary.getType() != OperationType.LONG) {
+                return false;
+            }
+            switch (unary.getOperation()) {
+                case NOT:
+                case NEGATE:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isComparison(BinaryExpr expr) {
+        switch (expr.getOperation()) {
+            case COMPARE:
+            case EQUALS:
+            case NOT_EQUALS:
+            case LESS:
+            case LESS_OR_EQUALS:
+            case GREATER:
+            case GREATER_OR_EQUALS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Parts of storage location are evaluated to temporary variables before the value (see hoistStorage).
+    // Bound check refers to the array expression once again, so we only allow it on variables
+    private static boolean isStorage(Expr expr) {
+        if (expr instanceof QualificationExpr) {
+            return true;
+        } else if (expr instanceof SubscriptExpr) {
+            Expr index = ((SubscriptExpr) expr).getIndex();
+            if (index instanceof BoundCheckExpr) {
+                Expr array = ((BoundCheckExpr) index).getArray();
+                return array == null || array instanceof VariableExpr;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    boolean lower(AssignmentStatement statement) {
+        if (!canLower(statement)) {
+            return false;
+        }
+        startStatement();
+        if (statement.getLocation() != null) {
+            renderer.pushLocation(statement.getLocation());
+        }
+        Expr target = statement.getLeftValue();
+        if (target instanceof VariableExpr) {
+            int index = ((VariableExpr) target).getIndex();
+            Expr source = statement.getRightValue();
+            String box = "null";
+            String[] value;
+            if (atom(source) != null || isLowerable(source)) {
+                value = lower(source);
+                if (source instanceof VariableExpr && boxedVariables[((VariableExpr) source).getIndex()]) {
+                    box = boxName(((VariableExpr) source).getIndex());
+                }
+            } else {
+                box = temp(source);
+                value = new String[] { box + ".lo", box + ".hi" };
+            }
+            String name = renderer.variableName(index);
+            if (value[1].equals(name)) {
+                value[1] = temp(value[1]);
+            }
+            writer.append(name).ws().append("=").ws();
+            emit(value[0]);
+            writer.append(";").softNewLine();
+            writer.append(highWordName(index)).ws().append("=").ws();
+            emit(value[1]);
+            writer.append(";").softNewLine();
+            if (boxedVariables[index]) {
+                writer.append(boxName(index)).ws().append("=").ws().append(box).append(";").softNewLine();
+            }
+        } else {
+            target = hoistStorage(target);
+            String[] value = lower(statement.getRightValue());
+            renderer.renderExpression(target, Precedence.min());
+            writer.ws().append("=").ws();
+            box(value);
+            writer.append(";").softNewLine();
+        }
+        endStatement();
+        if (statement.getLocation() != null) {
+            renderer.popLocation();
+        }
+        return true;
+    }
+
+    boolean lower(ReturnStatement statement) {
+        if (!canLower(statement)) {
+            return false;
+        }
+        startStatement();
+        if (statement.getLocation() != null) {
+            renderer.pushLocation(statement.getLocation());
+        }
+        String[] value = lower(statement.getResult());
+        writer.append("return ");
+        box(value);
+        writer.append(";").softNewLine();
+        endStatement();
+        if (statement.getLocation() != null) {
+            renderer.popLocation();
+        }
+        return true;
+    }
+
+    private void startStatement() {
+        writer.emitStatementStart();
+        tempCount = 0;
+        blockOpen = false;
+    }
+
+    private void endStatement() {
+        if (blockOpen) {
+            writer.outdent().append("}").softNewLine();
+            blockOpen = false;
+        }
+    }
+
+    boolean renderVariable(VariableExpr expr) {
+        int index = expr.getIndex();
+        if (!isPairVariable(index)) {
+            return false;
+        }
+        if (boxedVariables[index]) {
+            String box = boxName(index);
+            writer.append("(").append(box).ws().append("||").ws().append("(").append(box).ws().append("=").ws();
+            box(new String[] { renderer.variableName(index), highWordName(index) });
+            writer.append("))");
+        } else {
+            box(new String[] { renderer.variableName(index), highWordName(index) });
+        }
+        return true;
+    }
+
+    // JVM evaluates object and index of storage location before the value, but performs null
+    // and bound checks after the value, so we keep checks in place and move their operands to temporaries
+    private Expr hoistStorage(Expr target) {
+        if (target instanceof QualificationExpr) {
+            QualificationExpr qualification = (QualificationExpr) target;
+            if (qualification.getQualified() == null) {
+                return target;
+            }
+            QualificationExpr result = new QualificationExpr();
+            result.setField(qualification.getField());
+            result.setQualified(hoist(qualification.getQualified()));
+            result.setLocation(qualification.getLocation());
+            return result;
+        }
+
+        SubscriptExpr subscript = (SubscriptExpr) target;
+        Expr array = subscript.getArray();
+        if (array instanceof UnwrapArrayExpr) {
+            UnwrapArrayExpr unwrap = (UnwrapArrayExpr) array;
+            UnwrapArrayExpr hoistedUnwrap = new UnwrapArrayExpr(unwrap.getElementType());
+            hoistedUnwrap.setArray(hoist(unwrap.getArray()));
+            hoistedUnwrap.setLocation(unwrap.getLocation());
+            array = hoistedUnwrap;
+        } else {
+            array = hoist(array);
+        }
+        Expr index = subscript.getIndex();
+        if (index instanceof BoundCheckExpr) {
+            BoundCheckExpr check = (BoundCheckExpr) index;
+            BoundCheckExpr hoistedCheck = new BoundCheckExpr();
+            hoistedCheck.setIndex(hoist(check.getIndex()));
+            hoistedCheck.setArray(check.getArray());
+            hoistedCheck.setLower(check.isLower());
+            hoistedCheck.setLocation(check.getLocation());
+            index = hoistedCheck;
+        } else {
+            index = hoist(index);
+        }
+        SubscriptExpr result = new SubscriptExpr();
+        result.setArray(array);
+        result.setIndex(index);
+        result.setType(subscript.getType());
+        result.setLocation(subscript.getLocation());
+        return result;
+    }
+
+    private Expr hoist(Expr expr) {
+        if (expr instanceof VariableExpr || expr instanceof ConstantExpr) {
+            return expr;
+        }
+        if (expr instanceof UnaryExpr && ((UnaryExpr) expr).getOperation() == UnaryOperation.NULL_CHECK) {
+            UnaryExpr check = (UnaryExpr) expr;
+            Expr result = Expr.unary(UnaryOperation.NULL_CHECK, check.getType(), hoist(check.getOperand()));
+            result.setLocation(check.getLocation());
+            return result;
+        }
+        int index = 3 * variableCount + tempCount;
+        temp(expr);
+        return Expr.var(index);
+    }
+
+    boolean renderComparison(BinaryExpr expr) {
+        if (pairVariables == null || !isComparison(expr)) {
+            return false;
+        }
+        String[] a = atom(expr.getFirstOperand());
+        String[] b = atom(expr.getSecondOperand());
+        if (a == null || b == null) {
+            return false;
+        }
+        if (expr.getLocation() != null) {
+            renderer.pushLocation(expr.getLocation());
+        }
+        boolean zero = b[0].equals("0") && b[1].equals("0");
+        switch (expr.getOperation()) {
+            case COMPARE:
+                writer.appendFunction("Long_comparePair").append("(");
+                emit(a[0] + ", " + a[1] + ", " + b[0] + ", " + b[1]);
+                writer.append(")");
+                break;
+            case EQUALS:
+                emit(zero ? "((" + a[0] + " | " + a[1] + ") === 0)"
+                        : "(" + a[0] + " === " + b[0] + " && " + a[1] + " === " + b[1] + ")");
+                break;
+            case NOT_EQUALS:
+                emit(zero ? "((" + a[0] + " | " + a[1] + ") !== 0)"
+                        : "(" + a[0] + " !== " + b[0] + " || " + a[1] + " !== " + b[1] + ")");
+                break;
+            case LESS:
+                emit(zero ? "(" + a[1] + " < 0)" : lexicographic(a, b, "<", "<"));
+                break;
+            case LESS_OR_EQUALS:
+                emit(lexicographic(a, b, "<", "<="));
+                break;
+            case GREATER:
+                emit(lexicographic(a, b, ">", ">"));
+                break;
+            case GREATER_OR_EQUALS:
+                emit(zero ? "(" + a[1] + " >= 0)" : lexicographic(a, b, ">", ">="));
+                break;
+            default:
+                break;
+        }
+        if (expr.getLocation() != null) {
+            renderer.popLocation();
+        }
+        return true;
+    }
+
+    private static String lexicographic(String[] a, String[] b, String hiOp, String loOp) {
+        return "(" + a[1] + " " + hiOp + " " + b[1] + " || " + a[1] + " === " + b[1] + " && ("
+                + a[0] + " >>> 0) " + loOp + " (" + b[0] + " >>> 0))";
+    }
+
+    boolean renderCast(PrimitiveCastExpr expr) {
+        if (pairVariables == null || expr.getSource() != OperationType.LONG) {
+            return false;
+        }
+        switch (expr.getTarget()) {
+            case INT: {
+                Expr shifted = StatementRenderer.extractLongRightShiftedBy32(expr.getValue());
+                String[] value = atom(shifted != null ? shifted : expr.getValue());
+                if (value == null) {
+                    return false;
+                }
+                writer.append(shifted != null ? value[1] : value[0]);
+                return true;
+            }
+            case FLOAT:
+            case DOUBLE: {
+                String[] value = atom(expr.getValue());
+                if (value == null) {
+                    return false;
+                }
+                emit("(" + value[1] + " * 4294967296 + (" + value[0] + " >>> 0))");
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    private String[] atom(Expr expr) {
+        if (expr instanceof VariableExpr) {
+            int index = ((VariableExpr) expr).getIndex();
+            if (isPairVariable(index)) {
+                return new String[] { renderer.variableName(index), highWordName(index) };
+            }
+        } else if (expr instanceof ConstantExpr) {
+            Object value = ((ConstantExpr) expr).getValue();
+            if (value instanceof Long) {
+                long longValue = (Long) value;
+                return new String[] { literal((int) longValue), literal((int) (longValue >>> 32)) };
+            }
+        }
+        return null;
+    }
+
+    private String[] lower(Expr expr) {
+        String[] result = atom(expr);
+        if (result != null) {
+            return result;
+        }
+        if (expr instanceof BinaryExpr) {
+            BinaryExpr binary = (BinaryExpr) expr;
+            if (binary.getType() == OperationType.LONG && !isComparison(binary)) {
+                return lowerBinary(binary);
+            }
+        } else if (expr instanceof UnaryExpr) {
+            UnaryExpr unary = (UnaryExpr) expr;
+            if (isArithmetic(unary)) {
+                return lowerUnary(unary);
+            }
+        } else if (expr instanceof PrimitiveCastExpr) {
+            PrimitiveCastExpr cast = (PrimitiveCastExpr) expr;
+            if (cast.getSource() == OperationType.INT && cast.getTarget() == OperationType.LONG) {
+                return lowerIntToLong(cast.getValue());
+            }
+        }
+        String temp = temp(expr);
+        return new String[] { temp + ".lo", temp + ".hi" };
+    }
+
+    private String[] lowerIntToLong(Expr value) {
+        if (value instanceof ConstantExpr && ((ConstantExpr) value).getValue() instanceof Integer) {
+            int intValue = (Integer) ((ConstantExpr) value).getValue();
+            return new String[] { literal(intValue), literal(intValue >> 31) };
+        }
+        String lo = value instanceof VariableExpr
+                ? renderer.variableName(((VariableExpr) value).getIndex())
+                : temp(value);
+        return new String[] { lo, temp(lo + " >> 31") };
+    }
+
+    private String[] lowerUnary(UnaryExpr expr) {
+        String[] a = lower(expr.getOperand());
+        if (expr.getOperation() == UnaryOperation.NOT) {
+            return new String[] { temp("~" + a[0]), temp("~" + a[1]) };
+        }
+        String lo = temp("-" + a[0] + " | 0");
+        String hi = temp("~" + a[1] + " + (" + a[0] + " === 0 ? 1 : 0) | 0");
+        return new String[] { lo, hi };
+    }
+
+    private String[] lowerBinary(BinaryExpr expr) {
+        switch (expr.getOperation()) {
+            case LEFT_SHIFT:
+            case RIGHT_SHIFT:
+            case UNSIGNED_RIGHT_SHIFT:
+                return lowerShift(expr);
+            default:
+                break;
+        }
+
+        String[] a = lower(expr.getFirstOperand());
+        String[] b = lower(expr.getSecondOperand());
+        switch (expr.getOperation()) {
+            case ADD: {
+                String lo = temp(a[0] + " + " + b[0] + " | 0");
+                String hi = temp(a[1] + " + " + b[1] + " + ((" + lo + " >>> 0) < (" + a[0] + " >>> 0) ? 1 : 0) | 0");
+                return new String[] { lo, hi };
+            }
+            case SUBTRACT: {
+                String lo = temp(a[0] + " - " + b[0] + " | 0");
+                String hi = temp(a[1] + " - " + b[1] + " - ((" + a[0] + " >>> 0) < (" + b[0] + " >>> 0) ? 1 : 0) | 0");
+                return new String[] { lo, hi };
+            }
+            case BITWISE_AND:
+                return new String[] { temp(a[0] + " & " + b[0]), temp(a[1] + " & " + b[1]) };
+            case BITWISE_OR:
+                return new String[] { temp(a[0] + " | " + b[0]), temp(a[1] + " | " + b[1]) };
+            case BITWISE_XOR:
+                return new String[] { temp(a[0] + " ^ " + b[0]), temp(a[1] + " ^ " + b[1]) };
+            case MULTIPLY:
+                return lowerCall("Long_mulPair", a, b);
+            case DIVIDE:
+                return lowerCall("Long_divPair", a, b);
+            case MODULO:
+                return lowerCall("Long_remPair", a, b);
+            default:
+                throw new IllegalArgumentException("Unexpected long operation: " + expr.getOperation());
+        }
+    }
+
+    private String[] lowerCall(String function, String[] a, String[] b) {
+        String lo = startTemp();
+        writer.appendFunction(function).append("(");
+        emit(a[0] + ", " + a[1] + ", " + b[0] + ", " + b[1]);
+        writer.append(");").softNewLine();
+        String hi = startTemp();
+        writer.appendFunction("Long_hiResult").append(";").softNewLine();
+        return new String[] { lo, hi };
+    }
+
+    private String[] lowerShift(BinaryExpr expr) {
+        String[] a = lower(expr.getFirstOperand());
+        Expr count = expr.getSecondOperand();
+        if (count instanceof ConstantExpr && ((ConstantExpr) count).getValue() instanceof Number) {
+            int c = ((Number) ((ConstantExpr) count).getValue()).intValue() & 63;
+            return lowerConstantShift(expr.getOperation(), a, c);
+        }
+
+        String s = startTemp();
+        renderer.renderExpression(count, Precedence.BITWISE_AND);
+        emit(" & 63");
+        writer.append(";").softNewLine();
+        switch (expr.getOperation()) {
+            case LEFT_SHIFT: {
+                String lo = temp(s + " < 32 ? " + a[0] + " << " + s + " : 0");
+                String hi = temp(s + " < 32 ? " + a[1] + " << " + s + " | (" + a[0] + " >>> 1) >>> (31 - " + s
+                        + ") : " + a[0] + " << (" + s + " - 32)");
+                return new String[] { lo, hi };
+            }
+            case RIGHT_SHIFT: {
+                String lo = temp(s + " < 32 ? " + a[0] + " >>> " + s + " | (" + a[1] + " << 1) << (31 - " + s
+                        + ") : " + a[1] + " >> (" + s + " - 32)");
+                String hi = temp(s + " < 32 ? " + a[1] + " >> " + s + " : " + a[1] + " >> 31");
+                return new String[] { lo, hi };
+            }
+            default: {
+                String lo = temp(s + " < 32 ? " + a[0] + " >>> " + s + " | (" + a[1] + " << 1) << (31 - " + s
+                        + ") : " + a[1] + " >>> (" + s + " - 32) | 0");
+                String hi = temp(s + " < 32 ? " + a[1] + " >>> " + s + " | 0 : 0");
+                return new String[] { lo, hi };
+            }
+        }
+    }
+
+    private String[] lowerConstantShift(BinaryOperation operation, String[] a, int c) {
+        if (c == 0) {
+            return a;
+        }
+        switch (operation) {
+            case LEFT_SHIFT:
+                if (c < 32) {
+                    return new String[] { temp(a[0] + " << " + c),
+                            temp(a[1] + " << " + c + " | " + a[0] + " >>> " + (32 - c)) };
+                }
+                return new String[] { "0", c == 32 ? a[0] : temp(a[0] + " << " + (c - 32)) };
+            case RIGHT_SHIFT:
+                if (c < 32) {
+                    return new String[] { temp(a[0] + " >>> " + c + " | " + a[1] + " << " + (32 - c)),
+                            temp(a[1] + " >> " + c) };
+                }
+                return new String[] { c == 32 ? a[1] : temp(a[1] + " >> " + (c - 32)), temp(a[1] + " >> 31") };
+            default:
+                if (c < 32) {
+                    return new String[] { temp(a[0] + " >>> " + c + " | " + a[1] + " << " + (32 - c)),
+                            temp(a[1] + " >>> " + c) };
+                }
+                return new String[] { c == 32 ? a[1] : temp(a[1] + " >>> " + (c - 32)), "0" };
+        }
+    }
+
+    private void box(String[] value) {
+        writer.appendFunction("Long_create").append("(");
+        emit(value[0] + ", " + value[1]);
+        writer.append(")");
+    }
+
+    private String temp(String expression) {
+        String name = startTemp();
+        emit(expression);
+        writer.append(";").softNewLine();
+        return name;
+    }
+
+    private String temp(Expr expr) {
+        String name = startTemp();
+        renderer.renderExpression(expr, Precedence.min());
+        writer.append(";").softNewLine();
+        return name;
+    }
+
+    private String startTemp() {
+        if (!blockOpen) {
+            writer.append("{").indent().softNewLine();
+            blockOpen = true;
+        }
+        String name = renderer.variableName(3 * variableCount + tempCount++);
+        writer.append("let ").append(name).ws().append("=").ws();
+        return name;
+    }
+
+    // Spaces in expression templates are optional whitespaces, so that minified code stays compact
+    private void emit(String expression) {
+        for (int i = 0; i < expression.length(); ++i) {
+            char c = expression.charAt(i);
+            if (c == ' ') {
+                writer.ws();
+            } else {
+                writer.append(c);
+            }
+        }
+    }
+
+    private static String literal(int value) {
+        return value < 0 ? "(" + value + ")" : String.valueOf(value);
+    }
+
+    // Finds pair variables which are boxed at least once, i.e. rendered by renderVariable. Mirrors decisions
+    // made by lower, renderComparison and renderCast, but may report more variables than necessary
+    private class EscapeFinder extends RecursiveVisitor {
+        @Override
+        public void visit(AssignmentStatement statement) {
+            if (!canLower(statement)) {
+                super.visit(statement);
+                return;
+            }
+            Expr target = statement.getLeftValue();
+            if (!(target instanceof VariableExpr)) {
+                target.acceptVisitor(this);
+            }
+            visitLowered(statement.getRightValue());
+        }
+
+        @Override
+        public void visit(ReturnStatement statement) {
+            if (canLower(statement)) {
+                visitLowered(statement.getResult());
+            } else {
+                super.visit(statement);
+            }
+        }
+
+        private void visitLowered(Expr expr) {
+            if (atom(expr) != null) {
+                return;
+            }
+            if (expr instanceof BinaryExpr && isArithmetic(expr)) {
+                BinaryExpr binary = (BinaryExpr) expr;
+                visitLowered(binary.getFirstOperand());
+                switch (binary.getOperation()) {
+                    case LEFT_SHIFT:
+                    case RIGHT_SHIFT:
+                    case UNSIGNED_RIGHT_SHIFT:
+                        binary.getSecondOperand().acceptVisitor(this);
+                        break;
+                    default:
+                        visitLowered(binary.getSecondOperand());
+                        break;
+                }
+            } else if (expr instanceof UnaryExpr && isArithmetic(expr)) {
+                visitLowered(((UnaryExpr) expr).getOperand());
+            } else if (isIntToLong(expr)) {
+                ((PrimitiveCastExpr) expr).getValue().acceptVisitor(this);
+            } else {
+                expr.acceptVisitor(this);
+            }
+        }
+
+        @Override
+        public void visit(BinaryExpr expr) {
+            if (isComparison(expr) && atom(expr.getFirstOperand()) != null
+                    && atom(expr.getSecondOperand()) != null) {
+                return;
+            }
+            super.visit(expr);
+        }
+
+        @Override
+        public void visit(PrimitiveCastExpr expr) {
+            if (expr.getSource() == OperationType.LONG) {
+                switch (expr.getTarget()) {
+                    case INT: {
+                        Expr shifted = StatementRenderer.extractLongRightShiftedBy32(expr.getValue());
+                        if (atom(shifted != null ? shifted : expr.getValue()) != null) {
+                            return;
+                        }
+                        break;
+                    }
+                    case FLOAT:
+                    case DOUBLE:
+                        if (atom(expr.getValue()) != null) {
+                            return;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            super.visit(expr);
+        }
+
+        @Override
+        public void visit(VariableExpr expr) {
+            if (isPairVariable(expr.getIndex())) {
+                boxedVariables[expr.getIndex()] = true;
+            }
+        }
+    }
+}
@@ -25,6 +25,7 @@ import org.teavm.ast.MethodNode;
 import org.teavm.ast.MethodNodeVisitor;
 import org.teavm.ast.RegularMethodNode;
 import org.teavm.ast.VariableNode;
+import org.teavm.backend.javascript.JSLongRepresentation;
 import org.teavm.backend.javascript.codegen.SourceWriter;
 import org.teavm.backend.javascript.spi.Generator;
 import org.teavm.backend.javascript.spi.GeneratorContext;
@@ -137,10 +138,15 @@ public class MethodBodyRenderer implements MethodNodeVisitor, GeneratorContext {
         TryCatchFinder tryCatchFinder = new TryCatchFinder();
         method.getBody().acceptVisitor(tryCatchFinder);
         boolean hasTryCatch = tryCatchFinder.tryCatchFound;
+        LongPairLowering longPairLowering = statementRenderer.getLongPairLowering();
+        if (context.getLongRepresentation() == JSLongRepresentation.INT_PAIR) {
+            longPairLowering.startMethod(method, variableCount);
+        }
         List<String> variableNames = new ArrayList<>();
         for (int i = method.getReference().parameterCount() + 1; i < variableCount; ++i) {
             variableNames.add(statementRenderer.variableName(i));
         }
+        longPairLowering.collectHighWordNames(variableNames);
         if (hasTryCatch) {
             variableNames.add("$$je");
         }
@@ -154,6 +160,7 @@ public class MethodBodyRenderer implements MethodNodeVisitor, GeneratorContext {
             }
             writer.append(";").softNewLine();
         }
+        longPairLowering.unpackParameters(method.getReference());
 
         statementRenderer.setEnd(true);
         statementRenderer.setCurrentPart(0);
@@ -29,7 +29,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.IntFunction;
+import java.util.function.Predicate;
 import org.teavm.ast.AsyncMethodNode;
 import org.teavm.ast.ControlFlowEntry;
 import org.teavm.ast.MethodNode;
@@ -94,8 +98,13 @@ public class Renderer implements RenderingManager {
     private AstDependencyExtractor dependencyExtractor = new AstDependencyExtractor();
     private List<ExportedDeclaration> exports;
     private String entryPoint;
+    private int decompilationThreads = 1;
+    private Map<MethodReference, DecompilationTask> decompilationTasks = new HashMap<>();
+    private DeclarationListener declarationListener;
+    private ClassMetadataRequirements metadataRequirements;
 
     public static final MethodDescriptor CLINIT_METHOD = new MethodDescriptor("<clinit>", ValueType.VOID);
+    private static final int DECOMPILATION_LOOKAHEAD_PER_THREAD = 4;
 
     public Renderer(SourceWriter writer, Set<MethodReference> asyncMethods, RenderingContext context,
             Diagnostics diagnostics, Map<MethodReference, Generator> generators,
@@ -168,6 +177,30 @@ public class Renderer implements RenderingManager {
         this.progressConsumer = progressConsumer;
     }
 
+    public int getDecompilationThreads() {
+        return decompilationThreads;
+    }
+
+    /**
+     * Sets number of threads that decompile method bodies before they are rendered. Rendering itself always
+     * happens on the calling thread and in the same order, so output does not depend on this setting.
+     */
+    public void setDecompilationThreads(int decompilationThreads) {
+        if (decompilationThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + decompilationThreads);
+        }
+        this.decompilationThreads = decompilationThreads;
+    }
+
+    /**
+     * Makes renderer report each independent group of declarations to the given listener. In this mode
+     * class metadata is not rendered by {@link #render(ListableClassHolderSource, boolean)}, so it's up to
+     * the caller to render metadata with {@link #renderClassMetadata(List)} for each group of classes.
+     */
+    public void setDeclarationListener(DeclarationListener declarationListener) {
+        this.declarationListener = declarationListener;
+    }
+
     public void setProperties(Properties properties) {
         this.properties.clear();
         this.properties.putAll(properties);
@@ -190,15 +223,47 @@ public class Renderer implements RenderingManager {
     }
 
     public void renderStringConstants() throws RenderingException {
+        renderStringConstants(className -> true);
+    }
+
+    public void renderStringConstants(Predicate<String> classFilter) throws RenderingException {
         for (PostponedFieldInitializer initializer : postponedFieldInitializers) {
+            if (!classFilter.test(initializer.field.getClassName())) {
+                continue;
+            }
             writer.markSectionStart(SECTION_STRING_POOL);
             writer.appendStaticField(initializer.field).ws().append("=").ws();
+            context.setStringPoolClass(initializer.field.getClassName());
             context.constantToString(writer, initializer.value);
+            context.setStringPoolClass(null);
             writer.append(";").softNewLine();
             writer.markSectionEnd();
         }
     }
 
+    /**
+     * Renders declaration of string pool of the given class, see {@link RenderingContext#setClassStringPools(boolean)}.
+     * Strings are converted to Java objects on first access, so declaration can be placed anywhere
+     * before the code of the class gets executed.
+     */
+    public void renderClassStringPool(String className) throws RenderingException {
+        var strings = context.getClassStringPool(className);
+        if (strings.isEmpty()) {
+            return;
+        }
+        writer.markSectionStart(SECTION_STRING_POOL);
+        writer.startVariableDeclaration().appendFunction(RenderingContext.classStringPoolName(className))
+                .appendFunction("$rt_classStringPool").append("([");
+        for (int i = 0; i < strings.size(); ++i) {
+            if (i > 0) {
+                writer.append(',').ws();
+            }
+            RenderingUtil.writeString(writer, strings.get(i));
+        }
+        writer.append("])").endDeclaration();
+        writer.markSectionEnd();
+    }
+
     public void renderCompatibilityStubs() throws RenderingException {
         renderJavaStringToString();
         renderJavaObjectToString();
@@ -246,20 +311,108 @@ public class Renderer implements RenderingManager {
 
         var decompiler = new Decompiler(classes, splitMethods, isFriendlyToDebugger);
 
-        int index = 0;
-        for (var cls : sequence) {
-            writer.markClassStart(cls.getName());
-            renderDeclaration(cls);
-            renderMethodBodies(cls, decompiler);
-            writer.markClassEnd();
-            if (progressConsumer.apply(1000 * ++index / sequence.size()) == TeaVMProgressFeedback.CANCEL) {
-                return false;
+        var pool = decompilationThreads > 1 ? new ForkJoinPool(decompilationThreads) : null;
+        var decompilers = pool != null
+                ? ThreadLocal.withInitial(() -> new Decompiler(classes, splitMethods, isFriendlyToDebugger))
+                : null;
+        int lookahead = decompilationThreads * DECOMPILATION_LOOKAHEAD_PER_THREAD;
+        int decompiledClasses = 0;
+        try {
+            int index = 0;
+            for (var cls : sequence) {
+                if (pool != null) {
+                    int limit = Math.min(sequence.size(), index + 1 + lookahead);
+                    while (decompiledClasses < limit) {
+                        startDecompilation(sequence.get(decompiledClasses++), pool, decompilers);
+                    }
+                }
+                if (declarationListener != null) {
+                    renderSeparateDeclarations(cls, decompiler);
+                } else {
+                    writer.markClassStart(cls.getName());
+                    renderDeclaration(cls);
+                    renderMethodBodies(cls, decompiler);
+                    writer.markClassEnd();
+                }
+                if (pool != null) {
+                    releaseDecompilation(cls);
+                }
+                if (progressConsumer.apply(1000 * ++index / sequence.size()) == TeaVMProgressFeedback.CANCEL) {
+                    return false;
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
             }
+            decompilationTasks.clear();
+        }
+        if (declarationListener == null) {
+            renderClassMetadata(sequence);
         }
-        renderClassMetadata(sequence);
         return true;
     }
 
+    /*
+     * Decompiler is the only part of rendering that is both expensive and independent for each method.
+     * Statement rendering stays serial, since it assigns string pool indexes in order of appearance and
+     * calls generators and injectors, which are not required to be thread-safe. AST cache is accessed
+     * from the rendering thread only.
+     *
+     * Methods are decompiled at most a few classes ahead of the rendering loop, so that only a bounded
+     * number of ASTs is kept in memory at a time.
+     */
+    private void startDecompilation(ClassHolder cls, ForkJoinPool pool, ThreadLocal<Decompiler> decompilers) {
+        for (var method : cls.getMethods()) {
+            // Programs are supplied lazily and their suppliers optimize and cache programs, which is not
+            // thread-safe. filterMethod forces the program on this thread before the task is submitted,
+            // so workers only read it.
+            if (!filterMethod(method) || method.hasModifier(ElementModifier.NATIVE)) {
+                continue;
+            }
+            var reference = method.getReference();
+            var cacheable = astCache != null && !cacheStatus.isStaleMethod(reference);
+            DecompilationTask task;
+            if (asyncMethods.contains(reference)) {
+                var node = cacheable ? astCache.getAsync(reference, cacheStatus) : null;
+                task = node != null
+                        ? new DecompilationTask(CompletableFuture.completedFuture(node), true)
+                        : new DecompilationTask(CompletableFuture.supplyAsync(
+                                () -> decompilers.get().decompileAsync(method), pool), false);
+            } else {
+                var entry = cacheable ? astCache.get(reference, cacheStatus) : null;
+                task = entry != null
+                        ? new DecompilationTask(CompletableFuture.completedFuture(entry), true)
+                        : new DecompilationTask(CompletableFuture.supplyAsync(
+                                () -> decompileRegularCacheMiss(decompilers.get(), method), pool), false);
+            }
+            decompilationTasks.put(reference, task);
+        }
+    }
+
+    private void releaseDecompilation(ClassHolder cls) {
+        for (var method : cls.getMethods()) {
+            var task = decompilationTasks.remove(method.getReference());
+            if (task != null) {
+                task.result.cancel(false);
+            }
+        }
+    }
+
+    private static Object joinDecompilation(DecompilationTask task) {
+        try {
+            return task.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     private void orderClasses(ClassHolderSource classes, String className, Set<String> visited,
             List<ClassHolder> order) {
         if (!visited.add(className)) {
@@ -359,34 +512,60 @@ public class Renderer implements RenderingManager {
 
     private void renderMethodBodies(ClassHolder cls, Decompiler decompiler) {
         writer.emitClass(cls.getName());
-
-        MethodReader clinit = classSource.get(cls.getName()).getMethod(CLINIT_METHOD);
-
-        if (clinit != null && context.isDynamicInitializer(cls.getName())) {
-            renderCallClinit(clinit, cls);
+        renderCallClinitIfNecessary(cls);
+        for (var method : cls.getMethods()) {
+            renderMethod(cls, method, decompiler);
         }
+        writer.emitClass(null);
+    }
+
+    private void renderSeparateDeclarations(ClassHolder cls, Decompiler decompiler) {
+        context.setStringPoolClass(cls.getName());
+        writer.markClassStart(cls.getName());
+        renderDeclaration(cls);
+        writer.emitClass(cls.getName());
+        renderCallClinitIfNecessary(cls);
+        writer.emitClass(null);
+        writer.markClassEnd();
+        declarationListener.declarationsRendered(cls.getName(), null);
 
-        var needsInitializers = !cls.hasModifier(ElementModifier.INTERFACE)
-            && !cls.hasModifier(ElementModifier.ABSTRACT);
         for (var method : cls.getMethods()) {
             if (!filterMethod(method)) {
                 continue;
             }
-            var isFunction = context.isForcedFunction(method.getReference());
-            if (isFunction) {
-                writer.startFunctionDeclaration();
-            } else {
-                writer.startVariableDeclaration();
-            }
-            renderBody(method, decompiler, isFunction);
-            writer.endDeclaration();
-            if (needsInitializers && !method.hasModifier(ElementModifier.STATIC)
-                    && method.getName().equals("<init>")) {
-                renderInitializer(method);
-            }
+            writer.markClassStart(cls.getName());
+            writer.emitClass(cls.getName());
+            renderMethod(cls, method, decompiler);
+            writer.emitClass(null);
+            writer.markClassEnd();
+            declarationListener.declarationsRendered(cls.getName(), method.getReference());
         }
+        context.setStringPoolClass(null);
+    }
 
-        writer.emitClass(null);
+    private void renderCallClinitIfNecessary(ClassHolder cls) {
+        MethodReader clinit = classSource.get(cls.getName()).getMethod(CLINIT_METHOD);
+        if (clinit != null && context.isDynamicInitializer(cls.getName())) {
+            renderCallClinit(clinit, cls);
+        }
+    }
+
+    private void renderMethod(ClassHolder cls, MethodHolder method, Decompiler decompiler) {
+        if (!filterMethod(method)) {
+            return;
+        }
+        var isFunction = context.isForcedFunction(method.getReference());
+        if (isFunction) {
+            writer.startFunctionDeclaration();
+        } else {
+            writer.startVariableDeclaration();
+        }
+        renderBody(method, decompiler, isFunction);
+        writer.endDeclaration();
+        if (!cls.hasModifier(ElementModifier.INTERFACE) && !cls.hasModifier(ElementModifier.ABSTRACT)
+                && !method.hasModifier(ElementModifier.STATIC) && method.getName().equals("<init>")) {
+            renderInitializer(method);
+        }
     }
 
     private boolean filterMethod(MethodReader method) {
@@ -464,8 +643,10 @@ public class Renderer implements RenderingManager {
                 .appendClass(cls.getName()).append(");").softNewLine();
     }
 
-    private void renderClassMetadata(List<? extends ClassReader> classReaders) {
-        ClassMetadataRequirements metadataRequirements = new ClassMetadataRequirements(context.getDependencyInfo());
+    public void renderClassMetadata(List<? extends ClassReader> classReaders) {
+        if (metadataRequirements == null) {
+            metadataRequirements = new ClassMetadataRequirements(context.getDependencyInfo());
+        }
 
         writer.markSectionStart(SECTION_METADATA);
 
@@ -930,6 +1111,14 @@ public class Renderer implements RenderingManager {
     }
 
     private AstCacheEntry decompileRegular(Decompiler decompiler, MethodHolder method) {
+        var task = decompilationTasks.remove(method.getReference());
+        if (task != null) {
+            var entry = (AstCacheEntry) joinDecompilation(task);
+            if (!task.cached && astCache != null) {
+                astCache.store(method.getReference(), entry, () -> dependencyExtractor.extract(entry.method));
+            }
+            return entry;
+        }
         if (astCache == null) {
             return decompileRegularCacheMiss(decompiler, method);
         }
@@ -952,6 +1141,14 @@ public class Renderer implements RenderingManager {
     }
 
     private AsyncMethodNode decompileAsync(Decompiler decompiler, MethodHolder method) {
+        var task = decompilationTasks.remove(method.getReference());
+        if (task != null) {
+            var node = (AsyncMethodNode) joinDecompilation(task);
+            if (!task.cached && astCache != null) {
+                astCache.storeAsync(method.getReference(), node, () -> dependencyExtractor.extract(node));
+            }
+            return node;
+        }
         if (astCache == null) {
             return decompiler.decompileAsync(method);
         }
@@ -984,6 +1181,16 @@ public class Renderer implements RenderingManager {
         return services.getService(type);
     }
 
+    private static class DecompilationTask {
+        final CompletableFuture<?> result;
+        final boolean cached;
+
+        DecompilationTask(CompletableFuture<?> result, boolean cached) {
+            this.result = result;
+            this.cached = cached;
+        }
+    }
+
     private static class PostponedFieldInitializer {
         FieldReference field;
         String value;
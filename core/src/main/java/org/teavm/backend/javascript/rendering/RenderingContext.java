@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.function.Predicate;
+import org.teavm.backend.javascript.JSLongRepresentation;
 import org.teavm.backend.javascript.codegen.NamingStrategy;
 import org.teavm.backend.javascript.codegen.SourceWriter;
 import org.teavm.backend.javascript.spi.InjectedBy;
@@ -55,8 +56,13 @@ public abstract class RenderingContext {
     private final Map<String, Integer> stringPoolMap = new HashMap<>();
     private final List<String> stringPool = new ArrayList<>();
     private final List<String> readonlyStringPool = Collections.unmodifiableList(stringPool);
+    private boolean classStringPools;
+    private String stringPoolClass;
+    private final Map<String, Map<String, Integer>> stringPoolMapsByClass = new HashMap<>();
+    private final Map<String, List<String>> stringPoolsByClass = new HashMap<>();
     private final Map<MethodReference, InjectorHolder> injectorMap = new HashMap<>();
     private boolean minifying;
+    private JSLongRepresentation longRepresentation = JSLongRepresentation.BIGINT;
     private ClassInitializerInfo classInitializerInfo;
     private boolean strict;
 
@@ -134,7 +140,45 @@ public abstract class RenderingContext {
         return minifying;
     }
 
+    public JSLongRepresentation getLongRepresentation() {
+        return longRepresentation;
+    }
+
+    public void setLongRepresentation(JSLongRepresentation longRepresentation) {
+        this.longRepresentation = longRepresentation;
+    }
+
+    public boolean isClassStringPools() {
+        return classStringPools;
+    }
+
+    /**
+     * Specifies whether string literals of each class should be collected to separate pool instead of
+     * global one. This way index of a literal does not depend on literals of other classes, so code
+     * of a class remains same until the class itself changes.
+     */
+    public void setClassStringPools(boolean classStringPools) {
+        this.classStringPools = classStringPools;
+    }
+
+    /**
+     * Specifies class which pool receives string literals rendered by
+     * {@link #constantToString(SourceWriter, Object)} when class string pools are enabled.
+     * {@code null} means global string pool.
+     */
+    public void setStringPoolClass(String stringPoolClass) {
+        this.stringPoolClass = stringPoolClass;
+    }
+
     public int lookupString(String string) {
+        if (classStringPools && stringPoolClass != null) {
+            var pool = stringPoolsByClass.computeIfAbsent(stringPoolClass, k -> new ArrayList<>());
+            return stringPoolMapsByClass.computeIfAbsent(stringPoolClass, k -> new HashMap<>())
+                    .computeIfAbsent(string, key -> {
+                        pool.add(key);
+                        return pool.size() - 1;
+                    });
+        }
         return stringPoolMap.computeIfAbsent(string, key -> {
             stringPool.add(key);
             return stringPool.size() - 1;
@@ -145,6 +189,15 @@ public abstract class RenderingContext {
         return readonlyStringPool;
     }
 
+    public List<String> getClassStringPool(String className) {
+        var pool = stringPoolsByClass.get(className);
+        return pool != null ? Collections.unmodifiableList(pool) : Collections.emptyList();
+    }
+
+    public static String classStringPoolName(String className) {
+        return "$rt_strings$" + className;
+    }
+
     public void constantToString(SourceWriter writer, Object cst) {
         if (cst == null) {
             writer.append("null");
@@ -157,7 +210,12 @@ public abstract class RenderingContext {
         } else if (cst instanceof String) {
             String string = (String) cst;
             int index = lookupString(string);
-            writer.appendFunction("$rt_s").append("(" + index + ")");
+            if (classStringPools && stringPoolClass != null) {
+                writer.appendFunction(classStringPoolName(stringPoolClass));
+            } else {
+                writer.appendFunction("$rt_s");
+            }
+            writer.append("(" + index + ")");
         } else if (cst instanceof Long) {
             long value = (Long) cst;
             if (value == 0) {
@@ -27,6 +27,7 @@ import java.util.Set;
 import org.mozilla.javascript.CompilerEnvirons;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ast.AstRoot;
+import org.teavm.backend.javascript.JSLongRepresentation;
 import org.teavm.backend.javascript.codegen.SourceWriter;
 import org.teavm.backend.javascript.codegen.SourceWriterSink;
 import org.teavm.backend.javascript.templating.AstRemoval;
@@ -45,6 +46,7 @@ public class RuntimeRenderer {
     private final SourceWriter writer;
     private final ClassInitializerInfo classInitializerInfo;
     private final Set<String> topLevelNames = new HashSet<>();
+    private JSLongRepresentation longRepresentation = JSLongRepresentation.BIGINT;
 
     public RuntimeRenderer(ClassReaderSource classSource, SourceWriter writer,
             ClassInitializerInfo classInitializerInfo) {
@@ -53,11 +55,16 @@ public class RuntimeRenderer {
         this.classInitializerInfo = classInitializerInfo;
     }
 
+    public void setLongRepresentation(JSLongRepresentation longRepresentation) {
+        this.longRepresentation = longRepresentation;
+    }
+
     public void prepareAstParts(boolean threadLibraryUsed) {
         runtimeAstParts.add(prepareAstPart("runtime.js"));
         runtimeAstParts.add(prepareAstPart("primitive.js"));
         runtimeAstParts.add(prepareAstPart("numeric.js"));
-        runtimeAstParts.add(prepareAstPart("long.js"));
+        runtimeAstParts.add(prepareAstPart(longRepresentation == JSLongRepresentation.INT_PAIR
+                ? "longPair.js" : "long.js"));
         runtimeAstParts.add(prepareAstPart("array.js"));
         runtimeAstParts.add(prepareAstPart("string.js"));
         runtimeAstParts.add(prepareAstPart("reflection.js"));
@@ -66,6 +73,7 @@ public class RuntimeRenderer {
         runtimeAstParts.add(prepareAstPart("console.js"));
         runtimeAstParts.add(prepareAstPart("metadata.js"));
         runtimeAstParts.add(prepareAstPart(threadLibraryUsed ? "thread.js" : "simpleThread.js"));
+        runtimeAstParts.add(prepareAstPart("profile.js"));
         epilogueAstParts.add(prepareAstPart("types.js"));
     }
 
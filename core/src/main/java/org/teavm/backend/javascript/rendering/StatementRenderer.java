@@ -100,6 +100,7 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
     private VariableNameGenerator variableNameGenerator;
     private final Deque<LocationStackEntry> locationStack = new ArrayDeque<>();
     private TextLocation lastEmittedLocation = TextLocation.EMPTY;
+    private final LongPairLowering longPairLowering;
 
     public StatementRenderer(RenderingContext context, SourceWriter writer) {
         this.context = context;
@@ -108,6 +109,7 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
         this.minifying = context.isMinifying();
         this.naming = context.getNaming();
         variableNameGenerator = new VariableNameGenerator(minifying);
+        longPairLowering = new LongPairLowering(this, writer);
     }
 
     public void clear() {
@@ -121,6 +123,11 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
         locationStack.clear();
         lastEmittedLocation = TextLocation.EMPTY;
         variableNameGenerator.clear();
+        longPairLowering.reset();
+    }
+
+    LongPairLowering getLongPairLowering() {
+        return longPairLowering;
     }
 
     public boolean isAsync() {
@@ -221,6 +228,9 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
 
     @Override
     public void visit(AssignmentStatement statement) throws RenderingException {
+        if (longPairLowering.lower(statement)) {
+            return;
+        }
         writer.emitStatementStart();
         if (statement.getLocation() != null) {
             pushLocation(statement.getLocation());
@@ -317,7 +327,8 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
         }
 
         Statement statement = statements.get(0);
-        return !(statement instanceof ConditionalStatement) && !(statement instanceof GotoPartStatement);
+        return !(statement instanceof ConditionalStatement) && !(statement instanceof GotoPartStatement)
+                && !longPairLowering.isLowered(statement);
     }
 
     @Override
@@ -451,6 +462,9 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
 
     @Override
     public void visit(ReturnStatement statement) {
+        if (longPairLowering.lower(statement)) {
+            return;
+        }
         writer.emitStatementStart();
         if (statement.getLocation() != null) {
             pushLocation(statement.getLocation());
@@ -509,6 +523,11 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
         return variableNameGenerator.variableName(index);
     }
 
+    void renderExpression(Expr expr, Precedence precedence) {
+        this.precedence = precedence;
+        expr.acceptVisitor(this);
+    }
+
     private void visitBinary(BinaryExpr expr, String op, boolean guarded) {
         if (expr.getLocation() != null) {
             pushLocation(expr.getLocation());
@@ -632,6 +651,9 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
     @Override
     public void visit(BinaryExpr expr) {
         if (expr.getType() == OperationType.LONG) {
+            if (longPairLowering.renderComparison(expr)) {
+                return;
+            }
             switch (expr.getOperation()) {
                 case ADD:
                     visitBinaryFunction(expr, "Long_add");
@@ -928,6 +950,9 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
                 }
                 break;
             case LONG:
+                if (longPairLowering.renderCast(expr)) {
+                    break;
+                }
                 switch (expr.getTarget()) {
                     case INT:
                         precedence = Precedence.MEMBER_ACCESS;
@@ -976,7 +1001,7 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
         }
     }
 
-    private Expr extractLongRightShiftedBy32(Expr expr) {
+    static Expr extractLongRightShiftedBy32(Expr expr) {
         if (!(expr instanceof BinaryExpr)) {
             return null;
         }
@@ -1046,7 +1071,9 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
         if (expr.getLocation() != null) {
             pushLocation(expr.getLocation());
         }
-        writer.append(variableName(expr.getIndex()));
+        if (!longPairLowering.renderVariable(expr)) {
+            writer.append(variableName(expr.getIndex()));
+        }
         if (expr.getLocation() != null) {
             popLocation();
         }
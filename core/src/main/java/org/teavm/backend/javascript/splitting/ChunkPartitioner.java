@@ -0,0 +1,273 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.javascript.splitting;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.teavm.backend.javascript.codegen.NamingStrategy;
+import org.teavm.backend.javascript.codegen.RememberedSource;
+import org.teavm.backend.javascript.codegen.ScopedName;
+import org.teavm.backend.javascript.codegen.SourceWriterSink;
+import org.teavm.model.FieldReference;
+import org.teavm.model.MethodReference;
+
+/**
+ * <p>Distributes units of generated code between main module and chunks. Unit is a piece of code that declares
+ * some top-level names and refers to some other top-level names. Each chunk is defined by its root units,
+ * every other unit goes to chunk only if it is reachable from roots of this chunk and is not referred by code
+ * that is left in main module or in other chunks. Units that refer to names declared outside of any unit
+ * (for example, imported modules) or to pinned names, as well as units that declare pinned names,
+ * are always left in main module.</p>
+ *
+ * <p>Units are identified by names they declare, so partitioning must be performed when names are already
+ * assigned. Names that are declared in one part and referred from another one are reported as shared,
+ * they should be accessed via an object passed to each chunk.</p>
+ */
+public class ChunkPartitioner {
+    private final NamingStrategy naming;
+    private final List<Unit> units = new ArrayList<>();
+    private final Set<String> pinnedNames = new HashSet<>();
+    private final Set<String> sharedNames = new HashSet<>();
+
+    public ChunkPartitioner(NamingStrategy naming) {
+        this.naming = naming;
+    }
+
+    /**
+     * Adds code that is always placed to main module.
+     */
+    public void addMainCode(RememberedSource source) {
+        var unit = createUnit(source);
+        unit.main = true;
+    }
+
+    /**
+     * Adds names that are referred by the given code to the set of names that must remain top-level
+     * declarations of main module, for example, because they are exported from the module.
+     */
+    public void pin(RememberedSource source) {
+        var collector = new SymbolCollector();
+        source.replay(collector, RememberedSource.FILTER_TEXT | RememberedSource.FILTER_REF);
+        pinnedNames.addAll(collector.referenced);
+        pinnedNames.addAll(collector.declared);
+    }
+
+    /**
+     * Adds unit of code.
+     *
+     * @param rootChunk name of chunk if the unit is a root of the chunk, {@code null} otherwise.
+     * @return identifier of the unit to be passed to {@link #getChunk(int)}.
+     */
+    public int addUnit(String rootChunk, RememberedSource... sources) {
+        var unit = createUnit(sources);
+        unit.rootChunk = rootChunk;
+        return unit.index;
+    }
+
+    private Unit createUnit(RememberedSource... sources) {
+        var collector = new SymbolCollector();
+        for (var source : sources) {
+            source.replay(collector, RememberedSource.FILTER_TEXT | RememberedSource.FILTER_REF);
+        }
+        var unit = new Unit(units.size());
+        unit.declared = collector.declared;
+        unit.referenced = collector.referenced;
+        unit.referenced.removeAll(unit.declared);
+        units.add(unit);
+        return unit;
+    }
+
+    public void partition() {
+        var declaringUnits = new HashMap<String, Unit>();
+        for (var unit : units) {
+            for (var name : unit.declared) {
+                declaringUnits.putIfAbsent(name, unit);
+            }
+        }
+
+        var roots = new LinkedHashMap<String, List<Unit>>();
+        for (var unit : units) {
+            if (unit.rootChunk != null) {
+                roots.computeIfAbsent(unit.rootChunk, k -> new ArrayList<>()).add(unit);
+            }
+        }
+        for (var entry : roots.entrySet()) {
+            markReachable(entry.getKey(), entry.getValue(), declaringUnits);
+        }
+
+        var queue = new ArrayDeque<Unit>();
+        for (var unit : units) {
+            if (unit.main || unit.chunk == null || unit.conflict || !isResolvable(unit, declaringUnits)
+                    || declaresPinnedName(unit)) {
+                unit.chunk = null;
+                queue.add(unit);
+            }
+        }
+        while (!queue.isEmpty()) {
+            var unit = queue.remove();
+            for (var name : unit.referenced) {
+                var declaringUnit = declaringUnits.get(name);
+                if (declaringUnit != null && declaringUnit.chunk != null && declaringUnit.rootChunk == null) {
+                    declaringUnit.chunk = null;
+                    queue.add(declaringUnit);
+                }
+            }
+        }
+
+        for (var unit : units) {
+            for (var name : unit.referenced) {
+                var declaringUnit = declaringUnits.get(name);
+                if (declaringUnit != null && !Objects.equals(declaringUnit.chunk, unit.chunk)) {
+                    sharedNames.add(name);
+                }
+            }
+        }
+    }
+
+    private void markReachable(String chunk, List<Unit> chunkRoots, Map<String, Unit> declaringUnits) {
+        var visited = new HashSet<Unit>(chunkRoots);
+        var queue = new ArrayDeque<>(chunkRoots);
+        while (!queue.isEmpty()) {
+            var unit = queue.remove();
+            if (unit.chunk == null) {
+                unit.chunk = chunk;
+            } else if (!unit.chunk.equals(chunk)) {
+                unit.conflict = true;
+            }
+            for (var name : unit.referenced) {
+                var next = declaringUnits.get(name);
+                if (next != null && !next.main && next.rootChunk == null && visited.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    private boolean isResolvable(Unit unit, Map<String, Unit> declaringUnits) {
+        for (var name : unit.referenced) {
+            if (pinnedNames.contains(name) || !declaringUnits.containsKey(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean declaresPinnedName(Unit unit) {
+        for (var name : unit.declared) {
+            if (pinnedNames.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns name of the chunk the unit was placed to, or {@code null} if it was placed to main module.
+     */
+    public String getChunk(int unit) {
+        return units.get(unit).chunk;
+    }
+
+    public Set<String> getSharedNames() {
+        return Collections.unmodifiableSet(sharedNames);
+    }
+
+    static class Unit {
+        final int index;
+        Set<String> declared;
+        Set<String> referenced;
+        boolean main;
+        String rootChunk;
+        String chunk;
+        boolean conflict;
+
+        Unit(int index) {
+            this.index = index;
+        }
+    }
+
+    class SymbolCollector implements SourceWriterSink {
+        final Set<String> declared = new HashSet<>();
+        final Set<String> referenced = new HashSet<>();
+        private boolean expectingDeclaration;
+
+        @Override
+        public SourceWriterSink startVariableDeclaration() {
+            expectingDeclaration = true;
+            return this;
+        }
+
+        @Override
+        public SourceWriterSink startFunctionDeclaration() {
+            expectingDeclaration = true;
+            return this;
+        }
+
+        @Override
+        public SourceWriterSink declareVariable() {
+            expectingDeclaration = true;
+            return this;
+        }
+
+        @Override
+        public SourceWriterSink appendClass(String cls) {
+            return add(naming.className(cls));
+        }
+
+        @Override
+        public SourceWriterSink appendStaticField(FieldReference field) {
+            return add(naming.fieldName(field));
+        }
+
+        @Override
+        public SourceWriterSink appendMethod(MethodReference method) {
+            return add(naming.methodName(method));
+        }
+
+        @Override
+        public SourceWriterSink appendFunction(String name) {
+            return add(naming.functionName(name));
+        }
+
+        @Override
+        public SourceWriterSink appendInit(MethodReference method) {
+            return add(naming.initializerName(method));
+        }
+
+        @Override
+        public SourceWriterSink appendClassInit(String className) {
+            return add(naming.classInitializerName(className));
+        }
+
+        private SourceWriterSink add(ScopedName name) {
+            if (expectingDeclaration) {
+                expectingDeclaration = false;
+                declared.add(name.name);
+            } else {
+                referenced.add(name.name);
+            }
+            return this;
+        }
+    }
+}
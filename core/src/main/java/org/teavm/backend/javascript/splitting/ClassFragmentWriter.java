@@ -0,0 +1,304 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.javascript.splitting;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.teavm.backend.javascript.codegen.DefaultNamingStrategy;
+import org.teavm.backend.javascript.codegen.OutputSourceWriterBuilder;
+import org.teavm.backend.javascript.codegen.RememberedSource;
+import org.teavm.backend.javascript.codegen.RememberingSourceWriter;
+import org.teavm.backend.javascript.codegen.SourceWriter;
+import org.teavm.backend.javascript.codegen.SourceWriterSink;
+import org.teavm.backend.javascript.rendering.DeclarationListener;
+import org.teavm.backend.javascript.rendering.Renderer;
+import org.teavm.backend.javascript.rendering.RenderingContext;
+import org.teavm.backend.javascript.rendering.RenderingUtil;
+import org.teavm.model.ListableClassReaderSource;
+import org.teavm.model.MethodReference;
+import org.teavm.vm.BuildTarget;
+import org.teavm.vm.RenderingException;
+
+/**
+ * <p>Collects declarations produced by {@link Renderer} and writes each class to a separate ES module,
+ * which file name contains hash of its content. Main module imports these modules statically and initializes
+ * classes in the same order as they would be declared in a single file.</p>
+ *
+ * <p>Content of class module does not depend on other classes, as long as the set of names shared with them
+ * remains the same. To achieve this, string literals are collected to per-class pools
+ * (see {@link RenderingContext#setClassStringPools(boolean)}) and names must not be minified. Therefore,
+ * when a single class changes, only module of this class and main module get new content. Other modules
+ * keep their names, so they are not rewritten by {@link org.teavm.vm.IncrementalDirectoryBuildTarget}
+ * and browser can take them from cache.</p>
+ *
+ * <p>Each module exports a function that takes object which holds shared declarations, declares the class
+ * and returns two functions: first one registers class metadata and second one initializes string constants.
+ * Classes that can't be moved out of main module (for example, those which refer to imported modules or
+ * declare exported names) are written to main module as is.</p>
+ *
+ * <p>Usage is similar to {@link CodeSplitter}: pass writer to
+ * {@link Renderer#setDeclarationListener(DeclarationListener)}, call {@link #prepare()} right after rendering,
+ * feed all sinks that collect names via {@link #replay(SourceWriterSink)}, call
+ * {@link #partition(DefaultNamingStrategy, List, RememberedSource)} when names are assigned,
+ * then {@link #renderFragments(OutputSourceWriterBuilder, String)}, write main module
+ * and finally call {@link #writeFragments(BuildTarget)}.</p>
+ */
+public class ClassFragmentWriter implements DeclarationListener {
+    private static final int HASH_LENGTH = 8;
+    private final RememberingSourceWriter writer;
+    private final Renderer renderer;
+    private final ListableClassReaderSource classes;
+    private final String outputName;
+    private final Map<String, ClassFragment> fragments = new LinkedHashMap<>();
+    private final List<ClassFragment> externalFragments = new ArrayList<>();
+
+    public ClassFragmentWriter(RememberingSourceWriter writer, Renderer renderer, ListableClassReaderSource classes,
+            String outputName) {
+        this.writer = writer;
+        this.renderer = renderer;
+        this.classes = classes;
+        this.outputName = outputName;
+    }
+
+    @Override
+    public void declarationsRendered(String className, MethodReference method) {
+        var fragment = fragments.computeIfAbsent(className, ClassFragment::new);
+        fragment.declarations.add(writer.save());
+        writer.clear();
+    }
+
+    /**
+     * Renders string pool, metadata and string constants of each class separately.
+     */
+    public void prepare() {
+        var classesWithConstants = new HashSet<String>();
+        renderer.renderStringConstants(className -> {
+            classesWithConstants.add(className);
+            return false;
+        });
+
+        for (var fragment : fragments.values()) {
+            if (classesWithConstants.contains(fragment.className)) {
+                renderer.renderStringConstants(fragment.className::equals);
+                fragment.constants = writer.save();
+                writer.clear();
+            }
+            renderer.renderClassStringPool(fragment.className);
+            fragment.stringPool = writer.save();
+            writer.clear();
+            renderer.renderClassMetadata(List.of(classes.get(fragment.className)));
+            fragment.metadata = writer.save();
+            writer.clear();
+        }
+    }
+
+    public void replay(SourceWriterSink sink) {
+        for (var fragment : fragments.values()) {
+            for (var source : fragment.sources()) {
+                source.replay(sink, RememberedSource.FILTER_REF);
+            }
+        }
+    }
+
+    /**
+     * Decides which classes can be moved out of main module and moves names they share
+     * to the additional scope.
+     *
+     * @param mainSources code that is always placed to main module.
+     * @param exports code that refers to all names exported by main module.
+     */
+    public void partition(DefaultNamingStrategy naming, List<RememberedSource> mainSources,
+            RememberedSource exports) {
+        var partitioner = new ChunkPartitioner(naming);
+        for (var source : mainSources) {
+            partitioner.addMainCode(source);
+        }
+        partitioner.addMainCode(exports);
+        partitioner.pin(exports);
+
+        var unitIds = new LinkedHashMap<ClassFragment, Integer>();
+        for (var fragment : fragments.values()) {
+            var sources = fragment.sources();
+            unitIds.put(fragment, partitioner.addUnit(fragment.className,
+                    sources.toArray(new RememberedSource[0])));
+        }
+        partitioner.partition();
+
+        for (var entry : unitIds.entrySet()) {
+            var fragment = entry.getKey();
+            if (partitioner.getChunk(entry.getValue()) != null) {
+                fragment.index = externalFragments.size();
+                externalFragments.add(fragment);
+            }
+        }
+
+        naming.moveToAdditionalScope(partitioner.getSharedNames());
+    }
+
+    public boolean hasFragments() {
+        return !externalFragments.isEmpty();
+    }
+
+    /**
+     * Renders modules of classes and computes their file names. Should be called before main module is written,
+     * since it refers to modules by their file names.
+     */
+    public void renderFragments(OutputSourceWriterBuilder builder, String scopeName) {
+        var usedFileNames = new HashSet<String>();
+        for (var fragment : externalFragments) {
+            var content = new StringBuilder();
+            var sourceWriter = builder.build(content);
+            sourceWriter.append("export default function(").append(scopeName).append(")").ws()
+                    .append("{").indent().softNewLine();
+            fragment.stringPool.write(sourceWriter, 0);
+            for (var declaration : fragment.declarations) {
+                declaration.write(sourceWriter, 0);
+            }
+            sourceWriter.append("return [()").ws().append("=>").ws().append("{").indent().softNewLine();
+            fragment.metadata.write(sourceWriter, 0);
+            sourceWriter.outdent().append("},").ws().append("()").ws().append("=>").ws().append("{")
+                    .indent().softNewLine();
+            if (fragment.constants != null) {
+                fragment.constants.write(sourceWriter, 0);
+            }
+            sourceWriter.outdent().append("}];").softNewLine();
+            sourceWriter.outdent().append("}").newLine();
+            sourceWriter.finish();
+
+            fragment.content = content.toString();
+            fragment.fileName = CodeSplitter.fileName(outputName, fragment.className + "-" + hash(fragment.content),
+                    usedFileNames);
+        }
+    }
+
+    private static String hash(String content) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        var bytes = digest.digest(content.getBytes(StandardCharsets.UTF_8));
+        var sb = new StringBuilder();
+        for (var i = 0; i < HASH_LENGTH; ++i) {
+            var b = bytes[i];
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes import declarations of class modules. Should be written at the very beginning of main module.
+     */
+    public void writeImports(SourceWriter output) {
+        for (var fragment : externalFragments) {
+            output.append("import ").appendFunction(importName(fragment)).append(" from").ws().append("\"./")
+                    .append(RenderingUtil.escapeString(fragment.fileName)).append("\";").softNewLine();
+        }
+    }
+
+    /**
+     * Writes declarations of classes left in main module and calls class modules in order classes
+     * were rendered, so that each class gets declared after its superclass.
+     */
+    public void writeDeclarations(SourceWriter output, String scopeName) {
+        if (!externalFragments.isEmpty()) {
+            output.startVariableDeclaration().appendFunction("$rt_fragments").append("[]").endDeclaration();
+        }
+        for (var fragment : fragments.values()) {
+            if (fragment.fileName != null) {
+                output.appendFunction("$rt_fragments").append(".push(").appendFunction(importName(fragment))
+                        .append("(").append(scopeName).append("));").softNewLine();
+            } else {
+                fragment.stringPool.write(output, 0);
+                for (var declaration : fragment.declarations) {
+                    declaration.write(output, 0);
+                }
+            }
+        }
+    }
+
+    public void writeMetadata(SourceWriter output) {
+        for (var fragment : fragments.values()) {
+            if (fragment.fileName != null) {
+                output.appendFunction("$rt_fragments").append("[" + fragment.index + "][0]();").softNewLine();
+            } else {
+                fragment.metadata.write(output, 0);
+            }
+        }
+    }
+
+    public void writeConstants(SourceWriter output) {
+        for (var fragment : fragments.values()) {
+            if (fragment.fileName != null) {
+                if (fragment.constants != null) {
+                    output.appendFunction("$rt_fragments").append("[" + fragment.index + "][1]();")
+                            .softNewLine();
+                }
+            } else if (fragment.constants != null) {
+                fragment.constants.write(output, 0);
+            }
+        }
+    }
+
+    public void writeFragments(BuildTarget target) {
+        var directory = outputName.substring(0, outputName.lastIndexOf('/') + 1);
+        for (var fragment : externalFragments) {
+            try (var output = target.createResource(directory + fragment.fileName)) {
+                output.write(fragment.content.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new RenderingException(e);
+            }
+        }
+    }
+
+    private static String importName(ClassFragment fragment) {
+        return "$rt_fragment" + fragment.index;
+    }
+
+    static class ClassFragment {
+        final String className;
+        final List<RememberedSource> declarations = new ArrayList<>();
+        RememberedSource stringPool;
+        RememberedSource metadata;
+        RememberedSource constants;
+        int index = -1;
+        String content;
+        String fileName;
+
+        ClassFragment(String className) {
+            this.className = className;
+        }
+
+        List<RememberedSource> sources() {
+            var result = new ArrayList<RememberedSource>();
+            result.add(stringPool);
+            result.addAll(declarations);
+            result.add(metadata);
+            if (constants != null) {
+                result.add(constants);
+            }
+            return result;
+        }
+    }
+}
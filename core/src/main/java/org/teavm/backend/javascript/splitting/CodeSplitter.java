@@ -0,0 +1,322 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.javascript.splitting;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.teavm.backend.javascript.codegen.DefaultNamingStrategy;
+import org.teavm.backend.javascript.codegen.OutputSourceWriterBuilder;
+import org.teavm.backend.javascript.codegen.RememberedSource;
+import org.teavm.backend.javascript.codegen.RememberingSourceWriter;
+import org.teavm.backend.javascript.codegen.SourceWriter;
+import org.teavm.backend.javascript.codegen.SourceWriterSink;
+import org.teavm.backend.javascript.rendering.DeclarationListener;
+import org.teavm.backend.javascript.rendering.Renderer;
+import org.teavm.backend.javascript.rendering.RenderingUtil;
+import org.teavm.model.ClassReader;
+import org.teavm.model.ListableClassReaderSource;
+import org.teavm.model.MethodReference;
+import org.teavm.vm.BuildTarget;
+import org.teavm.vm.RenderingException;
+
+/**
+ * <p>Collects declarations produced by {@link Renderer} and distributes them between main module and chunks,
+ * one chunk per distinct {@link org.teavm.interop.SplitPoint} name. Each chunk is written to a separate
+ * ES module which exports a single function. Main module loads chunk with dynamic {@code import()}
+ * and calls this function, passing an object that holds all declarations shared between main module
+ * and chunks.</p>
+ *
+ * <p>Usage is following: pass splitter to {@link Renderer#setDeclarationListener(DeclarationListener)}, call
+ * {@link #prepare()} right after rendering, feed all sinks that collect names via {@link #replay(SourceWriterSink)},
+ * call {@link #partition(DefaultNamingStrategy, List, RememberedSource)} when names are assigned
+ * and finally write main module and chunks.</p>
+ */
+public class CodeSplitter implements DeclarationListener {
+    private final RememberingSourceWriter writer;
+    private final Renderer renderer;
+    private final ListableClassReaderSource classes;
+    private final String outputName;
+    private final List<Fragment> fragments = new ArrayList<>();
+    private final Map<String, Fragment> classFragments = new LinkedHashMap<>();
+    private RememberedSource constants;
+    private final Map<String, Chunk> chunks = new LinkedHashMap<>();
+    private RememberedSource mainMetadata;
+    private RememberedSource mainConstants;
+
+    public CodeSplitter(RememberingSourceWriter writer, Renderer renderer, ListableClassReaderSource classes,
+            String outputName) {
+        this.writer = writer;
+        this.renderer = renderer;
+        this.classes = classes;
+        this.outputName = outputName;
+    }
+
+    @Override
+    public void declarationsRendered(String className, MethodReference method) {
+        var fragment = new Fragment(className, writer.save());
+        writer.clear();
+        if (method == null) {
+            classFragments.put(className, fragment);
+        } else if (SplitPointTransformer.isImplementation(method)) {
+            var methodReader = classes.get(className).getMethod(method.getDescriptor());
+            fragment.rootChunk = SplitPointTransformer.getChunkName(methodReader);
+        }
+        fragments.add(fragment);
+    }
+
+    /**
+     * Renders metadata and string constants of each class separately, so that they can be attributed
+     * to the part where the class goes.
+     */
+    public void prepare() {
+        var classesWithConstants = new HashSet<String>();
+        renderer.renderStringConstants(className -> {
+            classesWithConstants.add(className);
+            return false;
+        });
+
+        for (var fragment : classFragments.values()) {
+            var cls = classes.get(fragment.className);
+            renderer.renderClassMetadata(List.of(cls));
+            fragment.metadata = writer.save();
+            writer.clear();
+            if (classesWithConstants.contains(fragment.className)) {
+                renderer.renderStringConstants(fragment.className::equals);
+                fragment.constants = writer.save();
+                writer.clear();
+            }
+        }
+
+        renderer.renderStringConstants();
+        constants = writer.save();
+        writer.clear();
+    }
+
+    public void replay(SourceWriterSink sink) {
+        var hasChunks = false;
+        for (var fragment : fragments) {
+            fragment.source.replay(sink, RememberedSource.FILTER_REF);
+            if (fragment.metadata != null) {
+                fragment.metadata.replay(sink, RememberedSource.FILTER_REF);
+            }
+            hasChunks |= fragment.rootChunk != null;
+        }
+        constants.replay(sink, RememberedSource.FILTER_REF);
+        if (hasChunks) {
+            sink.appendFunction("$rt_chunks");
+        }
+    }
+
+    /**
+     * Distributes declarations between parts and moves shared names to the additional scope.
+     *
+     * @param mainSources code that is always placed to main module.
+     * @param exports code that refers to all names exported by main module.
+     */
+    public void partition(DefaultNamingStrategy naming, List<RememberedSource> mainSources,
+            RememberedSource exports) {
+        var partitioner = new ChunkPartitioner(naming);
+        for (var source : mainSources) {
+            partitioner.addMainCode(source);
+        }
+        partitioner.addMainCode(exports);
+        partitioner.pin(exports);
+
+        var unitIds = new int[fragments.size()];
+        for (var i = 0; i < fragments.size(); ++i) {
+            var fragment = fragments.get(i);
+            var sources = new ArrayList<RememberedSource>();
+            sources.add(fragment.source);
+            if (fragment.metadata != null) {
+                sources.add(fragment.metadata);
+            }
+            if (fragment.constants != null) {
+                sources.add(fragment.constants);
+            }
+            unitIds[i] = partitioner.addUnit(fragment.rootChunk, sources.toArray(new RememberedSource[0]));
+        }
+        partitioner.partition();
+
+        var mainClasses = new ArrayList<ClassReader>();
+        var usedFileNames = new HashSet<String>();
+        for (var i = 0; i < fragments.size(); ++i) {
+            var fragment = fragments.get(i);
+            var chunkName = partitioner.getChunk(unitIds[i]);
+            if (chunkName == null) {
+                if (fragment.metadata != null) {
+                    mainClasses.add(classes.get(fragment.className));
+                }
+                continue;
+            }
+            var chunk = chunks.computeIfAbsent(chunkName, name -> new Chunk(name,
+                    fileName(outputName, name, usedFileNames)));
+            fragment.chunk = chunk;
+            chunk.fragments.add(fragment);
+            if (fragment.metadata != null) {
+                chunk.classes.add(classes.get(fragment.className));
+            }
+        }
+
+        naming.moveToAdditionalScope(partitioner.getSharedNames());
+
+        mainMetadata = renderMetadata(mainClasses);
+        mainConstants = renderConstants(mainClasses);
+        for (var chunk : chunks.values()) {
+            chunk.metadata = renderMetadata(chunk.classes);
+            chunk.constants = renderConstants(chunk.classes);
+        }
+    }
+
+    private RememberedSource renderMetadata(List<ClassReader> classList) {
+        if (classList.isEmpty()) {
+            return null;
+        }
+        renderer.renderClassMetadata(classList);
+        var result = writer.save();
+        writer.clear();
+        return result;
+    }
+
+    private RememberedSource renderConstants(List<ClassReader> classList) {
+        var classNames = new HashSet<String>();
+        for (var cls : classList) {
+            classNames.add(cls.getName());
+        }
+        renderer.renderStringConstants(classNames::contains);
+        var result = writer.save();
+        writer.clear();
+        return result;
+    }
+
+    static String fileName(String outputName, String partName, Set<String> usedFileNames) {
+        var baseName = outputName.substring(outputName.lastIndexOf('/') + 1);
+        if (baseName.endsWith(".js")) {
+            baseName = baseName.substring(0, baseName.length() - 3);
+        }
+        var sb = new StringBuilder(baseName).append('-');
+        for (var i = 0; i < partName.length(); ++i) {
+            var c = partName.charAt(i);
+            sb.append(Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' ? c : '_');
+        }
+        var candidate = sb.toString();
+        var result = candidate;
+        var suffix = 1;
+        while (!usedFileNames.add(result)) {
+            result = candidate + "_" + suffix++;
+        }
+        return result + ".js";
+    }
+
+    public boolean hasChunks() {
+        return !chunks.isEmpty();
+    }
+
+    public void writeMainDeclarations(SourceWriter output) {
+        for (var fragment : fragments) {
+            if (fragment.chunk == null) {
+                fragment.source.write(output, 0);
+            }
+        }
+        if (mainMetadata != null) {
+            mainMetadata.write(output, 0);
+        }
+    }
+
+    /**
+     * Writes code that registers all chunks in runtime. Should be written after main declarations, but before
+     * any Java code gets executed.
+     */
+    public void writeChunkTable(SourceWriter output, String scopeName) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        output.appendFunction("$rt_chunks").append("(").append(scopeName).append(",").ws().append("[");
+        var first = true;
+        for (var chunk : chunks.values()) {
+            if (!first) {
+                output.append(",");
+            }
+            first = false;
+            output.softNewLine().append("\"").append(RenderingUtil.escapeString(chunk.name)).append("\",").ws()
+                    .append("()").ws().append("=>").ws().append("import(\"./")
+                    .append(RenderingUtil.escapeString(chunk.fileName)).append("\")");
+        }
+        output.append("]);").softNewLine();
+    }
+
+    public void writeMainConstants(SourceWriter output) {
+        mainConstants.write(output, 0);
+    }
+
+    public void writeChunks(BuildTarget target, OutputSourceWriterBuilder builder, String scopeName) {
+        for (var chunk : chunks.values()) {
+            var directory = outputName.substring(0, outputName.lastIndexOf('/') + 1);
+            try (var output = target.createResource(directory + chunk.fileName);
+                    Writer chunkWriter = new OutputStreamWriter(output, StandardCharsets.UTF_8)) {
+                var sourceWriter = builder.build(chunkWriter);
+                sourceWriter.append("export default function(").append(scopeName).append(")").ws()
+                        .append("{").indent().softNewLine();
+                for (var fragment : chunk.fragments) {
+                    fragment.source.write(sourceWriter, 0);
+                }
+                if (chunk.metadata != null) {
+                    chunk.metadata.write(sourceWriter, 0);
+                }
+                chunk.constants.write(sourceWriter, 0);
+                sourceWriter.outdent().append("}").newLine();
+                sourceWriter.finish();
+            } catch (IOException e) {
+                throw new RenderingException(e);
+            }
+        }
+    }
+
+    static class Fragment {
+        final String className;
+        final RememberedSource source;
+        RememberedSource metadata;
+        RememberedSource constants;
+        String rootChunk;
+        Chunk chunk;
+
+        Fragment(String className, RememberedSource source) {
+            this.className = className;
+            this.source = source;
+        }
+    }
+
+    static class Chunk {
+        final String name;
+        final String fileName;
+        final List<Fragment> fragments = new ArrayList<>();
+        final List<ClassReader> classes = new ArrayList<>();
+        RememberedSource metadata;
+        RememberedSource constants;
+
+        Chunk(String name, String fileName) {
+            this.name = name;
+            this.fileName = fileName;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.javascript.splitting;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import org.teavm.interop.SplitPoint;
+import org.teavm.model.AccessLevel;
+import org.teavm.model.AnnotationHolder;
+import org.teavm.model.AnnotationValue;
+import org.teavm.model.CallLocation;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ClassHolderTransformer;
+import org.teavm.model.ClassHolderTransformerContext;
+import org.teavm.model.ElementModifier;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReader;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.ValueType;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.ExitInstruction;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.StringConstantInstruction;
+
+/**
+ * Moves body of each {@link SplitPoint} method to a separate private method and replaces original body
+ * with a call to {@link ChunkLoader#load(String)} followed by a call to the moved body. The moved method keeps
+ * the annotation, so that the JavaScript backend can later find roots of each chunk.
+ */
+public class SplitPointTransformer implements ClassHolderTransformer {
+    public static final String IMPL_SUFFIX = "$_splitPoint_$";
+    private static final MethodReference LOAD_METHOD = new MethodReference(ChunkLoader.class, "load",
+            String.class, void.class);
+
+    private final BooleanSupplier enabled;
+
+    public SplitPointTransformer(BooleanSupplier enabled) {
+        this.enabled = enabled;
+    }
+
+    public static boolean isImplementation(MethodReference method) {
+        return method.getName().endsWith(IMPL_SUFFIX);
+    }
+
+    public static String getChunkName(MethodReader method) {
+        var annot = method.getAnnotations().get(SplitPoint.class.getName());
+        if (annot == null) {
+            return null;
+        }
+        var value = annot.getValue("value");
+        var name = value != null ? value.getString() : "";
+        if (name.isEmpty()) {
+            var methodName = method.getName();
+            if (methodName.endsWith(IMPL_SUFFIX)) {
+                methodName = methodName.substring(0, methodName.length() - IMPL_SUFFIX.length());
+            }
+            name = method.getOwnerName() + "." + methodName;
+        }
+        return name;
+    }
+
+    @Override
+    public void transformClass(ClassHolder cls, ClassHolderTransformerContext context) {
+        if (!enabled.getAsBoolean()) {
+            return;
+        }
+        for (var method : List.copyOf(cls.getMethods())) {
+            if (method.getAnnotations().get(SplitPoint.class.getName()) == null) {
+                continue;
+            }
+            if (!method.hasModifier(ElementModifier.STATIC) || !method.hasProgram()) {
+                context.getDiagnostics().error(new CallLocation(method.getReference()),
+                        "Split point {{m0}} must be a non-native static method", method.getReference());
+                continue;
+            }
+            split(cls, method);
+        }
+    }
+
+    private void split(ClassHolder cls, MethodHolder method) {
+        var chunkName = getChunkName(method);
+
+        var impl = new MethodHolder(method.getName() + IMPL_SUFFIX, method.getSignature());
+        impl.getModifiers().add(ElementModifier.STATIC);
+        impl.setLevel(AccessLevel.PRIVATE);
+        var annot = new AnnotationHolder(SplitPoint.class.getName());
+        annot.getValues().put("value", new AnnotationValue(chunkName));
+        impl.getAnnotations().add(annot);
+        impl.setProgram(method.getProgram());
+        cls.addMethod(impl);
+
+        method.getAnnotations().remove(SplitPoint.class.getName());
+        var program = new Program();
+        var block = program.createBasicBlock();
+        program.createVariable();
+        var args = new Variable[method.parameterCount()];
+        for (var i = 0; i < args.length; ++i) {
+            args[i] = program.createVariable();
+        }
+
+        var nameConstant = new StringConstantInstruction();
+        nameConstant.setConstant(chunkName);
+        nameConstant.setReceiver(program.createVariable());
+        block.add(nameConstant);
+
+        var load = new InvokeInstruction();
+        load.setType(InvocationType.SPECIAL);
+        load.setMethod(LOAD_METHOD);
+        load.setArguments(nameConstant.getReceiver());
+        block.add(load);
+
+        var call = new InvokeInstruction();
+        call.setType(InvocationType.SPECIAL);
+        call.setMethod(impl.getReference());
+        call.setArguments(args);
+        block.add(call);
+
+        var exit = new ExitInstruction();
+        if (method.getResultType() != ValueType.VOID) {
+            call.setReceiver(program.createVariable());
+            exit.setValueToReturn(call.getReceiver());
+        }
+        block.add(exit);
+
+        method.setProgram(program);
+    }
+}
@@ -31,6 +31,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import org.teavm.ast.InvocationExpr;
 import org.teavm.ast.decompilation.Decompiler;
@@ -74,6 +75,7 @@ import org.teavm.backend.wasm.intrinsics.PlatformIntrinsic;
 import org.teavm.backend.wasm.intrinsics.PlatformObjectIntrinsic;
 import org.teavm.backend.wasm.intrinsics.RuntimeClassIntrinsic;
 import org.teavm.backend.wasm.intrinsics.ShadowStackIntrinsic;
+import org.teavm.backend.wasm.intrinsics.SimdIntrinsic;
 import org.teavm.backend.wasm.intrinsics.StructureIntrinsic;
 import org.teavm.backend.wasm.intrinsics.WasmHeapIntrinsic;
 import org.teavm.backend.wasm.intrinsics.WasmIntrinsic;
@@ -105,6 +107,8 @@ import org.teavm.backend.wasm.model.expression.WasmLoadInt32;
 import org.teavm.backend.wasm.model.expression.WasmReturn;
 import org.teavm.backend.wasm.model.expression.WasmSetLocal;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt32;
+import org.teavm.backend.wasm.optimization.FunctionOptimization;
+import org.teavm.backend.wasm.optimization.FunctionOrdering;
 import org.teavm.backend.wasm.optimization.UnusedFunctionElimination;
 import org.teavm.backend.wasm.optimization.UnusedTypeElimination;
 import org.teavm.backend.wasm.render.ReportingWasmBinaryStatsCollector;
@@ -129,6 +133,7 @@ import org.teavm.interop.DelegateTo;
 import org.teavm.interop.Import;
 import org.teavm.interop.Memory;
 import org.teavm.interop.Platforms;
+import org.teavm.interop.Simd;
 import org.teavm.interop.StaticInit;
 import org.teavm.model.AnnotationHolder;
 import org.teavm.model.CallLocation;
@@ -158,6 +163,7 @@ import org.teavm.model.lowlevel.LowLevelNullCheckFilter;
 import org.teavm.model.lowlevel.ShadowStackTransformer;
 import org.teavm.model.lowlevel.WriteBarrierInsertion;
 import org.teavm.model.optimization.InliningFilterFactory;
+import org.teavm.model.optimization.LoopVectorization;
 import org.teavm.model.transformation.BoundCheckInsertion;
 import org.teavm.model.transformation.ClassPatch;
 import org.teavm.model.transformation.NullCheckInsertion;
@@ -175,6 +181,7 @@ import org.teavm.runtime.RuntimeObject;
 import org.teavm.runtime.ShadowStack;
 import org.teavm.runtime.WasiMain;
 import org.teavm.vm.BuildTarget;
+import org.teavm.vm.TeaVMOptimizationLevel;
 import org.teavm.vm.TeaVMTarget;
 import org.teavm.vm.TeaVMTargetController;
 import org.teavm.vm.spi.TeaVMHostExtension;
@@ -208,6 +215,10 @@ public class WasmTarget implements TeaVMTarget, TeaVMWasmHost {
     private boolean obfuscated;
     private Set<MethodReference> asyncMethods;
     private boolean hasThreads;
+    private boolean simdUsed;
+    private int functionThreads = 1;
+    private boolean startupOrdering;
+    private Consumer<WasmModule> moduleListener;
     private final WasmDependencyListener wasmDependencyListener = new WasmDependencyListener();
 
     @Override
@@ -313,6 +324,34 @@ public class WasmTarget implements TeaVMTarget, TeaVMWasmHost {
         this.exceptionsUsed = exceptionsUsed;
     }
 
+    public void setSimdUsed(boolean simdUsed) {
+        this.simdUsed = simdUsed;
+    }
+
+    /**
+     * Specifies number of threads that optimize and encode bodies of WebAssembly functions.
+     * Generated module does not depend on this setting.
+     */
+    public void setFunctionThreads(int functionThreads) {
+        this.functionThreads = functionThreads;
+    }
+
+    /**
+     * Specifies whether functions should be placed in code section in order they are expected
+     * to be called for the first time, see {@link FunctionOrdering}.
+     */
+    public void setStartupOrdering(boolean startupOrdering) {
+        this.startupOrdering = startupOrdering;
+    }
+
+    /**
+     * Specifies a callback that receives generated module after all transformations, right before it is
+     * written in binary format. Allows to inspect the module or to measure {@link WasmBinaryRenderer} alone.
+     */
+    public void setModuleListener(Consumer<WasmModule> moduleListener) {
+        this.moduleListener = moduleListener;
+    }
+
     @Override
     public WasmRuntimeType getRuntimeType() {
         return runtimeType;
@@ -364,6 +403,17 @@ public class WasmTarget implements TeaVMTarget, TeaVMWasmHost {
         dependencyAnalyzer.linkMethod(new MethodReference(WasmRuntime.class, "wasiPrintOutOfMemory",
                 void.class)).use();
 
+        if (simdUsed) {
+            for (Class<?> type : Arrays.asList(byte[].class, short[].class, char[].class, int[].class, long[].class,
+                    float[].class, double[].class)) {
+                dependencyAnalyzer.linkMethod(new MethodReference(Address.class, "ofData", type, Address.class)).use();
+            }
+            ClassReader simd = dependencyAnalyzer.getClassSource().get(Simd.class.getName());
+            for (MethodReader simdMethod : simd.getMethods()) {
+                dependencyAnalyzer.linkMethod(simdMethod.getReference()).use();
+            }
+        }
+
         dependencyAnalyzer.linkMethod(INIT_HEAP_REF).use();
         dependencyAnalyzer.linkMethod(RESIZE_HEAP_REF).use();
 
@@ -445,6 +495,9 @@ public class WasmTarget implements TeaVMTarget, TeaVMWasmHost {
 
     @Override
     public void afterOptimizations(Program program, MethodReader method) {
+        if (simdUsed) {
+            new LoopVectorization().optimize(program);
+        }
         classInitializerEliminator.apply(program);
         classInitializerTransformer.transform(program);
         new CoroutineTransformation(controller.getUnprocessedClassSource(), asyncMethods, hasThreads)
@@ -502,6 +555,7 @@ public class WasmTarget implements TeaVMTarget, TeaVMWasmHost {
         context.addIntrinsic(new IntegerIntrinsic());
         context.addIntrinsic(new ObjectIntrinsic());
         context.addIntrinsic(new ConsoleIntrinsic());
+        context.addIntrinsic(new SimdIntrinsic());
         context.addGenerator(new ArrayGenerator());
         boolean vmAssertions = Boolean.parseBoolean(System.getProperty("teavm.wasm.vmAssertions", "false"));
         if (!vmAssertions) {
@@ -563,6 +617,11 @@ public class WasmTarget implements TeaVMTarget, TeaVMWasmHost {
 
         new UnusedFunctionElimination(module).apply();
         new UnusedTypeElimination(module).apply();
+        if (!debugging && controller.getOptimizationLevel() != TeaVMOptimizationLevel.SIMPLE) {
+            var functionOptimization = new FunctionOptimization(module);
+            functionOptimization.setThreads(functionThreads);
+            functionOptimization.apply();
+        }
 
         if (Boolean.parseBoolean(System.getProperty("wasm.memoryTrace", "false"))) {
             new MemoryAccessTraceTransformation(module, functionTypes).apply();
@@ -571,6 +630,13 @@ public class WasmTarget implements TeaVMTarget, TeaVMWasmHost {
             new IndirectCallTraceTransformation(module, functionTypes).apply();
         }
 
+        if (startupOrdering) {
+            new FunctionOrdering(module).apply();
+        }
+        if (moduleListener != null) {
+            moduleListener.accept(module);
+        }
+
         writeBinaryWasm(buildTarget, outputName, module, classGenerator, dwarfGenerator, dwarfClassGen,
                 statsCollector);
 
@@ -619,6 +685,7 @@ public class WasmTarget implements TeaVMTarget, TeaVMWasmHost {
                 debugBuilder != null ? debugBuilder.variables() : null,
                 statsCollector
         );
+        renderer.setThreads(functionThreads);
         renderer.render(module, buildDebug(dwarfGenerator, dwarfClassGen, debugBuilder));
 
         try (var output = buildTarget.createResource(outputName)) {
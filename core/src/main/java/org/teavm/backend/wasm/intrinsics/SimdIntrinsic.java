@@ -0,0 +1,153 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.intrinsics;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.teavm.ast.InvocationExpr;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmLoadVector;
+import org.teavm.backend.wasm.model.expression.WasmStoreVector;
+import org.teavm.backend.wasm.model.expression.WasmVectorBinary;
+import org.teavm.backend.wasm.model.expression.WasmVectorBinaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmVectorShape;
+import org.teavm.backend.wasm.model.expression.WasmVectorSplat;
+import org.teavm.interop.Address;
+import org.teavm.interop.Simd;
+import org.teavm.model.MethodReference;
+import org.teavm.model.ValueType;
+
+public class SimdIntrinsic implements WasmIntrinsic {
+    private static final Pattern NAME_PATTERN = Pattern.compile("(copy|fill|andNot|and|or|xor|addSaturated"
+            + "|subSaturated|average|add|sub|mul|div|min|max)(Int8|Int16|Int32|Int64|Uint8|Uint16|Float32|Float64)?");
+    private static final ValueType ADDRESS_TYPE = ValueType.object(Address.class.getName());
+
+    @Override
+    public boolean isApplicable(MethodReference methodReference) {
+        return methodReference.getClassName().equals(Simd.class.getName())
+                && NAME_PATTERN.matcher(methodReference.getName()).matches();
+    }
+
+    @Override
+    public WasmExpression apply(InvocationExpr invocation, WasmIntrinsicManager manager) {
+        MethodReference method = invocation.getMethod();
+        Matcher matcher = NAME_PATTERN.matcher(method.getName());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(method.toString());
+        }
+        String lane = matcher.group(2) != null ? matcher.group(2) : "";
+        WasmVectorShape shape = shape(lane);
+        int alignment = alignment(lane);
+
+        WasmExpression result = manager.generate(invocation.getArguments().get(0));
+        switch (matcher.group(1)) {
+            case "copy": {
+                WasmExpression source = manager.generate(invocation.getArguments().get(1));
+                return new WasmStoreVector(alignment, result, new WasmLoadVector(alignment, source));
+            }
+            case "fill": {
+                WasmExpression value = manager.generate(invocation.getArguments().get(1));
+                return new WasmStoreVector(alignment, result, new WasmVectorSplat(shape, value));
+            }
+            default:
+                break;
+        }
+
+        WasmExpression first = new WasmLoadVector(alignment, manager.generate(invocation.getArguments().get(1)));
+        WasmExpression second = manager.generate(invocation.getArguments().get(2));
+        if (method.parameterType(2).equals(ADDRESS_TYPE)) {
+            second = new WasmLoadVector(alignment, second);
+        } else {
+            second = new WasmVectorSplat(shape, second);
+        }
+        WasmVectorBinaryOperation operation = operation(matcher.group(1), lane);
+        return new WasmStoreVector(alignment, result, new WasmVectorBinary(shape, operation, first, second));
+    }
+
+    private static WasmVectorShape shape(String lane) {
+        switch (lane) {
+            case "Int8":
+            case "Uint8":
+                return WasmVectorShape.INT8X16;
+            case "Int16":
+            case "Uint16":
+                return WasmVectorShape.INT16X8;
+            case "Int64":
+                return WasmVectorShape.INT64X2;
+            case "Float32":
+                return WasmVectorShape.FLOAT32X4;
+            case "Float64":
+                return WasmVectorShape.FLOAT64X2;
+            default:
+                return WasmVectorShape.INT32X4;
+        }
+    }
+
+    private static int alignment(String lane) {
+        switch (lane) {
+            case "Int16":
+            case "Uint16":
+                return 2;
+            case "Int32":
+            case "Float32":
+                return 4;
+            case "Int64":
+            case "Float64":
+                return 8;
+            default:
+                return 1;
+        }
+    }
+
+    private static WasmVectorBinaryOperation operation(String name, String lane) {
+        boolean unsigned = lane.startsWith("Uint");
+        boolean floating = lane.startsWith("Float");
+        switch (name) {
+            case "and":
+                return WasmVectorBinaryOperation.AND;
+            case "andNot":
+                return WasmVectorBinaryOperation.AND_NOT;
+            case "or":
+                return WasmVectorBinaryOperation.OR;
+            case "xor":
+                return WasmVectorBinaryOperation.XOR;
+            case "add":
+                return WasmVectorBinaryOperation.ADD;
+            case "sub":
+                return WasmVectorBinaryOperation.SUB;
+            case "mul":
+                return WasmVectorBinaryOperation.MUL;
+            case "div":
+                return WasmVectorBinaryOperation.DIV;
+            case "addSaturated":
+                return unsigned ? WasmVectorBinaryOperation.ADD_SAT_UNSIGNED : WasmVectorBinaryOperation.ADD_SAT_SIGNED;
+            case "subSaturated":
+                return unsigned ? WasmVectorBinaryOperation.SUB_SAT_UNSIGNED : WasmVectorBinaryOperation.SUB_SAT_SIGNED;
+            case "average":
+                return WasmVectorBinaryOperation.AVGR_UNSIGNED;
+            case "min":
+                return floating
+                        ? WasmVectorBinaryOperation.MIN
+                        : unsigned ? WasmVectorBinaryOperation.MIN_UNSIGNED : WasmVectorBinaryOperation.MIN_SIGNED;
+            case "max":
+                return floating
+                        ? WasmVectorBinaryOperation.MAX
+                        : unsigned ? WasmVectorBinaryOperation.MAX_UNSIGNED : WasmVectorBinaryOperation.MAX_SIGNED;
+            default:
+                throw new IllegalArgumentException(name);
+        }
+    }
+}
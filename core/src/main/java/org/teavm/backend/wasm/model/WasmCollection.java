@@ -17,6 +17,7 @@ package org.teavm.backend.wasm.model;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.function.Predicate;
@@ -61,6 +62,11 @@ public class WasmCollection<T extends WasmEntity> implements Iterable<T> {
         }
     }
 
+    public void sort(Comparator<? super T> comparator) {
+        items.sort(comparator);
+        invalidateIndexes();
+    }
+
     public void clear() {
         for (var item : items) {
             item.collection = null;
@@ -76,21 +82,30 @@ public class WasmCollection<T extends WasmEntity> implements Iterable<T> {
         if (entity.collection != this) {
             throw new IllegalArgumentException("Given entity does not belong to this module");
         }
-        if (indexesInvalid) {
-            indexesInvalid = false;
-            var index = 0;
-            for (var item : items) {
-                if (item.isImported()) {
-                    item.index = index++;
-                }
+        updateIndexes();
+        return entity.index;
+    }
+
+    /**
+     * Assigns indexes to entities if they were invalidated. After this call {@link #indexOf(WasmEntity)}
+     * does not modify collection, so it can be called concurrently as long as collection is not modified.
+     */
+    public void updateIndexes() {
+        if (!indexesInvalid) {
+            return;
+        }
+        indexesInvalid = false;
+        var index = 0;
+        for (var item : items) {
+            if (item.isImported()) {
+                item.index = index++;
             }
-            for (var item : items) {
-                if (!item.isImported()) {
-                    item.index = index++;
-                }
+        }
+        for (var item : items) {
+            if (!item.isImported()) {
+                item.index = index++;
             }
         }
-        return entity.index;
     }
 
     @Override
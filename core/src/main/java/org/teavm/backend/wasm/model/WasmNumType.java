@@ -19,5 +19,6 @@ public enum WasmNumType {
     INT32,
     INT64,
     FLOAT32,
-    FLOAT64
+    FLOAT64,
+    V128
 }
@@ -202,6 +202,28 @@ public class WasmDefaultExpressionVisitor implements WasmExpressionVisitor {
         expression.getValue().acceptVisitor(this);
     }
 
+    @Override
+    public void visit(WasmLoadVector expression) {
+        expression.getIndex().acceptVisitor(this);
+    }
+
+    @Override
+    public void visit(WasmStoreVector expression) {
+        expression.getIndex().acceptVisitor(this);
+        expression.getValue().acceptVisitor(this);
+    }
+
+    @Override
+    public void visit(WasmVectorSplat expression) {
+        expression.getValue().acceptVisitor(this);
+    }
+
+    @Override
+    public void visit(WasmVectorBinary expression) {
+        expression.getFirst().acceptVisitor(this);
+        expression.getSecond().acceptVisitor(this);
+    }
+
     @Override
     public void visit(WasmMemoryGrow expression) {
         expression.getAmount().acceptVisitor(this);
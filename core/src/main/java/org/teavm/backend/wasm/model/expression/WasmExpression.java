@@ -52,6 +52,8 @@ public abstract class WasmExpression {
                     return new WasmFloat32Constant(0);
                 case FLOAT64:
                     return new WasmFloat64Constant(0);
+                case V128:
+                    return new WasmVectorSplat(WasmVectorShape.INT32X4, new WasmInt32Constant(0));
                 default:
                     throw new IllegalArgumentException();
             }
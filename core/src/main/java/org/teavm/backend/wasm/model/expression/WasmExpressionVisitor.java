@@ -82,6 +82,14 @@ public interface WasmExpressionVisitor {
 
     void visit(WasmStoreFloat64 expression);
 
+    void visit(WasmLoadVector expression);
+
+    void visit(WasmStoreVector expression);
+
+    void visit(WasmVectorSplat expression);
+
+    void visit(WasmVectorBinary expression);
+
     void visit(WasmMemoryGrow expression);
 
     void visit(WasmFill expression);
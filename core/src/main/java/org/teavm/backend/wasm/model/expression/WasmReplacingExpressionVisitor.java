@@ -116,6 +116,7 @@ public class WasmReplacingExpressionVisitor implements WasmExpressionVisitor {
     @Override
     public void visit(WasmSetLocal expression) {
         expression.getValue().acceptVisitor(this);
+        expression.setValue(mapper.apply(expression.getValue()));
     }
 
     @Override
@@ -125,6 +126,7 @@ public class WasmReplacingExpressionVisitor implements WasmExpressionVisitor {
     @Override
     public void visit(WasmSetGlobal expression) {
         expression.getValue().acceptVisitor(this);
+        expression.setValue(mapper.apply(expression.getValue()));
     }
 
     @Override
@@ -242,6 +244,34 @@ public class WasmReplacingExpressionVisitor implements WasmExpressionVisitor {
         expression.setValue(mapper.apply(expression.getValue()));
     }
 
+    @Override
+    public void visit(WasmLoadVector expression) {
+        expression.getIndex().acceptVisitor(this);
+        expression.setIndex(mapper.apply(expression.getIndex()));
+    }
+
+    @Override
+    public void visit(WasmStoreVector expression) {
+        expression.getIndex().acceptVisitor(this);
+        expression.setIndex(mapper.apply(expression.getIndex()));
+        expression.getValue().acceptVisitor(this);
+        expression.setValue(mapper.apply(expression.getValue()));
+    }
+
+    @Override
+    public void visit(WasmVectorSplat expression) {
+        expression.getValue().acceptVisitor(this);
+        expression.setValue(mapper.apply(expression.getValue()));
+    }
+
+    @Override
+    public void visit(WasmVectorBinary expression) {
+        expression.getFirst().acceptVisitor(this);
+        expression.setFirst(mapper.apply(expression.getFirst()));
+        expression.getSecond().acceptVisitor(this);
+        expression.setSecond(mapper.apply(expression.getSecond()));
+    }
+
     @Override
     public void visit(WasmMemoryGrow expression) {
         expression.getAmount().acceptVisitor(this);
@@ -348,7 +378,7 @@ public class WasmReplacingExpressionVisitor implements WasmExpressionVisitor {
         expression.setIndex(mapper.apply(expression.getIndex()));
 
         expression.getValue().acceptVisitor(this);
-        expression.setValue(mapper.apply(expression.getIndex()));
+        expression.setValue(mapper.apply(expression.getValue()));
     }
 
     @Override
@@ -0,0 +1,42 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.model.expression;
+
+/**
+ * Lane-wise operations on 128-bit vectors. Bitwise operations ({@link #AND}, {@link #AND_NOT}, {@link #OR},
+ * {@link #XOR}) don't depend on vector shape, other operations are only defined for some of shapes.
+ */
+public enum WasmVectorBinaryOperation {
+    AND,
+    AND_NOT,
+    OR,
+    XOR,
+    ADD,
+    ADD_SAT_SIGNED,
+    ADD_SAT_UNSIGNED,
+    SUB,
+    SUB_SAT_SIGNED,
+    SUB_SAT_UNSIGNED,
+    MUL,
+    DIV,
+    MIN,
+    MIN_SIGNED,
+    MIN_UNSIGNED,
+    MAX,
+    MAX_SIGNED,
+    MAX_UNSIGNED,
+    AVGR_UNSIGNED
+}
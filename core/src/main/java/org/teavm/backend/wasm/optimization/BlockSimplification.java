@@ -0,0 +1,161 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import com.carrotsearch.hppc.ObjectIntHashMap;
+import com.carrotsearch.hppc.ObjectIntMap;
+import java.util.List;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.expression.WasmBlock;
+import org.teavm.backend.wasm.model.expression.WasmBranch;
+import org.teavm.backend.wasm.model.expression.WasmBreak;
+import org.teavm.backend.wasm.model.expression.WasmConditional;
+import org.teavm.backend.wasm.model.expression.WasmDefaultExpressionVisitor;
+import org.teavm.backend.wasm.model.expression.WasmDrop;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmFloat32Constant;
+import org.teavm.backend.wasm.model.expression.WasmFloat64Constant;
+import org.teavm.backend.wasm.model.expression.WasmGetLocal;
+import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
+import org.teavm.backend.wasm.model.expression.WasmInt64Constant;
+import org.teavm.backend.wasm.model.expression.WasmReturn;
+import org.teavm.backend.wasm.model.expression.WasmSwitch;
+import org.teavm.backend.wasm.model.expression.WasmThrow;
+import org.teavm.backend.wasm.model.expression.WasmTry;
+import org.teavm.backend.wasm.model.expression.WasmUnreachable;
+
+/**
+ * <p>Simplifies structure of function body:</p>
+ *
+ * <ul>
+ *   <li>removes code that follows unconditional jumps, returns and throws in the same block;</li>
+ *   <li>removes break to the enclosing block when it's the last instruction of the block;</li>
+ *   <li>replaces blocks and loops that have no result and are not targets of any branch by their contents;</li>
+ *   <li>removes drops of constants and locals.</li>
+ * </ul>
+ */
+public class BlockSimplification {
+    private ObjectIntMap<WasmBlock> branchCounts = new ObjectIntHashMap<>();
+    private boolean changed;
+
+    public boolean apply(WasmFunction function) {
+        changed = false;
+        branchCounts.clear();
+        for (WasmExpression part : function.getBody()) {
+            part.acceptVisitor(branchCounter);
+        }
+        for (WasmExpression part : function.getBody()) {
+            part.acceptVisitor(simplifier);
+        }
+        simplify(function.getBody());
+        return changed;
+    }
+
+    private void simplify(List<WasmExpression> expressions) {
+        for (int i = 0; i < expressions.size(); ++i) {
+            WasmExpression part = expressions.get(i);
+            if (isJump(part) && i + 1 < expressions.size()) {
+                expressions.subList(i + 1, expressions.size()).clear();
+                changed = true;
+            }
+            if (part instanceof WasmBlock) {
+                WasmBlock block = (WasmBlock) part;
+                removeTrailingBreak(block);
+                if (block.getType() == null && branchCounts.get(block) == 0) {
+                    expressions.remove(i);
+                    expressions.addAll(i, block.getBody());
+                    changed = true;
+                    --i;
+                }
+            } else if (part instanceof WasmDrop && isPure(((WasmDrop) part).getOperand())) {
+                expressions.remove(i--);
+                changed = true;
+            }
+        }
+    }
+
+    private void removeTrailingBreak(WasmBlock block) {
+        List<WasmExpression> body = block.getBody();
+        if (block.isLoop() || body.isEmpty() || !(body.get(body.size() - 1) instanceof WasmBreak)) {
+            return;
+        }
+        WasmBreak lastBreak = (WasmBreak) body.get(body.size() - 1);
+        if (lastBreak.getTarget() == block && lastBreak.getResult() == null) {
+            body.remove(body.size() - 1);
+            branchCounts.addTo(block, -1);
+            changed = true;
+        }
+    }
+
+    private static boolean isJump(WasmExpression expression) {
+        return expression instanceof WasmBreak || expression instanceof WasmSwitch
+                || expression instanceof WasmReturn || expression instanceof WasmThrow
+                || expression instanceof WasmUnreachable;
+    }
+
+    private static boolean isPure(WasmExpression expression) {
+        return expression instanceof WasmGetLocal || expression instanceof WasmInt32Constant
+                || expression instanceof WasmInt64Constant || expression instanceof WasmFloat32Constant
+                || expression instanceof WasmFloat64Constant;
+    }
+
+    private WasmDefaultExpressionVisitor branchCounter = new WasmDefaultExpressionVisitor() {
+        @Override
+        public void visit(WasmBranch expression) {
+            super.visit(expression);
+            branchCounts.addTo(expression.getTarget(), 1);
+        }
+
+        @Override
+        public void visit(WasmBreak expression) {
+            super.visit(expression);
+            branchCounts.addTo(expression.getTarget(), 1);
+        }
+
+        @Override
+        public void visit(WasmSwitch expression) {
+            super.visit(expression);
+            for (WasmBlock target : expression.getTargets()) {
+                branchCounts.addTo(target, 1);
+            }
+            branchCounts.addTo(expression.getDefaultTarget(), 1);
+        }
+    };
+
+    private WasmDefaultExpressionVisitor simplifier = new WasmDefaultExpressionVisitor() {
+        @Override
+        public void visit(WasmBlock expression) {
+            super.visit(expression);
+            simplify(expression.getBody());
+        }
+
+        @Override
+        public void visit(WasmConditional expression) {
+            super.visit(expression);
+            simplify(expression.getThenBlock().getBody());
+            simplify(expression.getElseBlock().getBody());
+        }
+
+        @Override
+        public void visit(WasmTry expression) {
+            super.visit(expression);
+            simplify(expression.getBody());
+            for (var catchClause : expression.getCatches()) {
+                simplify(catchClause.getBody());
+            }
+        }
+    };
+}
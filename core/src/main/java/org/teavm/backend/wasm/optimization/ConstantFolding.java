@@ -0,0 +1,376 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmNumType;
+import org.teavm.backend.wasm.model.expression.WasmBlock;
+import org.teavm.backend.wasm.model.expression.WasmConditional;
+import org.teavm.backend.wasm.model.expression.WasmConversion;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
+import org.teavm.backend.wasm.model.expression.WasmInt64Constant;
+import org.teavm.backend.wasm.model.expression.WasmIntBinary;
+import org.teavm.backend.wasm.model.expression.WasmIntBinaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmIntType;
+import org.teavm.backend.wasm.model.expression.WasmIntUnary;
+import org.teavm.backend.wasm.model.expression.WasmIntUnaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmReplacingExpressionVisitor;
+
+/**
+ * <p>Evaluates integer operations over constants and simplifies them with peephole rules:</p>
+ *
+ * <ul>
+ *   <li>constant operand of commutative operation is moved to the right;</li>
+ *   <li>operations with neutral constant, like {@code x + 0} or {@code x * 1}, are replaced by {@code x};</li>
+ *   <li>chains of additions and subtractions of constants are merged, i.e. {@code (x + 1) - 3} becomes
+ *   {@code x + -2};</li>
+ *   <li>negation of comparison is replaced by opposite comparison;</li>
+ *   <li>conditionals with constant condition are replaced by one of their branches.</li>
+ * </ul>
+ *
+ * <p>Expressions that may trap, like division by zero, are never folded.</p>
+ */
+public class ConstantFolding {
+    private boolean changed;
+    private WasmReplacingExpressionVisitor visitor = new WasmReplacingExpressionVisitor(this::fold);
+
+    public boolean apply(WasmFunction function) {
+        changed = false;
+        visitor.replace(function);
+        return changed;
+    }
+
+    private WasmExpression fold(WasmExpression expression) {
+        WasmExpression result = expression;
+        if (expression instanceof WasmIntBinary) {
+            result = foldBinary((WasmIntBinary) expression);
+        } else if (expression instanceof WasmIntUnary) {
+            result = foldUnary((WasmIntUnary) expression);
+        } else if (expression instanceof WasmConversion) {
+            result = foldConversion((WasmConversion) expression);
+        } else if (expression instanceof WasmConditional) {
+            result = foldConditional((WasmConditional) expression);
+        }
+        if (result != expression) {
+            changed = true;
+            if (result.getLocation() == null) {
+                result.setLocation(expression.getLocation());
+            }
+        }
+        return result;
+    }
+
+    private WasmExpression foldBinary(WasmIntBinary expression) {
+        boolean int64 = expression.getType() == WasmIntType.INT64;
+        if (isConstant(expression.getFirst()) && isConstant(expression.getSecond())) {
+            WasmExpression result = int64
+                    ? evaluate64(expression.getOperation(), constant(expression.getFirst()),
+                            constant(expression.getSecond()))
+                    : evaluate32(expression.getOperation(), (int) constant(expression.getFirst()),
+                            (int) constant(expression.getSecond()));
+            return result != null ? result : expression;
+        }
+
+        if (isConstant(expression.getFirst()) && isCommutative(expression.getOperation())) {
+            WasmExpression first = expression.getFirst();
+            expression.setFirst(expression.getSecond());
+            expression.setSecond(first);
+            changed = true;
+        }
+        if (!isConstant(expression.getSecond())) {
+            return expression;
+        }
+
+        long value = constant(expression.getSecond());
+        switch (expression.getOperation()) {
+            case ADD:
+            case SUB:
+                return mergeAdditions(expression, int64);
+            case OR:
+            case XOR:
+            case SHL:
+            case SHR_SIGNED:
+            case SHR_UNSIGNED:
+            case ROTL:
+            case ROTR:
+                return value == 0 ? expression.getFirst() : expression;
+            case MUL:
+            case DIV_SIGNED:
+            case DIV_UNSIGNED:
+                return value == 1 ? expression.getFirst() : expression;
+            case AND:
+                return value == -1 ? expression.getFirst() : expression;
+            default:
+                return expression;
+        }
+    }
+
+    private WasmExpression mergeAdditions(WasmIntBinary expression, boolean int64) {
+        long value = addend(expression);
+        WasmExpression operand = expression.getFirst();
+        if (operand instanceof WasmIntBinary) {
+            WasmIntBinary inner = (WasmIntBinary) operand;
+            if (inner.getType() == expression.getType() && isConstant(inner.getSecond())
+                    && (inner.getOperation() == WasmIntBinaryOperation.ADD
+                    || inner.getOperation() == WasmIntBinaryOperation.SUB)) {
+                value += addend(inner);
+                operand = inner.getFirst();
+            }
+        }
+        if (!int64) {
+            value = (int) value;
+        }
+        if (value == 0) {
+            return operand;
+        }
+        if (operand == expression.getFirst() && expression.getOperation() == WasmIntBinaryOperation.ADD) {
+            return expression;
+        }
+        WasmExpression constant = int64 ? new WasmInt64Constant(value) : new WasmInt32Constant((int) value);
+        WasmIntBinary result = new WasmIntBinary(expression.getType(), WasmIntBinaryOperation.ADD, operand, constant);
+        result.setLocation(expression.getLocation());
+        return result;
+    }
+
+    private static long addend(WasmIntBinary expression) {
+        long value = constant(expression.getSecond());
+        return expression.getOperation() == WasmIntBinaryOperation.SUB ? -value : value;
+    }
+
+    private WasmExpression foldUnary(WasmIntUnary expression) {
+        WasmExpression operand = expression.getOperand();
+        if (isConstant(operand)) {
+            long value = constant(operand);
+            boolean int64 = expression.getType() == WasmIntType.INT64;
+            switch (expression.getOperation()) {
+                case EQZ:
+                    return new WasmInt32Constant(value == 0 ? 1 : 0);
+                case CLZ:
+                    return int64
+                            ? new WasmInt64Constant(Long.numberOfLeadingZeros(value))
+                            : new WasmInt32Constant(Integer.numberOfLeadingZeros((int) value));
+                case CTZ:
+                    return int64
+                            ? new WasmInt64Constant(Long.numberOfTrailingZeros(value))
+                            : new WasmInt32Constant(Integer.numberOfTrailingZeros((int) value));
+                case POPCNT:
+                    return int64
+                            ? new WasmInt64Constant(Long.bitCount(value))
+                            : new WasmInt32Constant(Integer.bitCount((int) value));
+            }
+        }
+        if (expression.getOperation() == WasmIntUnaryOperation.EQZ && operand instanceof WasmIntBinary) {
+            WasmIntBinary comparison = (WasmIntBinary) operand;
+            WasmIntBinaryOperation negated = negate(comparison.getOperation());
+            if (negated != null) {
+                comparison.setOperation(negated);
+                return comparison;
+            }
+        }
+        return expression;
+    }
+
+    private WasmExpression foldConversion(WasmConversion expression) {
+        if (expression.isReinterpret() || !isConstant(expression.getOperand())) {
+            return expression;
+        }
+        long value = constant(expression.getOperand());
+        if (expression.getSourceType() == WasmNumType.INT32 && expression.getTargetType() == WasmNumType.INT64) {
+            return new WasmInt64Constant(expression.isSigned() ? value : value & 0xFFFFFFFFL);
+        }
+        if (expression.getSourceType() == WasmNumType.INT64 && expression.getTargetType() == WasmNumType.INT32) {
+            return new WasmInt32Constant((int) value);
+        }
+        return expression;
+    }
+
+    private WasmExpression foldConditional(WasmConditional expression) {
+        if (!(expression.getCondition() instanceof WasmInt32Constant)) {
+            return expression;
+        }
+        WasmBlock block = ((WasmInt32Constant) expression.getCondition()).getValue() != 0
+                ? expression.getThenBlock()
+                : expression.getElseBlock();
+        block.setType(expression.getType());
+        return block;
+    }
+
+    private static WasmExpression evaluate32(WasmIntBinaryOperation operation, int a, int b) {
+        switch (operation) {
+            case ADD:
+                return new WasmInt32Constant(a + b);
+            case SUB:
+                return new WasmInt32Constant(a - b);
+            case MUL:
+                return new WasmInt32Constant(a * b);
+            case DIV_SIGNED:
+                return b != 0 && (a != Integer.MIN_VALUE || b != -1) ? new WasmInt32Constant(a / b) : null;
+            case DIV_UNSIGNED:
+                return b != 0 ? new WasmInt32Constant(Integer.divideUnsigned(a, b)) : null;
+            case REM_SIGNED:
+                return b != 0 ? new WasmInt32Constant(b != -1 ? a % b : 0) : null;
+            case REM_UNSIGNED:
+                return b != 0 ? new WasmInt32Constant(Integer.remainderUnsigned(a, b)) : null;
+            case OR:
+                return new WasmInt32Constant(a | b);
+            case AND:
+                return new WasmInt32Constant(a & b);
+            case XOR:
+                return new WasmInt32Constant(a ^ b);
+            case SHL:
+                return new WasmInt32Constant(a << b);
+            case SHR_SIGNED:
+                return new WasmInt32Constant(a >> b);
+            case SHR_UNSIGNED:
+                return new WasmInt32Constant(a >>> b);
+            case ROTL:
+                return new WasmInt32Constant(Integer.rotateLeft(a, b));
+            case ROTR:
+                return new WasmInt32Constant(Integer.rotateRight(a, b));
+            default:
+                return compare(operation, Integer.compare(a, b), Integer.compareUnsigned(a, b));
+        }
+    }
+
+    private static WasmExpression evaluate64(WasmIntBinaryOperation operation, long a, long b) {
+        switch (operation) {
+            case ADD:
+                return new WasmInt64Constant(a + b);
+            case SUB:
+                return new WasmInt64Constant(a - b);
+            case MUL:
+                return new WasmInt64Constant(a * b);
+            case DIV_SIGNED:
+                return b != 0 && (a != Long.MIN_VALUE || b != -1) ? new WasmInt64Constant(a / b) : null;
+            case DIV_UNSIGNED:
+                return b != 0 ? new WasmInt64Constant(Long.divideUnsigned(a, b)) : null;
+            case REM_SIGNED:
+                return b != 0 ? new WasmInt64Constant(b != -1 ? a % b : 0) : null;
+            case REM_UNSIGNED:
+                return b != 0 ? new WasmInt64Constant(Long.remainderUnsigned(a, b)) : null;
+            case OR:
+                return new WasmInt64Constant(a | b);
+            case AND:
+                return new WasmInt64Constant(a & b);
+            case XOR:
+                return new WasmInt64Constant(a ^ b);
+            case SHL:
+                return new WasmInt64Constant(a << b);
+            case SHR_SIGNED:
+                return new WasmInt64Constant(a >> b);
+            case SHR_UNSIGNED:
+                return new WasmInt64Constant(a >>> b);
+            case ROTL:
+                return new WasmInt64Constant(Long.rotateLeft(a, (int) b));
+            case ROTR:
+                return new WasmInt64Constant(Long.rotateRight(a, (int) b));
+            default:
+                return compare(operation, Long.compare(a, b), Long.compareUnsigned(a, b));
+        }
+    }
+
+    private static WasmExpression compare(WasmIntBinaryOperation operation, int signed, int unsigned) {
+        boolean result;
+        switch (operation) {
+            case EQ:
+                result = signed == 0;
+                break;
+            case NE:
+                result = signed != 0;
+                break;
+            case LT_SIGNED:
+                result = signed < 0;
+                break;
+            case LT_UNSIGNED:
+                result = unsigned < 0;
+                break;
+            case LE_SIGNED:
+                result = signed <= 0;
+                break;
+            case LE_UNSIGNED:
+                result = unsigned <= 0;
+                break;
+            case GT_SIGNED:
+                result = signed > 0;
+                break;
+            case GT_UNSIGNED:
+                result = unsigned > 0;
+                break;
+            case GE_SIGNED:
+                result = signed >= 0;
+                break;
+            case GE_UNSIGNED:
+                result = unsigned >= 0;
+                break;
+            default:
+                return null;
+        }
+        return new WasmInt32Constant(result ? 1 : 0);
+    }
+
+    private static WasmIntBinaryOperation negate(WasmIntBinaryOperation operation) {
+        switch (operation) {
+            case EQ:
+                return WasmIntBinaryOperation.NE;
+            case NE:
+                return WasmIntBinaryOperation.EQ;
+            case LT_SIGNED:
+                return WasmIntBinaryOperation.GE_SIGNED;
+            case LT_UNSIGNED:
+                return WasmIntBinaryOperation.GE_UNSIGNED;
+            case LE_SIGNED:
+                return WasmIntBinaryOperation.GT_SIGNED;
+            case LE_UNSIGNED:
+                return WasmIntBinaryOperation.GT_UNSIGNED;
+            case GT_SIGNED:
+                return WasmIntBinaryOperation.LE_SIGNED;
+            case GT_UNSIGNED:
+                return WasmIntBinaryOperation.LE_UNSIGNED;
+            case GE_SIGNED:
+                return WasmIntBinaryOperation.LT_SIGNED;
+            case GE_UNSIGNED:
+                return WasmIntBinaryOperation.LT_UNSIGNED;
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isCommutative(WasmIntBinaryOperation operation) {
+        switch (operation) {
+            case ADD:
+            case MUL:
+            case AND:
+            case OR:
+            case XOR:
+            case EQ:
+            case NE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isConstant(WasmExpression expression) {
+        return expression instanceof WasmInt32Constant || expression instanceof WasmInt64Constant;
+    }
+
+    private static long constant(WasmExpression expression) {
+        return expression instanceof WasmInt32Constant
+                ? ((WasmInt32Constant) expression).getValue()
+                : ((WasmInt64Constant) expression).getValue();
+    }
+}
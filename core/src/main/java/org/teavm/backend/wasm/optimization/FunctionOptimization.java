@@ -0,0 +1,93 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmModule;
+
+/**
+ * Optimizes bodies of functions of module, running {@link ConstantFolding}, {@link LocalSimplification}
+ * and {@link BlockSimplification} until they stop changing code, since each of them produces opportunities
+ * for others. Functions are optimized independently of each other, so they can be processed by several
+ * threads.
+ */
+public class FunctionOptimization {
+    private static final int MAX_ITERATIONS = 8;
+    private WasmModule module;
+    private int threads = 1;
+
+    public FunctionOptimization(WasmModule module) {
+        this.module = module;
+    }
+
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    public void apply() {
+        List<WasmFunction> functions = new ArrayList<>();
+        for (WasmFunction function : module.functions) {
+            if (function.getImportName() == null) {
+                functions.add(function);
+            }
+        }
+        if (threads == 1) {
+            Passes passes = new Passes();
+            for (WasmFunction function : functions) {
+                passes.optimize(function);
+            }
+            return;
+        }
+
+        ThreadLocal<Passes> passes = ThreadLocal.withInitial(Passes::new);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (WasmFunction function : functions) {
+                tasks.add(pool.submit(() -> passes.get().optimize(function)));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static class Passes {
+        private ConstantFolding constantFolding = new ConstantFolding();
+        private LocalSimplification localSimplification = new LocalSimplification();
+        private BlockSimplification blockSimplification = new BlockSimplification();
+
+        void optimize(WasmFunction function) {
+            for (int i = 0; i < MAX_ITERATIONS; ++i) {
+                boolean changed = constantFolding.apply(function);
+                changed |= localSimplification.apply(function);
+                changed |= blockSimplification.apply(function);
+                if (!changed) {
+                    break;
+                }
+            }
+        }
+    }
+}
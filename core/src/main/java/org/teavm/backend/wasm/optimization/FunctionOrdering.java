@@ -0,0 +1,97 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import com.carrotsearch.hppc.ObjectIntHashMap;
+import com.carrotsearch.hppc.ObjectIntMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmModule;
+import org.teavm.backend.wasm.model.expression.WasmCall;
+import org.teavm.backend.wasm.model.expression.WasmDefaultExpressionVisitor;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+
+/**
+ * <p>Sorts functions of module in order they are expected to be called for the first time, so that
+ * code required at startup comes first in code section. Engines compile functions while code section
+ * is being downloaded, so this allows to start running code earlier.</p>
+ *
+ * <p>Order is approximated by depth-first traversal of direct calls, starting from start function and
+ * exported functions. Functions which are only called indirectly go after them in their original order.</p>
+ */
+public class FunctionOrdering {
+    private WasmModule module;
+
+    public FunctionOrdering(WasmModule module) {
+        this.module = module;
+    }
+
+    public void apply() {
+        List<WasmFunction> roots = new ArrayList<>();
+        if (module.getStartFunction() != null) {
+            roots.add(module.getStartFunction());
+        }
+        for (WasmFunction function : module.functions) {
+            if (function.getExportName() != null) {
+                roots.add(function);
+            }
+        }
+
+        ObjectIntMap<WasmFunction> order = new ObjectIntHashMap<>();
+        CallCollector collector = new CallCollector();
+        Deque<WasmFunction> stack = new ArrayDeque<>();
+        for (int i = roots.size() - 1; i >= 0; --i) {
+            stack.push(roots.get(i));
+        }
+        while (!stack.isEmpty()) {
+            WasmFunction function = stack.pop();
+            if (order.containsKey(function)) {
+                continue;
+            }
+            order.put(function, order.size());
+            collector.callees.clear();
+            for (WasmExpression part : function.getBody()) {
+                part.acceptVisitor(collector);
+            }
+            for (int i = collector.callees.size() - 1; i >= 0; --i) {
+                WasmFunction callee = collector.callees.get(i);
+                if (!order.containsKey(callee)) {
+                    stack.push(callee);
+                }
+            }
+        }
+
+        for (WasmFunction function : module.functions) {
+            if (!order.containsKey(function)) {
+                order.put(function, order.size());
+            }
+        }
+        module.functions.sort((a, b) -> Integer.compare(order.get(a), order.get(b)));
+    }
+
+    static class CallCollector extends WasmDefaultExpressionVisitor {
+        final List<WasmFunction> callees = new ArrayList<>();
+
+        @Override
+        public void visit(WasmCall expression) {
+            super.visit(expression);
+            callees.add(expression.getFunction());
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import java.util.List;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmLocal;
+import org.teavm.backend.wasm.model.WasmNumType;
+import org.teavm.backend.wasm.model.expression.WasmBlock;
+import org.teavm.backend.wasm.model.expression.WasmBranch;
+import org.teavm.backend.wasm.model.expression.WasmBreak;
+import org.teavm.backend.wasm.model.expression.WasmCall;
+import org.teavm.backend.wasm.model.expression.WasmConditional;
+import org.teavm.backend.wasm.model.expression.WasmConversion;
+import org.teavm.backend.wasm.model.expression.WasmDefaultExpressionVisitor;
+import org.teavm.backend.wasm.model.expression.WasmDrop;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmFloat32Constant;
+import org.teavm.backend.wasm.model.expression.WasmFloat64Constant;
+import org.teavm.backend.wasm.model.expression.WasmFloatBinary;
+import org.teavm.backend.wasm.model.expression.WasmFloatUnary;
+import org.teavm.backend.wasm.model.expression.WasmGetLocal;
+import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
+import org.teavm.backend.wasm.model.expression.WasmInt64Constant;
+import org.teavm.backend.wasm.model.expression.WasmIntBinary;
+import org.teavm.backend.wasm.model.expression.WasmIntUnary;
+import org.teavm.backend.wasm.model.expression.WasmLoadFloat32;
+import org.teavm.backend.wasm.model.expression.WasmLoadFloat64;
+import org.teavm.backend.wasm.model.expression.WasmLoadInt32;
+import org.teavm.backend.wasm.model.expression.WasmLoadInt64;
+import org.teavm.backend.wasm.model.expression.WasmMemoryAccess;
+import org.teavm.backend.wasm.model.expression.WasmReplacingExpressionVisitor;
+import org.teavm.backend.wasm.model.expression.WasmReturn;
+import org.teavm.backend.wasm.model.expression.WasmSetGlobal;
+import org.teavm.backend.wasm.model.expression.WasmSetLocal;
+import org.teavm.backend.wasm.model.expression.WasmTry;
+
+/**
+ * <p>Removes redundant writes and reads of local variables:</p>
+ *
+ * <ul>
+ *   <li>local that is written once and read once by the next instruction gets its value moved
+ *   to the place where it is read, i.e. <code>local.set $x (E); call $f (local.get $x)</code> becomes
+ *   <code>call $f (E)</code>. This is only done when everything evaluated before the read is free
+ *   of side effects, so order of side effects is preserved;</li>
+ *   <li>writes to locals that are never read are replaced by their values, or removed if values are pure;</li>
+ *   <li>assignments of local to itself are removed.</li>
+ * </ul>
+ */
+public class LocalSimplification {
+    private int[] reads;
+    private int[] writes;
+    private int parameterCount;
+    private boolean changed;
+
+    public boolean apply(WasmFunction function) {
+        changed = false;
+        int localCount = function.getLocalVariables().size();
+        reads = new int[localCount];
+        writes = new int[localCount];
+        parameterCount = function.getType().getParameterTypes().size();
+        for (WasmExpression part : function.getBody()) {
+            part.acceptVisitor(counter);
+        }
+        for (WasmExpression part : function.getBody()) {
+            part.acceptVisitor(simplifier);
+        }
+        simplify(function.getBody());
+        return changed;
+    }
+
+    private void simplify(List<WasmExpression> expressions) {
+        for (int i = expressions.size() - 1; i >= 0; --i) {
+            if (!(expressions.get(i) instanceof WasmSetLocal)) {
+                continue;
+            }
+            WasmSetLocal set = (WasmSetLocal) expressions.get(i);
+            int index = set.getLocal().getIndex();
+            if (index < parameterCount) {
+                continue;
+            }
+            WasmExpression value = set.getValue();
+            if (value instanceof WasmGetLocal && ((WasmGetLocal) value).getLocal() == set.getLocal()) {
+                expressions.remove(i);
+                --reads[index];
+                --writes[index];
+                changed = true;
+            } else if (reads[index] == 0) {
+                if (isPure(value)) {
+                    expressions.remove(i);
+                } else {
+                    WasmDrop drop = new WasmDrop(value);
+                    drop.setLocation(set.getLocation());
+                    expressions.set(i, drop);
+                }
+                --writes[index];
+                changed = true;
+            } else if (reads[index] == 1 && writes[index] == 1 && i + 1 < expressions.size()
+                    && !containsSetLocal(value) && sink(set, expressions, i + 1)) {
+                expressions.remove(i);
+                reads[index] = 0;
+                writes[index] = 0;
+                changed = true;
+            }
+        }
+    }
+
+    private boolean sink(WasmSetLocal set, List<WasmExpression> expressions, int index) {
+        WasmExpression target = expressions.get(index);
+        UseFinder finder = new UseFinder(set.getLocal());
+        WasmGetLocal use = finder.find(target);
+        if (use == null) {
+            return false;
+        }
+        WasmExpression value = set.getValue();
+        if (target == use) {
+            expressions.set(index, value);
+        } else {
+            target.acceptVisitor(new WasmReplacingExpressionVisitor(expression -> expression == use
+                    ? value
+                    : expression));
+        }
+        return true;
+    }
+
+    private static boolean isPure(WasmExpression expression) {
+        return expression instanceof WasmGetLocal || expression instanceof WasmInt32Constant
+                || expression instanceof WasmInt64Constant || expression instanceof WasmFloat32Constant
+                || expression instanceof WasmFloat64Constant;
+    }
+
+    private static boolean containsSetLocal(WasmExpression expression) {
+        boolean[] result = new boolean[1];
+        expression.acceptVisitor(new WasmDefaultExpressionVisitor() {
+            @Override
+            public void visit(WasmSetLocal expression) {
+                result[0] = true;
+            }
+        });
+        return result[0];
+    }
+
+    private WasmDefaultExpressionVisitor counter = new WasmDefaultExpressionVisitor() {
+        @Override
+        public void visit(WasmGetLocal expression) {
+            reads[expression.getLocal().getIndex()]++;
+        }
+
+        @Override
+        public void visit(WasmSetLocal expression) {
+            super.visit(expression);
+            writes[expression.getLocal().getIndex()]++;
+        }
+    };
+
+    private WasmDefaultExpressionVisitor simplifier = new WasmDefaultExpressionVisitor() {
+        @Override
+        public void visit(WasmBlock expression) {
+            super.visit(expression);
+            simplify(expression.getBody());
+        }
+
+        @Override
+        public void visit(WasmConditional expression) {
+            super.visit(expression);
+            simplify(expression.getThenBlock().getBody());
+            simplify(expression.getElseBlock().getBody());
+        }
+
+        @Override
+        public void visit(WasmTry expression) {
+            super.visit(expression);
+            simplify(expression.getBody());
+            for (var catchClause : expression.getCatches()) {
+                simplify(catchClause.getBody());
+            }
+        }
+    };
+
+    /**
+     * Finds read of the given local that is evaluated before any expression with side effects, visiting operands
+     * in order of evaluation. Bodies of nested blocks are not visited, since they can be executed several times
+     * or not executed at all.
+     */
+    static class UseFinder {
+        private final WasmLocal local;
+        private boolean blocked;
+
+        UseFinder(WasmLocal local) {
+            this.local = local;
+        }
+
+        WasmGetLocal find(WasmExpression expression) {
+            if (blocked) {
+                return null;
+            }
+            if (expression instanceof WasmGetLocal) {
+                return ((WasmGetLocal) expression).getLocal() == local ? (WasmGetLocal) expression : null;
+            }
+            if (isPure(expression)) {
+                return null;
+            }
+            WasmGetLocal result;
+            if (expression instanceof WasmIntBinary) {
+                WasmIntBinary binary = (WasmIntBinary) expression;
+                result = find(binary.getFirst(), binary.getSecond());
+                if (result == null) {
+                    switch (binary.getOperation()) {
+                        case DIV_SIGNED:
+                        case DIV_UNSIGNED:
+                        case REM_SIGNED:
+                        case REM_UNSIGNED:
+                            blocked = true;
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                return result;
+            } else if (expression instanceof WasmFloatBinary) {
+                WasmFloatBinary binary = (WasmFloatBinary) expression;
+                return find(binary.getFirst(), binary.getSecond());
+            } else if (expression instanceof WasmIntUnary) {
+                return find(((WasmIntUnary) expression).getOperand());
+            } else if (expression instanceof WasmFloatUnary) {
+                return find(((WasmFloatUnary) expression).getOperand());
+            } else if (expression instanceof WasmConversion) {
+                WasmConversion conversion = (WasmConversion) expression;
+                result = find(conversion.getOperand());
+                if (result == null && !conversion.isReinterpret() && isFloat(conversion.getSourceType())
+                        && !isFloat(conversion.getTargetType())) {
+                    blocked = true;
+                }
+                return result;
+            } else if (expression instanceof WasmDrop) {
+                return find(((WasmDrop) expression).getOperand());
+            } else if (expression instanceof WasmReturn) {
+                WasmExpression value = ((WasmReturn) expression).getValue();
+                result = value != null ? find(value) : null;
+            } else if (expression instanceof WasmBreak) {
+                WasmExpression value = ((WasmBreak) expression).getResult();
+                result = value != null ? find(value) : null;
+            } else if (expression instanceof WasmBranch) {
+                WasmBranch branch = (WasmBranch) expression;
+                result = branch.getResult() != null
+                        ? find(branch.getResult(), branch.getCondition())
+                        : find(branch.getCondition());
+            } else if (expression instanceof WasmConditional) {
+                result = find(((WasmConditional) expression).getCondition());
+            } else if (expression instanceof WasmSetLocal) {
+                result = find(((WasmSetLocal) expression).getValue());
+            } else if (expression instanceof WasmSetGlobal) {
+                result = find(((WasmSetGlobal) expression).getValue());
+            } else if (expression instanceof WasmCall) {
+                result = find(((WasmCall) expression).getArguments().toArray(new WasmExpression[0]));
+            } else if (expression instanceof WasmLoadInt32 || expression instanceof WasmLoadInt64
+                    || expression instanceof WasmLoadFloat32 || expression instanceof WasmLoadFloat64) {
+                result = find(((WasmMemoryAccess) expression).getIndex());
+            } else {
+                result = null;
+            }
+            if (result == null) {
+                blocked = true;
+            }
+            return result;
+        }
+
+        private WasmGetLocal find(WasmExpression... expressions) {
+            for (WasmExpression expression : expressions) {
+                WasmGetLocal result = find(expression);
+                if (result != null || blocked) {
+                    return result;
+                }
+            }
+            return null;
+        }
+
+        private static boolean isFloat(WasmNumType type) {
+            return type == WasmNumType.FLOAT32 || type == WasmNumType.FLOAT64;
+        }
+    }
+}
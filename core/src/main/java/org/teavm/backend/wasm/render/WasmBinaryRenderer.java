@@ -19,6 +19,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import org.teavm.backend.wasm.model.CustomSectionHolder;
@@ -53,6 +55,7 @@ public class WasmBinaryRenderer {
     private DebugLines debugLines;
     private DebugVariables debugVariables;
     private WasmBinaryStatsCollector statsCollector;
+    private int threads = 1;
 
     public WasmBinaryRenderer(WasmBinaryWriter output, WasmBinaryVersion version, boolean obfuscated,
             DwarfGenerator dwarfGenerator, DwarfClassGenerator dwarfClassGen, DebugLines debugLines,
@@ -67,6 +70,18 @@ public class WasmBinaryRenderer {
         this.statsCollector = statsCollector;
     }
 
+    /**
+     * Specifies number of threads that encode function bodies in parallel. Bodies are only encoded in parallel
+     * when neither DWARF nor TeaVM debug information is produced, since they are tied to offsets of functions
+     * in code section. Generated binary does not depend on this setting.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        this.threads = threads;
+    }
+
     public void render(WasmModule module) {
         render(module, Collections::emptyList);
     }
@@ -309,14 +324,25 @@ public class WasmBinaryRenderer {
                 .collect(Collectors.toList());
 
         section.writeLEB(functions.size());
-        for (var function : functions) {
-            var body = renderFunction(module, function, section.getPosition() + 4);
-            var startPos = section.getPosition();
-            section.writeLEB4(body.length);
-            section.writeBytes(body);
-            var size = section.getPosition() - startPos;
-            if (function.getJavaMethod() != null) {
-                statsCollector.addClassCodeSize(function.getJavaMethod().getClassName(), size);
+        var pool = threads > 1 && !hasDebugInformation() ? new ForkJoinPool(threads) : null;
+        try {
+            var bodies = pool != null ? renderFunctionsInParallel(pool, module, functions) : null;
+            for (var i = 0; i < functions.size(); ++i) {
+                var function = functions.get(i);
+                var body = bodies != null
+                        ? bodies.get(i).join()
+                        : renderFunction(module, function, section.getPosition() + 4);
+                var startPos = section.getPosition();
+                section.writeLEB4(body.length);
+                section.writeBytes(body);
+                var size = section.getPosition() - startPos;
+                if (function.getJavaMethod() != null) {
+                    statsCollector.addClassCodeSize(function.getJavaMethod().getClassName(), size);
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
             }
         }
 
@@ -327,6 +353,27 @@ public class WasmBinaryRenderer {
         writeSection(SECTION_CODE, "code", section.getData());
     }
 
+    private boolean hasDebugInformation() {
+        return dwarfGenerator != null || dwarfClassGen != null || debugLines != null || debugVariables != null;
+    }
+
+    /*
+     * Each function is encoded into its own buffer and only reads module, which is not modified
+     * at this point. Buffers are joined in order of functions, so code section is exactly the same
+     * as produced by serial encoding.
+     */
+    private List<ForkJoinTask<byte[]>> renderFunctionsInParallel(ForkJoinPool pool, WasmModule module,
+            List<WasmFunction> functions) {
+        module.types.updateIndexes();
+        module.functions.updateIndexes();
+        module.globals.updateIndexes();
+        var bodies = new ArrayList<ForkJoinTask<byte[]>>(functions.size());
+        for (var function : functions) {
+            bodies.add(pool.submit(() -> renderFunction(module, function, 0)));
+        }
+        return bodies;
+    }
+
     private byte[] renderFunction(WasmModule module, WasmFunction function, int offset) {
         var code = new WasmBinaryWriter();
 
@@ -58,6 +58,7 @@ import org.teavm.backend.wasm.model.expression.WasmLoadFloat32;
 import org.teavm.backend.wasm.model.expression.WasmLoadFloat64;
 import org.teavm.backend.wasm.model.expression.WasmLoadInt32;
 import org.teavm.backend.wasm.model.expression.WasmLoadInt64;
+import org.teavm.backend.wasm.model.expression.WasmLoadVector;
 import org.teavm.backend.wasm.model.expression.WasmMemoryGrow;
 import org.teavm.backend.wasm.model.expression.WasmNullConstant;
 import org.teavm.backend.wasm.model.expression.WasmReferencesEqual;
@@ -68,6 +69,7 @@ import org.teavm.backend.wasm.model.expression.WasmStoreFloat32;
 import org.teavm.backend.wasm.model.expression.WasmStoreFloat64;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt32;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt64;
+import org.teavm.backend.wasm.model.expression.WasmStoreVector;
 import org.teavm.backend.wasm.model.expression.WasmStructGet;
 import org.teavm.backend.wasm.model.expression.WasmStructNew;
 import org.teavm.backend.wasm.model.expression.WasmStructNewDefault;
@@ -76,6 +78,10 @@ import org.teavm.backend.wasm.model.expression.WasmSwitch;
 import org.teavm.backend.wasm.model.expression.WasmThrow;
 import org.teavm.backend.wasm.model.expression.WasmTry;
 import org.teavm.backend.wasm.model.expression.WasmUnreachable;
+import org.teavm.backend.wasm.model.expression.WasmVectorBinary;
+import org.teavm.backend.wasm.model.expression.WasmVectorBinaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmVectorShape;
+import org.teavm.backend.wasm.model.expression.WasmVectorSplat;
 import org.teavm.model.MethodReference;
 import org.teavm.model.TextLocation;
 
@@ -949,6 +955,174 @@ class WasmBinaryRenderingVisitor implements WasmExpressionVisitor {
         popLocation();
     }
 
+    @Override
+    public void visit(WasmLoadVector expression) {
+        pushLocation(expression);
+        expression.getIndex().acceptVisitor(this);
+        writer.writeByte(0xFD);
+        writer.writeLEB(0x00);
+        writer.writeByte(alignment(expression.getAlignment()));
+        writer.writeLEB(expression.getOffset());
+        popLocation();
+    }
+
+    @Override
+    public void visit(WasmStoreVector expression) {
+        pushLocation(expression);
+        expression.getIndex().acceptVisitor(this);
+        expression.getValue().acceptVisitor(this);
+        writer.writeByte(0xFD);
+        writer.writeLEB(0x0B);
+        writer.writeByte(alignment(expression.getAlignment()));
+        writer.writeLEB(expression.getOffset());
+        popLocation();
+    }
+
+    @Override
+    public void visit(WasmVectorSplat expression) {
+        pushLocation(expression);
+        expression.getValue().acceptVisitor(this);
+        writer.writeByte(0xFD);
+        switch (expression.getShape()) {
+            case INT8X16:
+                writer.writeLEB(0x0F);
+                break;
+            case INT16X8:
+                writer.writeLEB(0x10);
+                break;
+            case INT32X4:
+                writer.writeLEB(0x11);
+                break;
+            case INT64X2:
+                writer.writeLEB(0x12);
+                break;
+            case FLOAT32X4:
+                writer.writeLEB(0x13);
+                break;
+            case FLOAT64X2:
+                writer.writeLEB(0x14);
+                break;
+        }
+        popLocation();
+    }
+
+    @Override
+    public void visit(WasmVectorBinary expression) {
+        pushLocation(expression);
+        expression.getFirst().acceptVisitor(this);
+        expression.getSecond().acceptVisitor(this);
+        writer.writeByte(0xFD);
+        writer.writeLEB(vectorBinaryOpcode(expression.getShape(), expression.getOperation()));
+        popLocation();
+    }
+
+    private static int vectorBinaryOpcode(WasmVectorShape shape, WasmVectorBinaryOperation operation) {
+        switch (operation) {
+            case AND:
+                return 0x4E;
+            case AND_NOT:
+                return 0x4F;
+            case OR:
+                return 0x50;
+            case XOR:
+                return 0x51;
+            default:
+                break;
+        }
+        switch (shape) {
+            case INT8X16:
+            case INT16X8: {
+                int base = shape == WasmVectorShape.INT8X16 ? 0x6E : 0x8E;
+                switch (operation) {
+                    case ADD:
+                        return base;
+                    case ADD_SAT_SIGNED:
+                        return base + 1;
+                    case ADD_SAT_UNSIGNED:
+                        return base + 2;
+                    case SUB:
+                        return base + 3;
+                    case SUB_SAT_SIGNED:
+                        return base + 4;
+                    case SUB_SAT_UNSIGNED:
+                        return base + 5;
+                    case MUL:
+                        if (shape == WasmVectorShape.INT16X8) {
+                            return 0x95;
+                        }
+                        break;
+                    case MIN_SIGNED:
+                        return base + 8;
+                    case MIN_UNSIGNED:
+                        return base + 9;
+                    case MAX_SIGNED:
+                        return base + 10;
+                    case MAX_UNSIGNED:
+                        return base + 11;
+                    case AVGR_UNSIGNED:
+                        return base + 13;
+                    default:
+                        break;
+                }
+                break;
+            }
+            case INT32X4:
+                switch (operation) {
+                    case ADD:
+                        return 0xAE;
+                    case SUB:
+                        return 0xB1;
+                    case MUL:
+                        return 0xB5;
+                    case MIN_SIGNED:
+                        return 0xB6;
+                    case MIN_UNSIGNED:
+                        return 0xB7;
+                    case MAX_SIGNED:
+                        return 0xB8;
+                    case MAX_UNSIGNED:
+                        return 0xB9;
+                    default:
+                        break;
+                }
+                break;
+            case INT64X2:
+                switch (operation) {
+                    case ADD:
+                        return 0xCE;
+                    case SUB:
+                        return 0xD1;
+                    case MUL:
+                        return 0xD5;
+                    default:
+                        break;
+                }
+                break;
+            case FLOAT32X4:
+            case FLOAT64X2: {
+                int base = shape == WasmVectorShape.FLOAT32X4 ? 0xE4 : 0xF0;
+                switch (operation) {
+                    case ADD:
+                        return base;
+                    case SUB:
+                        return base + 1;
+                    case MUL:
+                        return base + 2;
+                    case DIV:
+                        return base + 3;
+                    case MIN:
+                        return base + 4;
+                    case MAX:
+                        return base + 5;
+                    default:
+                        break;
+                }
+                break;
+            }
+        }
+        throw new IllegalArgumentException("Operation " + operation + " is not supported for " + shape);
+    }
+
     @Override
     public void visit(WasmMemoryGrow expression) {
         pushLocation(expression);
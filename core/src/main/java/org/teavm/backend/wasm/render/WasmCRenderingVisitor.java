@@ -62,6 +62,7 @@ import org.teavm.backend.wasm.model.expression.WasmLoadFloat32;
 import org.teavm.backend.wasm.model.expression.WasmLoadFloat64;
 import org.teavm.backend.wasm.model.expression.WasmLoadInt32;
 import org.teavm.backend.wasm.model.expression.WasmLoadInt64;
+import org.teavm.backend.wasm.model.expression.WasmLoadVector;
 import org.teavm.backend.wasm.model.expression.WasmMemoryGrow;
 import org.teavm.backend.wasm.model.expression.WasmNullConstant;
 import org.teavm.backend.wasm.model.expression.WasmReferencesEqual;
@@ -72,6 +73,7 @@ import org.teavm.backend.wasm.model.expression.WasmStoreFloat32;
 import org.teavm.backend.wasm.model.expression.WasmStoreFloat64;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt32;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt64;
+import org.teavm.backend.wasm.model.expression.WasmStoreVector;
 import org.teavm.backend.wasm.model.expression.WasmStructGet;
 import org.teavm.backend.wasm.model.expression.WasmStructNew;
 import org.teavm.backend.wasm.model.expression.WasmStructNewDefault;
@@ -80,6 +82,8 @@ import org.teavm.backend.wasm.model.expression.WasmSwitch;
 import org.teavm.backend.wasm.model.expression.WasmThrow;
 import org.teavm.backend.wasm.model.expression.WasmTry;
 import org.teavm.backend.wasm.model.expression.WasmUnreachable;
+import org.teavm.backend.wasm.model.expression.WasmVectorBinary;
+import org.teavm.backend.wasm.model.expression.WasmVectorSplat;
 import org.teavm.model.TextLocation;
 
 class WasmCRenderingVisitor implements WasmExpressionVisitor {
@@ -1079,6 +1083,26 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
         value = result;
     }
 
+    @Override
+    public void visit(WasmLoadVector expression) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(WasmStoreVector expression) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(WasmVectorSplat expression) {
+        unsupported();
+    }
+
+    @Override
+    public void visit(WasmVectorBinary expression) {
+        unsupported();
+    }
+
     @Override
     public void visit(WasmMemoryGrow expression) {
         CExpression result = new CExpression();
@@ -1265,6 +1289,8 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
                 return "float";
             case FLOAT64:
                 return "double";
+            case V128:
+                return "/* unsupported */";
         }
         throw new AssertionError(type.toString());
     }
@@ -63,6 +63,7 @@ import org.teavm.backend.wasm.model.expression.WasmLoadFloat32;
 import org.teavm.backend.wasm.model.expression.WasmLoadFloat64;
 import org.teavm.backend.wasm.model.expression.WasmLoadInt32;
 import org.teavm.backend.wasm.model.expression.WasmLoadInt64;
+import org.teavm.backend.wasm.model.expression.WasmLoadVector;
 import org.teavm.backend.wasm.model.expression.WasmMemoryGrow;
 import org.teavm.backend.wasm.model.expression.WasmNullConstant;
 import org.teavm.backend.wasm.model.expression.WasmReferencesEqual;
@@ -73,6 +74,7 @@ import org.teavm.backend.wasm.model.expression.WasmStoreFloat32;
 import org.teavm.backend.wasm.model.expression.WasmStoreFloat64;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt32;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt64;
+import org.teavm.backend.wasm.model.expression.WasmStoreVector;
 import org.teavm.backend.wasm.model.expression.WasmStructGet;
 import org.teavm.backend.wasm.model.expression.WasmStructNew;
 import org.teavm.backend.wasm.model.expression.WasmStructNewDefault;
@@ -81,6 +83,10 @@ import org.teavm.backend.wasm.model.expression.WasmSwitch;
 import org.teavm.backend.wasm.model.expression.WasmThrow;
 import org.teavm.backend.wasm.model.expression.WasmTry;
 import org.teavm.backend.wasm.model.expression.WasmUnreachable;
+import org.teavm.backend.wasm.model.expression.WasmVectorBinary;
+import org.teavm.backend.wasm.model.expression.WasmVectorBinaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmVectorShape;
+import org.teavm.backend.wasm.model.expression.WasmVectorSplat;
 
 class WasmRenderingVisitor implements WasmExpressionVisitor {
     StringBuilder sb = new StringBuilder();
@@ -628,6 +634,54 @@ class WasmRenderingVisitor implements WasmExpressionVisitor {
         close();
     }
 
+    @Override
+    public void visit(WasmLoadVector expression) {
+        open().append("v128.load");
+        if (expression.getOffset() > 0) {
+            append(" offset=" + expression.getOffset());
+        }
+        append(" align=" + expression.getAlignment());
+        line(expression.getIndex());
+        close();
+    }
+
+    @Override
+    public void visit(WasmStoreVector expression) {
+        open().append("v128.store");
+        if (expression.getOffset() > 0) {
+            append(" offset=" + expression.getOffset());
+        }
+        append(" align=" + expression.getAlignment());
+        line(expression.getIndex());
+        line(expression.getValue());
+        close();
+    }
+
+    @Override
+    public void visit(WasmVectorSplat expression) {
+        open().append(shape(expression.getShape()) + ".splat");
+        line(expression.getValue());
+        close();
+    }
+
+    @Override
+    public void visit(WasmVectorBinary expression) {
+        switch (expression.getOperation()) {
+            case AND:
+            case AND_NOT:
+            case OR:
+            case XOR:
+                open().append("v128." + operation(expression.getOperation()));
+                break;
+            default:
+                open().append(shape(expression.getShape()) + "." + operation(expression.getOperation()));
+                break;
+        }
+        line(expression.getFirst());
+        line(expression.getSecond());
+        close();
+    }
+
     @Override
     public void visit(WasmMemoryGrow expression) {
         open().append("memory.grow");
@@ -836,6 +890,8 @@ class WasmRenderingVisitor implements WasmExpressionVisitor {
                 return "f32";
             case FLOAT64:
                 return "f64";
+            case V128:
+                return "v128";
         }
         throw new AssertionError(type.toString());
     }
@@ -981,4 +1037,66 @@ class WasmRenderingVisitor implements WasmExpressionVisitor {
         }
         throw new AssertionError(operation.toString());
     }
+
+    private String shape(WasmVectorShape shape) {
+        switch (shape) {
+            case INT8X16:
+                return "i8x16";
+            case INT16X8:
+                return "i16x8";
+            case INT32X4:
+                return "i32x4";
+            case INT64X2:
+                return "i64x2";
+            case FLOAT32X4:
+                return "f32x4";
+            case FLOAT64X2:
+                return "f64x2";
+        }
+        throw new AssertionError(shape.toString());
+    }
+
+    private String operation(WasmVectorBinaryOperation operation) {
+        switch (operation) {
+            case AND:
+                return "and";
+            case AND_NOT:
+                return "andnot";
+            case OR:
+                return "or";
+            case XOR:
+                return "xor";
+            case ADD:
+                return "add";
+            case ADD_SAT_SIGNED:
+                return "add_sat_s";
+            case ADD_SAT_UNSIGNED:
+                return "add_sat_u";
+            case SUB:
+                return "sub";
+            case SUB_SAT_SIGNED:
+                return "sub_sat_s";
+            case SUB_SAT_UNSIGNED:
+                return "sub_sat_u";
+            case MUL:
+                return "mul";
+            case DIV:
+                return "div";
+            case MIN:
+                return "min";
+            case MIN_SIGNED:
+                return "min_s";
+            case MIN_UNSIGNED:
+                return "min_u";
+            case MAX:
+                return "max";
+            case MAX_SIGNED:
+                return "max_s";
+            case MAX_UNSIGNED:
+                return "max_u";
+            case AVGR_UNSIGNED:
+                return "avgr_u";
+        }
+        throw new AssertionError(operation.toString());
+    }
 }
@@ -50,6 +50,7 @@ import org.teavm.backend.wasm.model.expression.WasmLoadFloat32;
 import org.teavm.backend.wasm.model.expression.WasmLoadFloat64;
 import org.teavm.backend.wasm.model.expression.WasmLoadInt32;
 import org.teavm.backend.wasm.model.expression.WasmLoadInt64;
+import org.teavm.backend.wasm.model.expression.WasmLoadVector;
 import org.teavm.backend.wasm.model.expression.WasmMemoryGrow;
 import org.teavm.backend.wasm.model.expression.WasmNullConstant;
 import org.teavm.backend.wasm.model.expression.WasmReferencesEqual;
@@ -60,6 +61,7 @@ import org.teavm.backend.wasm.model.expression.WasmStoreFloat32;
 import org.teavm.backend.wasm.model.expression.WasmStoreFloat64;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt32;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt64;
+import org.teavm.backend.wasm.model.expression.WasmStoreVector;
 import org.teavm.backend.wasm.model.expression.WasmStructGet;
 import org.teavm.backend.wasm.model.expression.WasmStructNew;
 import org.teavm.backend.wasm.model.expression.WasmStructNewDefault;
@@ -68,6 +70,8 @@ import org.teavm.backend.wasm.model.expression.WasmSwitch;
 import org.teavm.backend.wasm.model.expression.WasmThrow;
 import org.teavm.backend.wasm.model.expression.WasmTry;
 import org.teavm.backend.wasm.model.expression.WasmUnreachable;
+import org.teavm.backend.wasm.model.expression.WasmVectorBinary;
+import org.teavm.backend.wasm.model.expression.WasmVectorSplat;
 
 public class WasmTypeInference implements WasmExpressionVisitor {
     private WasmType result;
@@ -242,6 +246,26 @@ public class WasmTypeInference implements WasmExpressionVisitor {
         result = null;
     }
 
+    @Override
+    public void visit(WasmLoadVector expression) {
+        result = WasmType.V128;
+    }
+
+    @Override
+    public void visit(WasmStoreVector expression) {
+        result = null;
+    }
+
+    @Override
+    public void visit(WasmVectorSplat expression) {
+        result = WasmType.V128;
+    }
+
+    @Override
+    public void visit(WasmVectorBinary expression) {
+        result = WasmType.V128;
+    }
+
     @Override
     public void visit(WasmMemoryGrow expression) {
         result = WasmType.INT32;
@@ -0,0 +1,114 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.cache;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * <p>Packs incremental build cache directory into a zip archive and unpacks it back.</p>
+ *
+ * <p>Cache files refer to each other only by paths relative to cache directory, so an unpacked archive
+ * can be used in any directory and on any machine. However, modification dates are not preserved
+ * meaningfully, so consumers of the archive should validate cached classes by content, see
+ * {@link DiskCachedClassReaderSource#setContentHashProvider}.</p>
+ */
+public final class CacheArchive {
+    public static final int FORMAT_VERSION = 1;
+    private static final String MANIFEST = "teavm-cache-format";
+
+    private CacheArchive() {
+    }
+
+    public static void write(File directory, OutputStream output) throws IOException {
+        List<String> paths = new ArrayList<>();
+        collectFiles(directory, "", paths);
+        Collections.sort(paths);
+
+        ZipOutputStream zip = new ZipOutputStream(output);
+        zip.putNextEntry(new ZipEntry(MANIFEST));
+        zip.write(String.valueOf(FORMAT_VERSION).getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+        for (String path : paths) {
+            ZipEntry entry = new ZipEntry(path);
+            entry.setTime(0);
+            zip.putNextEntry(entry);
+            try (InputStream input = new BufferedInputStream(new FileInputStream(new File(directory, path)))) {
+                input.transferTo(zip);
+            }
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    private static void collectFiles(File directory, String prefix, List<String> paths) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectFiles(file, prefix + file.getName() + "/", paths);
+            } else if (!file.getName().endsWith(".tmp")) {
+                paths.add(prefix + file.getName());
+            }
+        }
+    }
+
+    /**
+     * Unpacks archive into the given directory.
+     *
+     * @return {@code false} if archive has incompatible format, in which case nothing is unpacked.
+     */
+    public static boolean read(InputStream input, File directory) throws IOException {
+        ZipInputStream zip = new ZipInputStream(input);
+        ZipEntry entry = zip.getNextEntry();
+        if (entry == null || !entry.getName().equals(MANIFEST)) {
+            return false;
+        }
+        String version = new String(zip.readAllBytes(), StandardCharsets.UTF_8).trim();
+        if (!version.equals(String.valueOf(FORMAT_VERSION))) {
+            return false;
+        }
+
+        File root = directory.getCanonicalFile();
+        while ((entry = zip.getNextEntry()) != null) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            File file = new File(root, entry.getName()).getCanonicalFile();
+            if (!file.toPath().startsWith(root.toPath())) {
+                throw new IOException("Cache archive entry points outside of cache directory: " + entry.getName());
+            }
+            file.getParentFile().mkdirs();
+            Files.copy(zip, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return true;
+    }
+}
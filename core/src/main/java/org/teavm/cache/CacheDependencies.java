@@ -0,0 +1,41 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.cache;
+
+import java.io.IOException;
+
+final class CacheDependencies {
+    private CacheDependencies() {
+    }
+
+    static void write(VarDataOutput output, String[] dependencies) throws IOException {
+        output.writeUnsigned(dependencies.length);
+        for (String dependency : dependencies) {
+            output.write(dependency);
+        }
+    }
+
+    static boolean changed(VarDataInput input, CacheStatus cacheStatus) throws IOException {
+        int depCount = input.readUnsigned();
+        for (int i = 0; i < depCount; ++i) {
+            String depClass = input.read();
+            if (cacheStatus.isStaleClass(depClass)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
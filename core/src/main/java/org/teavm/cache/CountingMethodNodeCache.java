@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.cache;
+
+import java.util.function.Supplier;
+import org.teavm.ast.AsyncMethodNode;
+import org.teavm.model.MethodReference;
+
+public class CountingMethodNodeCache implements MethodNodeCache {
+    private MethodNodeCache underlying;
+    private CacheMetrics metrics;
+
+    public CountingMethodNodeCache(MethodNodeCache underlying, CacheMetrics metrics) {
+        this.underlying = underlying;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public AstCacheEntry get(MethodReference methodReference, CacheStatus cacheStatus) {
+        return count(underlying.get(methodReference, cacheStatus));
+    }
+
+    @Override
+    public void store(MethodReference methodReference, AstCacheEntry entry, Supplier<String[]> dependencies) {
+        underlying.store(methodReference, entry, dependencies);
+    }
+
+    @Override
+    public AsyncMethodNode getAsync(MethodReference methodReference, CacheStatus cacheStatus) {
+        return count(underlying.getAsync(methodReference, cacheStatus));
+    }
+
+    @Override
+    public void storeAsync(MethodReference methodReference, AsyncMethodNode node, Supplier<String[]> dependencies) {
+        underlying.storeAsync(methodReference, node, dependencies);
+    }
+
+    private <T> T count(T value) {
+        if (value != null) {
+            metrics.hit();
+        } else {
+            metrics.miss();
+        }
+        return value;
+    }
+}
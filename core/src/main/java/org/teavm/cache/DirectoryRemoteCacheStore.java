@@ -0,0 +1,55 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+public class DirectoryRemoteCacheStore implements RemoteCacheStore {
+    private File directory;
+
+    public DirectoryRemoteCacheStore(File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public InputStream fetch(String key) throws IOException {
+        File file = getArchiveFile(key);
+        return file.exists() ? new FileInputStream(file) : null;
+    }
+
+    @Override
+    public void publish(String key, InputStream archive) throws IOException {
+        directory.mkdirs();
+        File file = getArchiveFile(key);
+        File tmpFile = File.createTempFile(key, ".tmp", directory);
+        try {
+            Files.copy(archive, tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tmpFile.delete();
+        }
+    }
+
+    private File getArchiveFile(String key) {
+        return new File(directory, key + ".zip");
+    }
+}
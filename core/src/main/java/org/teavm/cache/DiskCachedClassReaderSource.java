@@ -17,13 +17,17 @@ package org.teavm.cache;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -33,6 +37,7 @@ import org.teavm.model.ClassReader;
 import org.teavm.model.ClassReaderSource;
 import org.teavm.model.MethodReference;
 import org.teavm.model.ReferenceCache;
+import org.teavm.parsing.ClassContentHashProvider;
 import org.teavm.parsing.ClassDateProvider;
 
 public class DiskCachedClassReaderSource implements ClassReaderSource, CacheStatus {
@@ -42,6 +47,9 @@ public class DiskCachedClassReaderSource implements ClassReaderSource, CacheStat
     private Map<String, Item> cache = new LinkedHashMap<>();
     private Set<String> newClasses = new HashSet<>();
     private ClassIO classIO;
+    private ClassContentHashProvider contentHashProvider;
+    private Map<String, byte[]> storedHashes;
+    private boolean hashesChanged;
 
     public DiskCachedClassReaderSource(File directory, ReferenceCache referenceCache, SymbolTable symbolTable,
             SymbolTable fileTable, SymbolTable variableTable, ClassHolderSource innerSource,
@@ -52,6 +60,15 @@ public class DiskCachedClassReaderSource implements ClassReaderSource, CacheStat
         classIO = new ClassIO(referenceCache, symbolTable, fileTable, variableTable);
     }
 
+    /**
+     * Makes this source validate cached classes by comparing digests of class files instead of
+     * modification dates. Digests are persisted in the cache directory, so the cache stays valid
+     * when class files are rewritten with the same content or when cache directory is moved to another machine.
+     */
+    public void setContentHashProvider(ClassContentHashProvider contentHashProvider) {
+        this.contentHashProvider = contentHashProvider;
+    }
+
     @Override
     public ClassReader get(String name) {
         return getItemFromCache(name).cls;
@@ -74,8 +91,7 @@ public class DiskCachedClassReaderSource implements ClassReaderSource, CacheStat
             cache.put(name, item);
             File classFile = new File(directory, name.replace('.', '/') + ".teavm-cls");
             if (classFile.exists()) {
-                Date classDate = classDateProvider.getModificationDate(name);
-                if (classDate != null && classDate.before(new Date(classFile.lastModified()))) {
+                if (isUpToDate(name, classFile)) {
                     try (InputStream input = new BufferedInputStream(new FileInputStream(classFile))) {
                         item.cls = classIO.readClass(input, name);
                     } catch (IOException e) {
@@ -93,6 +109,42 @@ public class DiskCachedClassReaderSource implements ClassReaderSource, CacheStat
         return item;
     }
 
+    private boolean isUpToDate(String name, File classFile) {
+        if (contentHashProvider != null) {
+            byte[] hash = contentHashProvider.getContentHash(name);
+            return hash != null && Arrays.equals(hash, getStoredHashes().get(name));
+        }
+        Date classDate = classDateProvider.getModificationDate(name);
+        return classDate != null && classDate.before(new Date(classFile.lastModified()));
+    }
+
+    private Map<String, byte[]> getStoredHashes() {
+        if (storedHashes == null) {
+            storedHashes = new HashMap<>();
+            File file = getHashesFile();
+            if (file.exists()) {
+                try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(file)))) {
+                    int count = input.readInt();
+                    for (int i = 0; i < count; ++i) {
+                        String className = input.readUTF();
+                        byte[] hash = new byte[input.readUnsignedByte()];
+                        input.readFully(hash);
+                        storedHashes.put(className, hash);
+                    }
+                } catch (IOException e) {
+                    // Hashes are corrupted, consider all classes stale
+                    storedHashes.clear();
+                }
+            }
+        }
+        return storedHashes;
+    }
+
+    private File getHashesFile() {
+        return new File(directory, "class-hashes");
+    }
+
     private static class Item {
         ClassReader cls;
         boolean dirty;
@@ -107,6 +159,37 @@ public class DiskCachedClassReaderSource implements ClassReaderSource, CacheStat
                 try (OutputStream output = new BufferedOutputStream(new FileOutputStream(classFile))) {
                     classIO.writeClass(output, item.cls);
                 }
+                updateStoredHash(className);
+            }
+        }
+        if (hashesChanged) {
+            writeHashes();
+            hashesChanged = false;
+        }
+    }
+
+    private void updateStoredHash(String className) {
+        // Hash must describe the class just written, whatever mode was used to validate it.
+        // Otherwise a hash left from an earlier build could validate newer cache entry against
+        // older class file after switching back to content hashes.
+        byte[] hash = contentHashProvider != null ? contentHashProvider.getContentHash(className) : null;
+        if (hash != null) {
+            getStoredHashes().put(className, hash);
+            hashesChanged = true;
+        } else if (getStoredHashes().remove(className) != null) {
+            hashesChanged = true;
+        }
+    }
+
+    private void writeHashes() throws IOException {
+        directory.mkdirs();
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(getHashesFile())))) {
+            output.writeInt(storedHashes.size());
+            for (Map.Entry<String, byte[]> entry : storedHashes.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeByte(entry.getValue().length);
+                output.write(entry.getValue());
             }
         }
     }
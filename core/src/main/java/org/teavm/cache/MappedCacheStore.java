@@ -0,0 +1,322 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Stores binary cache entries in a single append-only file which is memory-mapped for reading.</p>
+ *
+ * <p>The file consists of a header followed by records. Each record contains a UTF-8 key and a payload.
+ * When a key is written more than once, the latest record wins and earlier ones become dead space.
+ * The index of live records is rebuilt on opening by scanning record headers only, payloads are
+ * never touched until requested. On {@link #flush()} new records are appended to the end of the file;
+ * when dead space starts to dominate, the file is rewritten with live records only.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public class MappedCacheStore {
+    private static final int MAGIC = 0x5456_4D43;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final long MIN_COMPACTION_SIZE = 1 << 20;
+
+    private final File file;
+    private MappedByteBuffer buffer;
+    private final Map<String, Entry> index = new HashMap<>();
+    private final Map<String, byte[]> pending = new LinkedHashMap<>();
+    private long size;
+    private long deadBytes;
+    private String discardReason;
+
+    public MappedCacheStore(File file) throws IOException {
+        this.file = file;
+        open();
+    }
+
+    private void open() throws IOException {
+        index.clear();
+        buffer = null;
+        size = 0;
+        deadBytes = 0;
+        discardReason = null;
+        if (!file.exists()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                if (fileSize > 0) {
+                    discardReason = "file is too short to contain header";
+                }
+                return;
+            }
+            if (fileSize > Integer.MAX_VALUE) {
+                discardReason = "file size " + fileSize + " exceeds " + Integer.MAX_VALUE + " bytes";
+                return;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            if (mapped.getInt(0) != MAGIC) {
+                discardReason = "unknown file format";
+                return;
+            }
+            if (mapped.getInt(4) != VERSION) {
+                discardReason = "unsupported version " + mapped.getInt(4) + ", expected " + VERSION;
+                return;
+            }
+            buffer = mapped;
+            // Tail may be incomplete due to interrupted build. It's ignored here and gets truncated
+            // on next append.
+            size = scan(mapped, (int) fileSize);
+        }
+    }
+
+    private int scan(ByteBuffer mapped, int limit) {
+        int offset = HEADER_SIZE;
+        while (limit - offset >= RECORD_HEADER_SIZE) {
+            int keyLength = mapped.getInt(offset);
+            int dataLength = mapped.getInt(offset + 4);
+            if (keyLength < 0 || dataLength < 0) {
+                break;
+            }
+            long end = (long) offset + RECORD_HEADER_SIZE + keyLength + dataLength;
+            if (end > limit) {
+                break;
+            }
+            byte[] keyBytes = new byte[keyLength];
+            ByteBuffer view = mapped.duplicate();
+            view.position(offset + RECORD_HEADER_SIZE);
+            view.get(keyBytes);
+            String key = new String(keyBytes, StandardCharsets.UTF_8);
+            Entry entry = new Entry(offset + RECORD_HEADER_SIZE + keyLength, dataLength,
+                    (int) (end - offset));
+            Entry previous = index.put(key, entry);
+            if (previous != null) {
+                deadBytes += previous.recordSize;
+            }
+            offset = (int) end;
+        }
+        return offset;
+    }
+
+    /**
+     * Returns a read-only view of the payload stored for the given key, or {@code null} if there's
+     * no such entry. Views of entries written before the last {@link #flush()} are backed directly
+     * by the mapped file, so no data is copied until it is actually read.
+     */
+    public ByteBuffer get(String key) {
+        byte[] data = pending.get(key);
+        if (data != null) {
+            return ByteBuffer.wrap(data).asReadOnlyBuffer();
+        }
+        Entry entry = index.get(key);
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.position(entry.offset);
+        view.limit(entry.offset + entry.length);
+        return view.slice();
+    }
+
+    public InputStream getStream(String key) {
+        ByteBuffer data = get(key);
+        return data != null ? new ByteBufferInputStream(data) : null;
+    }
+
+    public void put(String key, byte[] data) {
+        pending.put(key, data);
+    }
+
+    public int getEntryCount() {
+        int count = index.size();
+        for (String key : pending.keySet()) {
+            if (!index.containsKey(key)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the reason why the contents of existing file were not used, or {@code null} if the file
+     * was either read successfully or did not exist. Discarded content is overwritten on next
+     * {@link #flush()}.
+     */
+    public String getDiscardReason() {
+        return discardReason;
+    }
+
+    long getDeadBytes() {
+        return deadBytes;
+    }
+
+    public void flush() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long pendingSize = 0;
+        for (Map.Entry<String, byte[]> entry : pending.entrySet()) {
+            Entry previous = index.get(entry.getKey());
+            if (previous != null) {
+                deadBytes += previous.recordSize;
+            }
+            pendingSize += RECORD_HEADER_SIZE + entry.getKey().length() * 3L + entry.getValue().length;
+        }
+
+        long expectedSize = Math.max(size, HEADER_SIZE) + pendingSize;
+        if (expectedSize > MIN_COMPACTION_SIZE && deadBytes * 2 > expectedSize) {
+            compact();
+        } else {
+            append();
+        }
+        pending.clear();
+        open();
+    }
+
+    private void append() throws IOException {
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            if (channel.size() > size) {
+                channel.truncate(size);
+            }
+            long position = size;
+            if (position == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                position += writeFully(channel, header, position);
+            }
+            for (Map.Entry<String, byte[]> entry : pending.entrySet()) {
+                position += writeFully(channel, encode(entry.getKey(), entry.getValue()), position);
+            }
+            channel.force(false);
+        }
+    }
+
+    private void compact() throws IOException {
+        List<String> keys = new ArrayList<>(index.keySet());
+        keys.removeAll(pending.keySet());
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            long position = writeFully(channel, header, 0);
+            for (String key : keys) {
+                ByteBuffer data = get(key);
+                byte[] bytes = new byte[data.remaining()];
+                data.get(bytes);
+                position += writeFully(channel, encode(key, bytes), position);
+            }
+            for (Map.Entry<String, byte[]> entry : pending.entrySet()) {
+                position += writeFully(channel, encode(entry.getKey(), entry.getValue()), position);
+            }
+            channel.force(false);
+        }
+        buffer = null;
+        try {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Some platforms don't allow to replace a file while it's still mapped.
+            // Leave the file uncompacted, it's still valid.
+            tmpFile.delete();
+            open();
+            append();
+        }
+    }
+
+    private static ByteBuffer encode(String key, byte[] data) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer result = ByteBuffer.allocate(RECORD_HEADER_SIZE + keyBytes.length + data.length);
+        result.putInt(keyBytes.length).putInt(data.length).put(keyBytes).put(data).flip();
+        return result;
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer data, long position) throws IOException {
+        int written = 0;
+        while (data.hasRemaining()) {
+            written += channel.write(data, position + written);
+        }
+        return written;
+    }
+
+    private static class Entry {
+        final int offset;
+        final int length;
+        final int recordSize;
+
+        Entry(int offset, int length, int recordSize) {
+            this.offset = offset;
+            this.length = length;
+            this.recordSize = recordSize;
+        }
+    }
+
+    static class ByteBufferInputStream extends InputStream {
+        private ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+    }
+}
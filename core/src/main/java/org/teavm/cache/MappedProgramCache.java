@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.ProgramCache;
+import org.teavm.model.ReferenceCache;
+
+/**
+ * Program cache that keeps all methods in a single {@link MappedCacheStore} instead of a file per method,
+ * as {@link DiskProgramCache} does. Programs are deserialized lazily, when requested.
+ */
+public class MappedProgramCache implements ProgramCache {
+    private MappedCacheStore store;
+    private ProgramIO programIO;
+    private Map<MethodReference, Item> cache = new HashMap<>();
+    private Set<MethodReference> newMethods = new LinkedHashSet<>();
+
+    public MappedProgramCache(MappedCacheStore store, ReferenceCache referenceCache, SymbolTable symbolTable,
+            SymbolTable fileTable, SymbolTable variableTable) {
+        this.store = store;
+        programIO = new ProgramIO(referenceCache, symbolTable, fileTable, variableTable);
+    }
+
+    @Override
+    public Program get(MethodReference method, CacheStatus cacheStatus) {
+        Item item = cache.get(method);
+        if (item == null) {
+            item = new Item();
+            cache.put(method, item);
+            InputStream stream = store.getStream(method.toString());
+            if (stream != null) {
+                try {
+                    VarDataInput input = new VarDataInput(stream);
+                    if (!CacheDependencies.changed(input, cacheStatus)) {
+                        item.program = programIO.read(input);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // we could not read program, just leave it empty
+                }
+            }
+        }
+        return item.program;
+    }
+
+    @Override
+    public void store(MethodReference method, Program program, Supplier<String[]> dependencies) {
+        Item item = new Item();
+        cache.put(method, item);
+        item.program = program;
+        item.dependencies = dependencies.get().clone();
+        newMethods.add(method);
+    }
+
+    public void flush() throws IOException {
+        for (MethodReference method : newMethods) {
+            Item item = cache.get(method);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (VarDataOutput output = new VarDataOutput(bytes)) {
+                CacheDependencies.write(output, item.dependencies);
+                programIO.write(item.program, output);
+            }
+            store.put(method.toString(), bytes.toByteArray());
+        }
+        newMethods.clear();
+        store.flush();
+    }
+
+    static class Item {
+        Program program;
+        String[] dependencies;
+    }
+}
@@ -54,6 +54,14 @@ public class MemoryCachedClassReaderSource implements ClassReaderSource, CacheSt
         return isStaleClass(method.getClassName());
     }
 
+    /**
+     * Tells whether the class was requested from this source since it was evicted last time.
+     * Requests of missing classes count as well, since class appearing on classpath may change the result.
+     */
+    public boolean isRequested(String className) {
+        return cache.containsKey(className);
+    }
+
     public void populate(String name) {
         getEntry(name);
     }
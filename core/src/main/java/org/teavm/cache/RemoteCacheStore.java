@@ -0,0 +1,32 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Shared storage of cache archives, produced by {@link CacheArchive}. Archives are addressed by keys
+ * computed with {@link CacheKeyBuilder}, so that builds with incompatible settings never share caches.
+ */
+public interface RemoteCacheStore {
+    /**
+     * Returns content of the archive stored under the given key, or {@code null} if there is no such archive.
+     */
+    InputStream fetch(String key) throws IOException;
+
+    void publish(String key, InputStream archive) throws IOException;
+}
@@ -0,0 +1,167 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.debugging.information;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.teavm.backend.javascript.codegen.LocationProvider;
+import org.teavm.vm.RenderingException;
+
+/**
+ * <p>Writes source maps while code is being generated. Unlike {@link DebugInformationBuilder}, which keeps
+ * mappings of the whole program in memory until {@link DebugInformation} is built, this emitter writes each
+ * mapping to output as soon as generated code moves past it, so memory consumption does not depend on
+ * program size. Only source locations are tracked, other information is ignored, so this emitter
+ * should be used when source maps are needed, but TeaVM debug information is not.</p>
+ *
+ * <p>Since list of source files is only known at the end, it is written after mappings, which is allowed
+ * by source maps format. Call {@link #finish()} after code is generated.</p>
+ */
+public class SourceMapsEmitter extends DummyDebugInformationEmitter {
+    private SourceMapsWriter writer;
+    private String generatedFile;
+    private String sourceRoot;
+    private LocationProvider locationProvider;
+    private List<String> fileNames = new ArrayList<>();
+    private Map<String, Integer> fileIndexes = new HashMap<>();
+    private int[] layerFiles = new int[16];
+    private int[] layerLines = new int[16];
+    private int currentLayer;
+    private boolean started;
+    private boolean hasPending;
+    private int pendingLine;
+    private int pendingColumn;
+    private int pendingFile = -1;
+    private int pendingSourceLine = -1;
+    private int lastFile = -1;
+    private int lastSourceLine = -1;
+
+    public SourceMapsEmitter(Writer output, String generatedFile, String sourceRoot) {
+        writer = new SourceMapsWriter(output);
+        this.generatedFile = generatedFile;
+        this.sourceRoot = sourceRoot;
+        layerFiles[0] = -1;
+        layerLines[0] = -1;
+    }
+
+    /**
+     * Adds resolver of source file names. Resolvers are called by {@link #finish()}.
+     */
+    public void addSourceResolver(SourceFileResolver sourceFileResolver) {
+        writer.addSourceResolver(sourceFileResolver);
+    }
+
+    @Override
+    public void setLocationProvider(LocationProvider locationProvider) {
+        this.locationProvider = locationProvider;
+    }
+
+    @Override
+    public void emitLocation(String fileName, int line) {
+        int fileIndex = fileIndex(fileName);
+        if (layerFiles[currentLayer] == fileIndex && layerLines[currentLayer] == line) {
+            return;
+        }
+        layerFiles[currentLayer] = fileIndex;
+        layerLines[currentLayer] = line;
+        locationChanged();
+    }
+
+    @Override
+    public void enterLocation() {
+        if (++currentLayer == layerFiles.length) {
+            layerFiles = Arrays.copyOf(layerFiles, layerFiles.length * 2);
+            layerLines = Arrays.copyOf(layerLines, layerLines.length * 2);
+        }
+        layerFiles[currentLayer] = -1;
+        layerLines[currentLayer] = -1;
+        locationChanged();
+    }
+
+    @Override
+    public void exitLocation() {
+        --currentLayer;
+        locationChanged();
+    }
+
+    private int fileIndex(String fileName) {
+        if (fileName == null) {
+            return -1;
+        }
+        return fileIndexes.computeIfAbsent(fileName, name -> {
+            fileNames.add(name);
+            return fileNames.size() - 1;
+        });
+    }
+
+    /*
+     * Several locations can be emitted at the same generated position, only the last one should be written.
+     * Therefore, each location is kept pending until generated code moves forward.
+     */
+    private void locationChanged() {
+        int line = locationProvider.getLine();
+        int column = locationProvider.getColumn();
+        if (hasPending && (pendingLine != line || pendingColumn != column)) {
+            flushPending();
+        }
+
+        // Like SourceLocationIterator, inlined code that does not have location of its own remains unmapped
+        hasPending = true;
+        pendingLine = line;
+        pendingColumn = column;
+        pendingFile = layerFiles[currentLayer];
+        pendingSourceLine = layerLines[currentLayer];
+    }
+
+    private void flushPending() {
+        hasPending = false;
+        if (pendingFile == lastFile && pendingSourceLine == lastSourceLine) {
+            return;
+        }
+        lastFile = pendingFile;
+        lastSourceLine = pendingSourceLine;
+        try {
+            start();
+            writer.writeSegment(pendingLine, pendingColumn, pendingFile, pendingFile >= 0 ? pendingSourceLine - 1 : -1);
+        } catch (IOException e) {
+            throw new RenderingException(e);
+        }
+    }
+
+    private void start() throws IOException {
+        if (!started) {
+            started = true;
+            writer.writeHeader(generatedFile, sourceRoot);
+            writer.startMappings();
+        }
+    }
+
+    /**
+     * Writes remaining mappings and list of source files. Output is not closed.
+     */
+    public void finish() throws IOException {
+        if (hasPending) {
+            flushPending();
+        }
+        start();
+        writer.endMappings(fileNames);
+    }
+}
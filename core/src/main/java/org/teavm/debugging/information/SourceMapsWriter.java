@@ -18,6 +18,7 @@ package org.teavm.debugging.information;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.teavm.common.JsonUtil;
 
@@ -40,6 +41,18 @@ public class SourceMapsWriter {
     }
 
     public void write(String generatedFile, String sourceRoot, DebugInformation debugInfo) throws IOException {
+        writeHeader(generatedFile, sourceRoot);
+        writeSources(Arrays.asList(debugInfo.fileNames));
+        output.write(",\"names\":[]");
+        startMappings();
+        for (SourceLocationIterator iter = debugInfo.iterateOverSourceLocations(); !iter.isEndReached(); iter.next()) {
+            GeneratedLocation loc = iter.getLocation();
+            writeSegment(loc.getLine(), loc.getColumn(), iter.getFileNameId(), iter.getLine() - 1);
+        }
+        output.write("\"}");
+    }
+
+    void writeHeader(String generatedFile, String sourceRoot) throws IOException {
         output.write("{\"version\":3");
         output.write(",\"file\":\"");
         JsonUtil.writeEscapedString(output, generatedFile);
@@ -47,13 +60,16 @@ public class SourceMapsWriter {
         output.write(",\"sourceRoot\":\"");
         JsonUtil.writeEscapedString(output, sourceRoot);
         output.write("\"");
+    }
+
+    void writeSources(List<String> fileNames) throws IOException {
         output.write(",\"sources\":[");
-        for (int i = 0; i < debugInfo.fileNames.length; ++i) {
+        for (int i = 0; i < fileNames.size(); ++i) {
             if (i > 0) {
                 output.write(',');
             }
             output.write("\"");
-            var name = debugInfo.fileNames[i];
+            var name = fileNames.get(i);
             for (var resolver : sourceFileResolvers) {
                 var resolvedName = resolver.resolveFile(name);
                 if (resolvedName != null) {
@@ -65,22 +81,25 @@ public class SourceMapsWriter {
             output.write("\"");
         }
         output.write("]");
-        output.write(",\"names\":[]");
+    }
+
+    void startMappings() throws IOException {
         output.write(",\"mappings\":\"");
         first = true;
         lastLine = 0;
         lastColumn = 0;
         lastSourceFile = 0;
         lastSourceLine = 0;
-        for (SourceLocationIterator iter = debugInfo.iterateOverSourceLocations(); !iter.isEndReached(); iter.next()) {
-            writeSegment(iter.getLocation(), iter.getFileNameId(), iter.getLine() - 1);
-        }
-        output.write("\"}");
     }
 
-    private void writeSegment(GeneratedLocation loc, int sourceFile, int sourceLine)
-            throws IOException {
-        while (loc.getLine() > lastLine) {
+    void endMappings(List<String> fileNames) throws IOException {
+        output.write("\"");
+        writeSources(fileNames);
+        output.write(",\"names\":[]}");
+    }
+
+    void writeSegment(int line, int column, int sourceFile, int sourceLine) throws IOException {
+        while (line > lastLine) {
             output.write(';');
             ++lastLine;
             first = true;
@@ -89,7 +108,7 @@ public class SourceMapsWriter {
         if (!first) {
             output.write(',');
         }
-        writeVLQ(loc.getColumn() - lastColumn);
+        writeVLQ(column - lastColumn);
         if (sourceFile >= 0 && sourceLine >= 0) {
             writeVLQ(sourceFile - lastSourceFile);
             writeVLQ(sourceLine - lastSourceLine);
@@ -97,7 +116,7 @@ public class SourceMapsWriter {
             lastSourceFile = sourceFile;
             lastSourceLine = sourceLine;
         }
-        lastColumn = loc.getColumn();
+        lastColumn = column;
         first = false;
     }
 
@@ -52,6 +52,7 @@ import org.teavm.model.instructions.CloneArrayInstruction;
 import org.teavm.model.instructions.ExitInstruction;
 import org.teavm.model.instructions.GetElementInstruction;
 import org.teavm.model.instructions.GetFieldInstruction;
+import org.teavm.model.instructions.InvocationType;
 import org.teavm.model.instructions.InvokeInstruction;
 import org.teavm.model.instructions.IsInstanceInstruction;
 import org.teavm.model.instructions.MonitorEnterInstruction;
@@ -74,9 +75,21 @@ public class EscapeAnalysis {
     private Map<FieldReference, ValueType> fieldTypes;
 
     public void analyze(Program program, MethodReference methodReference) {
+        analyze(program, methodReference, null, true);
+    }
+
+    /*
+     * When summaries are given, arguments passed to directly invoked methods are considered escaping only
+     * if corresponding parameters of these methods escape.
+     */
+    void analyze(Program program, MethodReference methodReference, InterproceduralEscapeAnalysis summaries,
+            boolean parametersEscape) {
         InstructionEscapeVisitor visitor = new InstructionEscapeVisitor(program.variableCount());
-        for (int i = 0; i <= methodReference.parameterCount(); ++i) {
-            visitor.escapingVars[i] = true;
+        visitor.summaries = summaries;
+        if (parametersEscape) {
+            for (int i = 0; i <= methodReference.parameterCount(); ++i) {
+                visitor.escapingVars[i] = true;
+            }
         }
 
         for (BasicBlock block : program.getBasicBlocks()) {
@@ -106,6 +119,10 @@ public class EscapeAnalysis {
         return escapingVars[definitionClasses[var]];
     }
 
+    int getDefinitionClass(int var) {
+        return definitionClasses[var];
+    }
+
     public ValueType getFieldType(FieldReference field) {
         return fieldTypes.get(field);
     }
@@ -282,6 +299,7 @@ public class EscapeAnalysis {
         boolean[] escapingVars;
         List<Set<FieldReference>> fields;
         Map<FieldReference, ValueType> fieldTypes = new HashMap<>();
+        InterproceduralEscapeAnalysis summaries;
 
         InstructionEscapeVisitor(int variableCount) {
             fields = new ArrayList<>(Collections.nCopies(variableCount, null));
@@ -378,17 +396,26 @@ public class EscapeAnalysis {
 
         @Override
         public void visit(InvokeInstruction insn) {
-            if (insn.getInstance() != null) {
+            MethodReference method = summaries != null && insn.getType() != InvocationType.VIRTUAL
+                    ? insn.getMethod()
+                    : null;
+            if (insn.getInstance() != null && parameterEscapes(method, 0)) {
                 escapingVars[insn.getInstance().getIndex()] = true;
             }
-            for (Variable arg : insn.getArguments()) {
-                escapingVars[arg.getIndex()] = true;
+            for (int i = 0; i < insn.getArguments().size(); ++i) {
+                if (parameterEscapes(method, i + 1)) {
+                    escapingVars[insn.getArguments().get(i).getIndex()] = true;
+                }
             }
             if (insn.getReceiver() != null) {
                 escapingVars[insn.getReceiver().getIndex()] = true;
             }
         }
 
+        private boolean parameterEscapes(MethodReference method, int index) {
+            return method == null || summaries.parameterEscapes(method, index);
+        }
+
         @Override
         public void visit(IsInstanceInstruction insn) {
             escapingVars[insn.getValue().getIndex()] = true;
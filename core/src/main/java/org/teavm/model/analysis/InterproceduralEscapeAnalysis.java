@@ -0,0 +1,167 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.analysis;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Instruction;
+import org.teavm.model.ListableClassHolderSource;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.ConstructInstruction;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+
+/**
+ * <p>Computes for each parameter of each method whether an object passed to this parameter may escape,
+ * i.e. get stored to heap, returned, thrown or passed to code that is not known precisely. Analysis is
+ * performed over the call graph formed by direct invocations; virtual invocations are considered
+ * to let their arguments escape.</p>
+ *
+ * <p>Summaries are used to find call sites that prevent {@link EscapeAnalysis} from proving that an object
+ * allocated by the caller does not escape. Inlining such call sites allows to replace the object with
+ * its fields.</p>
+ */
+public class InterproceduralEscapeAnalysis {
+    private final Map<MethodReference, boolean[]> summaries = new HashMap<>();
+
+    public void analyze(ListableClassHolderSource classes) {
+        Map<MethodReference, Program> programs = new LinkedHashMap<>();
+        for (String className : classes.getClassNames()) {
+            for (MethodHolder method : classes.get(className).getMethods()) {
+                if (method.getProgram() != null && method.getProgram().basicBlockCount() > 0) {
+                    programs.put(method.getReference(), method.getProgram());
+                    summaries.put(method.getReference(), new boolean[method.parameterCount() + 1]);
+                }
+            }
+        }
+
+        Map<MethodReference, Set<MethodReference>> callers = new HashMap<>();
+        for (Map.Entry<MethodReference, Program> entry : programs.entrySet()) {
+            for (BasicBlock block : entry.getValue().getBasicBlocks()) {
+                for (Instruction instruction : block) {
+                    if (instruction instanceof InvokeInstruction) {
+                        InvokeInstruction invoke = (InvokeInstruction) instruction;
+                        if (invoke.getType() != InvocationType.VIRTUAL) {
+                            callers.computeIfAbsent(invoke.getMethod(), k -> new HashSet<>()).add(entry.getKey());
+                        }
+                    }
+                }
+            }
+        }
+
+        // Summaries start with no escaping parameters and only grow, so iteration reaches a fixed point
+        // even for recursive methods
+        Queue<MethodReference> queue = new ArrayDeque<>(programs.keySet());
+        Set<MethodReference> queued = new HashSet<>(programs.keySet());
+        while (!queue.isEmpty()) {
+            MethodReference method = queue.remove();
+            queued.remove(method);
+            if (update(method, programs.get(method))) {
+                for (MethodReference caller : callers.getOrDefault(method, Collections.emptySet())) {
+                    if (queued.add(caller)) {
+                        queue.add(caller);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean update(MethodReference method, Program program) {
+        EscapeAnalysis escapeAnalysis = new EscapeAnalysis();
+        escapeAnalysis.analyze(program, method, this, false);
+        boolean[] summary = summaries.get(method);
+        boolean changed = false;
+        for (int i = 0; i < summary.length; ++i) {
+            if (!summary[i] && escapeAnalysis.escapes(i)) {
+                summary[i] = true;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Tells whether object passed to the given parameter may escape. Index 0 corresponds to {@code this},
+     * parameters are numbered starting with 1.
+     */
+    public boolean parameterEscapes(MethodReference method, int index) {
+        boolean[] summary = summaries.get(method);
+        return summary == null || index >= summary.length || summary[index];
+    }
+
+    /**
+     * Finds direct call sites which get objects allocated in the given program and not escaping otherwise.
+     * After all such call sites get inlined, the object can be replaced with its fields.
+     */
+    public Set<InvokeInstruction> findScalarReplacementCandidates(Program program, MethodReference method) {
+        EscapeAnalysis escapeAnalysis = new EscapeAnalysis();
+        escapeAnalysis.analyze(program, method, this, true);
+
+        Set<Integer> allocations = new HashSet<>();
+        for (BasicBlock block : program.getBasicBlocks()) {
+            for (Instruction instruction : block) {
+                if (instruction instanceof ConstructInstruction) {
+                    int receiver = ((ConstructInstruction) instruction).getReceiver().getIndex();
+                    if (!escapeAnalysis.escapes(receiver)) {
+                        allocations.add(escapeAnalysis.getDefinitionClass(receiver));
+                    }
+                }
+            }
+        }
+        if (allocations.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<InvokeInstruction> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (BasicBlock block : program.getBasicBlocks()) {
+            for (Instruction instruction : block) {
+                if (!(instruction instanceof InvokeInstruction)) {
+                    continue;
+                }
+                InvokeInstruction invoke = (InvokeInstruction) instruction;
+                if (invoke.getType() == InvocationType.VIRTUAL) {
+                    continue;
+                }
+                if (isAllocation(escapeAnalysis, allocations, invoke.getInstance())) {
+                    result.add(invoke);
+                    continue;
+                }
+                for (Variable argument : invoke.getArguments()) {
+                    if (isAllocation(escapeAnalysis, allocations, argument)) {
+                        result.add(invoke);
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isAllocation(EscapeAnalysis escapeAnalysis, Set<Integer> allocations, Variable var) {
+        return var != null && allocations.contains(escapeAnalysis.getDefinitionClass(var.getIndex()));
+    }
+}
@@ -27,14 +27,19 @@ import org.teavm.model.instructions.BinaryBranchingCondition;
 import org.teavm.model.instructions.BranchingCondition;
 import org.teavm.model.instructions.InvocationType;
 import org.teavm.model.instructions.SwitchTableEntryReader;
+import org.teavm.model.profile.ExecutionProfile;
+import org.teavm.model.profile.MethodProfile;
 
 public class DefaultInliningStrategy implements InliningStrategy {
+    private static final int BOOSTED_COMPLEXITY_FACTOR = 3;
+    private static final int BOOSTED_TOTAL_COMPLEXITY_FACTOR = 2;
     private final int complexityThreshold;
     private final int depthThreshold;
     private final int totalComplexityThreshold;
     private final boolean onceUsedOnly;
     private int getComplexityDepth;
     private Map<MethodReference, Complexity> complexityCache = new HashMap<>();
+    private ExecutionProfile profile;
 
     public DefaultInliningStrategy(int complexityThreshold, int depthThreshold, int totalComplexityThreshold,
             boolean onceUsedOnly) {
@@ -44,8 +49,24 @@ public class DefaultInliningStrategy implements InliningStrategy {
         this.onceUsedOnly = onceUsedOnly;
     }
 
+    /**
+     * Sets execution profile. Methods that were never executed are left as is, call sites that were never
+     * reached are not inlined, and frequently executed methods get larger inlining budget.
+     */
+    public void setProfile(ExecutionProfile profile) {
+        this.profile = profile;
+    }
+
     @Override
     public InliningStep start(MethodReference method, ProgramReader program) {
+        MethodProfile methodProfile = null;
+        if (profile != null) {
+            if (profile.isCold(method)) {
+                return null;
+            }
+            methodProfile = profile.getMethodProfile(method);
+        }
+
         Complexity complexity = getComplexity(program, null);
         if (complexity.score > totalComplexityThreshold) {
             return null;
@@ -53,6 +74,7 @@ public class DefaultInliningStrategy implements InliningStrategy {
 
         ComplexityHolder complexityHolder = new ComplexityHolder();
         complexityHolder.complexity = complexity.score;
+        complexityHolder.methodProfile = methodProfile;
         return new InliningStepImpl(complexityHolder);
     }
 
@@ -98,15 +120,27 @@ public class DefaultInliningStrategy implements InliningStrategy {
                 return null;
             }
 
+            var methodProfile = complexityHolder.methodProfile;
+            if (methodProfile != null && context.getCallSite() != null && methodProfile.isCold(context.getCallSite())) {
+                return null;
+            }
+            // Frequently executed methods and methods that prevent scalar replacement of objects
+            // are worth inlining even if they are larger
+            boolean boosted = profile != null && profile.isHot(method) || context.isScalarReplacementCandidate();
+
             Complexity complexity = getComplexity(method, context);
-            if (onceUsedOnly && !context.isUsedOnce(method)) {
+            if (onceUsedOnly && !boosted && !context.isUsedOnce(method)) {
                 if (complexity.callsToUsedOnceMethods || complexity.score > 1) {
                     return null;
                 }
             }
 
-            if (complexity.score > complexityThreshold
-                    || complexityHolder.complexity + complexity.score > totalComplexityThreshold) {
+            int maxComplexity = boosted ? complexityThreshold * BOOSTED_COMPLEXITY_FACTOR : complexityThreshold;
+            int maxTotalComplexity = boosted
+                    ? totalComplexityThreshold * BOOSTED_TOTAL_COMPLEXITY_FACTOR
+                    : totalComplexityThreshold;
+            if (complexity.score > maxComplexity
+                    || complexityHolder.complexity + complexity.score > maxTotalComplexity) {
                 return null;
             }
 
@@ -117,6 +151,7 @@ public class DefaultInliningStrategy implements InliningStrategy {
 
     static class ComplexityHolder {
         int complexity;
+        MethodProfile methodProfile;
     }
 
     class ComplexityCounter extends AbstractInstructionReader {
@@ -15,10 +15,18 @@
  */
 package org.teavm.model.optimization;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 import org.teavm.common.OptionalPredicate;
 import org.teavm.dependency.DependencyInfo;
 import org.teavm.dependency.MethodDependencyInfo;
@@ -26,18 +34,33 @@ import org.teavm.dependency.ValueDependencyInfo;
 import org.teavm.model.BasicBlock;
 import org.teavm.model.ClassHierarchy;
 import org.teavm.model.ClassReader;
+import org.teavm.model.ElementModifier;
+import org.teavm.model.Incoming;
 import org.teavm.model.Instruction;
 import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReader;
 import org.teavm.model.MethodReference;
+import org.teavm.model.Phi;
 import org.teavm.model.Program;
+import org.teavm.model.ProgramReader;
 import org.teavm.model.ValueType;
+import org.teavm.model.Variable;
 import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.BranchingCondition;
+import org.teavm.model.instructions.BranchingInstruction;
 import org.teavm.model.instructions.CastInstruction;
 import org.teavm.model.instructions.InvocationType;
 import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.IsInstanceInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.profile.ExecutionProfile;
+import org.teavm.model.profile.MethodProfile;
+import org.teavm.model.util.TransitionExtractor;
 
 public class Devirtualization {
     static final boolean shouldLog = System.getProperty("org.teavm.logDevirtualization", "false").equals("true");
+    private static final int MIN_GUARD_SAMPLES = 100;
+    private static final int MIN_GUARD_PERCENT = 90;
     private DependencyInfo dependency;
     private ClassHierarchy hierarchy;
     private Set<MethodReference> virtualMethods = new HashSet<>();
@@ -46,12 +69,43 @@ public class Devirtualization {
     private int directCallSites;
     private int remainingCasts;
     private int eliminatedCasts;
+    private int guardedCallSites;
+    private ExecutionProfile profile;
+    private MethodProfile methodProfile;
+    private List<Guard> guards = new ArrayList<>();
+    private int maxGuardedImplementations = 3;
+    private int guardSizeLimit = 40;
 
     public Devirtualization(DependencyInfo dependency, ClassHierarchy hierarchy) {
         this.dependency = dependency;
         this.hierarchy = hierarchy;
     }
 
+    /**
+     * Sets execution profile used to devirtualize call sites that can reach several implementations
+     * but were dominated by a single receiver class during profiling. Such call sites are guarded
+     * by a type check, falling back to a virtual call when the check fails.
+     */
+    public void setProfile(ExecutionProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Sets maximum number of implementations that a call site can reach to be replaced by a chain of type
+     * checks followed by direct calls. Values less than 2 disable this transformation.
+     */
+    public void setMaxGuardedImplementations(int maxGuardedImplementations) {
+        this.maxGuardedImplementations = maxGuardedImplementations;
+    }
+
+    /**
+     * Sets maximum total number of instructions in implementations reachable from a call site to replace it
+     * by a chain of type checks. Since direct calls are likely to get inlined, this limits code growth.
+     */
+    public void setGuardSizeLimit(int guardSizeLimit) {
+        this.guardSizeLimit = guardSizeLimit;
+    }
+
     public int getVirtualCallSites() {
         return virtualCallSites;
     }
@@ -68,6 +122,10 @@ public class Devirtualization {
         return eliminatedCasts;
     }
 
+    public int getGuardedCallSites() {
+        return guardedCallSites;
+    }
+
     public void apply(MethodHolder method) {
         MethodDependencyInfo methodDep = dependency.getMethod(method.getReference());
         if (methodDep == null) {
@@ -78,6 +136,7 @@ public class Devirtualization {
         if (shouldLog) {
             System.out.println("DEVIRTUALIZATION running at " + method.getReference());
         }
+        methodProfile = profile != null ? profile.getMethodProfile(method.getReference()) : null;
 
         for (int i = 0; i < program.basicBlockCount(); ++i) {
             BasicBlock block = program.basicBlockAt(i);
@@ -90,6 +149,12 @@ public class Devirtualization {
             }
         }
 
+        for (Guard guard : guards) {
+            insertGuard(program, guard);
+        }
+        guards.clear();
+        methodProfile = null;
+
         if (shouldLog) {
             System.out.println("DEVIRTUALIZATION complete for " + method.getReference());
         }
@@ -117,6 +182,30 @@ public class Devirtualization {
             invoke.setMethod(resolvedImplementaiton);
             directCallSites++;
         } else {
+            Guard guard = null;
+            if (invoke.getBasicBlock().getTryCatchBlocks().isEmpty()) {
+                guard = findStaticGuard(var.getTypes(), invoke, implementations);
+                if (guard == null && methodProfile != null) {
+                    guard = findProfileGuard(var.getTypes(), invoke);
+                }
+            }
+            if (guard != null) {
+                guards.add(guard);
+                guardedCallSites++;
+                if (guard.fallback != null) {
+                    if (shouldLog) {
+                        System.out.print("GUARDED CALL " + invoke.getMethod() + " resolved to "
+                                + implementations.size() + " implementations");
+                        if (invoke.getLocation() != null) {
+                            System.out.print(" at " + invoke.getLocation().getFileName() + ":"
+                                    + invoke.getLocation().getLine());
+                        }
+                        System.out.println();
+                    }
+                    return;
+                }
+            }
+
             virtualMethods.addAll(implementations);
             if (shouldLog) {
                 System.out.print("VIRTUAL CALL " + invoke.getMethod() + " resolved to [");
@@ -139,6 +228,248 @@ public class Devirtualization {
         }
     }
 
+    /*
+     * Call site that can reach a few implementations is replaced by a chain of type checks, each leading
+     * to a direct call of an implementation, so that the inliner can process these calls. Since the set
+     * of receiver types is complete, the last implementation needs no check.
+     */
+    private Guard findStaticGuard(String[] types, InvokeInstruction invoke, Set<MethodReference> implementations) {
+        if (implementations.size() > maxGuardedImplementations) {
+            return null;
+        }
+        Map<MethodReference, List<String>> typesByImplementation = new LinkedHashMap<>();
+        for (String type : types) {
+            Set<MethodReference> typeImplementations = getImplementations(new String[] { type }, invoke.getMethod());
+            if (typeImplementations.size() == 1) {
+                typesByImplementation.computeIfAbsent(typeImplementations.iterator().next(),
+                        k -> new ArrayList<>()).add(type);
+            }
+        }
+        if (!typesByImplementation.keySet().equals(implementations)) {
+            return null;
+        }
+
+        int size = 0;
+        for (MethodReference implementation : implementations) {
+            size += getProgramSize(implementation);
+        }
+        if (size > guardSizeLimit) {
+            return null;
+        }
+
+        List<MethodReference> order = new ArrayList<>(implementations);
+        if (methodProfile != null) {
+            Map<String, Long> receivers = methodProfile.getReceivers(invoke);
+            Map<MethodReference, Long> frequencies = new HashMap<>();
+            for (MethodReference implementation : order) {
+                long frequency = 0;
+                for (String type : typesByImplementation.get(implementation)) {
+                    frequency += receivers.getOrDefault(type, 0L);
+                }
+                frequencies.put(implementation, frequency);
+            }
+            order.sort(Comparator.comparing(frequencies::get).reversed());
+        }
+
+        List<String> classNames = new ArrayList<>();
+        List<MethodReference> guardedImplementations = new ArrayList<>();
+        MethodReference fallback = null;
+        for (MethodReference implementation : order) {
+            String guardClass = findGuardClass(types, typesByImplementation.get(implementation), implementation);
+            if (guardClass == null) {
+                if (fallback != null) {
+                    return null;
+                }
+                fallback = implementation;
+            } else {
+                classNames.add(guardClass);
+                guardedImplementations.add(implementation);
+            }
+        }
+        if (fallback == null) {
+            fallback = guardedImplementations.remove(guardedImplementations.size() - 1);
+            classNames.remove(classNames.size() - 1);
+        }
+        return new Guard(invoke, classNames, guardedImplementations, fallback);
+    }
+
+    /*
+     * Type check passes for subclasses of the checked class as well, so checked class is only suitable
+     * when all of its subclasses that reach the call site share the same implementation.
+     */
+    private String findGuardClass(String[] types, List<String> implementationTypes, MethodReference implementation) {
+        List<String> candidates = new ArrayList<>();
+        candidates.add(implementation.getClassName());
+        if (implementationTypes.size() == 1) {
+            candidates.add(implementationTypes.get(0));
+        }
+        for (String candidate : candidates) {
+            if (isGuardClass(candidate, types, implementationTypes)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private boolean isGuardClass(String className, String[] types, List<String> implementationTypes) {
+        if (className.startsWith("[")) {
+            return false;
+        }
+        ClassReader cls = hierarchy.getClassSource().get(className);
+        if (cls == null || cls.hasModifier(ElementModifier.INTERFACE)) {
+            return false;
+        }
+        for (String type : implementationTypes) {
+            if (type.startsWith("[") || !hierarchy.isSuperType(className, type, false)) {
+                return false;
+            }
+        }
+        for (String type : types) {
+            if (!type.startsWith("[") && hierarchy.isSuperType(className, type, false)
+                    && !implementationTypes.contains(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int getProgramSize(MethodReference method) {
+        MethodReader reader = hierarchy.getClassSource().resolve(method);
+        ProgramReader program = reader != null ? reader.getProgram() : null;
+        if (program == null) {
+            return 1;
+        }
+        int size = 0;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            size += program.basicBlockAt(i).instructionCount();
+        }
+        return size;
+    }
+
+    private Guard findProfileGuard(String[] types, InvokeInstruction invoke) {
+        Map<String, Long> receivers = methodProfile.getReceivers(invoke);
+        long total = 0;
+        String dominant = null;
+        long dominantCount = 0;
+        for (Map.Entry<String, Long> entry : receivers.entrySet()) {
+            total += entry.getValue();
+            if (entry.getValue() > dominantCount) {
+                dominant = entry.getKey();
+                dominantCount = entry.getValue();
+            }
+        }
+        if (total < MIN_GUARD_SAMPLES || dominantCount * 100 < total * MIN_GUARD_PERCENT) {
+            return null;
+        }
+        if (!Arrays.asList(types).contains(dominant)) {
+            return null;
+        }
+        ClassReader cls = hierarchy.getClassSource().get(dominant);
+        if (cls == null || cls.hasModifier(ElementModifier.INTERFACE)) {
+            return null;
+        }
+
+        String guardClass = dominant;
+        String[] coveredTypes = Arrays.stream(types)
+                .filter(type -> !type.startsWith("[") && hierarchy.isSuperType(guardClass, type, false))
+                .toArray(String[]::new);
+        Set<MethodReference> implementations = getImplementations(coveredTypes, invoke.getMethod());
+        if (implementations.size() != 1) {
+            return null;
+        }
+        MethodReference implementation = implementations.iterator().next();
+        if (shouldLog) {
+            System.out.println("PROFILE GUARDED CALL " + invoke.getMethod() + " resolved to "
+                    + implementation.getClassName() + " for " + dominantCount + " of " + total + " receivers");
+        }
+        return new Guard(invoke, List.of(guardClass), List.of(implementation), null);
+    }
+
+    private void insertGuard(Program program, Guard guard) {
+        InvokeInstruction invoke = guard.invoke;
+        BasicBlock block = invoke.getBasicBlock();
+        BasicBlock joinBlock = program.createBasicBlock();
+
+        while (invoke.getNext() != null) {
+            Instruction insn = invoke.getNext();
+            insn.delete();
+            joinBlock.add(insn);
+        }
+        TransitionExtractor transitionExtractor = new TransitionExtractor();
+        joinBlock.getLastInstruction().acceptVisitor(transitionExtractor);
+        if (transitionExtractor.getTargets() != null) {
+            List<Incoming> incomings = Arrays.stream(transitionExtractor.getTargets())
+                    .flatMap(bb -> bb.getPhis().stream())
+                    .flatMap(phi -> phi.getIncomings().stream())
+                    .filter(incoming -> incoming.getSource() == block)
+                    .collect(Collectors.toList());
+            for (Incoming incoming : incomings) {
+                incoming.setSource(joinBlock);
+            }
+        }
+        invoke.delete();
+
+        Phi phi = null;
+        if (invoke.getReceiver() != null) {
+            phi = new Phi();
+            phi.setReceiver(invoke.getReceiver());
+            joinBlock.getPhis().add(phi);
+        }
+
+        BasicBlock current = block;
+        for (int i = 0; i < guard.classNames.size(); ++i) {
+            Variable condition = program.createVariable();
+            IsInstanceInstruction isInstance = new IsInstanceInstruction();
+            isInstance.setValue(invoke.getInstance());
+            isInstance.setType(ValueType.object(guard.classNames.get(i)));
+            isInstance.setReceiver(condition);
+            isInstance.setLocation(invoke.getLocation());
+            current.add(isInstance);
+
+            BasicBlock directBlock = program.createBasicBlock();
+            BasicBlock next = program.createBasicBlock();
+            BranchingInstruction branch = new BranchingInstruction(BranchingCondition.NOT_EQUAL);
+            branch.setOperand(condition);
+            branch.setConsequent(directBlock);
+            branch.setAlternative(next);
+            branch.setLocation(invoke.getLocation());
+            current.add(branch);
+
+            InvokeInstruction directInvoke = new InvokeInstruction();
+            directInvoke.setType(InvocationType.SPECIAL);
+            directInvoke.setMethod(guard.implementations.get(i));
+            directInvoke.setInstance(invoke.getInstance());
+            directInvoke.setArguments(invoke.getArguments().toArray(new Variable[0]));
+            directInvoke.setLocation(invoke.getLocation());
+            directBlock.add(directInvoke);
+            addJump(directBlock, joinBlock, directInvoke, phi, program);
+
+            current = next;
+        }
+
+        if (guard.fallback != null) {
+            invoke.setType(InvocationType.SPECIAL);
+            invoke.setMethod(guard.fallback);
+        }
+        current.add(invoke);
+        addJump(current, joinBlock, invoke, phi, program);
+    }
+
+    private void addJump(BasicBlock source, BasicBlock target, InvokeInstruction invoke, Phi phi,
+            Program program) {
+        if (phi != null) {
+            invoke.setReceiver(program.createVariable());
+            Incoming incoming = new Incoming();
+            incoming.setSource(source);
+            incoming.setValue(invoke.getReceiver());
+            phi.getIncomings().add(incoming);
+        }
+        JumpInstruction jump = new JumpInstruction();
+        jump.setTarget(target);
+        jump.setLocation(invoke.getLocation());
+        source.add(jump);
+    }
+
     private void applyToCast(MethodDependencyInfo methodDep, CastInstruction cast) {
         ValueDependencyInfo var = methodDep.getVariable(cast.getValue().getIndex());
         if (var == null) {
@@ -224,4 +555,19 @@ public class Devirtualization {
     public Set<? extends MethodReference> getVirtualMethods() {
         return readonlyVirtualMethods;
     }
+
+    static class Guard {
+        final InvokeInstruction invoke;
+        final List<String> classNames;
+        final List<MethodReference> implementations;
+        final MethodReference fallback;
+
+        Guard(InvokeInstruction invoke, List<String> classNames, List<MethodReference> implementations,
+                MethodReference fallback) {
+            this.invoke = invoke;
+            this.classNames = classNames;
+            this.implementations = implementations;
+            this.fallback = fallback;
+        }
+    }
 }
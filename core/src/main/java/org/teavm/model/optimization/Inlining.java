@@ -49,6 +49,7 @@ import org.teavm.model.TextLocation;
 import org.teavm.model.TryCatchBlock;
 import org.teavm.model.VariableReader;
 import org.teavm.model.analysis.ClassInference;
+import org.teavm.model.analysis.InterproceduralEscapeAnalysis;
 import org.teavm.model.instructions.AbstractInstructionReader;
 import org.teavm.model.instructions.AssignInstruction;
 import org.teavm.model.instructions.ExitInstruction;
@@ -73,6 +74,8 @@ public class Inlining {
     private boolean devirtualization;
     private ClassInference classInference;
     private InliningFilterFactory filterFactory;
+    private InterproceduralEscapeAnalysis escapeAnalysis;
+    private Set<InvokeInstruction> scalarReplacementCandidates = Collections.emptySet();
 
     public Inlining(ClassHierarchy hierarchy, DependencyInfo dependencyInfo, InliningStrategy strategy,
             ListableClassReaderSource classes, Predicate<MethodReference> externalMethods,
@@ -157,6 +160,14 @@ public class Inlining {
         }
     }
 
+    /**
+     * Sets escape summaries used to find call sites that prevent objects from being replaced with their fields.
+     * Strategy is informed about such call sites via {@link InliningContext#isScalarReplacementCandidate()}.
+     */
+    public void setEscapeAnalysis(InterproceduralEscapeAnalysis escapeAnalysis) {
+        this.escapeAnalysis = escapeAnalysis;
+    }
+
     public void apply(Program program, MethodReference method) {
         depthsByBlock = new IntArrayList(program.basicBlockCount());
         for (int i = 0; i < program.basicBlockCount(); ++i) {
@@ -173,6 +184,7 @@ public class Inlining {
         }
         depthsByBlock = null;
         instructionsToSkip = null;
+        scalarReplacementCandidates = Collections.emptySet();
 
         new UnreachableBasicBlockEliminator().optimize(program);
         strategy.methodChanged(method);
@@ -183,6 +195,9 @@ public class Inlining {
         if (step == null) {
             return false;
         }
+        scalarReplacementCandidates = escapeAnalysis != null
+                ? escapeAnalysis.findScalarReplacementCandidates(program, method)
+                : Collections.emptySet();
         List<PlanEntry> plan = buildPlan(program, -1, step, method, null);
         if (plan.isEmpty()) {
             return false;
@@ -385,6 +400,7 @@ public class Inlining {
                 }
 
                 context.depth = depth;
+                context.callSite = invoke;
                 InliningStep innerStep = step.tryInline(invokedMethod.getReference(), invokedMethod.getProgram(),
                         context);
                 if (innerStep == null) {
@@ -495,6 +511,7 @@ public class Inlining {
 
     class ContextImpl implements InliningContext {
         int depth;
+        InvokeInstruction callSite;
 
         @Override
         public boolean isUsedOnce(MethodReference method) {
@@ -515,5 +532,15 @@ public class Inlining {
         public int getDepth() {
             return depth;
         }
+
+        @Override
+        public InvokeInstruction getCallSite() {
+            return callSite;
+        }
+
+        @Override
+        public boolean isScalarReplacementCandidate() {
+            return scalarReplacementCandidates.contains(callSite);
+        }
     }
 }
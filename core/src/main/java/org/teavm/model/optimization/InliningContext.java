@@ -17,6 +17,7 @@ package org.teavm.model.optimization;
 
 import org.teavm.model.MethodReference;
 import org.teavm.model.ProgramReader;
+import org.teavm.model.instructions.InvokeInstruction;
 
 public interface InliningContext {
     boolean isUsedOnce(MethodReference method);
@@ -24,4 +25,19 @@ public interface InliningContext {
     ProgramReader getProgram(MethodReference method);
 
     int getDepth();
+
+    /**
+     * Returns instruction that is being inlined, or {@code null} if it is unknown.
+     */
+    default InvokeInstruction getCallSite() {
+        return null;
+    }
+
+    /**
+     * Tells whether inlining of the call site may allow scalar replacement of an object allocated
+     * by the caller.
+     */
+    default boolean isScalarReplacementCandidate() {
+        return false;
+    }
 }
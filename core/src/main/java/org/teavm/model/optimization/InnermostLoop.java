@@ -0,0 +1,395 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.IntIntMap;
+import com.carrotsearch.hppc.IntSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.teavm.common.DominatorTree;
+import org.teavm.common.Graph;
+import org.teavm.common.GraphUtils;
+import org.teavm.common.Loop;
+import org.teavm.common.LoopGraph;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.BinaryInstruction;
+import org.teavm.model.instructions.BinaryOperation;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.NumericOperandType;
+import org.teavm.model.util.BasicBlockMapper;
+import org.teavm.model.util.DefinitionExtractor;
+import org.teavm.model.util.ProgramUtils;
+
+/**
+ * <p>Describes a loop that contains no other loops, with information shared by loop transformations
+ * (unrolling, versioning, strength reduction).</p>
+ *
+ * <p>Only single-entry loops are described, i.e. loops which can only be entered through their head,
+ * and the head dominates all other nodes of the loop. Instances reflect program at the moment
+ * of {@link #find(Program)} call and should be discarded after program is modified.</p>
+ */
+class InnermostLoop {
+    final Program program;
+    final int head;
+    final int[] nodes;
+    final int[] latches;
+    final int[] exits;
+
+    /**
+     * The only predecessor of head that does not belong to loop, or {@code -1} if there are several of them.
+     */
+    final int preheader;
+    private final IntSet nodeSet;
+    private final BasicBlock[] definitionPlaces;
+    private final Instruction[] definitions;
+
+    private InnermostLoop(Program program, int head, int[] nodes, int[] latches, int[] exits, int preheader,
+            BasicBlock[] definitionPlaces, Instruction[] definitions) {
+        this.program = program;
+        this.head = head;
+        this.nodes = nodes;
+        this.latches = latches;
+        this.exits = exits;
+        this.preheader = preheader;
+        this.definitionPlaces = definitionPlaces;
+        this.definitions = definitions;
+        nodeSet = IntHashSet.from(nodes);
+    }
+
+    static List<InnermostLoop> find(Program program) {
+        Graph cfg = ProgramUtils.buildControlFlowGraph(program);
+        DominatorTree dom = GraphUtils.buildDominatorTree(cfg);
+        LoopGraph loopGraph = new LoopGraph(cfg);
+
+        Map<Loop, IntArrayList> nodesByLoop = new LinkedHashMap<>();
+        IntSet outerLoopHeads = new IntHashSet();
+        for (int node = 0; node < cfg.size(); ++node) {
+            Loop loop = loopGraph.loopAt(node);
+            if (loop == null) {
+                continue;
+            }
+            nodesByLoop.computeIfAbsent(loop, k -> new IntArrayList()).add(node);
+            if (loop.getParent() != null) {
+                outerLoopHeads.add(loop.getParent().getHead());
+            }
+        }
+
+        BasicBlock[] definitionPlaces = null;
+        Instruction[] definitions = null;
+        List<InnermostLoop> result = new ArrayList<>();
+        for (Map.Entry<Loop, IntArrayList> entry : nodesByLoop.entrySet()) {
+            int head = entry.getKey().getHead();
+            if (outerLoopHeads.contains(head)) {
+                continue;
+            }
+            int[] nodes = entry.getValue().toArray();
+            Arrays.sort(nodes);
+            IntSet nodeSet = IntHashSet.from(nodes);
+
+            boolean singleEntry = program.basicBlockAt(head).getExceptionVariable() == null;
+            IntArrayList latches = new IntArrayList();
+            IntSet outsidePredecessors = new IntHashSet();
+            IntSet exits = new IntHashSet();
+            for (int node : nodes) {
+                if (!dom.dominates(head, node)) {
+                    singleEntry = false;
+                }
+                for (int predecessor : cfg.incomingEdges(node)) {
+                    if (nodeSet.contains(predecessor)) {
+                        if (node == head && !latches.contains(predecessor)) {
+                            latches.add(predecessor);
+                        }
+                    } else if (node != head) {
+                        singleEntry = false;
+                    } else {
+                        outsidePredecessors.add(predecessor);
+                    }
+                }
+                for (int successor : cfg.outgoingEdges(node)) {
+                    if (!nodeSet.contains(successor)) {
+                        exits.add(successor);
+                    }
+                }
+            }
+            if (!singleEntry || outsidePredecessors.isEmpty()) {
+                continue;
+            }
+
+            if (definitions == null) {
+                definitionPlaces = ProgramUtils.getVariableDefinitionPlaces(program);
+                definitions = getDefinitions(program);
+            }
+            int[] exitArray = exits.toArray();
+            Arrays.sort(exitArray);
+            result.add(new InnermostLoop(program, head, nodes, latches.toArray(), exitArray,
+                    outsidePredecessors.size() == 1 ? outsidePredecessors.iterator().next().value : -1,
+                    definitionPlaces, definitions));
+        }
+        return result;
+    }
+
+    private static Instruction[] getDefinitions(Program program) {
+        Instruction[] definitions = new Instruction[program.variableCount()];
+        DefinitionExtractor defExtractor = new DefinitionExtractor();
+        for (BasicBlock block : program.getBasicBlocks()) {
+            for (Instruction instruction : block) {
+                instruction.acceptVisitor(defExtractor);
+                for (Variable var : defExtractor.getDefinedVariables()) {
+                    definitions[var.getIndex()] = instruction;
+                }
+            }
+        }
+        return definitions;
+    }
+
+    boolean contains(int node) {
+        return nodeSet.contains(node);
+    }
+
+    int size() {
+        int size = 0;
+        for (int node : nodes) {
+            BasicBlock block = program.basicBlockAt(node);
+            size += block.instructionCount() + block.getPhis().size();
+        }
+        return size;
+    }
+
+    boolean hasTryCatch() {
+        for (int node : nodes) {
+            if (!program.basicBlockAt(node).getTryCatchBlocks().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether variable is defined outside of loop, which means that its value can be used before loop.
+     */
+    boolean isInvariant(Variable var) {
+        if (var.getIndex() >= definitionPlaces.length) {
+            return false;
+        }
+        BasicBlock place = definitionPlaces[var.getIndex()];
+        return place == null || !nodeSet.contains(place.getIndex());
+    }
+
+    Instruction definitionOf(Variable var) {
+        return var.getIndex() < definitions.length ? definitions[var.getIndex()] : null;
+    }
+
+    /**
+     * Returns value of the given variable if it's defined by integer constant instruction, otherwise {@code null}.
+     */
+    Integer constantOf(Variable var) {
+        Instruction definition = definitionOf(var);
+        return definition instanceof IntegerConstantInstruction
+                ? ((IntegerConstantInstruction) definition).getConstant()
+                : null;
+    }
+
+    /**
+     * Follows chain of assignments back to the variable which defines value.
+     */
+    Variable original(Variable var) {
+        while (definitionOf(var) instanceof AssignInstruction) {
+            var = ((AssignInstruction) definitionOf(var)).getAssignee();
+        }
+        return var;
+    }
+
+    static Variable incomingFrom(Phi phi, int source) {
+        for (Incoming incoming : phi.getIncomings()) {
+            if (incoming.getSource().getIndex() == source) {
+                return incoming.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds basic induction variables of loop, i.e. phis of head that take invariant value when loop is entered
+     * and are incremented or decremented by invariant value on each iteration.
+     */
+    List<InductionVariable> inductionVariables() {
+        List<InductionVariable> result = new ArrayList<>();
+        if (preheader < 0) {
+            return result;
+        }
+        for (Phi phi : program.basicBlockAt(head).getPhis()) {
+            if (phi.getIncomings().size() != latches.length + 1) {
+                continue;
+            }
+            Variable initial = incomingFrom(phi, preheader);
+            Variable next = null;
+            for (int latch : latches) {
+                Variable value = incomingFrom(phi, latch);
+                if (value == null || (next != null && value != next)) {
+                    next = null;
+                    break;
+                }
+                next = value;
+            }
+            if (initial == null || next == null || !(definitionOf(next) instanceof BinaryInstruction)) {
+                continue;
+            }
+
+            BinaryInstruction update = (BinaryInstruction) definitionOf(next);
+            if (update.getOperandType() != NumericOperandType.INT
+                    && update.getOperandType() != NumericOperandType.LONG) {
+                continue;
+            }
+            Variable step;
+            boolean decreasing;
+            if (update.getOperation() == BinaryOperation.ADD) {
+                decreasing = false;
+                if (update.getFirstOperand() == phi.getReceiver()) {
+                    step = update.getSecondOperand();
+                } else if (update.getSecondOperand() == phi.getReceiver()) {
+                    step = update.getFirstOperand();
+                } else {
+                    continue;
+                }
+            } else if (update.getOperation() == BinaryOperation.SUBTRACT
+                    && update.getFirstOperand() == phi.getReceiver()) {
+                decreasing = true;
+                step = update.getSecondOperand();
+            } else {
+                continue;
+            }
+            if (step == phi.getReceiver() || !isInvariant(step)) {
+                continue;
+            }
+            result.add(new InductionVariable(phi, initial, step, decreasing, update));
+        }
+        return result;
+    }
+
+    /**
+     * <p>Copies all nodes of loop, reusing the same variables, so that program is not in SSA form
+     * until {@link org.teavm.model.util.PhiUpdater} is run. Edges between nodes of loop are redirected
+     * to corresponding copies, back edges are redirected to {@code backEdgeTarget}, or to copy of head,
+     * if it's {@code -1}. Phis of loop exits receive incomings from copied nodes.</p>
+     *
+     * <p>Phis of head copy are created without incomings, it's up to caller to add them.
+     * They go in the same order as phis of head.</p>
+     *
+     * @return map from nodes of loop to their copies.
+     */
+    IntIntMap copy(int backEdgeTarget) {
+        IntIntMap copies = new IntIntHashMap();
+        for (int node : nodes) {
+            copies.put(node, program.createBasicBlock().getIndex());
+        }
+        int headTarget = backEdgeTarget >= 0 ? backEdgeTarget : copies.get(head);
+        BasicBlockMapper mapper = new BasicBlockMapper((int block) -> block == head
+                ? headTarget
+                : copies.getOrDefault(block, block));
+
+        for (int node : nodes) {
+            BasicBlock sourceBlock = program.basicBlockAt(node);
+            BasicBlock targetBlock = program.basicBlockAt(copies.get(node));
+            targetBlock.setExceptionVariable(sourceBlock.getExceptionVariable());
+
+            for (Instruction instruction : ProgramUtils.copyInstructions(sourceBlock.getFirstInstruction(),
+                    null, program)) {
+                instruction.acceptVisitor(mapper);
+                targetBlock.add(instruction);
+            }
+
+            for (Phi phi : sourceBlock.getPhis()) {
+                Phi phiCopy = new Phi();
+                phiCopy.setReceiver(phi.getReceiver());
+                if (node != head) {
+                    for (Incoming incoming : phi.getIncomings()) {
+                        Incoming incomingCopy = new Incoming();
+                        int source = incoming.getSource().getIndex();
+                        incomingCopy.setSource(program.basicBlockAt(copies.getOrDefault(source, source)));
+                        incomingCopy.setValue(incoming.getValue());
+                        phiCopy.getIncomings().add(incomingCopy);
+                    }
+                }
+                targetBlock.getPhis().add(phiCopy);
+            }
+        }
+
+        for (int exit : exits) {
+            for (Phi phi : program.basicBlockAt(exit).getPhis()) {
+                for (Incoming incoming : phi.getIncomings().toArray(new Incoming[0])) {
+                    int source = incoming.getSource().getIndex();
+                    if (nodeSet.contains(source)) {
+                        addIncoming(phi, program.basicBlockAt(copies.get(source)), incoming.getValue());
+                    }
+                }
+            }
+        }
+
+        return copies;
+    }
+
+    /**
+     * Replaces incomings of head phis that come from preheader by incomings from each of the given blocks.
+     */
+    void replacePreheaderIncomings(BasicBlock... sources) {
+        for (Phi phi : program.basicBlockAt(head).getPhis()) {
+            for (Incoming incoming : phi.getIncomings().toArray(new Incoming[0])) {
+                if (incoming.getSource().getIndex() != preheader) {
+                    continue;
+                }
+                phi.getIncomings().remove(incoming);
+                for (BasicBlock source : sources) {
+                    addIncoming(phi, source, incoming.getValue());
+                }
+            }
+        }
+    }
+
+    static void addIncoming(Phi phi, BasicBlock source, Variable value) {
+        Incoming incoming = new Incoming();
+        incoming.setSource(source);
+        incoming.setValue(value);
+        phi.getIncomings().add(incoming);
+    }
+
+    static class InductionVariable {
+        final Phi phi;
+        final Variable initial;
+        final Variable step;
+        final boolean decreasing;
+        final BinaryInstruction update;
+
+        InductionVariable(Phi phi, Variable initial, Variable step, boolean decreasing, BinaryInstruction update) {
+            this.phi = phi;
+            this.initial = initial;
+            this.step = step;
+            this.decreasing = decreasing;
+            this.update = update;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import org.teavm.model.instructions.ArrayLengthInstruction;
 import org.teavm.model.instructions.AssignInstruction;
 import org.teavm.model.instructions.BinaryInstruction;
 import org.teavm.model.instructions.BinaryOperation;
+import org.teavm.model.instructions.BoundCheckInstruction;
 import org.teavm.model.instructions.CastInstruction;
 import org.teavm.model.instructions.CastIntegerInstruction;
 import org.teavm.model.instructions.CastNumberInstruction;
@@ -150,4 +151,10 @@ public class LoopInvariantAnalyzer extends AbstractInstructionVisitor {
             sideEffect = true;
         }
     }
+
+    @Override
+    public void visit(BoundCheckInstruction insn) {
+        canMove = true;
+        sideEffect = true;
+    }
 }
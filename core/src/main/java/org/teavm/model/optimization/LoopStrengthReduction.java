@@ -0,0 +1,149 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Instruction;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.BinaryInstruction;
+import org.teavm.model.instructions.BinaryOperation;
+import org.teavm.model.instructions.NumericOperandType;
+import org.teavm.model.optimization.InnermostLoop.InductionVariable;
+
+/**
+ * <p>Replaces multiplication of induction variable by loop invariant with a new induction variable,
+ * i.e. transforms</p>
+ *
+ * <pre>
+ * for (int i = a; i &lt; n; i += s) {
+ *     f(i * c);
+ * }
+ * </pre>
+ *
+ * <p>to</p>
+ *
+ * <pre>
+ * int k = a * c;
+ * int d = s * c;
+ * for (int i = a; i &lt; n; i += s, k += d) {
+ *     f(k);
+ * }
+ * </pre>
+ *
+ * <p>This is correct in presence of overflow as well, since both multiplication and addition
+ * are performed modulo 2<sup>32</sup> (or 2<sup>64</sup> for longs).</p>
+ */
+public class LoopStrengthReduction implements MethodOptimization {
+    @Override
+    public boolean optimize(MethodOptimizationContext context, Program program) {
+        boolean changed = false;
+        for (InnermostLoop loop : InnermostLoop.find(program)) {
+            changed |= optimizeLoop(loop);
+        }
+        return changed;
+    }
+
+    private boolean optimizeLoop(InnermostLoop loop) {
+        Map<Variable, InductionVariable> inductionVariables = new HashMap<>();
+        for (InductionVariable inductionVariable : loop.inductionVariables()) {
+            inductionVariables.put(inductionVariable.phi.getReceiver(), inductionVariable);
+        }
+        if (inductionVariables.isEmpty()) {
+            return false;
+        }
+
+        boolean changed = false;
+        for (int node : loop.nodes) {
+            for (Instruction instruction : loop.program.basicBlockAt(node)) {
+                if (!(instruction instanceof BinaryInstruction)) {
+                    continue;
+                }
+                BinaryInstruction multiply = (BinaryInstruction) instruction;
+                if (multiply.getOperation() != BinaryOperation.MULTIPLY) {
+                    continue;
+                }
+                InductionVariable inductionVariable = inductionVariables.get(multiply.getFirstOperand());
+                Variable factor = multiply.getSecondOperand();
+                if (inductionVariable == null) {
+                    inductionVariable = inductionVariables.get(multiply.getSecondOperand());
+                    factor = multiply.getFirstOperand();
+                }
+                if (inductionVariable == null || !loop.isInvariant(factor)
+                        || inductionVariable.update.getOperandType() != multiply.getOperandType()) {
+                    continue;
+                }
+                reduce(loop, inductionVariable, multiply, factor);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private void reduce(InnermostLoop loop, InductionVariable inductionVariable, BinaryInstruction multiply,
+            Variable factor) {
+        Program program = loop.program;
+        NumericOperandType type = multiply.getOperandType();
+        BasicBlock preheader = program.basicBlockAt(loop.preheader);
+        BasicBlock head = program.basicBlockAt(loop.head);
+        String label = multiply.getReceiver().getLabel();
+
+        BinaryInstruction initial = new BinaryInstruction(BinaryOperation.MULTIPLY, type);
+        initial.setFirstOperand(inductionVariable.initial);
+        initial.setSecondOperand(factor);
+        initial.setReceiver(program.createVariable());
+        initial.getReceiver().setLabel(label);
+        initial.setLocation(multiply.getLocation());
+        preheader.getLastInstruction().insertPrevious(initial);
+
+        BinaryInstruction step = new BinaryInstruction(BinaryOperation.MULTIPLY, type);
+        step.setFirstOperand(inductionVariable.step);
+        step.setSecondOperand(factor);
+        step.setReceiver(program.createVariable());
+        step.getReceiver().setLabel(label);
+        step.setLocation(multiply.getLocation());
+        preheader.getLastInstruction().insertPrevious(step);
+
+        Phi phi = new Phi();
+        phi.setReceiver(program.createVariable());
+        phi.getReceiver().setLabel(label);
+        InnermostLoop.addIncoming(phi, preheader, initial.getReceiver());
+
+        BinaryInstruction next = new BinaryInstruction(inductionVariable.decreasing
+                ? BinaryOperation.SUBTRACT
+                : BinaryOperation.ADD, type);
+        next.setFirstOperand(phi.getReceiver());
+        next.setSecondOperand(step.getReceiver());
+        next.setReceiver(program.createVariable());
+        next.getReceiver().setLabel(label);
+        next.setLocation(inductionVariable.update.getLocation());
+        inductionVariable.update.insertNext(next);
+        for (int latch : loop.latches) {
+            InnermostLoop.addIncoming(phi, program.basicBlockAt(latch), next.getReceiver());
+        }
+        head.getPhis().add(phi);
+
+        AssignInstruction assign = new AssignInstruction();
+        assign.setAssignee(phi.getReceiver());
+        assign.setReceiver(multiply.getReceiver());
+        assign.setLocation(multiply.getLocation());
+        multiply.replace(assign);
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntIntMap;
+import com.carrotsearch.hppc.IntSet;
+import java.util.ArrayList;
+import java.util.List;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Instruction;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.BinaryInstruction;
+import org.teavm.model.instructions.BinaryOperation;
+import org.teavm.model.instructions.BranchingInstruction;
+import org.teavm.model.instructions.NumericOperandType;
+import org.teavm.model.optimization.InnermostLoop.InductionVariable;
+import org.teavm.model.util.BasicBlockMapper;
+import org.teavm.model.util.PhiUpdater;
+
+/**
+ * <p>Fully unrolls loops with small constant trip count, like</p>
+ *
+ * <pre>
+ * for (int i = 0; i &lt; 4; ++i) {
+ *     body(i);
+ * }
+ * </pre>
+ *
+ * <p>Loop with trip count <em>N</em> is peeled <em>N + 1</em> times, so that the last copy of loop condition
+ * always exits. Original loop remains reachable from the last copy only. Peeled copies don't get
+ * simplified here, instead this is left to {@link GlobalValueNumbering}, which folds induction variables
+ * to constants, {@link ConstantConditionElimination}, which removes exit conditions of copies, and
+ * {@link UnreachableBasicBlockElimination}, which removes the original loop. Therefore, this optimization
+ * is only useful when followed by them.</p>
+ *
+ * <p>Since correctness does not depend on trip count estimation, the worst outcome of wrong estimation
+ * is that original loop survives cleanup.</p>
+ */
+public class LoopUnrolling implements MethodOptimization {
+    private static final int MAX_TRIP_COUNT = 16;
+    private static final int MAX_UNROLLED_SIZE = 256;
+
+    @Override
+    public boolean optimize(MethodOptimizationContext context, Program program) {
+        int parameterCount = context.getMethod().parameterCount() + 1;
+        IntSet processed = new IntHashSet();
+        boolean changed = false;
+        while (true) {
+            int[] peeledHeads = null;
+            for (InnermostLoop loop : InnermostLoop.find(program)) {
+                if (processed.add(loop.head)) {
+                    peeledHeads = unroll(loop);
+                    if (peeledHeads != null) {
+                        break;
+                    }
+                }
+            }
+            if (peeledHeads == null) {
+                break;
+            }
+
+            new PhiUpdater().updatePhis(program, parameterCount);
+            for (int peeledHead : peeledHeads) {
+                replacePhisWithAssignments(program.basicBlockAt(peeledHead));
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    private int[] unroll(InnermostLoop loop) {
+        if (loop.preheader < 0 || loop.hasTryCatch()) {
+            return null;
+        }
+        int tripCount = tripCount(loop);
+        if (tripCount < 1 || (tripCount + 1) * loop.size() > MAX_UNROLLED_SIZE) {
+            return null;
+        }
+
+        Program program = loop.program;
+        IntIntMap[] copies = new IntIntMap[tripCount + 1];
+        int backEdgeTarget = loop.head;
+        for (int i = tripCount; i >= 0; --i) {
+            copies[i] = loop.copy(backEdgeTarget);
+            backEdgeTarget = copies[i].get(loop.head);
+        }
+
+        BasicBlock preheader = program.basicBlockAt(loop.preheader);
+        int firstHead = copies[0].get(loop.head);
+        preheader.getLastInstruction().acceptVisitor(new BasicBlockMapper((int block) -> block == loop.head
+                ? firstHead
+                : block));
+
+        List<Phi> phis = program.basicBlockAt(loop.head).getPhis();
+        int[] peeledHeads = new int[copies.length];
+        for (int i = 0; i < copies.length; ++i) {
+            peeledHeads[i] = copies[i].get(loop.head);
+            List<Phi> phiCopies = program.basicBlockAt(peeledHeads[i]).getPhis();
+            for (int j = 0; j < phis.size(); ++j) {
+                Phi phi = phis.get(j);
+                Phi phiCopy = phiCopies.get(j);
+                if (i == 0) {
+                    InnermostLoop.addIncoming(phiCopy, preheader, InnermostLoop.incomingFrom(phi, loop.preheader));
+                } else {
+                    for (int latch : loop.latches) {
+                        InnermostLoop.addIncoming(phiCopy, program.basicBlockAt(copies[i - 1].get(latch)),
+                                InnermostLoop.incomingFrom(phi, latch));
+                    }
+                }
+            }
+        }
+
+        IntIntMap lastCopy = copies[tripCount];
+        for (Phi phi : phis) {
+            for (int latch : loop.latches) {
+                InnermostLoop.addIncoming(phi, program.basicBlockAt(lastCopy.get(latch)),
+                        InnermostLoop.incomingFrom(phi, latch));
+            }
+        }
+        loop.replacePreheaderIncomings();
+
+        return peeledHeads;
+    }
+
+    /**
+     * Computes how many times the loop body is executed, assuming that loop exits when the
+     * branching instruction at loop head is evaluated. Returns {@code -1} if it can't be computed
+     * or it is greater than {@link #MAX_TRIP_COUNT}.
+     */
+    private int tripCount(InnermostLoop loop) {
+        BasicBlock head = loop.program.basicBlockAt(loop.head);
+        if (!(head.getLastInstruction() instanceof BranchingInstruction)) {
+            return -1;
+        }
+        BranchingInstruction branching = (BranchingInstruction) head.getLastInstruction();
+        boolean consequentInLoop = loop.contains(branching.getConsequent().getIndex());
+        if (consequentInLoop == loop.contains(branching.getAlternative().getIndex())) {
+            return -1;
+        }
+
+        Variable operand = loop.original(branching.getOperand());
+        Instruction definition = loop.definitionOf(operand);
+        Variable inductionCandidate = operand;
+        Integer bound = null;
+        boolean inductionFirst = true;
+        if (definition instanceof BinaryInstruction) {
+            BinaryInstruction comparison = (BinaryInstruction) definition;
+            if (comparison.getOperation() != BinaryOperation.COMPARE
+                    || comparison.getOperandType() != NumericOperandType.INT) {
+                return -1;
+            }
+            inductionCandidate = loop.original(comparison.getFirstOperand());
+            bound = loop.constantOf(loop.original(comparison.getSecondOperand()));
+            if (bound == null) {
+                inductionCandidate = loop.original(comparison.getSecondOperand());
+                bound = loop.constantOf(loop.original(comparison.getFirstOperand()));
+                inductionFirst = false;
+            }
+            if (bound == null) {
+                return -1;
+            }
+        }
+
+        InductionVariable inductionVariable = null;
+        for (InductionVariable candidate : loop.inductionVariables()) {
+            if (candidate.phi.getReceiver() == inductionCandidate) {
+                inductionVariable = candidate;
+                break;
+            }
+        }
+        if (inductionVariable == null
+                || inductionVariable.update.getOperandType() != NumericOperandType.INT) {
+            return -1;
+        }
+        Integer initial = loop.constantOf(loop.original(inductionVariable.initial));
+        Integer step = loop.constantOf(loop.original(inductionVariable.step));
+        if (initial == null || step == null) {
+            return -1;
+        }
+
+        int value = initial;
+        for (int i = 0; i <= MAX_TRIP_COUNT; ++i) {
+            int condition = value;
+            if (bound != null) {
+                condition = inductionFirst ? Integer.compare(value, bound) : Integer.compare(bound, value);
+            }
+            if (evaluate(branching, condition) != consequentInLoop) {
+                return i;
+            }
+            value = inductionVariable.decreasing ? value - step : value + step;
+        }
+        return -1;
+    }
+
+    private static boolean evaluate(BranchingInstruction branching, int value) {
+        switch (branching.getCondition()) {
+            case EQUAL:
+                return value == 0;
+            case NOT_EQUAL:
+                return value != 0;
+            case LESS:
+                return value < 0;
+            case LESS_OR_EQUAL:
+                return value <= 0;
+            case GREATER:
+                return value > 0;
+            case GREATER_OR_EQUAL:
+                return value >= 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Peeled heads have a single predecessor, so their phis can be safely replaced with assignments,
+     * which are understood by {@link GlobalValueNumbering}.
+     */
+    private void replacePhisWithAssignments(BasicBlock block) {
+        List<Instruction> assignments = new ArrayList<>();
+        for (Phi phi : block.getPhis()) {
+            if (phi.getIncomings().size() != 1) {
+                return;
+            }
+            AssignInstruction assign = new AssignInstruction();
+            assign.setAssignee(phi.getIncomings().get(0).getValue());
+            assign.setReceiver(phi.getReceiver());
+            assignments.add(assign);
+        }
+        block.getPhis().clear();
+        block.addFirstAll(assignments);
+    }
+}
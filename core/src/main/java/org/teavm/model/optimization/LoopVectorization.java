@@ -0,0 +1,780 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.teavm.interop.Address;
+import org.teavm.interop.Simd;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.TextLocation;
+import org.teavm.model.ValueType;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.ArrayElementType;
+import org.teavm.model.instructions.ArrayLengthInstruction;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.BinaryInstruction;
+import org.teavm.model.instructions.BinaryOperation;
+import org.teavm.model.instructions.BoundCheckInstruction;
+import org.teavm.model.instructions.BranchingCondition;
+import org.teavm.model.instructions.BranchingInstruction;
+import org.teavm.model.instructions.CastIntegerDirection;
+import org.teavm.model.instructions.CastIntegerInstruction;
+import org.teavm.model.instructions.DoubleConstantInstruction;
+import org.teavm.model.instructions.FloatConstantInstruction;
+import org.teavm.model.instructions.GetElementInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.IntegerSubtype;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.instructions.LongConstantInstruction;
+import org.teavm.model.instructions.NullCheckInstruction;
+import org.teavm.model.instructions.NumericOperandType;
+import org.teavm.model.instructions.PutElementInstruction;
+import org.teavm.model.instructions.UnwrapArrayInstruction;
+import org.teavm.model.optimization.InnermostLoop.InductionVariable;
+import org.teavm.model.util.BasicBlockMapper;
+
+/**
+ * <p>Vectorizes counted loops that perform element-wise operations on primitive arrays, like</p>
+ *
+ * <pre>
+ * for (int i = a; i &lt; n; ++i) {
+ *     c[i] = x[i] * y[i];
+ * }
+ * </pre>
+ *
+ * <p>to</p>
+ *
+ * <pre>
+ * int i = a;
+ * if (a &gt;= 0 &amp;&amp; a &lt; n &amp;&amp; c != null &amp;&amp; n &lt;= c.length &amp;&amp; ...) {
+ *     int end = a + ((n - a) &amp; -4);
+ *     for (; i &lt; end; i += 4) {
+ *         Simd.mulInt32(Address.ofData(c).add(i * 4), Address.ofData(x).add(i * 4),
+ *                 Address.ofData(y).add(i * 4));
+ *     }
+ * }
+ * for (; i &lt; n; ++i) {
+ *     c[i] = x[i] * y[i];
+ * }
+ * </pre>
+ *
+ * <p>Only loops consisting of head and a single body block are recognized. Body may only contain loads and stores
+ * of elements of the same type at induction variable, single arithmetic or bitwise operation per store
+ * and null and bound checks, which are covered by guards of vectorized loop. Remaining iterations and loops
+ * that don't pass guards are executed by original loop, so exceptions are still thrown where they are expected.
+ * To make sure that vectorized loop gives the same result when arrays overlap, every store may only use values
+ * loaded after the previous store.</p>
+ *
+ * <p>Produces calls to {@link Simd} and {@link Address}, so it's only applicable to WebAssembly backend, and
+ * should run after other optimizations, since it does not preserve information about original loop.</p>
+ */
+public class LoopVectorization implements MethodOptimization {
+    private static final int VECTOR_SIZE = 16;
+    private static final ValueType ADDRESS_TYPE = ValueType.object(Address.class.getName());
+
+    @Override
+    public boolean optimize(MethodOptimizationContext context, Program program) {
+        return optimize(program);
+    }
+
+    public boolean optimize(Program program) {
+        IntSet processed = new IntHashSet();
+        boolean changed = false;
+        while (true) {
+            boolean vectorized = false;
+            for (InnermostLoop loop : InnermostLoop.find(program)) {
+                if (processed.add(loop.head) && vectorize(loop)) {
+                    vectorized = true;
+                    break;
+                }
+            }
+            if (!vectorized) {
+                break;
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean vectorize(InnermostLoop loop) {
+        if (loop.preheader < 0 || loop.nodes.length != 2 || loop.latches.length != 1 || loop.latches[0] == loop.head
+                || loop.hasTryCatch()) {
+            return false;
+        }
+        Program program = loop.program;
+        BasicBlock head = program.basicBlockAt(loop.head);
+        BasicBlock body = program.basicBlockAt(loop.latches[0]);
+        if (head.getPhis().size() != 1 || !(head.getLastInstruction() instanceof BranchingInstruction)) {
+            return false;
+        }
+
+        List<InductionVariable> inductionVariables = loop.inductionVariables();
+        if (inductionVariables.size() != 1) {
+            return false;
+        }
+        InductionVariable inductionVariable = inductionVariables.get(0);
+        Integer step = loop.constantOf(loop.original(inductionVariable.step));
+        if (inductionVariable.decreasing || step == null || step != 1
+                || inductionVariable.update.getOperandType() != NumericOperandType.INT) {
+            return false;
+        }
+        Variable index = inductionVariable.phi.getReceiver();
+
+        BranchingInstruction branching = (BranchingInstruction) head.getLastInstruction();
+        Variable bound = loopBound(loop, branching, index);
+        if (bound == null || !isHeadSimple(head, loop.definitionOf(loop.original(branching.getOperand())))) {
+            return false;
+        }
+
+        Analysis analysis = new Analysis(loop, index, inductionVariable.update);
+        if (!analysis.analyze(body)) {
+            return false;
+        }
+
+        transform(analysis, inductionVariable.initial, bound, branching.getLocation());
+        return true;
+    }
+
+    /**
+     * Returns upper bound {@code n} if loop head checks {@code i < n}, where {@code n} is loop invariant.
+     */
+    private Variable loopBound(InnermostLoop loop, BranchingInstruction branching, Variable index) {
+        boolean consequentInLoop = loop.contains(branching.getConsequent().getIndex());
+        if (consequentInLoop == loop.contains(branching.getAlternative().getIndex())) {
+            return null;
+        }
+        Instruction definition = loop.definitionOf(loop.original(branching.getOperand()));
+        if (!(definition instanceof BinaryInstruction)) {
+            return null;
+        }
+        BinaryInstruction comparison = (BinaryInstruction) definition;
+        if (comparison.getOperation() != BinaryOperation.COMPARE
+                || comparison.getOperandType() != NumericOperandType.INT) {
+            return null;
+        }
+
+        Variable first = loop.original(comparison.getFirstOperand());
+        Variable second = loop.original(comparison.getSecondOperand());
+        BranchingCondition condition = branching.getCondition();
+        if (condition == (consequentInLoop ? BranchingCondition.LESS : BranchingCondition.GREATER_OR_EQUAL)) {
+            return first == index && loop.isInvariant(second) ? second : null;
+        } else if (condition == (consequentInLoop ? BranchingCondition.GREATER : BranchingCondition.LESS_OR_EQUAL)) {
+            return second == index && loop.isInvariant(first) ? first : null;
+        }
+        return null;
+    }
+
+    private boolean isHeadSimple(BasicBlock head, Instruction comparison) {
+        for (Instruction instruction : head) {
+            if (instruction != comparison && !(instruction instanceof AssignInstruction)
+                    && !(instruction instanceof BranchingInstruction) && !isConstant(instruction)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void transform(Analysis analysis, Variable initial, Variable bound, TextLocation location) {
+        InnermostLoop loop = analysis.loop;
+        Program program = loop.program;
+        BasicBlock head = program.basicBlockAt(loop.head);
+        int elementSize = elementSize(analysis.elementType);
+        int lanes = VECTOR_SIZE / elementSize;
+
+        BasicBlock entry = program.createBasicBlock();
+        BasicBlock vectorHead = program.createBasicBlock();
+        BasicBlock vectorBody = program.createBasicBlock();
+
+        List<BasicBlock> guards = new ArrayList<>();
+        BasicBlock next = entry;
+        for (int i = analysis.arrays.size() - 1; i >= 0; --i) {
+            next = createArrayGuard(program, analysis.arrays.get(i), bound, next, head, location, guards);
+        }
+        next = createRangeGuard(program, initial, bound, next, head, location, guards);
+
+        Variable count = binary(entry, BinaryOperation.SUBTRACT, bound, initial, location);
+        count = binary(entry, BinaryOperation.AND, count, intConstant(entry, -lanes, location), location);
+        Variable end = binary(entry, BinaryOperation.ADD, initial, count, location);
+        jump(entry, vectorHead, location);
+
+        Phi phi = new Phi();
+        phi.setReceiver(program.createVariable());
+        phi.getReceiver().setLabel(analysis.index.getLabel());
+        InnermostLoop.addIncoming(phi, entry, initial);
+        vectorHead.getPhis().add(phi);
+        Variable condition = binary(vectorHead, BinaryOperation.COMPARE, phi.getReceiver(), end, location);
+        BranchingInstruction exit = new BranchingInstruction(BranchingCondition.GREATER_OR_EQUAL);
+        exit.setOperand(condition);
+        exit.setConsequent(head);
+        exit.setAlternative(vectorBody);
+        exit.setLocation(location);
+        vectorHead.add(exit);
+
+        Variable offset = binary(vectorBody, BinaryOperation.MULTIPLY, phi.getReceiver(),
+                intConstant(vectorBody, elementSize, location), location);
+        Map<Variable, Variable> addresses = new HashMap<>();
+        for (Variable array : analysis.accessedArrays()) {
+            ValueType arrayType = ValueType.arrayOf(primitiveType(analysis.elementType));
+            Variable data = invoke(vectorBody, null, new MethodReference(Address.class.getName(), "ofData",
+                    arrayType, ADDRESS_TYPE), location, array);
+            addresses.put(array, invoke(vectorBody, data, new MethodReference(Address.class.getName(), "add",
+                    ValueType.INTEGER, ADDRESS_TYPE), location, offset));
+        }
+        Map<Variable, Variable> scalars = new HashMap<>();
+        for (VectorStore store : analysis.stores) {
+            List<Variable> arguments = new ArrayList<>();
+            List<ValueType> signature = new ArrayList<>();
+            arguments.add(addresses.get(store.array));
+            signature.add(ADDRESS_TYPE);
+            for (int i = 0; i < store.operands.length; ++i) {
+                Variable operand = store.operands[i];
+                if (store.arrayOperands[i]) {
+                    arguments.add(addresses.get(operand));
+                    signature.add(ADDRESS_TYPE);
+                } else {
+                    arguments.add(scalars.computeIfAbsent(operand, v -> scalarBeforeLoop(loop, v, entry)));
+                    signature.add(scalarType(analysis.elementType));
+                }
+            }
+            signature.add(ValueType.VOID);
+            MethodReference method = new MethodReference(Simd.class.getName(), store.operation,
+                    signature.toArray(new ValueType[0]));
+            invoke(vectorBody, null, method, store.location, arguments.toArray(new Variable[0]));
+        }
+        Variable nextIndex = binary(vectorBody, BinaryOperation.ADD, phi.getReceiver(),
+                intConstant(vectorBody, lanes, location), location);
+        jump(vectorBody, vectorHead, location);
+        InnermostLoop.addIncoming(phi, vectorBody, nextIndex);
+
+        BasicBlock firstGuard = next;
+        program.basicBlockAt(loop.preheader).getLastInstruction().acceptVisitor(
+                new BasicBlockMapper((int block) -> block == loop.head ? firstGuard.getIndex() : block));
+        loop.replacePreheaderIncomings(guards.toArray(new BasicBlock[0]));
+        InnermostLoop.addIncoming(head.getPhis().get(0), vectorHead, phi.getReceiver());
+    }
+
+    /**
+     * Creates two blocks that go to slow path unless {@code 0 <= initial < bound}. This guarantees that
+     * computation of vectorized loop bound does not overflow.
+     */
+    private BasicBlock createRangeGuard(Program program, Variable initial, Variable bound, BasicBlock next,
+            BasicBlock slowPath, TextLocation location, List<BasicBlock> guards) {
+        BasicBlock lowerGuard = program.createBasicBlock();
+        BasicBlock upperGuard = program.createBasicBlock();
+
+        BranchingInstruction lowerBranch = new BranchingInstruction(BranchingCondition.LESS);
+        lowerBranch.setOperand(initial);
+        lowerBranch.setConsequent(slowPath);
+        lowerBranch.setAlternative(upperGuard);
+        lowerBranch.setLocation(location);
+        lowerGuard.add(lowerBranch);
+
+        Variable compare = binary(upperGuard, BinaryOperation.COMPARE, initial, bound, location);
+        BranchingInstruction upperBranch = new BranchingInstruction(BranchingCondition.GREATER_OR_EQUAL);
+        upperBranch.setOperand(compare);
+        upperBranch.setConsequent(slowPath);
+        upperBranch.setAlternative(next);
+        upperBranch.setLocation(location);
+        upperGuard.add(upperBranch);
+
+        guards.add(lowerGuard);
+        guards.add(upperGuard);
+        return lowerGuard;
+    }
+
+    /**
+     * Creates two blocks, first goes to slow path if array is null, second goes to slow path if loop bound
+     * exceeds array length.
+     */
+    private BasicBlock createArrayGuard(Program program, Variable array, Variable bound, BasicBlock next,
+            BasicBlock slowPath, TextLocation location, List<BasicBlock> guards) {
+        BasicBlock nullGuard = program.createBasicBlock();
+        BasicBlock lengthGuard = program.createBasicBlock();
+
+        BranchingInstruction nullBranch = new BranchingInstruction(BranchingCondition.NULL);
+        nullBranch.setOperand(array);
+        nullBranch.setConsequent(slowPath);
+        nullBranch.setAlternative(lengthGuard);
+        nullBranch.setLocation(location);
+        nullGuard.add(nullBranch);
+
+        ArrayLengthInstruction length = new ArrayLengthInstruction();
+        length.setArray(array);
+        length.setReceiver(program.createVariable());
+        length.setLocation(location);
+        lengthGuard.add(length);
+
+        Variable compare = binary(lengthGuard, BinaryOperation.COMPARE, bound, length.getReceiver(), location);
+        BranchingInstruction lengthBranch = new BranchingInstruction(BranchingCondition.LESS_OR_EQUAL);
+        lengthBranch.setOperand(compare);
+        lengthBranch.setConsequent(next);
+        lengthBranch.setAlternative(slowPath);
+        lengthBranch.setLocation(location);
+        lengthGuard.add(lengthBranch);
+
+        guards.add(nullGuard);
+        guards.add(lengthGuard);
+        return nullGuard;
+    }
+
+    /**
+     * Scalar operand is either defined before loop or is a constant defined in loop body. In the latter case
+     * constant is copied to the given block.
+     */
+    private Variable scalarBeforeLoop(InnermostLoop loop, Variable var, BasicBlock block) {
+        if (loop.isInvariant(var)) {
+            return var;
+        }
+        Instruction definition = loop.definitionOf(var);
+        Instruction copy;
+        Variable receiver = loop.program.createVariable();
+        if (definition instanceof IntegerConstantInstruction) {
+            IntegerConstantInstruction constant = new IntegerConstantInstruction();
+            constant.setConstant(((IntegerConstantInstruction) definition).getConstant());
+            constant.setReceiver(receiver);
+            copy = constant;
+        } else if (definition instanceof LongConstantInstruction) {
+            LongConstantInstruction constant = new LongConstantInstruction();
+            constant.setConstant(((LongConstantInstruction) definition).getConstant());
+            constant.setReceiver(receiver);
+            copy = constant;
+        } else if (definition instanceof FloatConstantInstruction) {
+            FloatConstantInstruction constant = new FloatConstantInstruction();
+            constant.setConstant(((FloatConstantInstruction) definition).getConstant());
+            constant.setReceiver(receiver);
+            copy = constant;
+        } else {
+            DoubleConstantInstruction constant = new DoubleConstantInstruction();
+            constant.setConstant(((DoubleConstantInstruction) definition).getConstant());
+            constant.setReceiver(receiver);
+            copy = constant;
+        }
+        copy.setLocation(definition.getLocation());
+        block.getLastInstruction().insertPrevious(copy);
+        return receiver;
+    }
+
+    private static Variable binary(BasicBlock block, BinaryOperation operation, Variable first, Variable second,
+            TextLocation location) {
+        BinaryInstruction instruction = new BinaryInstruction(operation, NumericOperandType.INT);
+        instruction.setFirstOperand(first);
+        instruction.setSecondOperand(second);
+        instruction.setReceiver(block.getProgram().createVariable());
+        instruction.setLocation(location);
+        block.add(instruction);
+        return instruction.getReceiver();
+    }
+
+    private static Variable intConstant(BasicBlock block, int value, TextLocation location) {
+        IntegerConstantInstruction instruction = new IntegerConstantInstruction();
+        instruction.setConstant(value);
+        instruction.setReceiver(block.getProgram().createVariable());
+        instruction.setLocation(location);
+        block.add(instruction);
+        return instruction.getReceiver();
+    }
+
+    private static Variable invoke(BasicBlock block, Variable instance, MethodReference method,
+            TextLocation location, Variable... arguments) {
+        InvokeInstruction instruction = new InvokeInstruction();
+        instruction.setType(InvocationType.SPECIAL);
+        instruction.setInstance(instance);
+        instruction.setMethod(method);
+        instruction.setArguments(arguments);
+        if (method.getReturnType() != ValueType.VOID) {
+            instruction.setReceiver(block.getProgram().createVariable());
+        }
+        instruction.setLocation(location);
+        block.add(instruction);
+        return instruction.getReceiver();
+    }
+
+    private static void jump(BasicBlock block, BasicBlock target, TextLocation location) {
+        JumpInstruction jump = new JumpInstruction();
+        jump.setTarget(target);
+        jump.setLocation(location);
+        block.add(jump);
+    }
+
+    private static boolean isConstant(Instruction instruction) {
+        return instruction instanceof IntegerConstantInstruction || instruction instanceof LongConstantInstruction
+                || instruction instanceof FloatConstantInstruction || instruction instanceof DoubleConstantInstruction;
+    }
+
+    static int elementSize(ArrayElementType type) {
+        switch (type) {
+            case BYTE:
+                return 1;
+            case SHORT:
+            case CHAR:
+                return 2;
+            case INT:
+            case FLOAT:
+                return 4;
+            case LONG:
+            case DOUBLE:
+                return 8;
+            default:
+                return 0;
+        }
+    }
+
+    private static String lane(ArrayElementType type) {
+        switch (type) {
+            case BYTE:
+                return "Int8";
+            case SHORT:
+            case CHAR:
+                return "Int16";
+            case INT:
+                return "Int32";
+            case LONG:
+                return "Int64";
+            case FLOAT:
+                return "Float32";
+            default:
+                return "Float64";
+        }
+    }
+
+    private static ValueType primitiveType(ArrayElementType type) {
+        switch (type) {
+            case BYTE:
+                return ValueType.BYTE;
+            case SHORT:
+                return ValueType.SHORT;
+            case CHAR:
+                return ValueType.CHARACTER;
+            case INT:
+                return ValueType.INTEGER;
+            case LONG:
+                return ValueType.LONG;
+            case FLOAT:
+                return ValueType.FLOAT;
+            default:
+                return ValueType.DOUBLE;
+        }
+    }
+
+    private static ValueType scalarType(ArrayElementType type) {
+        switch (type) {
+            case LONG:
+                return ValueType.LONG;
+            case FLOAT:
+                return ValueType.FLOAT;
+            case DOUBLE:
+                return ValueType.DOUBLE;
+            default:
+                return ValueType.INTEGER;
+        }
+    }
+
+    private static NumericOperandType operandType(ArrayElementType type) {
+        switch (type) {
+            case LONG:
+                return NumericOperandType.LONG;
+            case FLOAT:
+                return NumericOperandType.FLOAT;
+            case DOUBLE:
+                return NumericOperandType.DOUBLE;
+            default:
+                return NumericOperandType.INT;
+        }
+    }
+
+    private static int subtypeSize(IntegerSubtype subtype) {
+        return subtype == IntegerSubtype.BYTE ? 1 : 2;
+    }
+
+    static class VectorStore {
+        final String operation;
+        final Variable array;
+        final Variable[] operands;
+        final boolean[] arrayOperands;
+        final TextLocation location;
+
+        VectorStore(String operation, Variable array, Variable[] operands, boolean[] arrayOperands,
+                TextLocation location) {
+            this.operation = operation;
+            this.array = array;
+            this.operands = operands;
+            this.arrayOperands = arrayOperands;
+            this.location = location;
+        }
+    }
+
+    /**
+     * Checks whether loop body can be vectorized and describes each store as an operation over arrays.
+     */
+    static class Analysis {
+        final InnermostLoop loop;
+        final Variable index;
+        final BinaryInstruction update;
+        final List<Variable> arrays = new ArrayList<>();
+        final List<VectorStore> stores = new ArrayList<>();
+        ArrayElementType elementType;
+        private final Map<Variable, Integer> loadEpochs = new LinkedHashMap<>();
+        private final Set<Instruction> operations = new HashSet<>();
+        private final Set<Instruction> consumed = new HashSet<>();
+
+        Analysis(InnermostLoop loop, Variable index, BinaryInstruction update) {
+            this.loop = loop;
+            this.index = index;
+            this.update = update;
+        }
+
+        List<Variable> accessedArrays() {
+            List<Variable> result = new ArrayList<>();
+            for (VectorStore store : stores) {
+                if (!result.contains(store.array)) {
+                    result.add(store.array);
+                }
+                for (int i = 0; i < store.operands.length; ++i) {
+                    if (store.arrayOperands[i] && !result.contains(store.operands[i])) {
+                        result.add(store.operands[i]);
+                    }
+                }
+            }
+            return result;
+        }
+
+        boolean analyze(BasicBlock body) {
+            for (Instruction instruction : body) {
+                if (instruction instanceof GetElementInstruction) {
+                    GetElementInstruction load = (GetElementInstruction) instruction;
+                    if (!checkAccess(load.getArray(), load.getIndex(), load.getType())) {
+                        return false;
+                    }
+                    loadEpochs.put(load.getReceiver(), stores.size());
+                    operations.add(load);
+                } else if (instruction instanceof PutElementInstruction) {
+                    PutElementInstruction store = (PutElementInstruction) instruction;
+                    if (!checkAccess(store.getArray(), store.getIndex(), store.getType())) {
+                        return false;
+                    }
+                    VectorStore vectorStore = describeStore(store);
+                    if (vectorStore == null) {
+                        return false;
+                    }
+                    stores.add(vectorStore);
+                } else if (instruction instanceof BoundCheckInstruction) {
+                    BoundCheckInstruction boundCheck = (BoundCheckInstruction) instruction;
+                    if (indexOf(boundCheck.getIndex()) != index) {
+                        return false;
+                    }
+                    if (boundCheck.getArray() != null && addArray(boundCheck.getArray()) == null) {
+                        return false;
+                    }
+                } else if (instruction instanceof NullCheckInstruction) {
+                    if (addArray(((NullCheckInstruction) instruction).getValue()) == null) {
+                        return false;
+                    }
+                } else if (instruction instanceof BinaryInstruction || instruction instanceof CastIntegerInstruction) {
+                    if (instruction != update) {
+                        operations.add(instruction);
+                    }
+                } else if (!(instruction instanceof UnwrapArrayInstruction)
+                        && !(instruction instanceof ArrayLengthInstruction)
+                        && !(instruction instanceof AssignInstruction)
+                        && !(instruction instanceof JumpInstruction)
+                        && !isConstant(instruction)) {
+                    return false;
+                }
+            }
+            return !stores.isEmpty() && consumed.containsAll(operations);
+        }
+
+        private boolean checkAccess(Variable array, Variable accessIndex, ArrayElementType type) {
+            if (elementSize(type) == 0 || (elementType != null && elementType != type)) {
+                return false;
+            }
+            elementType = type;
+            return indexOf(accessIndex) == index && addArray(array) != null;
+        }
+
+        private Variable addArray(Variable array) {
+            array = arrayObject(array);
+            if (!loop.isInvariant(array)) {
+                return null;
+            }
+            if (!arrays.contains(array)) {
+                arrays.add(array);
+            }
+            return array;
+        }
+
+        private VectorStore describeStore(PutElementInstruction store) {
+            Variable target = arrayObject(store.getArray());
+            TextLocation location = store.getLocation();
+            Variable value = loop.original(store.getValue());
+            Instruction definition = definitionInLoop(value);
+            if (definition instanceof CastIntegerInstruction) {
+                CastIntegerInstruction cast = (CastIntegerInstruction) definition;
+                if (cast.getDirection() != CastIntegerDirection.FROM_INTEGER
+                        || subtypeSize(cast.getTargetType()) != elementSize(elementType)
+                        || !consumed.add(cast)) {
+                    return null;
+                }
+                value = loop.original(cast.getValue());
+                definition = definitionInLoop(value);
+            }
+
+            if (isLoad(value)) {
+                return new VectorStore("copy", target, new Variable[] { loadedArray(value) },
+                        new boolean[] { true }, location);
+            }
+            if (isScalar(value)) {
+                return new VectorStore("fill" + lane(elementType), target, new Variable[] { value },
+                        new boolean[] { false }, location);
+            }
+            if (!(definition instanceof BinaryInstruction) || !consumed.add(definition)) {
+                return null;
+            }
+
+            BinaryInstruction binary = (BinaryInstruction) definition;
+            String operation = operationName(binary);
+            if (operation == null) {
+                return null;
+            }
+            Variable first = loop.original(binary.getFirstOperand());
+            Variable second = loop.original(binary.getSecondOperand());
+            if (!isLoad(first)) {
+                if (!isCommutative(binary.getOperation())) {
+                    return null;
+                }
+                Variable tmp = first;
+                first = second;
+                second = tmp;
+            }
+            if (!isLoad(first)) {
+                return null;
+            }
+            boolean bitwise = operation.equals("and") || operation.equals("or") || operation.equals("xor");
+            if (isLoad(second)) {
+                return new VectorStore(bitwise ? operation : operation + lane(elementType), target,
+                        new Variable[] { loadedArray(first), loadedArray(second) }, new boolean[] { true, true },
+                        location);
+            } else if (isScalar(second)) {
+                return new VectorStore(operation + lane(elementType), target,
+                        new Variable[] { loadedArray(first), second }, new boolean[] { true, false }, location);
+            }
+            return null;
+        }
+
+        private String operationName(BinaryInstruction binary) {
+            if (binary.getOperandType() != operandType(elementType)) {
+                return null;
+            }
+            boolean floating = elementType == ArrayElementType.FLOAT || elementType == ArrayElementType.DOUBLE;
+            switch (binary.getOperation()) {
+                case ADD:
+                    return "add";
+                case SUBTRACT:
+                    return "sub";
+                case MULTIPLY:
+                    return elementType != ArrayElementType.BYTE ? "mul" : null;
+                case DIVIDE:
+                    return floating ? "div" : null;
+                case AND:
+                    return !floating ? "and" : null;
+                case OR:
+                    return !floating ? "or" : null;
+                case XOR:
+                    return !floating ? "xor" : null;
+                default:
+                    return null;
+            }
+        }
+
+        private boolean isCommutative(BinaryOperation operation) {
+            switch (operation) {
+                case ADD:
+                case MULTIPLY:
+                case AND:
+                case OR:
+                case XOR:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Tells whether the given variable is loaded from array after the last store, so that vectorized
+         * store reads the same value.
+         */
+        private boolean isLoad(Variable var) {
+            Integer epoch = loadEpochs.get(var);
+            if (epoch == null || epoch != stores.size()) {
+                return false;
+            }
+            consumed.add(loop.definitionOf(var));
+            return true;
+        }
+
+        private Variable loadedArray(Variable var) {
+            return arrayObject(((GetElementInstruction) loop.definitionOf(var)).getArray());
+        }
+
+        private boolean isScalar(Variable var) {
+            return loop.isInvariant(var) || isConstant(loop.definitionOf(var));
+        }
+
+        private Instruction definitionInLoop(Variable var) {
+            return loop.isInvariant(var) ? null : loop.definitionOf(var);
+        }
+
+        private Variable indexOf(Variable var) {
+            while (true) {
+                var = loop.original(var);
+                Instruction definition = loop.definitionOf(var);
+                if (!(definition instanceof BoundCheckInstruction)) {
+                    return var;
+                }
+                var = ((BoundCheckInstruction) definition).getIndex();
+            }
+        }
+
+        private Variable arrayObject(Variable array) {
+            while (true) {
+                Instruction definition = loop.definitionOf(array);
+                if (definition instanceof UnwrapArrayInstruction) {
+                    array = ((UnwrapArrayInstruction) definition).getArray();
+                } else if (definition instanceof NullCheckInstruction) {
+                    array = ((NullCheckInstruction) definition).getValue();
+                } else if (definition instanceof AssignInstruction) {
+                    array = ((AssignInstruction) definition).getAssignee();
+                } else {
+                    return array;
+                }
+            }
+        }
+    }
+}
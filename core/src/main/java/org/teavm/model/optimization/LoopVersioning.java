@@ -0,0 +1,297 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntIntMap;
+import com.carrotsearch.hppc.IntSet;
+import java.util.ArrayList;
+import java.util.List;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Instruction;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.TextLocation;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.ArrayLengthInstruction;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.BinaryInstruction;
+import org.teavm.model.instructions.BinaryOperation;
+import org.teavm.model.instructions.BoundCheckInstruction;
+import org.teavm.model.instructions.BranchingCondition;
+import org.teavm.model.instructions.BranchingInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.instructions.NullCheckInstruction;
+import org.teavm.model.instructions.NumericOperandType;
+import org.teavm.model.instructions.UnwrapArrayInstruction;
+import org.teavm.model.util.BasicBlockMapper;
+import org.teavm.model.util.PhiUpdater;
+
+/**
+ * <p>Creates a copy of loop which runs when loop bound does not exceed lengths of accessed arrays.
+ * I.e. transforms</p>
+ *
+ * <pre>
+ * for (int i = 0; i &lt; n; ++i) {
+ *     a[i] = b[i];
+ * }
+ * </pre>
+ *
+ * <p>to</p>
+ *
+ * <pre>
+ * if (a != null &amp;&amp; n &lt;= a.length &amp;&amp; b != null &amp;&amp; n &lt;= b.length) {
+ *     for (int i = 0; i &lt; n; ++i) {
+ *         a[i] = b[i];
+ *     }
+ * } else {
+ *     for (int i = 0; i &lt; n; ++i) {
+ *         a[i] = b[i];
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>Bound checks are not removed here, the copy only gets conditions dominating it, which allows
+ * {@link RedundantBoundCheckElimination} to remove upper bound checks from it. Original loop
+ * is kept intact as a slow path, so exceptions are still thrown exactly where they are expected.</p>
+ */
+public class LoopVersioning implements MethodOptimization {
+    private static final int MAX_LOOP_SIZE = 128;
+    private static final int MAX_ARRAYS = 4;
+
+    @Override
+    public boolean optimize(MethodOptimizationContext context, Program program) {
+        int parameterCount = context.getMethod().parameterCount() + 1;
+        IntSet processed = new IntHashSet();
+        boolean changed = false;
+        while (true) {
+            boolean versioned = false;
+            for (InnermostLoop loop : InnermostLoop.find(program)) {
+                if (processed.add(loop.head) && version(loop, processed)) {
+                    versioned = true;
+                    break;
+                }
+            }
+            if (!versioned) {
+                break;
+            }
+            new PhiUpdater().updatePhis(program, parameterCount);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean version(InnermostLoop loop, IntSet processed) {
+        if (loop.preheader < 0 || loop.hasTryCatch() || loop.size() > MAX_LOOP_SIZE) {
+            return false;
+        }
+
+        Program program = loop.program;
+        BasicBlock head = program.basicBlockAt(loop.head);
+        if (!(head.getLastInstruction() instanceof BranchingInstruction)) {
+            return false;
+        }
+        BranchingInstruction branching = (BranchingInstruction) head.getLastInstruction();
+        boolean consequentInLoop = loop.contains(branching.getConsequent().getIndex());
+        if (consequentInLoop == loop.contains(branching.getAlternative().getIndex())) {
+            return false;
+        }
+        Instruction definition = loop.definitionOf(loop.original(branching.getOperand()));
+        if (!(definition instanceof BinaryInstruction)) {
+            return false;
+        }
+        BinaryInstruction comparison = (BinaryInstruction) definition;
+        if (comparison.getOperation() != BinaryOperation.COMPARE
+                || comparison.getOperandType() != NumericOperandType.INT) {
+            return false;
+        }
+
+        BranchingCondition condition = consequentInLoop
+                ? branching.getCondition()
+                : negate(branching.getCondition());
+        Variable index;
+        Variable bound;
+        boolean strict;
+        switch (condition) {
+            case LESS:
+            case LESS_OR_EQUAL:
+                index = comparison.getFirstOperand();
+                bound = comparison.getSecondOperand();
+                strict = condition == BranchingCondition.LESS;
+                break;
+            case GREATER:
+            case GREATER_OR_EQUAL:
+                index = comparison.getSecondOperand();
+                bound = comparison.getFirstOperand();
+                strict = condition == BranchingCondition.GREATER;
+                break;
+            default:
+                return false;
+        }
+        index = loop.original(index);
+        if (!loop.isInvariant(bound) || loop.isInvariant(index)) {
+            return false;
+        }
+
+        List<Variable> arrays = findArrays(loop, index);
+        if (arrays.isEmpty() || arrays.size() > MAX_ARRAYS) {
+            return false;
+        }
+
+        BasicBlock fastEntry = program.createBasicBlock();
+        List<BasicBlock> guards = new ArrayList<>();
+        BasicBlock next = fastEntry;
+        TextLocation location = branching.getLocation();
+        for (int i = arrays.size() - 1; i >= 0; --i) {
+            next = createGuard(program, arrays.get(i), bound, strict, next, head, location, guards);
+        }
+
+        IntIntMap copies = loop.copy(-1);
+        BasicBlock headCopy = program.basicBlockAt(copies.get(loop.head));
+        JumpInstruction jump = new JumpInstruction();
+        jump.setTarget(headCopy);
+        jump.setLocation(location);
+        fastEntry.add(jump);
+
+        List<Phi> phis = head.getPhis();
+        List<Phi> phiCopies = headCopy.getPhis();
+        for (int i = 0; i < phis.size(); ++i) {
+            Phi phi = phis.get(i);
+            Phi phiCopy = phiCopies.get(i);
+            InnermostLoop.addIncoming(phiCopy, fastEntry, InnermostLoop.incomingFrom(phi, loop.preheader));
+            for (int latch : loop.latches) {
+                InnermostLoop.addIncoming(phiCopy, program.basicBlockAt(copies.get(latch)),
+                        InnermostLoop.incomingFrom(phi, latch));
+            }
+        }
+
+        BasicBlock firstGuard = next;
+        program.basicBlockAt(loop.preheader).getLastInstruction().acceptVisitor(
+                new BasicBlockMapper((int block) -> block == loop.head ? firstGuard.getIndex() : block));
+        loop.replacePreheaderIncomings(guards.toArray(new BasicBlock[0]));
+
+        processed.add(headCopy.getIndex());
+        return true;
+    }
+
+    /**
+     * Collects arrays which are accessed in loop with the given index and still have upper bound check.
+     * Arrays are tracked back to variables defined before loop.
+     */
+    private List<Variable> findArrays(InnermostLoop loop, Variable index) {
+        List<Variable> arrays = new ArrayList<>();
+        for (int node : loop.nodes) {
+            for (Instruction instruction : loop.program.basicBlockAt(node)) {
+                if (!(instruction instanceof BoundCheckInstruction)) {
+                    continue;
+                }
+                BoundCheckInstruction boundCheck = (BoundCheckInstruction) instruction;
+                if (boundCheck.getArray() == null || loop.original(boundCheck.getIndex()) != index) {
+                    continue;
+                }
+                Variable array = arrayObject(loop, boundCheck.getArray());
+                if (!loop.isInvariant(array)) {
+                    return new ArrayList<>();
+                }
+                if (!arrays.contains(array)) {
+                    arrays.add(array);
+                }
+            }
+        }
+        return arrays;
+    }
+
+    private Variable arrayObject(InnermostLoop loop, Variable array) {
+        while (true) {
+            Instruction definition = loop.definitionOf(array);
+            if (definition instanceof UnwrapArrayInstruction) {
+                array = ((UnwrapArrayInstruction) definition).getArray();
+            } else if (definition instanceof NullCheckInstruction) {
+                array = ((NullCheckInstruction) definition).getValue();
+            } else if (definition instanceof AssignInstruction) {
+                array = ((AssignInstruction) definition).getAssignee();
+            } else {
+                return array;
+            }
+        }
+    }
+
+    /**
+     * Creates two blocks, first goes to slow path if array is null, second goes to slow path if loop bound
+     * exceeds array length.
+     */
+    private BasicBlock createGuard(Program program, Variable array, Variable bound, boolean strict,
+            BasicBlock next, BasicBlock slowPath, TextLocation location, List<BasicBlock> guards) {
+        BasicBlock nullGuard = program.createBasicBlock();
+        BasicBlock lengthGuard = program.createBasicBlock();
+
+        BranchingInstruction nullBranch = new BranchingInstruction(BranchingCondition.NULL);
+        nullBranch.setOperand(array);
+        nullBranch.setConsequent(slowPath);
+        nullBranch.setAlternative(lengthGuard);
+        nullBranch.setLocation(location);
+        nullGuard.add(nullBranch);
+
+        ArrayLengthInstruction length = new ArrayLengthInstruction();
+        length.setArray(array);
+        length.setReceiver(program.createVariable());
+        length.setLocation(location);
+        lengthGuard.add(length);
+
+        BinaryInstruction compare = new BinaryInstruction(BinaryOperation.COMPARE, NumericOperandType.INT);
+        compare.setFirstOperand(bound);
+        compare.setSecondOperand(length.getReceiver());
+        compare.setReceiver(program.createVariable());
+        compare.setLocation(location);
+        lengthGuard.add(compare);
+
+        // Loop condition is either `i < n` or `i <= n`, so index never exceeds `n - 1` or `n` respectively
+        BranchingInstruction lengthBranch = new BranchingInstruction(strict
+                ? BranchingCondition.LESS_OR_EQUAL
+                : BranchingCondition.LESS);
+        lengthBranch.setOperand(compare.getReceiver());
+        lengthBranch.setConsequent(next);
+        lengthBranch.setAlternative(slowPath);
+        lengthBranch.setLocation(location);
+        lengthGuard.add(lengthBranch);
+
+        guards.add(nullGuard);
+        guards.add(lengthGuard);
+        return nullGuard;
+    }
+
+    private static BranchingCondition negate(BranchingCondition condition) {
+        switch (condition) {
+            case EQUAL:
+                return BranchingCondition.NOT_EQUAL;
+            case NOT_EQUAL:
+                return BranchingCondition.EQUAL;
+            case LESS:
+                return BranchingCondition.GREATER_OR_EQUAL;
+            case LESS_OR_EQUAL:
+                return BranchingCondition.GREATER;
+            case GREATER:
+                return BranchingCondition.LESS_OR_EQUAL;
+            case GREATER_OR_EQUAL:
+                return BranchingCondition.LESS;
+            case NULL:
+                return BranchingCondition.NOT_NULL;
+            case NOT_NULL:
+                return BranchingCondition.NULL;
+        }
+        return condition;
+    }
+}
@@ -0,0 +1,988 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntSet;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import java.util.Arrays;
+import org.teavm.common.DominatorTree;
+import org.teavm.common.Graph;
+import org.teavm.common.GraphUtils;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.TryCatchBlock;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.AbstractInstructionVisitor;
+import org.teavm.model.instructions.ArrayLengthInstruction;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.BinaryBranchingCondition;
+import org.teavm.model.instructions.BinaryBranchingInstruction;
+import org.teavm.model.instructions.BinaryInstruction;
+import org.teavm.model.instructions.BinaryOperation;
+import org.teavm.model.instructions.BoundCheckInstruction;
+import org.teavm.model.instructions.BranchingInstruction;
+import org.teavm.model.instructions.CastIntegerInstruction;
+import org.teavm.model.instructions.ConstructArrayInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.NegateInstruction;
+import org.teavm.model.instructions.NullCheckInstruction;
+import org.teavm.model.instructions.NumericOperandType;
+import org.teavm.model.instructions.UnwrapArrayInstruction;
+import org.teavm.model.util.DefinitionExtractor;
+import org.teavm.model.util.ProgramUtils;
+
+/**
+ * <p>Removes parts of {@link BoundCheckInstruction} that can be proven to always succeed.</p>
+ *
+ * <p>Range of each integer variable is computed as an interval of constants. Since program is in SSA form,
+ * a variable has single range for the whole method, however, a use of variable can see a narrower range
+ * when it's dominated by a condition on this variable. Conditions are tracked both against constants
+ * and against other variables, including array lengths, so that variable compared with
+ * {@code a.length} is known to be strictly less than length of {@code a}. Besides, it's propagated
+ * through operations that can't increase a value, like subtraction of non-negative number.</p>
+ *
+ * <p>Induction variables of loops like {@code for (int i = 0; i < a.length; ++i)} are phis in loop headers.
+ * Their ranges are computed by fixed point iteration, where the bound that keeps growing on loop's back edge
+ * is widened to the limit of {@code int} type. The loop condition then refines the widened range,
+ * which proves that increment does not overflow and that index stays non-negative.</p>
+ */
+public class RedundantBoundCheckElimination implements MethodOptimization {
+    private static final long MIN = Integer.MIN_VALUE;
+    private static final long MAX = Integer.MAX_VALUE;
+    private static final int MAX_ITERATIONS = 100;
+
+    private Program program;
+    private int[] order;
+    private boolean[] widenAt;
+    private int[] canonical;
+    private int[] arrayOfLength;
+    private int[] compareLeft;
+    private int[] compareRight;
+    private Fact[] blockFacts;
+    private long[] lower;
+    private long[] upper;
+    private IntSet[] lengthBounds;
+    private Fact currentFacts;
+    private boolean changed;
+
+    @Override
+    public boolean optimize(MethodOptimizationContext context, Program program) {
+        if (program.basicBlockCount() == 0) {
+            return false;
+        }
+        if (!hasBoundChecks(program)) {
+            return false;
+        }
+
+        this.program = program;
+        boolean result = false;
+        try {
+            prepare(context.getMethod().parameterCount());
+            if (computeRanges() && computeLengthBounds()) {
+                result = eliminate();
+            }
+        } finally {
+            this.program = null;
+            order = null;
+            widenAt = null;
+            canonical = null;
+            arrayOfLength = null;
+            compareLeft = null;
+            compareRight = null;
+            blockFacts = null;
+            lower = null;
+            upper = null;
+            lengthBounds = null;
+            currentFacts = null;
+        }
+        return result;
+    }
+
+    private static boolean hasBoundChecks(Program program) {
+        for (BasicBlock block : program.getBasicBlocks()) {
+            for (Instruction instruction : block) {
+                if (instruction instanceof BoundCheckInstruction) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void prepare(int parameterCount) {
+        Graph cfg = ProgramUtils.buildControlFlowGraph(program);
+        DominatorTree dom = GraphUtils.buildDominatorTree(cfg);
+        int[] rpo = GraphUtils.dfs(cfg);
+        int reachableStart = rpo[0];
+        order = new int[cfg.size() - reachableStart];
+        for (int i = 0; i < cfg.size(); ++i) {
+            if (rpo[i] >= reachableStart) {
+                order[rpo[i] - reachableStart] = i;
+            }
+        }
+
+        widenAt = new boolean[cfg.size()];
+        for (int node : order) {
+            for (int predecessor : cfg.incomingEdges(node)) {
+                if (rpo[predecessor] >= rpo[node]) {
+                    widenAt[node] = true;
+                }
+            }
+        }
+
+        int variableCount = program.variableCount();
+        canonical = new int[variableCount];
+        for (int i = 0; i < variableCount; ++i) {
+            canonical[i] = i;
+        }
+        arrayOfLength = new int[variableCount];
+        Arrays.fill(arrayOfLength, -1);
+        compareLeft = new int[variableCount];
+        Arrays.fill(compareLeft, -1);
+        compareRight = new int[variableCount];
+
+        lower = new long[variableCount];
+        upper = new long[variableCount];
+        for (int i = 0; i < variableCount; ++i) {
+            setEmpty(i);
+        }
+        for (int i = 0; i <= parameterCount && i < variableCount; ++i) {
+            setFull(i);
+        }
+
+        PreparationVisitor preparationVisitor = new PreparationVisitor();
+        blockFacts = new Fact[cfg.size()];
+        for (int node : order) {
+            BasicBlock block = program.basicBlockAt(node);
+            for (Instruction instruction : block) {
+                instruction.acceptVisitor(preparationVisitor);
+            }
+
+            int idom = dom.immediateDominatorOf(node);
+            Fact facts = idom >= 0 ? blockFacts[idom] : null;
+            if (cfg.incomingEdgesCount(node) == 1) {
+                int predecessor = cfg.incomingEdges(node)[0];
+                if (predecessor != node) {
+                    facts = edgeFacts(program.basicBlockAt(predecessor), block, facts);
+                }
+            }
+            blockFacts[node] = facts;
+        }
+    }
+
+    private Fact edgeFacts(BasicBlock source, BasicBlock target, Fact facts) {
+        for (TryCatchBlock tryCatch : source.getTryCatchBlocks()) {
+            if (tryCatch.getHandler() == target) {
+                return facts;
+            }
+        }
+
+        Instruction last = source.getLastInstruction();
+        if (last instanceof BranchingInstruction) {
+            BranchingInstruction branching = (BranchingInstruction) last;
+            if (branching.getConsequent() == branching.getAlternative()) {
+                return facts;
+            }
+            boolean positive = branching.getConsequent() == target;
+            int operand = canonical[branching.getOperand().getIndex()];
+            int left = compareLeft[operand];
+            int right = compareRight[operand];
+            if (left < 0) {
+                left = operand;
+                right = -1;
+            }
+
+            Relation relation;
+            switch (branching.getCondition()) {
+                case LESS:
+                    relation = positive ? Relation.LESS : Relation.GREATER_OR_EQUAL;
+                    break;
+                case LESS_OR_EQUAL:
+                    relation = positive ? Relation.LESS_OR_EQUAL : Relation.GREATER;
+                    break;
+                case GREATER:
+                    relation = positive ? Relation.GREATER : Relation.LESS_OR_EQUAL;
+                    break;
+                case GREATER_OR_EQUAL:
+                    relation = positive ? Relation.GREATER_OR_EQUAL : Relation.LESS;
+                    break;
+                case EQUAL:
+                    relation = positive ? Relation.EQUAL : null;
+                    break;
+                case NOT_EQUAL:
+                    relation = positive ? null : Relation.EQUAL;
+                    break;
+                default:
+                    relation = null;
+                    break;
+            }
+            if (relation != null) {
+                facts = new Fact(left, relation, right, facts);
+            }
+        } else if (last instanceof BinaryBranchingInstruction) {
+            BinaryBranchingInstruction branching = (BinaryBranchingInstruction) last;
+            if (branching.getConsequent() == branching.getAlternative()) {
+                return facts;
+            }
+            boolean positive = branching.getConsequent() == target;
+            if (branching.getCondition() == BinaryBranchingCondition.EQUAL && positive
+                    || branching.getCondition() == BinaryBranchingCondition.NOT_EQUAL && !positive) {
+                facts = new Fact(canonical[branching.getFirstOperand().getIndex()], Relation.EQUAL,
+                        canonical[branching.getSecondOperand().getIndex()], facts);
+            }
+        }
+        return facts;
+    }
+
+    private boolean computeRanges() {
+        DefinitionExtractor defExtractor = new DefinitionExtractor();
+        RangeVisitor visitor = new RangeVisitor();
+        int[] phiUpdates = new int[program.variableCount()];
+        int iterations = 0;
+        do {
+            if (++iterations > MAX_ITERATIONS) {
+                return false;
+            }
+            changed = false;
+            for (int node : order) {
+                BasicBlock block = program.basicBlockAt(node);
+                for (Phi phi : block.getPhis()) {
+                    int receiver = phi.getReceiver().getIndex();
+                    long low = MAX + 1;
+                    long high = MIN - 1;
+                    for (Incoming incoming : phi.getIncomings()) {
+                        BasicBlock source = incoming.getSource();
+                        Fact facts = edgeFacts(source, block, blockFacts[source.getIndex()]);
+                        long[] range = rangeAt(incoming.getValue().getIndex(), facts);
+                        if (range[0] <= range[1]) {
+                            low = Math.min(low, range[0]);
+                            high = Math.max(high, range[1]);
+                        }
+                    }
+                    if (low > high) {
+                        continue;
+                    }
+                    if (!isEmpty(receiver)) {
+                        low = Math.min(low, lower[receiver]);
+                        high = Math.max(high, upper[receiver]);
+                        if (widenAt[node] && (low < lower[receiver] || high > upper[receiver])) {
+                            if (++phiUpdates[receiver] > 1) {
+                                if (low < lower[receiver]) {
+                                    low = MIN;
+                                }
+                                if (high > upper[receiver]) {
+                                    high = MAX;
+                                }
+                            }
+                        }
+                    }
+                    update(receiver, low, high);
+                }
+
+                currentFacts = blockFacts[node];
+                for (Instruction instruction : block) {
+                    visitor.handled = false;
+                    instruction.acceptVisitor(visitor);
+                    if (!visitor.handled) {
+                        instruction.acceptVisitor(defExtractor);
+                        for (Variable definedVar : defExtractor.getDefinedVariables()) {
+                            update(definedVar.getIndex(), MIN, MAX);
+                        }
+                    }
+                }
+            }
+        } while (changed);
+        return true;
+    }
+
+    private boolean computeLengthBounds() {
+        int variableCount = program.variableCount();
+        lengthBounds = new IntSet[variableCount];
+        boolean[] optimistic = new boolean[variableCount];
+        for (int node : order) {
+            BasicBlock block = program.basicBlockAt(node);
+            for (Phi phi : block.getPhis()) {
+                optimistic[phi.getReceiver().getIndex()] = true;
+            }
+            for (Instruction instruction : block) {
+                if (instruction instanceof BoundCheckInstruction) {
+                    optimistic[((BoundCheckInstruction) instruction).getReceiver().getIndex()] = true;
+                } else if (instruction instanceof BinaryInstruction) {
+                    BinaryInstruction binary = (BinaryInstruction) instruction;
+                    if (binary.getOperandType() == NumericOperandType.INT) {
+                        optimistic[binary.getReceiver().getIndex()] = true;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < variableCount; ++i) {
+            if (!optimistic[i]) {
+                lengthBounds[i] = new IntHashSet();
+            }
+        }
+
+        LengthBoundVisitor visitor = new LengthBoundVisitor();
+        int iterations = 0;
+        do {
+            if (++iterations > MAX_ITERATIONS) {
+                return false;
+            }
+            changed = false;
+            for (int node : order) {
+                BasicBlock block = program.basicBlockAt(node);
+                for (Phi phi : block.getPhis()) {
+                    IntSet bounds = phi.getIncomings().isEmpty() ? new IntHashSet() : null;
+                    for (Incoming incoming : phi.getIncomings()) {
+                        BasicBlock source = incoming.getSource();
+                        Fact facts = edgeFacts(source, block, blockFacts[source.getIndex()]);
+                        bounds = intersect(bounds, lengthBoundsAt(incoming.getValue().getIndex(), facts));
+                    }
+                    updateLengthBounds(phi.getReceiver().getIndex(), bounds);
+                }
+
+                currentFacts = blockFacts[node];
+                for (Instruction instruction : block) {
+                    instruction.acceptVisitor(visitor);
+                }
+            }
+        } while (changed);
+        return true;
+    }
+
+    private boolean eliminate() {
+        boolean result = false;
+        for (int node : order) {
+            BasicBlock block = program.basicBlockAt(node);
+            for (Instruction instruction : block) {
+                if (!(instruction instanceof BoundCheckInstruction)) {
+                    continue;
+                }
+                BoundCheckInstruction boundCheck = (BoundCheckInstruction) instruction;
+                int index = boundCheck.getIndex().getIndex();
+                long[] range = rangeAt(index, blockFacts[node]);
+                if (range[0] > range[1]) {
+                    continue;
+                }
+
+                boolean lowerRedundant = !boundCheck.isLower() || range[0] >= 0;
+                boolean upperRedundant = true;
+                if (boundCheck.getArray() != null) {
+                    int array = canonical[boundCheck.getArray().getIndex()];
+                    IntSet bounds = lengthBoundsAt(index, blockFacts[node]);
+                    upperRedundant = bounds != null && bounds.contains(array)
+                            || !isEmpty(array) && range[1] < Math.max(0, lower[array]);
+                }
+
+                if (lowerRedundant && upperRedundant) {
+                    AssignInstruction assign = new AssignInstruction();
+                    assign.setAssignee(boundCheck.getIndex());
+                    assign.setReceiver(boundCheck.getReceiver());
+                    assign.setLocation(boundCheck.getLocation());
+                    boundCheck.replace(assign);
+                    result = true;
+                } else if (lowerRedundant && boundCheck.isLower()) {
+                    boundCheck.setLower(false);
+                    result = true;
+                } else if (upperRedundant && boundCheck.getArray() != null) {
+                    boundCheck.setArray(null);
+                    result = true;
+                }
+            }
+        }
+        return result;
+    }
+
+    private long[] rangeAt(int var, Fact facts) {
+        var = canonical[var];
+        long low = lower[var];
+        long high = upper[var];
+        for (Fact fact = facts; fact != null; fact = fact.next) {
+            Relation relation;
+            int other;
+            if (fact.left == var) {
+                relation = fact.relation;
+                other = fact.right;
+            } else if (fact.right == var) {
+                relation = fact.relation.swap();
+                other = fact.left;
+            } else {
+                continue;
+            }
+
+            long otherLow = other >= 0 ? lower[other] : 0;
+            long otherHigh = other >= 0 ? upper[other] : 0;
+            if (otherLow > otherHigh) {
+                return new long[] { 1, 0 };
+            }
+            switch (relation) {
+                case LESS:
+                    high = Math.min(high, otherHigh - 1);
+                    break;
+                case LESS_OR_EQUAL:
+                    high = Math.min(high, otherHigh);
+                    break;
+                case GREATER:
+                    low = Math.max(low, otherLow + 1);
+                    break;
+                case GREATER_OR_EQUAL:
+                    low = Math.max(low, otherLow);
+                    break;
+                case EQUAL:
+                    low = Math.max(low, otherLow);
+                    high = Math.min(high, otherHigh);
+                    break;
+            }
+        }
+        return new long[] { low, high };
+    }
+
+    private IntSet lengthBoundsAt(int var, Fact facts) {
+        var = canonical[var];
+        if (lengthBounds[var] == null) {
+            return null;
+        }
+        IntSet result = new IntHashSet(lengthBounds[var]);
+        for (Fact fact = facts; fact != null; fact = fact.next) {
+            Relation relation;
+            int other;
+            if (fact.left == var) {
+                relation = fact.relation;
+                other = fact.right;
+            } else if (fact.right == var) {
+                relation = fact.relation.swap();
+                other = fact.left;
+            } else {
+                continue;
+            }
+            if (other < 0) {
+                continue;
+            }
+
+            switch (relation) {
+                case LESS:
+                    if (arrayOfLength[other] >= 0) {
+                        result.add(arrayOfLength[other]);
+                    }
+                    addLengthsBounding(result, other, true, facts);
+                    if (lengthBounds[other] == null) {
+                        return null;
+                    }
+                    addAll(result, lengthBounds[other]);
+                    break;
+                case LESS_OR_EQUAL:
+                case EQUAL:
+                    addLengthsBounding(result, other, false, facts);
+                    if (lengthBounds[other] == null) {
+                        return null;
+                    }
+                    addAll(result, lengthBounds[other]);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds arrays whose lengths are known from facts to be not less than {@code var}, if {@code strict}
+     * is set, or greater than {@code var} otherwise. This covers conditions like
+     * {@code if (n <= a.length) for (i = 0; i < n; ++i) a[i]}, produced by {@link LoopVersioning}.
+     */
+    private void addLengthsBounding(IntSet target, int var, boolean strict, Fact facts) {
+        for (Fact fact = facts; fact != null; fact = fact.next) {
+            Relation relation;
+            int other;
+            if (fact.left == var) {
+                relation = fact.relation;
+                other = fact.right;
+            } else if (fact.right == var) {
+                relation = fact.relation.swap();
+                other = fact.left;
+            } else {
+                continue;
+            }
+            if (other < 0 || arrayOfLength[other] < 0) {
+                continue;
+            }
+            if (relation == Relation.LESS || strict
+                    && (relation == Relation.LESS_OR_EQUAL || relation == Relation.EQUAL)) {
+                target.add(arrayOfLength[other]);
+            }
+        }
+    }
+
+    private static void addAll(IntSet target, IntSet source) {
+        for (IntCursor cursor : source) {
+            target.add(cursor.value);
+        }
+    }
+
+    private static IntSet intersect(IntSet first, IntSet second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        IntSet result = new IntHashSet();
+        for (IntCursor cursor : first) {
+            if (second.contains(cursor.value)) {
+                result.add(cursor.value);
+            }
+        }
+        return result;
+    }
+
+    private void updateLengthBounds(int var, IntSet bounds) {
+        if (bounds == null) {
+            return;
+        }
+        IntSet existing = lengthBounds[var];
+        if (existing == null || existing.size() != bounds.size()) {
+            lengthBounds[var] = bounds;
+            changed = true;
+        }
+    }
+
+    private boolean isEmpty(int var) {
+        return lower[var] > upper[var];
+    }
+
+    private void setEmpty(int var) {
+        lower[var] = 1;
+        upper[var] = 0;
+    }
+
+    private void setFull(int var) {
+        lower[var] = MIN;
+        upper[var] = MAX;
+    }
+
+    private void update(int var, long low, long high) {
+        if (low < MIN || high > MAX) {
+            low = MIN;
+            high = MAX;
+        }
+        if (lower[var] != low || upper[var] != high) {
+            lower[var] = low;
+            upper[var] = high;
+            changed = true;
+        }
+    }
+
+    class PreparationVisitor extends AbstractInstructionVisitor {
+        @Override
+        public void visit(AssignInstruction insn) {
+            alias(insn.getReceiver(), insn.getAssignee());
+        }
+
+        @Override
+        public void visit(NullCheckInstruction insn) {
+            alias(insn.getReceiver(), insn.getValue());
+        }
+
+        @Override
+        public void visit(UnwrapArrayInstruction insn) {
+            alias(insn.getReceiver(), insn.getArray());
+        }
+
+        private void alias(Variable receiver, Variable value) {
+            canonical[receiver.getIndex()] = canonical[value.getIndex()];
+        }
+
+        @Override
+        public void visit(ArrayLengthInstruction insn) {
+            arrayOfLength[insn.getReceiver().getIndex()] = canonical[insn.getArray().getIndex()];
+        }
+
+        @Override
+        public void visit(BinaryInstruction insn) {
+            if (insn.getOperation() == BinaryOperation.COMPARE && insn.getOperandType() == NumericOperandType.INT) {
+                int receiver = insn.getReceiver().getIndex();
+                compareLeft[receiver] = canonical[insn.getFirstOperand().getIndex()];
+                compareRight[receiver] = canonical[insn.getSecondOperand().getIndex()];
+            }
+        }
+    }
+
+    class RangeVisitor extends AbstractInstructionVisitor {
+        boolean handled;
+
+        @Override
+        public void visit(AssignInstruction insn) {
+            handled = true;
+        }
+
+        @Override
+        public void visit(NullCheckInstruction insn) {
+            handled = true;
+        }
+
+        @Override
+        public void visit(UnwrapArrayInstruction insn) {
+            handled = true;
+        }
+
+        @Override
+        public void visit(IntegerConstantInstruction insn) {
+            handled = true;
+            update(insn.getReceiver().getIndex(), insn.getConstant(), insn.getConstant());
+        }
+
+        @Override
+        public void visit(ConstructArrayInstruction insn) {
+            handled = true;
+            long[] size = rangeAt(insn.getSize().getIndex(), currentFacts);
+            if (size[0] <= size[1]) {
+                update(insn.getReceiver().getIndex(), Math.max(0, size[0]), size[1]);
+            }
+        }
+
+        @Override
+        public void visit(ArrayLengthInstruction insn) {
+            handled = true;
+            long[] length = lengthRange(insn.getArray());
+            if (length[0] <= length[1]) {
+                update(insn.getReceiver().getIndex(), length[0], length[1]);
+            }
+        }
+
+        @Override
+        public void visit(BoundCheckInstruction insn) {
+            handled = true;
+            long[] range = rangeAt(insn.getIndex().getIndex(), currentFacts);
+            if (insn.isLower()) {
+                range[0] = Math.max(range[0], 0);
+            }
+            if (insn.getArray() != null) {
+                range[1] = Math.min(range[1], lengthRange(insn.getArray())[1] - 1);
+            }
+            if (range[0] <= range[1]) {
+                update(insn.getReceiver().getIndex(), range[0], range[1]);
+            }
+        }
+
+        private long[] lengthRange(Variable array) {
+            int index = canonical[array.getIndex()];
+            return new long[] { Math.max(0, lower[index]), Math.min(MAX, upper[index]) };
+        }
+
+        @Override
+        public void visit(NegateInstruction insn) {
+            if (insn.getOperandType() != NumericOperandType.INT) {
+                return;
+            }
+            handled = true;
+            long[] operand = rangeAt(insn.getOperand().getIndex(), currentFacts);
+            if (operand[0] <= operand[1]) {
+                update(insn.getReceiver().getIndex(), -operand[1], -operand[0]);
+            }
+        }
+
+        @Override
+        public void visit(CastIntegerInstruction insn) {
+            handled = true;
+            long low;
+            long high;
+            switch (insn.getTargetType()) {
+                case BYTE:
+                    low = Byte.MIN_VALUE;
+                    high = Byte.MAX_VALUE;
+                    break;
+                case SHORT:
+                    low = Short.MIN_VALUE;
+                    high = Short.MAX_VALUE;
+                    break;
+                default:
+                    low = Character.MIN_VALUE;
+                    high = Character.MAX_VALUE;
+                    break;
+            }
+            long[] operand = rangeAt(insn.getValue().getIndex(), currentFacts);
+            if (operand[0] > operand[1]) {
+                return;
+            }
+            if (operand[0] >= low && operand[1] <= high) {
+                low = operand[0];
+                high = operand[1];
+            }
+            update(insn.getReceiver().getIndex(), low, high);
+        }
+
+        @Override
+        public void visit(BinaryInstruction insn) {
+            if (insn.getOperandType() != NumericOperandType.INT) {
+                return;
+            }
+            handled = true;
+            long[] a = rangeAt(insn.getFirstOperand().getIndex(), currentFacts);
+            long[] b = rangeAt(insn.getSecondOperand().getIndex(), currentFacts);
+            if (a[0] > a[1] || b[0] > b[1]) {
+                return;
+            }
+
+            long low = MIN;
+            long high = MAX;
+            switch (insn.getOperation()) {
+                case ADD:
+                    low = a[0] + b[0];
+                    high = a[1] + b[1];
+                    break;
+                case SUBTRACT:
+                    low = a[0] - b[1];
+                    high = a[1] - b[0];
+                    break;
+                case MULTIPLY: {
+                    long p1 = a[0] * b[0];
+                    long p2 = a[0] * b[1];
+                    long p3 = a[1] * b[0];
+                    long p4 = a[1] * b[1];
+                    low = Math.min(Math.min(p1, p2), Math.min(p3, p4));
+                    high = Math.max(Math.max(p1, p2), Math.max(p3, p4));
+                    break;
+                }
+                case DIVIDE:
+                    if (b[0] >= 1) {
+                        long p1 = a[0] / b[0];
+                        long p2 = a[0] / b[1];
+                        long p3 = a[1] / b[0];
+                        long p4 = a[1] / b[1];
+                        low = Math.min(Math.min(p1, p2), Math.min(p3, p4));
+                        high = Math.max(Math.max(p1, p2), Math.max(p3, p4));
+                    }
+                    break;
+                case MODULO:
+                    if (b[0] >= 1) {
+                        if (a[0] >= 0) {
+                            low = 0;
+                            high = Math.min(a[1], b[1] - 1);
+                        } else {
+                            low = Math.max(a[0], 1 - b[1]);
+                            high = a[1] >= 0 ? Math.min(a[1], b[1] - 1) : 0;
+                        }
+                    }
+                    break;
+                case AND:
+                    if (a[0] >= 0 && b[0] >= 0) {
+                        low = 0;
+                        high = Math.min(a[1], b[1]);
+                    } else if (a[0] >= 0) {
+                        low = 0;
+                        high = a[1];
+                    } else if (b[0] >= 0) {
+                        low = 0;
+                        high = b[1];
+                    }
+                    break;
+                case OR:
+                case XOR:
+                    if (a[0] >= 0 && b[0] >= 0) {
+                        low = 0;
+                        high = Math.max(0, Long.highestOneBit(Math.max(a[1], b[1])) * 2 - 1);
+                    }
+                    break;
+                case SHIFT_LEFT:
+                    if (b[0] == b[1]) {
+                        int shift = (int) b[0] & 31;
+                        low = a[0] << shift;
+                        high = a[1] << shift;
+                    }
+                    break;
+                case SHIFT_RIGHT:
+                    if (b[0] == b[1]) {
+                        int shift = (int) b[0] & 31;
+                        low = a[0] >> shift;
+                        high = a[1] >> shift;
+                    } else if (a[0] >= 0) {
+                        low = 0;
+                        high = a[1];
+                    } else if (a[1] < 0) {
+                        low = a[0];
+                        high = -1;
+                    } else {
+                        low = a[0];
+                        high = a[1];
+                    }
+                    break;
+                case SHIFT_RIGHT_UNSIGNED:
+                    if (a[0] >= 0) {
+                        if (b[0] == b[1]) {
+                            int shift = (int) b[0] & 31;
+                            low = a[0] >> shift;
+                            high = a[1] >> shift;
+                        } else {
+                            low = 0;
+                            high = a[1];
+                        }
+                    } else if (b[0] == b[1] && ((int) b[0] & 31) != 0) {
+                        low = 0;
+                        high = -1 >>> ((int) b[0] & 31);
+                    }
+                    break;
+                case COMPARE:
+                    low = -1;
+                    high = 1;
+                    break;
+            }
+            update(insn.getReceiver().getIndex(), low, high);
+        }
+    }
+
+    class LengthBoundVisitor extends AbstractInstructionVisitor {
+        private IntSet bounds;
+
+        @Override
+        public void visit(BoundCheckInstruction insn) {
+            IntSet indexBounds = lengthBoundsAt(insn.getIndex().getIndex(), currentFacts);
+            if (indexBounds != null && insn.getArray() != null) {
+                indexBounds.add(canonical[insn.getArray().getIndex()]);
+            }
+            updateLengthBounds(insn.getReceiver().getIndex(), indexBounds);
+        }
+
+        @Override
+        public void visit(BinaryInstruction insn) {
+            if (insn.getOperandType() != NumericOperandType.INT) {
+                return;
+            }
+            int first = insn.getFirstOperand().getIndex();
+            int second = insn.getSecondOperand().getIndex();
+            long[] a = rangeAt(first, currentFacts);
+            long[] b = rangeAt(second, currentFacts);
+            if (a[0] > a[1] || b[0] > b[1]) {
+                return;
+            }
+
+            bounds = new IntHashSet();
+            switch (insn.getOperation()) {
+                case ADD:
+                    if (a[0] + b[0] >= MIN) {
+                        if (b[1] <= 0) {
+                            include(first);
+                            if (b[1] < 0) {
+                                includeLength(first);
+                            }
+                        }
+                        if (a[1] <= 0) {
+                            include(second);
+                            if (a[1] < 0) {
+                                includeLength(second);
+                            }
+                        }
+                    }
+                    break;
+                case SUBTRACT:
+                    if (b[0] >= 0 && a[0] - b[1] >= MIN) {
+                        include(first);
+                        if (b[0] > 0) {
+                            includeLength(first);
+                        }
+                    }
+                    break;
+                case DIVIDE:
+                    if (a[0] >= 0 && b[0] >= 1) {
+                        include(first);
+                    }
+                    break;
+                case SHIFT_RIGHT:
+                case SHIFT_RIGHT_UNSIGNED:
+                    if (a[0] >= 0) {
+                        include(first);
+                    }
+                    break;
+                case AND:
+                    if (a[0] >= 0) {
+                        include(first);
+                    }
+                    if (b[0] >= 0) {
+                        include(second);
+                    }
+                    break;
+                case MODULO:
+                    if (a[0] >= 0 && b[0] >= 1) {
+                        include(first);
+                        include(second);
+                        includeLength(second);
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            updateLengthBounds(insn.getReceiver().getIndex(), bounds);
+        }
+
+        private void includeLength(int var) {
+            int array = arrayOfLength[canonical[var]];
+            if (array >= 0 && bounds != null) {
+                bounds.add(array);
+            }
+        }
+
+        private void include(int var) {
+            if (bounds != null) {
+                IntSet varBounds = lengthBoundsAt(var, currentFacts);
+                if (varBounds != null) {
+                    addAll(bounds, varBounds);
+                } else {
+                    bounds = null;
+                }
+            }
+        }
+    }
+
+    enum Relation {
+        LESS,
+        LESS_OR_EQUAL,
+        GREATER,
+        GREATER_OR_EQUAL,
+        EQUAL;
+
+        Relation swap() {
+            switch (this) {
+                case LESS:
+                    return GREATER;
+                case LESS_OR_EQUAL:
+                    return GREATER_OR_EQUAL;
+                case GREATER:
+                    return LESS;
+                case GREATER_OR_EQUAL:
+                    return LESS_OR_EQUAL;
+                default:
+                    return this;
+            }
+        }
+    }
+
+    static class Fact {
+        final int left;
+        final Relation relation;
+        final int right;
+        final Fact next;
+
+        Fact(int left, Relation relation, int right, Fact next) {
+            this.left = left;
+            this.relation = relation;
+            this.right = right;
+            this.next = next;
+        }
+    }
+}
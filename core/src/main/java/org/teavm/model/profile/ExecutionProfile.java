@@ -0,0 +1,210 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.profile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+
+/**
+ * <p>Execution profile collected by an instrumented build. Contains invocation count of each method,
+ * histograms of receiver classes of virtual call sites and counts of taken and not taken edges of
+ * conditional branches. Call sites and branches are identified by keys produced by {@link ProfileSites}.</p>
+ *
+ * <p>Profile is stored in a line-oriented text format:</p>
+ *
+ * <pre>
+ * method &lt;method&gt; &lt;count&gt;
+ * receiver &lt;method&gt; &lt;call site&gt; &lt;class&gt; &lt;count&gt;
+ * branch &lt;method&gt; &lt;branch&gt; &lt;taken&gt; &lt;not taken&gt;
+ * </pre>
+ *
+ * <p>Before profile is consumed by optimizations, it should be attached to programs of methods
+ * with {@link #attach(MethodReference, Program)}, which maps keys to instructions. Hot methods are determined
+ * when profile is read or attached, so that optimizations can query profile concurrently.</p>
+ */
+public class ExecutionProfile {
+    private static final int HOT_METHOD_PERCENT = 5;
+
+    private final Map<MethodReference, MethodData> methods = new LinkedHashMap<>();
+    private final Set<String> coveredClasses = new HashSet<>();
+    private final Map<MethodReference, MethodProfile> attached = new HashMap<>();
+    private boolean countsChanged;
+    private long hotThreshold = Long.MAX_VALUE;
+
+    public static ExecutionProfile read(Reader input) throws IOException {
+        var profile = new ExecutionProfile();
+        var reader = new BufferedReader(input);
+        int lineNumber = 0;
+        while (true) {
+            var line = reader.readLine();
+            if (line == null) {
+                break;
+            }
+            ++lineNumber;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            var parts = line.split(" +");
+            try {
+                switch (parts[0]) {
+                    case "method":
+                        profile.addInvocations(MethodReference.parse(parts[1]), Long.parseLong(parts[2]));
+                        break;
+                    case "receiver":
+                        profile.addReceiver(MethodReference.parse(parts[1]), parts[2], parts[3],
+                                Long.parseLong(parts[4]));
+                        break;
+                    case "branch":
+                        profile.addBranch(MethodReference.parse(parts[1]), parts[2], Long.parseLong(parts[3]),
+                                Long.parseLong(parts[4]));
+                        break;
+                    default:
+                        throw new IOException("Unknown profile entry at line " + lineNumber + ": " + parts[0]);
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Malformed profile entry at line " + lineNumber, e);
+            }
+        }
+        profile.updateHotThreshold();
+        return profile;
+    }
+
+    public void write(Writer output) throws IOException {
+        for (var entry : methods.entrySet()) {
+            var method = entry.getKey();
+            var data = entry.getValue();
+            if (data.invocations > 0) {
+                output.write("method " + method + " " + data.invocations + "\n");
+            }
+            for (var site : data.receivers.entrySet()) {
+                for (var receiver : site.getValue().entrySet()) {
+                    output.write("receiver " + method + " " + site.getKey() + " " + receiver.getKey()
+                            + " " + receiver.getValue() + "\n");
+                }
+            }
+            for (var branch : data.branches.entrySet()) {
+                output.write("branch " + method + " " + branch.getKey() + " " + branch.getValue()[0]
+                        + " " + branch.getValue()[1] + "\n");
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return methods.isEmpty();
+    }
+
+    public void addInvocations(MethodReference method, long count) {
+        data(method).invocations += count;
+    }
+
+    public void addReceiver(MethodReference method, String site, String className, long count) {
+        data(method).receivers.computeIfAbsent(site, k -> new LinkedHashMap<>()).merge(className, count, Long::sum);
+    }
+
+    public void addBranch(MethodReference method, String branch, long taken, long notTaken) {
+        var counts = data(method).branches.computeIfAbsent(branch, k -> new long[2]);
+        counts[0] += taken;
+        counts[1] += notTaken;
+    }
+
+    private MethodData data(MethodReference method) {
+        countsChanged = true;
+        coveredClasses.add(method.getClassName());
+        return methods.computeIfAbsent(method, k -> new MethodData());
+    }
+
+    public long getInvocationCount(MethodReference method) {
+        var data = methods.get(method);
+        return data != null ? data.invocations : 0;
+    }
+
+    public Map<String, Long> getReceivers(MethodReference method, String site) {
+        var data = methods.get(method);
+        var result = data != null ? data.receivers.get(site) : null;
+        return result != null ? Collections.unmodifiableMap(result) : Collections.emptyMap();
+    }
+
+    public long[] getBranch(MethodReference method, String branch) {
+        var data = methods.get(method);
+        var result = data != null ? data.branches.get(branch) : null;
+        return result != null ? result.clone() : null;
+    }
+
+    /**
+     * Tells whether methods of the given class were instrumented. Methods of classes that don't appear
+     * in profile were not instrumented (for example, generated during compilation), so absence of
+     * invocation count for them says nothing about how often they are executed.
+     */
+    public boolean isCovered(MethodReference method) {
+        return coveredClasses.contains(method.getClassName());
+    }
+
+    /**
+     * Tells whether method was never executed during profiling, although its class was instrumented.
+     */
+    public boolean isCold(MethodReference method) {
+        return isCovered(method) && getInvocationCount(method) == 0;
+    }
+
+    /**
+     * Tells whether method is among the most frequently invoked ones. Invocation count that makes
+     * a method hot is computed when profile is read or attached.
+     */
+    public boolean isHot(MethodReference method) {
+        var count = getInvocationCount(method);
+        return count > 0 && count >= hotThreshold;
+    }
+
+    private void updateHotThreshold() {
+        var counts = methods.values().stream().mapToLong(data -> data.invocations).filter(c -> c > 0).toArray();
+        if (counts.length == 0) {
+            hotThreshold = Long.MAX_VALUE;
+        } else {
+            Arrays.sort(counts);
+            hotThreshold = counts[counts.length - 1 - counts.length * HOT_METHOD_PERCENT / 100];
+        }
+        countsChanged = false;
+    }
+
+    public void attach(MethodReference method, Program program) {
+        if (countsChanged) {
+            updateHotThreshold();
+        }
+        attached.put(method, new MethodProfile(this, method, program));
+    }
+
+    public MethodProfile getMethodProfile(MethodReference method) {
+        return attached.get(method);
+    }
+
+    static class MethodData {
+        long invocations;
+        final Map<String, Map<String, Long>> receivers = new LinkedHashMap<>();
+        final Map<String, long[]> branches = new LinkedHashMap<>();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.profile;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.util.TransitionExtractor;
+
+/**
+ * Profile of a single method, resolved against instructions of its program. Instructions are
+ * tracked by identity, so information remains available while optimizations move instructions
+ * between blocks; instructions created by optimizations are considered to have no profile.
+ */
+public class MethodProfile {
+    private final ExecutionProfile profile;
+    private final MethodReference method;
+    private final Map<InvokeInstruction, Map<String, Long>> receivers = new IdentityHashMap<>();
+    private final Set<InvokeInstruction> coldCallSites = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    MethodProfile(ExecutionProfile profile, MethodReference method, Program program) {
+        this.profile = profile;
+        this.method = method;
+        for (var entry : ProfileSites.callSites(program).entrySet()) {
+            var histogram = profile.getReceivers(method, entry.getValue());
+            if (!histogram.isEmpty()) {
+                receivers.put(entry.getKey(), histogram);
+            }
+        }
+        findColdCallSites(program);
+    }
+
+    private void findColdCallSites(Program program) {
+        if (!profile.isCovered(method) || program.basicBlockCount() == 0) {
+            return;
+        }
+        var reachable = new boolean[program.basicBlockCount()];
+        if (profile.getInvocationCount(method) > 0) {
+            var branches = ProfileSites.branches(program);
+            var transitionExtractor = new TransitionExtractor();
+            var stack = new ArrayDeque<BasicBlock>();
+            stack.push(program.basicBlockAt(0));
+            reachable[0] = true;
+            while (!stack.isEmpty()) {
+                var block = stack.pop();
+                var key = branches.get(block);
+                var counts = key != null ? profile.getBranch(method, key) : null;
+                BasicBlock[] targets;
+                if (counts != null && counts[0] + counts[1] > 0) {
+                    var branchTargets = ProfileSites.branchTargets(block.getLastInstruction());
+                    if (counts[0] == 0) {
+                        targets = new BasicBlock[] { branchTargets[1] };
+                    } else if (counts[1] == 0) {
+                        targets = new BasicBlock[] { branchTargets[0] };
+                    } else {
+                        targets = branchTargets;
+                    }
+                } else {
+                    block.getLastInstruction().acceptVisitor(transitionExtractor);
+                    targets = transitionExtractor.getTargets();
+                }
+                if (targets != null) {
+                    for (var target : targets) {
+                        if (!reachable[target.getIndex()]) {
+                            reachable[target.getIndex()] = true;
+                            stack.push(target);
+                        }
+                    }
+                }
+                for (var tryCatch : block.getTryCatchBlocks()) {
+                    var handler = tryCatch.getHandler();
+                    if (!reachable[handler.getIndex()]) {
+                        reachable[handler.getIndex()] = true;
+                        stack.push(handler);
+                    }
+                }
+            }
+        }
+
+        for (var i = 0; i < program.basicBlockCount(); ++i) {
+            var block = program.basicBlockAt(i);
+            if (block == null || reachable[i]) {
+                continue;
+            }
+            for (var instruction : block) {
+                if (instruction instanceof InvokeInstruction) {
+                    coldCallSites.add((InvokeInstruction) instruction);
+                }
+            }
+        }
+    }
+
+    public MethodReference getMethod() {
+        return method;
+    }
+
+    public long getInvocationCount() {
+        return profile.getInvocationCount(method);
+    }
+
+    /**
+     * Returns histogram of receiver classes observed at the given call site, or empty map
+     * if nothing is known about the call site.
+     */
+    public Map<String, Long> getReceivers(InvokeInstruction callSite) {
+        var result = receivers.get(callSite);
+        return result != null ? result : Collections.emptyMap();
+    }
+
+    /**
+     * Tells whether the given call site was never reached during profiling.
+     */
+    public boolean isCold(InvokeInstruction callSite) {
+        return coldCallSites.contains(callSite);
+    }
+}
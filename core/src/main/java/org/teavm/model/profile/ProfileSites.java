@@ -0,0 +1,96 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.profile;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Instruction;
+import org.teavm.model.Program;
+import org.teavm.model.instructions.BinaryBranchingInstruction;
+import org.teavm.model.instructions.BranchingInstruction;
+import org.teavm.model.instructions.InvokeInstruction;
+
+/**
+ * Assigns keys to virtual call sites and conditional branches of a program. Keys don't depend on
+ * variable and block numbering, so they remain stable between instrumented and optimized builds,
+ * as long as the code of the method is not changed.
+ */
+public final class ProfileSites {
+    private ProfileSites() {
+    }
+
+    /**
+     * Computes keys of call sites that have a receiver. Key consists of invoked method descriptor and
+     * ordinal number among call sites with the same descriptor.
+     */
+    public static Map<InvokeInstruction, String> callSites(Program program) {
+        var result = new IdentityHashMap<InvokeInstruction, String>();
+        var counters = new HashMap<String, Integer>();
+        for (var block : program.getBasicBlocks()) {
+            for (var instruction : block) {
+                if (instruction instanceof InvokeInstruction) {
+                    var invoke = (InvokeInstruction) instruction;
+                    if (invoke.getInstance() != null) {
+                        var descriptor = invoke.getMethod().getDescriptor().toString();
+                        int ordinal = counters.merge(descriptor, 1, Integer::sum) - 1;
+                        result.put(invoke, descriptor + "#" + ordinal);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes keys of blocks that end with a conditional branch. Key consists of source line
+     * of the branch and ordinal number among branches at the same line.
+     */
+    public static Map<BasicBlock, String> branches(Program program) {
+        var result = new IdentityHashMap<BasicBlock, String>();
+        var counters = new HashMap<String, Integer>();
+        for (var block : program.getBasicBlocks()) {
+            var last = block.getLastInstruction();
+            if (!isBranch(last)) {
+                continue;
+            }
+            var location = last.getLocation();
+            var prefix = location != null && location.getLine() >= 0 ? "L" + location.getLine() : "";
+            int ordinal = counters.merge(prefix, 1, Integer::sum) - 1;
+            result.put(block, prefix + "#" + ordinal);
+        }
+        return result;
+    }
+
+    static boolean isBranch(Instruction instruction) {
+        return instruction instanceof BranchingInstruction || instruction instanceof BinaryBranchingInstruction;
+    }
+
+    /**
+     * Returns targets of a conditional branch: taken edge first, not taken edge second.
+     */
+    public static BasicBlock[] branchTargets(Instruction instruction) {
+        if (instruction instanceof BranchingInstruction) {
+            var branch = (BranchingInstruction) instruction;
+            return new BasicBlock[] { branch.getConsequent(), branch.getAlternative() };
+        } else if (instruction instanceof BinaryBranchingInstruction) {
+            var branch = (BinaryBranchingInstruction) instruction;
+            return new BasicBlock[] { branch.getConsequent(), branch.getAlternative() };
+        }
+        return null;
+    }
+}
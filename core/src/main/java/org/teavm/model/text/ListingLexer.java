@@ -150,7 +150,11 @@ class ListingLexer {
                 break;
             case '-':
                 nextChar();
-                token = ListingToken.SUBTRACT;
+                if (c >= '0' && c <= '9') {
+                    readNumber(true);
+                } else {
+                    token = ListingToken.SUBTRACT;
+                }
                 break;
             case '*':
                 nextChar();
@@ -205,7 +209,7 @@ class ListingLexer {
                 if (isIdentifierStart(c)) {
                     readIdentifier();
                 } else if (c >= '0' && c <= '9') {
-                    readNumber();
+                    readNumber(false);
                 } else {
                     unexpected();
                 }
@@ -340,14 +344,13 @@ class ListingLexer {
         }
     }
 
-    private void readNumber() throws IOException, ListingParseException {
+    private void readNumber(boolean negative) throws IOException, ListingParseException {
         StringBuilder sb = new StringBuilder();
 
         token = ListingToken.INTEGER;
 
-        if (c == '-') {
-            sb.append(c);
-            nextChar();
+        if (negative) {
+            sb.append('-');
         }
 
         while (c >= '0' && c <= '9') {
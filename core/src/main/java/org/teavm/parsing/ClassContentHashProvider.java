@@ -0,0 +1,27 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.parsing;
+
+/**
+ * Provides digests of class file contents. Unlike {@link ClassDateProvider}, digests don't change when
+ * a class file is rewritten with identical bytes, e.g. after VCS checkout or a clean build.
+ */
+public interface ClassContentHashProvider {
+    /**
+     * Returns digest of the class file, or {@code null} if the class file could not be found.
+     */
+    byte[] getContentHash(String className);
+}
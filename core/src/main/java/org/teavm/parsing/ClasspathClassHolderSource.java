@@ -16,6 +16,7 @@
 package org.teavm.parsing;
 
 import java.util.Date;
+import java.util.concurrent.Executor;
 import org.teavm.model.ClassHolder;
 import org.teavm.model.ClassHolderSource;
 import org.teavm.model.ReferenceCache;
@@ -23,13 +24,20 @@ import org.teavm.parsing.resource.ClasspathResourceReader;
 import org.teavm.parsing.resource.MapperClassHolderSource;
 import org.teavm.parsing.resource.ResourceClassHolderMapper;
 
-public class ClasspathClassHolderSource implements ClassHolderSource, ClassDateProvider {
+public class ClasspathClassHolderSource implements ClassHolderSource, ClassDateProvider,
+        ClassContentHashProvider {
     private MapperClassHolderSource innerClassSource;
     private ClasspathResourceMapper classPathMapper;
 
     public ClasspathClassHolderSource(ClassLoader classLoader, ReferenceCache referenceCache) {
+        this(classLoader, referenceCache, null);
+    }
+
+    public ClasspathClassHolderSource(ClassLoader classLoader, ReferenceCache referenceCache,
+            Executor prefetchExecutor) {
         ClasspathResourceReader reader = new ClasspathResourceReader(classLoader);
         ResourceClassHolderMapper rawMapper = new ResourceClassHolderMapper(reader, referenceCache);
+        rawMapper.setPrefetchExecutor(prefetchExecutor);
         classPathMapper = new ClasspathResourceMapper(classLoader, referenceCache, rawMapper);
         innerClassSource = new MapperClassHolderSource(classPathMapper);
     }
@@ -47,4 +55,9 @@ public class ClasspathClassHolderSource implements ClassHolderSource, ClassDateP
     public Date getModificationDate(String className) {
         return classPathMapper.getModificationDate(className);
     }
+
+    @Override
+    public byte[] getContentHash(String className) {
+        return classPathMapper.getContentHash(className);
+    }
 }
@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
@@ -40,7 +42,8 @@ import org.teavm.parsing.substitution.OrderedProperties;
 import org.teavm.parsing.substitution.PrefixMapping;
 import org.teavm.vm.spi.ElementFilter;
 
-public class ClasspathResourceMapper implements Function<String, ClassHolder>, ClassDateProvider {
+public class ClasspathResourceMapper implements Function<String, ClassHolder>, ClassDateProvider,
+        ClassContentHashProvider {
     private static final String STRIP_PREFIX_FROM_PREFIX = "stripPrefixFrom";
     private static final String STRIP_PREFIX_FROM_PACKAGE_HIERARCHY_PREFIX =
             STRIP_PREFIX_FROM_PREFIX + "PackageHierarchyClasses";
@@ -54,10 +57,12 @@ public class ClasspathResourceMapper implements Function<String, ClassHolder>, C
     private static final String INCLUDE_PACKAGE_PREFIX = INCLUDE_PREFIX + "Package";
     private static final String INCLUDE_CLASS_PREFIX = INCLUDE_PREFIX + "Class";
     private static final Date VOID_DATE = new Date(0);
+    private static final byte[] VOID_HASH = new byte[0];
     private Function<String, ClassHolder> innerMapper;
     private ClassRefsRenamer renamer;
     private ClassLoader classLoader;
     private Map<String, Date> modificationDates = new HashMap<>();
+    private Map<String, byte[]> contentHashes = new HashMap<>();
     private List<ElementFilter> elementFilters = new ArrayList<>();
     private ClassMappings classMappings = new ClassMappings();
     private PrefixMapping prefixMapping = new PrefixMapping();
@@ -167,6 +172,40 @@ public class ClasspathResourceMapper implements Function<String, ClassHolder>, C
         return mdate == VOID_DATE ? null : mdate;
     }
 
+    @Override
+    public byte[] getContentHash(String className) {
+        byte[] hash = contentHashes.get(className);
+        if (hash == null) {
+            hash = getOriginalContentHash(toUnmappedClassName(className));
+            contentHashes.put(className, hash);
+        }
+        return hash == VOID_HASH ? null : hash;
+    }
+
+    private byte[] getOriginalContentHash(String className) {
+        if (classLoader == null) {
+            return VOID_HASH;
+        }
+        try (InputStream input = classLoader.getResourceAsStream(className.replace('.', '/') + ".class")) {
+            if (input == null) {
+                return VOID_HASH;
+            }
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            while (true) {
+                int count = input.read(buffer);
+                if (count < 0) {
+                    break;
+                }
+                digest.update(buffer, 0, count);
+            }
+            return digest.digest();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            // Report that class should be reparsed
+            return VOID_HASH;
+        }
+    }
+
     private String toUnmappedClassName(String name) {
         if (classExclusions.apply(name)) {
             return name;
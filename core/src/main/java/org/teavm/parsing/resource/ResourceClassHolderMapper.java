@@ -17,6 +17,19 @@ package org.teavm.parsing.resource;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.tree.ClassNode;
@@ -25,27 +38,187 @@ import org.teavm.model.ReferenceCache;
 import org.teavm.parsing.Parser;
 
 public class ResourceClassHolderMapper implements Function<String, ClassHolder> {
+    private static final int CONSTANT_CLASS = 7;
+    private static final int MAX_PREFETCHED_CLASSES = 4096;
+    private static final int MAX_PENDING_PREFETCHES = 256;
     private Parser parser;
+    private final ThreadLocal<Parser> prefetchParser = ThreadLocal.withInitial(
+            () -> new Parser(new ReferenceCache()));
     private ResourceReader resourceReader;
+    private Executor prefetchExecutor;
+    private final int maxPrefetchedClasses;
+    private final int maxPendingPrefetches;
+    private final AtomicInteger pendingPrefetches = new AtomicInteger();
+    private Map<String, PrefetchTask> prefetchedClasses;
+    private Set<String> requestedClasses = new HashSet<>();
 
     public ResourceClassHolderMapper(ResourceReader resourceReader, ReferenceCache referenceCache) {
+        this(resourceReader, referenceCache, MAX_PREFETCHED_CLASSES, MAX_PENDING_PREFETCHES);
+    }
+
+    ResourceClassHolderMapper(ResourceReader resourceReader, ReferenceCache referenceCache,
+            int maxPrefetchedClasses, int maxPendingPrefetches) {
         this.resourceReader = resourceReader;
+        this.maxPrefetchedClasses = maxPrefetchedClasses;
+        this.maxPendingPrefetches = maxPendingPrefetches;
         parser = new Parser(referenceCache);
+        prefetchedClasses = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PrefetchTask> eldest) {
+                if (size() <= ResourceClassHolderMapper.this.maxPrefetchedClasses) {
+                    return false;
+                }
+                eldest.getValue().cancel();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * <p>Enables speculative loading of classes. Each time a class is requested, classes referenced from its
+     * constant pool are read and converted to TeaVM model on the given executor, including parsing of method
+     * bodies into SSA form, so that they are likely to be ready when requested later. Since
+     * {@link ReferenceCache} is not thread-safe, each thread of executor parses classes with its own cache,
+     * so prefetched classes don't share references with classes parsed on the requesting thread.</p>
+     *
+     * <p>Number of classes waiting in executor's queue is bounded, and classes that were prefetched long ago
+     * and still not requested are evicted, so prefetching never stops and does not retain memory.
+     * Requesting a class that was scheduled, but not started, loads it on the requesting thread, so it's safe
+     * to shut down executor before all scheduled classes are loaded.</p>
+     *
+     * @param prefetchExecutor executor to run speculative loading on, {@code null} to disable prefetching.
+     */
+    public void setPrefetchExecutor(Executor prefetchExecutor) {
+        this.prefetchExecutor = prefetchExecutor;
     }
 
     @Override
     public ClassHolder apply(String name) {
-        ClassNode clsNode = new ClassNode();
+        LoadedClass loadedClass;
+        requestedClasses.add(name);
+        var prefetched = prefetchedClasses.remove(name);
+        if (prefetched != null && !prefetched.cancel()) {
+            try {
+                loadedClass = prefetched.result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        } else {
+            loadedClass = load(name, parser);
+        }
+        if (loadedClass == null) {
+            return null;
+        }
+        prefetch(loadedClass.references);
+        return loadedClass.cls;
+    }
+
+    int getPrefetchedClassCount() {
+        return prefetchedClasses.size();
+    }
+
+    private void prefetch(List<String> classNames) {
+        for (String className : classNames) {
+            if (prefetchExecutor == null || pendingPrefetches.get() >= maxPendingPrefetches) {
+                break;
+            }
+            if (requestedClasses.contains(className) || prefetchedClasses.containsKey(className)) {
+                continue;
+            }
+            var task = new PrefetchTask(className);
+            pendingPrefetches.incrementAndGet();
+            try {
+                prefetchExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // Executor was shut down, keep loading classes on requesting thread
+                pendingPrefetches.decrementAndGet();
+                prefetchExecutor = null;
+                break;
+            }
+            prefetchedClasses.put(className, task);
+        }
+    }
+
+    private LoadedClass load(String name, Parser parser) {
         String resourceName = name.replace('.', '/') + ".class";
         if (!resourceReader.hasResource(resourceName)) {
             return null;
         }
+        ClassReader reader;
         try (InputStream input = resourceReader.openResource(resourceName)) {
-            ClassReader reader = new ClassReader(input);
-            reader.accept(clsNode, 0);
+            reader = new ClassReader(input);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        return parser.parseClass(clsNode);
+        ClassNode clsNode = new ClassNode();
+        reader.accept(clsNode, 0);
+        List<String> references = prefetchExecutor != null ? getReferencedClasses(reader) : Collections.emptyList();
+        return new LoadedClass(parser.parseClass(clsNode), references);
+    }
+
+    private static List<String> getReferencedClasses(ClassReader reader) {
+        List<String> result = new ArrayList<>();
+        char[] buffer = new char[reader.getMaxStringLength()];
+        for (int i = 1; i < reader.getItemCount(); ++i) {
+            int offset = reader.getItem(i);
+            if (offset == 0 || reader.readByte(offset - 1) != CONSTANT_CLASS) {
+                continue;
+            }
+            String internalName = reader.readUTF8(offset, buffer);
+            if (internalName != null && !internalName.startsWith("[")) {
+                result.add(internalName.replace('/', '.'));
+            }
+        }
+        return result;
+    }
+
+    class PrefetchTask implements Runnable {
+        final String className;
+        final CompletableFuture<LoadedClass> result = new CompletableFuture<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        PrefetchTask(String className) {
+            this.className = className;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                result.complete(load(className, prefetchParser.get()));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                pendingPrefetches.decrementAndGet();
+            }
+        }
+
+        /**
+         * Prevents task from running if it has not started yet.
+         *
+         * @return {@code true} if task won't run, {@code false} if it's already running or completed.
+         */
+        boolean cancel() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            pendingPrefetches.decrementAndGet();
+            return true;
+        }
+    }
+
+    static class LoadedClass {
+        final ClassHolder cls;
+        final List<String> references;
+
+        LoadedClass(ClassHolder cls, List<String> references) {
+            this.cls = cls;
+            this.references = references;
+        }
     }
 }
@@ -0,0 +1,415 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.teavm.callgraph.CallGraph;
+import org.teavm.callgraph.CallGraphNode;
+import org.teavm.callgraph.CallSite;
+import org.teavm.callgraph.FieldAccessSite;
+import org.teavm.dependency.ClassDependencyInfo;
+import org.teavm.dependency.DependencyInfo;
+import org.teavm.dependency.FieldDependencyInfo;
+import org.teavm.dependency.MethodDependencyInfo;
+import org.teavm.dependency.ValueDependencyInfo;
+import org.teavm.model.ClassReader;
+import org.teavm.model.ClassReaderSource;
+import org.teavm.model.FieldReference;
+import org.teavm.model.MethodReference;
+import org.teavm.model.TextLocation;
+
+/**
+ * Guards lazily populated caches of {@link DependencyInfo} and its class source, so that they can be
+ * queried from several optimization threads at once. Objects returned by dependency info, like
+ * {@link ValueDependencyInfo} or {@link CallGraphNode}, create nodes, types and collections on demand
+ * as well, so they are wrapped too. Wrappers are created once per underlying object, which preserves
+ * identity of returned objects.
+ */
+class SynchronizedDependencyInfo implements DependencyInfo {
+    private final DependencyInfo underlying;
+    private final ClassReaderSource classSource;
+    private final Map<Object, Object> wrappers = new IdentityHashMap<>();
+    private CallGraph callGraph;
+
+    SynchronizedDependencyInfo(DependencyInfo underlying) {
+        this.underlying = underlying;
+        classSource = synchronizedClassSource(underlying.getClassSource(), this);
+    }
+
+    static ClassReaderSource synchronizedClassSource(ClassReaderSource source, Object lock) {
+        return new ClassReaderSource() {
+            @Override
+            public ClassReader get(String name) {
+                synchronized (lock) {
+                    return source.get(name);
+                }
+            }
+        };
+    }
+
+    @Override
+    public ClassReaderSource getClassSource() {
+        return classSource;
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return underlying.getClassLoader();
+    }
+
+    @Override
+    public synchronized Collection<MethodReference> getReachableMethods() {
+        return underlying.getReachableMethods();
+    }
+
+    @Override
+    public synchronized Collection<FieldReference> getReachableFields() {
+        return underlying.getReachableFields();
+    }
+
+    @Override
+    public synchronized Collection<String> getReachableClasses() {
+        return underlying.getReachableClasses();
+    }
+
+    @Override
+    public synchronized FieldDependencyInfo getField(FieldReference fieldRef) {
+        return wrap(underlying.getField(fieldRef), SynchronizedField::new);
+    }
+
+    @Override
+    public synchronized MethodDependencyInfo getMethod(MethodReference methodRef) {
+        return wrap(underlying.getMethod(methodRef), SynchronizedMethod::new);
+    }
+
+    @Override
+    public synchronized MethodDependencyInfo getMethodImplementation(MethodReference methodRef) {
+        return wrap(underlying.getMethodImplementation(methodRef), SynchronizedMethod::new);
+    }
+
+    @Override
+    public synchronized ClassDependencyInfo getClass(String className) {
+        return underlying.getClass(className);
+    }
+
+    @Override
+    public synchronized CallGraph getCallGraph() {
+        if (callGraph == null) {
+            CallGraph underlyingGraph = underlying.getCallGraph();
+            if (underlyingGraph != null) {
+                callGraph = new SynchronizedCallGraph(underlyingGraph);
+            }
+        }
+        return callGraph;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T, W extends T> T wrap(T value, Function<T, W> wrapper) {
+        if (value == null) {
+            return null;
+        }
+        return (T) wrappers.computeIfAbsent(value, v -> wrapper.apply((T) v));
+    }
+
+    private <T, W extends T> List<T> wrapAll(Collection<? extends T> values, Function<T, W> wrapper) {
+        List<T> result = new ArrayList<>(values.size());
+        for (T value : values) {
+            result.add(wrap(value, wrapper));
+        }
+        return result;
+    }
+
+    private class SynchronizedMethod implements MethodDependencyInfo {
+        private final MethodDependencyInfo method;
+
+        SynchronizedMethod(MethodDependencyInfo method) {
+            this.method = method;
+        }
+
+        @Override
+        public ValueDependencyInfo[] getVariables() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                ValueDependencyInfo[] variables = method.getVariables();
+                ValueDependencyInfo[] result = new ValueDependencyInfo[variables.length];
+                for (int i = 0; i < variables.length; ++i) {
+                    result[i] = wrap(variables[i], SynchronizedValue::new);
+                }
+                return result;
+            }
+        }
+
+        @Override
+        public int getVariableCount() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return method.getVariableCount();
+            }
+        }
+
+        @Override
+        public ValueDependencyInfo getVariable(int index) {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return wrap(method.getVariable(index), SynchronizedValue::new);
+            }
+        }
+
+        @Override
+        public int getParameterCount() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return method.getParameterCount();
+            }
+        }
+
+        @Override
+        public ValueDependencyInfo getResult() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return wrap(method.getResult(), SynchronizedValue::new);
+            }
+        }
+
+        @Override
+        public ValueDependencyInfo getThrown() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return wrap(method.getThrown(), SynchronizedValue::new);
+            }
+        }
+
+        @Override
+        public MethodReference getReference() {
+            return method.getReference();
+        }
+
+        @Override
+        public boolean isUsed() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return method.isUsed();
+            }
+        }
+
+        @Override
+        public boolean isCalled() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return method.isCalled();
+            }
+        }
+
+        @Override
+        public boolean isMissing() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return method.isMissing();
+            }
+        }
+    }
+
+    private class SynchronizedField implements FieldDependencyInfo {
+        private final FieldDependencyInfo field;
+
+        SynchronizedField(FieldDependencyInfo field) {
+            this.field = field;
+        }
+
+        @Override
+        public ValueDependencyInfo getValue() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return wrap(field.getValue(), SynchronizedValue::new);
+            }
+        }
+
+        @Override
+        public FieldReference getReference() {
+            return field.getReference();
+        }
+
+        @Override
+        public boolean isMissing() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return field.isMissing();
+            }
+        }
+    }
+
+    private class SynchronizedValue implements ValueDependencyInfo {
+        private final ValueDependencyInfo value;
+
+        SynchronizedValue(ValueDependencyInfo value) {
+            this.value = value;
+        }
+
+        @Override
+        public String[] getTypes() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return value.getTypes();
+            }
+        }
+
+        @Override
+        public boolean hasType(String type) {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return value.hasType(type);
+            }
+        }
+
+        @Override
+        public boolean hasMoreTypesThan(int limit) {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return value.hasMoreTypesThan(limit);
+            }
+        }
+
+        @Override
+        public boolean hasArrayType() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return value.hasArrayType();
+            }
+        }
+
+        @Override
+        public ValueDependencyInfo getArrayItem() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return wrap(value.getArrayItem(), SynchronizedValue::new);
+            }
+        }
+
+        @Override
+        public ValueDependencyInfo getClassValueNode() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return wrap(value.getClassValueNode(), SynchronizedValue::new);
+            }
+        }
+    }
+
+    private class SynchronizedCallGraph implements CallGraph {
+        private final CallGraph graph;
+
+        SynchronizedCallGraph(CallGraph graph) {
+            this.graph = graph;
+        }
+
+        @Override
+        public CallGraphNode getNode(MethodReference method) {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return wrap(graph.getNode(method), SynchronizedCallGraphNode::new);
+            }
+        }
+
+        @Override
+        public Collection<? extends FieldAccessSite> getFieldAccess(FieldReference reference) {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return wrapAll(graph.getFieldAccess(reference), SynchronizedFieldAccessSite::new);
+            }
+        }
+    }
+
+    private class SynchronizedCallGraphNode implements CallGraphNode {
+        private final CallGraphNode node;
+
+        SynchronizedCallGraphNode(CallGraphNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public CallGraph getGraph() {
+            return getCallGraph();
+        }
+
+        @Override
+        public MethodReference getMethod() {
+            return node.getMethod();
+        }
+
+        @Override
+        public Collection<? extends CallSite> getCallSites() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return wrapAll(node.getCallSites(), SynchronizedCallSite::new);
+            }
+        }
+
+        @Override
+        public Collection<? extends CallSite> getCallerCallSites() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return wrapAll(node.getCallerCallSites(), SynchronizedCallSite::new);
+            }
+        }
+
+        @Override
+        public Collection<? extends FieldAccessSite> getFieldAccessSites() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return wrapAll(node.getFieldAccessSites(), SynchronizedFieldAccessSite::new);
+            }
+        }
+    }
+
+    private class SynchronizedCallSite implements CallSite {
+        private final CallSite callSite;
+
+        SynchronizedCallSite(CallSite callSite) {
+            this.callSite = callSite;
+        }
+
+        @Override
+        public Collection<? extends TextLocation> getLocations(CallGraphNode caller) {
+            if (caller instanceof SynchronizedCallGraphNode) {
+                caller = ((SynchronizedCallGraphNode) caller).node;
+            }
+            synchronized (SynchronizedDependencyInfo.this) {
+                return new ArrayList<>(callSite.getLocations(caller));
+            }
+        }
+
+        @Override
+        public Collection<? extends CallGraphNode> getCalledMethods() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return wrapAll(callSite.getCalledMethods(), SynchronizedCallGraphNode::new);
+            }
+        }
+
+        @Override
+        public Collection<? extends CallGraphNode> getCallers() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return wrapAll(callSite.getCallers(), SynchronizedCallGraphNode::new);
+            }
+        }
+    }
+
+    private class SynchronizedFieldAccessSite implements FieldAccessSite {
+        private final FieldAccessSite site;
+
+        SynchronizedFieldAccessSite(FieldAccessSite site) {
+            this.site = site;
+        }
+
+        @Override
+        public TextLocation getLocation() {
+            return site.getLocation();
+        }
+
+        @Override
+        public CallGraphNode getCallee() {
+            synchronized (SynchronizedDependencyInfo.this) {
+                return wrap(site.getCallee(), SynchronizedCallGraphNode::new);
+            }
+        }
+
+        @Override
+        public FieldReference getField() {
+            return site.getField();
+        }
+    }
+}
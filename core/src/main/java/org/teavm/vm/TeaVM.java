@@ -29,11 +29,14 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.teavm.cache.AlwaysStaleCacheStatus;
 import org.teavm.cache.AnnotationAwareCacheStatus;
+import org.teavm.cache.CacheMetrics;
 import org.teavm.cache.CacheStatus;
 import org.teavm.cache.EmptyProgramCache;
 import org.teavm.cache.ProgramDependencyExtractor;
@@ -72,6 +75,7 @@ import org.teavm.model.ProgramCache;
 import org.teavm.model.ValueType;
 import org.teavm.model.analysis.ClassInitializerAnalysis;
 import org.teavm.model.analysis.ClassInitializerInfo;
+import org.teavm.model.analysis.InterproceduralEscapeAnalysis;
 import org.teavm.model.instructions.ExitInstruction;
 import org.teavm.model.instructions.InitClassInstruction;
 import org.teavm.model.instructions.InvokeInstruction;
@@ -82,10 +86,13 @@ import org.teavm.model.optimization.DefaultInliningStrategy;
 import org.teavm.model.optimization.Devirtualization;
 import org.teavm.model.optimization.GlobalValueNumbering;
 import org.teavm.model.optimization.Inlining;
-import org.teavm.model.optimization.InliningStrategy;
 import org.teavm.model.optimization.LoopInvariantMotion;
+import org.teavm.model.optimization.LoopStrengthReduction;
+import org.teavm.model.optimization.LoopUnrolling;
+import org.teavm.model.optimization.LoopVersioning;
 import org.teavm.model.optimization.MethodOptimization;
 import org.teavm.model.optimization.MethodOptimizationContext;
+import org.teavm.model.optimization.RedundantBoundCheckElimination;
 import org.teavm.model.optimization.RedundantJumpElimination;
 import org.teavm.model.optimization.RedundantNullCheckElimination;
 import org.teavm.model.optimization.RepeatedFieldReadElimination;
@@ -93,6 +100,7 @@ import org.teavm.model.optimization.ScalarReplacement;
 import org.teavm.model.optimization.SystemArrayCopyOptimization;
 import org.teavm.model.optimization.UnreachableBasicBlockElimination;
 import org.teavm.model.optimization.UnusedVariableElimination;
+import org.teavm.model.profile.ExecutionProfile;
 import org.teavm.model.text.ListingBuilder;
 import org.teavm.model.transformation.ClassInitializerInsertionTransformer;
 import org.teavm.model.util.ModelUtils;
@@ -132,6 +140,11 @@ import org.teavm.vm.spi.TeaVMPlugin;
  * @author Alexey Andreev
  */
 public class TeaVM implements TeaVMHost, ServiceRepository {
+    /**
+     * Property that enables replacement of virtual calls with two or three implementations by a chain
+     * of type checks followed by direct calls. Disabled by default.
+     */
+    public static final String GUARDED_DEVIRTUALIZATION_PROPERTY = "teavm.devirtualization.guards";
     private static final MethodDescriptor MAIN_METHOD_DESC = new MethodDescriptor("main",
             ValueType.arrayOf(ValueType.object("java.lang.String")), ValueType.VOID);
     private static final MethodDescriptor CLINIT_DESC = new MethodDescriptor("<clinit>", ValueType.VOID);
@@ -164,9 +177,14 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
     private int compileProgressValue;
     private ClassSourcePacker classSourcePacker;
     private ClassInitializerInfo classInitializerInfo;
+    private int optimizationThreads;
+    private TeaVMBuildMetrics buildMetrics = new TeaVMBuildMetrics();
+    private CacheMetrics programCacheMetrics;
+    private ExecutionProfile profile;
 
     TeaVM(TeaVMBuilder builder) {
         target = builder.target;
+        optimizationThreads = builder.optimizationThreads;
         classLoader = builder.classLoader;
         classSourcePacker = builder.classSourcePacker;
         dependencyAnalyzer = builder.dependencyAnalyzerFactory.create(builder.classSource, classLoader,
@@ -264,6 +282,19 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         this.optimizationLevel = optimizationLevel;
     }
 
+    public ExecutionProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Sets execution profile collected by an instrumented build of the same application.
+     * Profile affects devirtualization and inlining, so it's only used by non-simple
+     * optimization levels.
+     */
+    public void setProfile(ExecutionProfile profile) {
+        this.profile = profile;
+    }
+
     public TeaVMProgressListener getProgressListener() {
         return progressListener;
     }
@@ -272,6 +303,13 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         this.progressListener = progressListener;
     }
 
+    /**
+     * Returns statistics collected during the last call to {@link #build(BuildTarget, String)}.
+     */
+    public TeaVMBuildMetrics getBuildMetrics() {
+        return buildMetrics;
+    }
+
     public boolean wasCancelled() {
         return cancelled;
     }
@@ -374,12 +412,17 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
      * @param outputName name of output file within buildTarget. Should not be null.
      */
     public void build(BuildTarget buildTarget, String outputName) {
+        buildMetrics.clear();
+        programCacheMetrics = buildMetrics.registerCache("program");
+
         // Check dependencies
         reportPhase(TeaVMPhase.DEPENDENCY_ANALYSIS, lastKnownClasses);
         if (wasCancelled()) {
             return;
         }
 
+        var dependencyMeasurement = buildMetrics.start(TeaVMBuildPhase.DEPENDENCY_ANALYSIS);
+
         processEntryPoint();
         dependencyAnalyzer.setAsyncSupported(target.isAsyncSupported());
         dependencyAnalyzer.setInterruptor(() -> {
@@ -390,6 +433,8 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         target.contributeDependencies(dependencyAnalyzer);
         dependencyAnalyzer.addDependencyListener(new StdlibDependencyListener());
         dependencyAnalyzer.processDependencies();
+        dependencyMeasurement.finish(dependencyAnalyzer.getReachableClasses().size(),
+                dependencyAnalyzer.getReachableMethods().size());
         if (wasCancelled() || !diagnostics.getSevereProblems().isEmpty()) {
             return;
         }
@@ -432,7 +477,9 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
                 compileProgressReportStart = 0;
                 compileProgressReportLimit = 1000;
             }
+            var renderingMeasurement = buildMetrics.start(TeaVMBuildPhase.RENDERING);
             target.emit(classSet, buildTarget, outputName);
+            renderingMeasurement.finish(classSet.getClassNames().size(), 0);
         } catch (IOException e) {
             throw new RuntimeException("Error generating output files", e);
         }
@@ -453,14 +500,21 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
             compileProgressLimit *= 2;
         }
 
+        var linkingMeasurement = buildMetrics.start(TeaVMBuildPhase.LINKING);
         var classSet = link(dependencyAnalyzer);
+        linkingMeasurement.finish(classSet.getClassNames().size(), countMethods(classSet));
         writtenClasses = classSet;
         if (wasCancelled()) {
             return null;
         }
 
         if (optimizationLevel != TeaVMOptimizationLevel.SIMPLE) {
+            if (profile != null) {
+                attachProfile(classSet);
+            }
+            var devirtualizationMeasurement = buildMetrics.start(TeaVMBuildPhase.DEVIRTUALIZATION);
             devirtualize(classSet);
+            devirtualizationMeasurement.finish(classSet.getClassNames().size(), countMethods(classSet));
             if (wasCancelled()) {
                 return null;
             }
@@ -488,7 +542,9 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
                 }
             }
         }
+        var inliningMeasurement = buildMetrics.start(TeaVMBuildPhase.INLINING);
         inline(classSet);
+        inliningMeasurement.finish(classSet.getClassNames().size(), countMethods(classSet));
         if (wasCancelled()) {
             return null;
         }
@@ -498,7 +554,9 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
                 new LinkedHashSet<>(dependencyAnalyzer.getReachableClasses())));
 
         // Optimize and allocate registers
+        var optimizationMeasurement = buildMetrics.start(TeaVMBuildPhase.OPTIMIZATION);
         optimize(classSet);
+        optimizationMeasurement.finish(classSet.getClassNames().size(), countMethods(classSet));
         if (wasCancelled()) {
             return null;
         }
@@ -506,6 +564,18 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         return classSet;
     }
 
+    private static int countMethods(ListableClassHolderSource classes) {
+        int count = 0;
+        for (String className : classes.getClassNames()) {
+            for (MethodHolder method : classes.get(className).getMethods()) {
+                if (method.getProgram() != null) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
     private ListableClassHolderSource lazyPipeline() {
         var result = new PostProcessingClassHolderSource();
         writtenClasses = result;
@@ -621,6 +691,17 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
                 + progress * (compileProgressReportLimit - compileProgressReportStart) / compileProgressLimit);
     }
 
+    private void attachProfile(ListableClassHolderSource classes) {
+        for (String className : classes.getClassNames()) {
+            ClassHolder cls = classes.get(className);
+            for (MethodHolder method : cls.getMethods()) {
+                if (method.getProgram() != null) {
+                    profile.attach(method.getReference(), method.getProgram());
+                }
+            }
+        }
+    }
+
     private void devirtualize(ListableClassHolderSource classes) {
         if (wasCancelled()) {
             return;
@@ -632,6 +713,14 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         }
 
         var devirtualization = new Devirtualization(dependencyAnalyzer, dependencyAnalyzer.getClassHierarchy());
+        devirtualization.setProfile(profile);
+        if (!Boolean.parseBoolean(properties.getProperty(GUARDED_DEVIRTUALIZATION_PROPERTY, "false"))) {
+            devirtualization.setMaxGuardedImplementations(0);
+        } else if (optimizationLevel == TeaVMOptimizationLevel.ADVANCED) {
+            // Inliner only takes trivial methods at this level, so only guard calls that are going to be inlined
+            devirtualization.setMaxGuardedImplementations(2);
+            devirtualization.setGuardSizeLimit(8);
+        }
         for (String className : classes.getClassNames()) {
             ClassHolder cls = classes.get(className);
             for (MethodHolder method : cls.getMethods()) {
@@ -650,6 +739,7 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
             System.out.println("Devirtualization complete");
             System.out.println("Virtual calls: " + devirtualization.getVirtualCallSites());
             System.out.println("Direct calls: " + devirtualization.getDirectCallSites());
+            System.out.println("Guarded calls: " + devirtualization.getGuardedCallSites());
         }
     }
 
@@ -658,16 +748,22 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
             return;
         }
 
-        InliningStrategy inliningStrategy;
+        DefaultInliningStrategy inliningStrategy;
         if (optimizationLevel == TeaVMOptimizationLevel.FULL) {
             inliningStrategy = new DefaultInliningStrategy(20, 7, 3000, false);
         } else {
             inliningStrategy = new DefaultInliningStrategy(100, 7, 300, true);
         }
+        inliningStrategy.setProfile(profile);
 
         Inlining inlining = new Inlining(new ClassHierarchy(classes), dependencyAnalyzer, inliningStrategy,
                 classes, this::isExternal, optimizationLevel == TeaVMOptimizationLevel.FULL,
                 target.getInliningFilter());
+        if (optimizationLevel == TeaVMOptimizationLevel.FULL) {
+            var escapeAnalysis = new InterproceduralEscapeAnalysis();
+            escapeAnalysis.analyze(classes);
+            inlining.setEscapeAnalysis(escapeAnalysis);
+        }
         var methodReferences = inlining.getOrder();
         int classCount = classes.getClassNames().size();
         int initialValue = compileProgressValue;
@@ -706,6 +802,10 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
     }
 
     private void optimize(ListableClassHolderSource classSource) {
+        if (optimizationThreads > 1) {
+            optimizeInParallel(classSource);
+            return;
+        }
         for (String className : classSource.getClassNames()) {
             ClassHolder cls = classSource.get(className);
             for (MethodHolder method : cls.getMethods()) {
@@ -723,9 +823,7 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
             return;
         }
 
-        Program optimizedProgram = !cacheStatus.isStaleMethod(method.getReference())
-                ? programCache.get(method.getReference(), cacheStatus)
-                : null;
+        Program optimizedProgram = getCachedProgram(method.getReference());
         if (optimizedProgram == null) {
             optimizedProgram = optimizeMethodCacheMiss(method, ProgramUtils.copy(method.getProgram()));
             Program finalProgram = optimizedProgram;
@@ -735,49 +833,170 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         method.setProgram(optimizedProgram);
     }
 
+    /*
+     * Cache lookups, cache stores and target callbacks stay on a single thread (or under a lock),
+     * only the optimization pipeline itself runs concurrently. Since every method is optimized
+     * independently of others and results are applied in the order of classes and methods,
+     * output does not depend on the number of threads.
+     */
+    private void optimizeInParallel(ListableClassHolderSource classSource) {
+        var dependencyInfo = new SynchronizedDependencyInfo(dependencyAnalyzer);
+        var hierarchies = ThreadLocal.withInitial(() -> new ClassHierarchy(dependencyInfo.getClassSource()));
+        var targetLock = new Object();
+        var pool = new ForkJoinPool(optimizationThreads);
+        try {
+            var tasksByClass = new ArrayList<List<ParallelOptimizationTask>>();
+            for (String className : classSource.getClassNames()) {
+                ClassHolder cls = classSource.get(className);
+                var tasks = new ArrayList<ParallelOptimizationTask>();
+                for (MethodHolder method : cls.getMethods()) {
+                    if (method.getProgram() == null) {
+                        continue;
+                    }
+                    Program cachedProgram = getCachedProgram(method.getReference());
+                    if (cachedProgram != null) {
+                        method.setProgram(cachedProgram);
+                        continue;
+                    }
+                    var task = pool.submit(() -> {
+                        Program program = ProgramUtils.copy(method.getProgram());
+                        synchronized (targetLock) {
+                            target.beforeOptimizations(program, method);
+                        }
+                        if (program.basicBlockCount() > 0) {
+                            var context = new MethodOptimizationContextImpl(method, dependencyInfo,
+                                    hierarchies.get());
+                            runOptimizations(context, method, program);
+                            synchronized (targetLock) {
+                                afterOptimizations(method, program);
+                            }
+                        }
+                        return program;
+                    });
+                    tasks.add(new ParallelOptimizationTask(method, task));
+                }
+                tasksByClass.add(tasks);
+            }
+
+            for (List<ParallelOptimizationTask> tasks : tasksByClass) {
+                for (ParallelOptimizationTask task : tasks) {
+                    Program optimizedProgram = task.result.join();
+                    programCache.store(task.method.getReference(), optimizedProgram,
+                            () -> programDependencyExtractor.extractDependencies(optimizedProgram));
+                    task.method.setProgram(optimizedProgram);
+                }
+                reportCompileProgress(++compileProgressValue);
+                if (wasCancelled()) {
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    static class ParallelOptimizationTask {
+        final MethodHolder method;
+        final ForkJoinTask<Program> result;
+
+        ParallelOptimizationTask(MethodHolder method, ForkJoinTask<Program> result) {
+            this.method = method;
+            this.result = result;
+        }
+    }
+
+    private Program getCachedProgram(MethodReference method) {
+        Program program = !cacheStatus.isStaleMethod(method) ? programCache.get(method, cacheStatus) : null;
+        if (program != null) {
+            programCacheMetrics.hit();
+        } else {
+            programCacheMetrics.miss();
+        }
+        return program;
+    }
+
     private Program optimizeMethodCacheMiss(MethodHolder method, Program optimizedProgram) {
         target.beforeOptimizations(optimizedProgram, method);
 
         if (optimizedProgram.basicBlockCount() > 0) {
             var context = new MethodOptimizationContextImpl(method);
-            boolean changed;
-            do {
-                changed = false;
-                for (MethodOptimization optimization : getOptimizations()) {
-                    try {
-                        changed |= optimization.optimize(context, optimizedProgram);
-                    } catch (Exception | AssertionError e) {
-                        ListingBuilder listingBuilder = new ListingBuilder();
-                        try {
-                            String listing = listingBuilder.buildListing(optimizedProgram, "");
-                            System.err.println("Error optimizing program for method " + method.getReference()
-                                    + ":\n" + listing);
-                        } catch (RuntimeException e2) {
-                            System.err.println("Error optimizing program for method " + method.getReference());
-                            // do nothing
-                        }
-                        throw new RuntimeException(e);
-                    }
-                }
-            } while (changed);
-
-            target.afterOptimizations(optimizedProgram, method);
-            var categoryProvider = target.variableCategoryProvider();
-            if (categoryProvider != null) {
-                var allocator = new RegisterAllocator(categoryProvider);
-                allocator.allocateRegisters(method.getReference(), optimizedProgram,
-                        optimizationLevel == TeaVMOptimizationLevel.SIMPLE);
-            }
+            runOptimizations(context, method, optimizedProgram);
+            afterOptimizations(method, optimizedProgram);
         }
 
         return optimizedProgram;
     }
 
+    private void runOptimizations(MethodOptimizationContext context, MethodHolder method,
+            Program optimizedProgram) {
+        runOptimizationsToFixpoint(context, method, optimizedProgram);
+        if (optimizationLevel == TeaVMOptimizationLevel.FULL) {
+            // Loop transformations duplicate code, so they can't be run until nothing changes.
+            // Instead, they are applied once to a program that is already simplified,
+            // and then the program is cleaned up after them.
+            boolean changed = false;
+            for (MethodOptimization optimization : getLoopOptimizations()) {
+                changed |= applyOptimization(optimization, context, method, optimizedProgram);
+            }
+            if (changed) {
+                runOptimizationsToFixpoint(context, method, optimizedProgram);
+            }
+        }
+    }
+
+    private void runOptimizationsToFixpoint(MethodOptimizationContext context, MethodHolder method,
+            Program optimizedProgram) {
+        boolean changed;
+        do {
+            changed = false;
+            for (MethodOptimization optimization : getOptimizations()) {
+                changed |= applyOptimization(optimization, context, method, optimizedProgram);
+            }
+        } while (changed);
+    }
+
+    private boolean applyOptimization(MethodOptimization optimization, MethodOptimizationContext context,
+            MethodHolder method, Program optimizedProgram) {
+        try {
+            return optimization.optimize(context, optimizedProgram);
+        } catch (Exception | AssertionError e) {
+            ListingBuilder listingBuilder = new ListingBuilder();
+            try {
+                String listing = listingBuilder.buildListing(optimizedProgram, "");
+                System.err.println("Error optimizing program for method " + method.getReference()
+                        + ":\n" + listing);
+            } catch (RuntimeException e2) {
+                System.err.println("Error optimizing program for method " + method.getReference());
+                // do nothing
+            }
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void afterOptimizations(MethodHolder method, Program optimizedProgram) {
+        target.afterOptimizations(optimizedProgram, method);
+        var categoryProvider = target.variableCategoryProvider();
+        if (categoryProvider != null) {
+            var allocator = new RegisterAllocator(categoryProvider);
+            allocator.allocateRegisters(method.getReference(), optimizedProgram,
+                    optimizationLevel == TeaVMOptimizationLevel.SIMPLE);
+        }
+    }
+
     class MethodOptimizationContextImpl implements MethodOptimizationContext {
         private MethodReader method;
+        private DependencyInfo dependencyInfo;
+        private ClassHierarchy hierarchy;
 
         MethodOptimizationContextImpl(MethodReader method) {
+            this(method, dependencyAnalyzer, dependencyAnalyzer.getClassHierarchy());
+        }
+
+        MethodOptimizationContextImpl(MethodReader method, DependencyInfo dependencyInfo,
+                ClassHierarchy hierarchy) {
             this.method = method;
+            this.dependencyInfo = dependencyInfo;
+            this.hierarchy = hierarchy;
         }
 
         @Override
@@ -787,17 +1006,17 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
 
         @Override
         public DependencyInfo getDependencyInfo() {
-            return dependencyAnalyzer;
+            return dependencyInfo;
         }
 
         @Override
         public ClassReaderSource getClassSource() {
-            return dependencyAnalyzer.getClassSource();
+            return dependencyInfo.getClassSource();
         }
 
         @Override
         public ClassHierarchy getHierarchy() {
-            return dependencyAnalyzer.getClassHierarchy();
+            return hierarchy;
         }
     }
 
@@ -816,6 +1035,7 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         optimizations.add(new GlobalValueNumbering(optimizationLevel == TeaVMOptimizationLevel.SIMPLE));
         optimizations.add(new RedundantNullCheckElimination());
         if (optimizationLevel.ordinal() >= TeaVMOptimizationLevel.ADVANCED.ordinal()) {
+            optimizations.add(new RedundantBoundCheckElimination());
             optimizations.add(new ConstantConditionElimination());
             optimizations.add(new RedundantJumpElimination());
             optimizations.add(new UnusedVariableElimination());
@@ -827,6 +1047,14 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         return optimizations;
     }
 
+    private List<MethodOptimization> getLoopOptimizations() {
+        List<MethodOptimization> optimizations = new ArrayList<>();
+        optimizations.add(new LoopUnrolling());
+        optimizations.add(new LoopVersioning());
+        optimizations.add(new LoopStrengthReduction());
+        return optimizations;
+    }
+
     public void build(File dir, String fileName) {
         build(new DirectoryBuildTarget(dir), fileName);
     }
@@ -985,8 +1213,9 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         private ClassInitializerInsertionTransformer clinitInsertion = new ClassInitializerInsertionTransformer(
                 dependencyAnalyzer.getClassSource(), classInitializerInfo);
 
+        // Renderer may look up classes from decompilation threads, while rendering thread populates the cache
         @Override
-        public ClassHolder get(String name) {
+        public synchronized ClassHolder get(String name) {
             return cache.computeIfAbsent(name, className -> {
                 ClassReader classReader = dependencyAnalyzer.getClassSource().get(className);
                 if (classReader == null) {
@@ -1003,9 +1232,7 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
                 }
 
                 Function<MethodHolder, Program> programSupplier = method -> {
-                    Program program = !cacheStatus.isStaleMethod(method.getReference())
-                            ? programCache.get(method.getReference(), cacheStatus)
-                            : null;
+                    Program program = getCachedProgram(method.getReference());
                     if (program == null) {
                         program = ProgramUtils.copy(classReader.getMethod(method.getDescriptor()).getProgram());
                         clinitInsertion.apply(method, program);
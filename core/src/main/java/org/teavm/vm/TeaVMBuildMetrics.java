@@ -0,0 +1,174 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.teavm.cache.CacheMetrics;
+import org.teavm.common.JsonUtil;
+import org.teavm.interop.PlatformMarker;
+
+/**
+ * <p>Timing, allocation and cache statistics collected during {@link TeaVM#build(BuildTarget, String)}.
+ * Phases are listed in the order they were executed.</p>
+ */
+public class TeaVMBuildMetrics {
+    private List<TeaVMPhaseMetrics> phases = new ArrayList<>();
+    private List<TeaVMPhaseMetrics> readonlyPhases = Collections.unmodifiableList(phases);
+    private Map<String, CacheMetrics> caches = new LinkedHashMap<>();
+    private Map<String, CacheMetrics> readonlyCaches = Collections.unmodifiableMap(caches);
+
+    public List<TeaVMPhaseMetrics> getPhases() {
+        return readonlyPhases;
+    }
+
+    public TeaVMPhaseMetrics getPhase(TeaVMBuildPhase phase) {
+        for (TeaVMPhaseMetrics metrics : phases) {
+            if (metrics.getPhase() == phase) {
+                return metrics;
+            }
+        }
+        return null;
+    }
+
+    public Map<String, CacheMetrics> getCaches() {
+        return readonlyCaches;
+    }
+
+    /**
+     * Returns metrics of the cache registered under the given name, or {@code null} if no such cache
+     * was registered.
+     */
+    public CacheMetrics getCache(String name) {
+        return caches.get(name);
+    }
+
+    /**
+     * Returns metrics of the cache registered under the given name, registering new metrics if there is
+     * no such cache yet.
+     */
+    public CacheMetrics registerCache(String name) {
+        return caches.computeIfAbsent(name, k -> new CacheMetrics());
+    }
+
+    public void addCache(String name, CacheMetrics metrics) {
+        caches.put(name, metrics);
+    }
+
+    void clear() {
+        phases.clear();
+        for (CacheMetrics metrics : caches.values()) {
+            metrics.reset();
+        }
+    }
+
+    Measurement start(TeaVMBuildPhase phase) {
+        return new Measurement(phase);
+    }
+
+    public void write(Writer output) throws IOException {
+        output.write("{\"phases\":[");
+        for (int i = 0; i < phases.size(); ++i) {
+            if (i > 0) {
+                output.write(',');
+            }
+            TeaVMPhaseMetrics phase = phases.get(i);
+            output.write("{\"name\":\"");
+            JsonUtil.writeEscapedString(output, phase.getPhase().name());
+            output.write("\",\"wallTime\":" + phase.getWallTime());
+            output.write(",\"cpuTime\":" + phase.getCpuTime());
+            output.write(",\"allocatedBytes\":" + phase.getAllocatedBytes());
+            output.write(",\"classes\":" + phase.getClassCount());
+            output.write(",\"methods\":" + phase.getMethodCount());
+            output.write("}");
+        }
+        output.write("],\"caches\":{");
+        boolean first = true;
+        for (Map.Entry<String, CacheMetrics> entry : caches.entrySet()) {
+            if (!first) {
+                output.write(',');
+            }
+            first = false;
+            output.write("\"");
+            JsonUtil.writeEscapedString(output, entry.getKey());
+            output.write("\":{\"hits\":" + entry.getValue().getHits());
+            output.write(",\"misses\":" + entry.getValue().getMisses());
+            output.write("}");
+        }
+        output.write("}}");
+    }
+
+    class Measurement {
+        private TeaVMPhaseMetrics metrics;
+        private long startTime;
+        private long startCpuTime;
+        private long startAllocatedBytes;
+
+        Measurement(TeaVMBuildPhase phase) {
+            metrics = new TeaVMPhaseMetrics(phase);
+            startTime = System.nanoTime();
+            startCpuTime = currentThreadCpuTime();
+            startAllocatedBytes = currentThreadAllocatedBytes();
+        }
+
+        void finish(int classCount, int methodCount) {
+            metrics.wallTime = System.nanoTime() - startTime;
+            metrics.cpuTime = difference(currentThreadCpuTime(), startCpuTime);
+            metrics.allocatedBytes = difference(currentThreadAllocatedBytes(), startAllocatedBytes);
+            metrics.classCount = classCount;
+            metrics.methodCount = methodCount;
+            phases.add(metrics);
+        }
+
+        private long difference(long end, long start) {
+            return end >= 0 && start >= 0 ? end - start : -1;
+        }
+    }
+
+    private static long currentThreadCpuTime() {
+        if (isBootstrap()) {
+            return -1;
+        }
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean.isCurrentThreadCpuTimeSupported() ? bean.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        if (isBootstrap()) {
+            return -1;
+        }
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            var extendedBean = (com.sun.management.ThreadMXBean) bean;
+            if (extendedBean.isThreadAllocatedMemorySupported() && extendedBean.isThreadAllocatedMemoryEnabled()) {
+                return extendedBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    @PlatformMarker
+    private static boolean isBootstrap() {
+        return false;
+    }
+}
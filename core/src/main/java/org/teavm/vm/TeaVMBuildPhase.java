@@ -0,0 +1,30 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+/**
+ * Phases of {@link TeaVM#build(BuildTarget, String)} reported in {@link TeaVMBuildMetrics}. Unlike
+ * {@link TeaVMPhase}, these correspond to individual compiler passes, some of which are skipped on lower
+ * optimization levels.
+ */
+public enum TeaVMBuildPhase {
+    DEPENDENCY_ANALYSIS,
+    LINKING,
+    DEVIRTUALIZATION,
+    INLINING,
+    OPTIMIZATION,
+    RENDERING
+}
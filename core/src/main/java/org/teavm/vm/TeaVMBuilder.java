@@ -32,6 +32,7 @@ public class TeaVMBuilder {
     ClassSourcePacker classSourcePacker = (src, names) -> src;
     boolean obfuscated;
     boolean strict;
+    int optimizationThreads = 1;
 
     public TeaVMBuilder(TeaVMTarget target) {
         this.target = target;
@@ -86,6 +87,19 @@ public class TeaVMBuilder {
         return this;
     }
 
+    public int getOptimizationThreads() {
+        return optimizationThreads;
+    }
+
+    public TeaVMBuilder setOptimizationThreads(int optimizationThreads) {
+        if (optimizationThreads < 1) {
+            throw new IllegalArgumentException("Number of optimization threads must be positive: "
+                    + optimizationThreads);
+        }
+        this.optimizationThreads = optimizationThreads;
+        return this;
+    }
+
     public TeaVM build() {
         return new TeaVM(this);
     }
@@ -0,0 +1,64 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+public class TeaVMPhaseMetrics {
+    private final TeaVMBuildPhase phase;
+    long wallTime;
+    long cpuTime;
+    long allocatedBytes;
+    int classCount;
+    int methodCount;
+
+    TeaVMPhaseMetrics(TeaVMBuildPhase phase) {
+        this.phase = phase;
+    }
+
+    public TeaVMBuildPhase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Elapsed time of the phase in nanoseconds.
+     */
+    public long getWallTime() {
+        return wallTime;
+    }
+
+    /**
+     * CPU time spent by the thread that runs the build, in nanoseconds, or -1 if JVM does not support
+     * measuring thread CPU time. Work done by helper threads (e.g. parallel optimization) is not included.
+     */
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    /**
+     * Bytes allocated by the thread that runs the build, or -1 if JVM does not support measuring
+     * thread allocations. Allocations of helper threads are not included.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    public int getMethodCount() {
+        return methodCount;
+    }
+}
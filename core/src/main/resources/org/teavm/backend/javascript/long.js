@@ -58,3 +58,51 @@ let Long_shr = (a, b) => teavm_globals.BigInt.asIntN(64, a >> teavm_globals.BigI
 let Long_shru = (a, b) => teavm_globals.BigInt.asIntN(64, teavm_globals.BigInt.asUintN(64, a) >>
         teavm_globals.BigInt(b & 63));
 let Long_not = a => teavm_globals.BigInt.asIntN(64, ~a);
+
+let $rt_doubleToRawLongBits;
+let $rt_longBitsToDouble;
+if (typeof teavm_globals.BigInt64Array !== 'function') {
+    $rt_doubleToRawLongBits = n => {
+        $rt_numberConversionView.setFloat64(0, n, true);
+        let lo = $rt_numberConversionView.getInt32(0, true);
+        let hi = $rt_numberConversionView.getInt32(4, true);
+        return teavm_globals.BigInt.asIntN(64, teavm_globals.BigInt.asUintN(32, teavm_globals.BigInt(lo))
+            | (teavm_globals.BigInt(hi) << teavm_globals.BigInt(32)));
+    }
+    $rt_longBitsToDouble = n => {
+        $rt_numberConversionView.setFloat64(0, n, true);
+        let lo = $rt_numberConversionView.getInt32(0, true);
+        let hi = $rt_numberConversionView.getInt32(4, true);
+        return teavm_globals.BigInt.asIntN(64, teavm_globals.BigInt.asUintN(32, teavm_globals.BigInt(lo))
+            | (teavm_globals.BigInt(hi) << teavm_globals.BigInt(32)));
+    }
+} else {
+    let $rt_numberConversionLongArray = new teavm_globals.BigInt64Array($rt_numberConversionBuffer);
+    $rt_doubleToRawLongBits = n => {
+        $rt_numberConversionDoubleArray[0] = n;
+        return $rt_numberConversionLongArray[0];
+    }
+    $rt_longBitsToDouble = n => {
+        $rt_numberConversionLongArray[0] = n;
+        return $rt_numberConversionDoubleArray[0];
+    }
+}
+
+let $rt_createLongArray;
+let $rt_createLongArrayFromData;
+if (typeof teavm_globals.BigInt64Array !== 'function') {
+    $rt_createLongArray = sz => {
+        let data = new teavm_globals.Array(sz);
+        let arr = new $rt_longArrayCls(data);
+        data.fill(Long_ZERO);
+        return arr;
+    }
+    $rt_createLongArrayFromData = init => new $rt_longArrayCls(init);
+} else {
+    $rt_createLongArray = sz => new $rt_longArrayCls(new teavm_globals.BigInt64Array(sz));
+    $rt_createLongArrayFromData = data => {
+        let buffer = new teavm_globals.BigInt64Array(data.length);
+        buffer.set(data);
+        return new $rt_longArrayCls(buffer);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+"use strict";
+
+// Represents long values as immutable pairs of 32-bit integers. Functions with `Pair` suffix take unpacked
+// values, return low word and leave high word in Long_hiResult, so that generated code which keeps longs
+// in local variables can perform arithmetic without allocating objects.
+
+function Long(lo, hi) {
+    this.lo = lo | 0;
+    this.hi = hi | 0;
+}
+Long.prototype.toString = function() {
+    if (typeof teavm_globals.BigInt === 'function') {
+        return teavm_globals.BigInt.asIntN(64, (teavm_globals.BigInt(this.hi) << teavm_globals.BigInt(32))
+            | teavm_globals.BigInt(this.lo >>> 0)).toString();
+    }
+    return teavm_globals.String(Long_toNumber(this));
+}
+
+let Long_hiResult = 0;
+let Long_ZERO = new Long(0, 0);
+let Long_create = (lo, hi) => new Long(lo, hi);
+let Long_fromInt = val => new Long(val, val >> 31);
+let Long_fromNumber = val => new Long(Long_fromNumberPair(val), Long_hiResult);
+let Long_fromNumberPair = val => {
+    if (val !== val) {
+        Long_hiResult = 0;
+        return 0;
+    }
+    if (val >= 9223372036854775807) {
+        Long_hiResult = 0x7FFFFFFF;
+        return -1;
+    }
+    if (val <= -9223372036854775808) {
+        Long_hiResult = 0x80000000 | 0;
+        return 0;
+    }
+    val = val >= 0 ? teavm_globals.Math.floor(val) : teavm_globals.Math.ceil(val);
+    let hi = teavm_globals.Math.floor(val / 4294967296);
+    Long_hiResult = hi | 0;
+    return (val - hi * 4294967296) | 0;
+}
+let Long_toNumber = val => val.hi * 4294967296 + (val.lo >>> 0);
+let Long_hi = val => val.hi;
+let Long_lo = val => val.lo;
+
+let Long_eq = (a, b) => a.lo === b.lo && a.hi === b.hi;
+let Long_ne = (a, b) => a.lo !== b.lo || a.hi !== b.hi;
+let Long_gt = (a, b) => Long_compare(a, b) > 0;
+let Long_ge = (a, b) => Long_compare(a, b) >= 0;
+let Long_lt = (a, b) => Long_compare(a, b) < 0;
+let Long_le = (a, b) => Long_compare(a, b) <= 0;
+let Long_compare = (a, b) => Long_comparePair(a.lo, a.hi, b.lo, b.hi);
+let Long_comparePair = (alo, ahi, blo, bhi) => {
+    if (ahi !== bhi) {
+        return ahi < bhi ? -1 : 1;
+    }
+    if (alo === blo) {
+        return 0;
+    }
+    return (alo >>> 0) < (blo >>> 0) ? -1 : 1;
+}
+let Long_ucompare = (a, b) => {
+    if (a.hi !== b.hi) {
+        return (a.hi >>> 0) < (b.hi >>> 0) ? -1 : 1;
+    }
+    if (a.lo === b.lo) {
+        return 0;
+    }
+    return (a.lo >>> 0) < (b.lo >>> 0) ? -1 : 1;
+}
+
+let Long_add = (a, b) => {
+    let lo = (a.lo + b.lo) | 0;
+    return new Long(lo, a.hi + b.hi + ((lo >>> 0) < (a.lo >>> 0) ? 1 : 0));
+}
+let Long_sub = (a, b) => new Long(a.lo - b.lo, a.hi - b.hi - ((a.lo >>> 0) < (b.lo >>> 0) ? 1 : 0));
+let Long_neg = a => new Long(-a.lo, ~a.hi + (a.lo === 0 ? 1 : 0));
+let Long_not = a => new Long(~a.lo, ~a.hi);
+let Long_and = (a, b) => new Long(a.lo & b.lo, a.hi & b.hi);
+let Long_or = (a, b) => new Long(a.lo | b.lo, a.hi | b.hi);
+let Long_xor = (a, b) => new Long(a.lo ^ b.lo, a.hi ^ b.hi);
+let Long_shl = (a, b) => {
+    b &= 63;
+    if (b === 0) {
+        return a;
+    }
+    return b < 32
+        ? new Long(a.lo << b, (a.hi << b) | (a.lo >>> (32 - b)))
+        : new Long(0, a.lo << b);
+}
+let Long_shr = (a, b) => {
+    b &= 63;
+    if (b === 0) {
+        return a;
+    }
+    return b < 32
+        ? new Long((a.lo >>> b) | (a.hi << (32 - b)), a.hi >> b)
+        : new Long(a.hi >> b, a.hi >> 31);
+}
+let Long_shru = (a, b) => {
+    b &= 63;
+    if (b === 0) {
+        return a;
+    }
+    return b < 32
+        ? new Long((a.lo >>> b) | (a.hi << (32 - b)), a.hi >>> b)
+        : new Long(a.hi >>> b, 0);
+}
+
+let Long_mul = (a, b) => new Long(Long_mulPair(a.lo, a.hi, b.lo, b.hi), Long_hiResult);
+let Long_mulPair = (alo, ahi, blo, bhi) => {
+    let a0 = alo & 0xFFFF;
+    let a1 = alo >>> 16;
+    let b0 = blo & 0xFFFF;
+    let b1 = blo >>> 16;
+    let p01 = a0 * b1;
+    let p10 = a1 * b0;
+    let mid = ((a0 * b0) >>> 16) + (p01 & 0xFFFF) + (p10 & 0xFFFF);
+    Long_hiResult = (a1 * b1 + (p01 >>> 16) + (p10 >>> 16) + (mid >>> 16)
+        + teavm_globals.Math.imul(alo, bhi) + teavm_globals.Math.imul(ahi, blo)) | 0;
+    return teavm_globals.Math.imul(alo, blo);
+}
+
+// Values below 2^52 by magnitude can be divided as doubles without loss of precision
+let Long_isSmall = hi => hi >= -0x100000 && hi < 0x100000;
+let Long_checkDivisor = (lo, hi) => {
+    if (lo === 0 && hi === 0) {
+        throw new teavm_globals.RangeError("Division by zero");
+    }
+}
+let Long_quotientLo = 0;
+let Long_quotientHi = 0;
+let Long_remainderLo = 0;
+let Long_remainderHi = 0;
+let Long_udivmod = (alo, ahi, blo, bhi) => {
+    let qlo = 0;
+    let qhi = 0;
+    let rlo = 0;
+    let rhi = 0;
+    if (bhi < 0) {
+        if ((ahi >>> 0) > (bhi >>> 0) || ahi === bhi && (alo >>> 0) >= (blo >>> 0)) {
+            qlo = 1;
+            rlo = (alo - blo) | 0;
+            rhi = (ahi - bhi - ((alo >>> 0) < (blo >>> 0) ? 1 : 0)) | 0;
+        } else {
+            rlo = alo;
+            rhi = ahi;
+        }
+    } else {
+        for (let i = 63; i >= 0; --i) {
+            rhi = (rhi << 1) | (rlo >>> 31);
+            rlo = (rlo << 1) | ((i >= 32 ? ahi >>> (i - 32) : alo >>> i) & 1);
+            if ((rhi >>> 0) > (bhi >>> 0) || rhi === bhi && (rlo >>> 0) >= (blo >>> 0)) {
+                let lo = (rlo - blo) | 0;
+                rhi = (rhi - bhi - ((rlo >>> 0) < (blo >>> 0) ? 1 : 0)) | 0;
+                rlo = lo;
+                if (i >= 32) {
+                    qhi |= 1 << (i - 32);
+                } else {
+                    qlo |= 1 << i;
+                }
+            }
+        }
+    }
+    Long_quotientLo = qlo;
+    Long_quotientHi = qhi;
+    Long_remainderLo = rlo;
+    Long_remainderHi = rhi;
+}
+let Long_divmod = (alo, ahi, blo, bhi) => {
+    let negateQuotient = (ahi ^ bhi) < 0;
+    let negateRemainder = ahi < 0;
+    if (ahi < 0) {
+        ahi = (~ahi + (alo === 0 ? 1 : 0)) | 0;
+        alo = -alo | 0;
+    }
+    if (bhi < 0) {
+        bhi = (~bhi + (blo === 0 ? 1 : 0)) | 0;
+        blo = -blo | 0;
+    }
+    Long_udivmod(alo, ahi, blo, bhi);
+    if (negateQuotient) {
+        Long_quotientHi = (~Long_quotientHi + (Long_quotientLo === 0 ? 1 : 0)) | 0;
+        Long_quotientLo = -Long_quotientLo | 0;
+    }
+    if (negateRemainder) {
+        Long_remainderHi = (~Long_remainderHi + (Long_remainderLo === 0 ? 1 : 0)) | 0;
+        Long_remainderLo = -Long_remainderLo | 0;
+    }
+}
+let Long_divPair = (alo, ahi, blo, bhi) => {
+    Long_checkDivisor(blo, bhi);
+    if (Long_isSmall(ahi) && Long_isSmall(bhi)) {
+        return Long_fromNumberPair((ahi * 4294967296 + (alo >>> 0)) / (bhi * 4294967296 + (blo >>> 0)));
+    }
+    Long_divmod(alo, ahi, blo, bhi);
+    Long_hiResult = Long_quotientHi;
+    return Long_quotientLo;
+}
+let Long_remPair = (alo, ahi, blo, bhi) => {
+    Long_checkDivisor(blo, bhi);
+    if (Long_isSmall(ahi) && Long_isSmall(bhi)) {
+        return Long_fromNumberPair((ahi * 4294967296 + (alo >>> 0)) % (bhi * 4294967296 + (blo >>> 0)));
+    }
+    Long_divmod(alo, ahi, blo, bhi);
+    Long_hiResult = Long_remainderHi;
+    return Long_remainderLo;
+}
+let Long_div = (a, b) => new Long(Long_divPair(a.lo, a.hi, b.lo, b.hi), Long_hiResult);
+let Long_rem = (a, b) => new Long(Long_remPair(a.lo, a.hi, b.lo, b.hi), Long_hiResult);
+let Long_udiv = (a, b) => {
+    Long_checkDivisor(b.lo, b.hi);
+    Long_udivmod(a.lo, a.hi, b.lo, b.hi);
+    return new Long(Long_quotientLo, Long_quotientHi);
+}
+let Long_urem = (a, b) => {
+    Long_checkDivisor(b.lo, b.hi);
+    Long_udivmod(a.lo, a.hi, b.lo, b.hi);
+    return new Long(Long_remainderLo, Long_remainderHi);
+}
+
+let $rt_doubleToRawLongBits = n => {
+    $rt_numberConversionView.setFloat64(0, n, true);
+    return new Long($rt_numberConversionView.getInt32(0, true), $rt_numberConversionView.getInt32(4, true));
+}
+let $rt_longBitsToDouble = n => {
+    $rt_numberConversionView.setInt32(0, n.lo, true);
+    $rt_numberConversionView.setInt32(4, n.hi, true);
+    return $rt_numberConversionView.getFloat64(0, true);
+}
+
+let $rt_createLongArray = sz => {
+    let data = new teavm_globals.Array(sz);
+    data.fill(Long_ZERO);
+    return new $rt_longArrayCls(data);
+}
+let $rt_createLongArrayFromData = init => new $rt_longArrayCls(init);
@@ -0,0 +1,63 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+"use strict";
+
+let $rt_profileMethods = new teavm_globals.Map();
+let $rt_profileReceivers = new teavm_globals.Map();
+let $rt_profileBranches = new teavm_globals.Map();
+let $rt_profileClassNames = new teavm_globals.Map();
+let $rt_profileEnter = method => {
+    $rt_profileMethods.set(method, ($rt_profileMethods.get(method) || 0) + 1);
+}
+let $rt_profileBranch = (site, taken) => {
+    let counts = $rt_profileBranches.get(site);
+    if (typeof counts === 'undefined') {
+        counts = [0, 0];
+        $rt_profileBranches.set(site, counts);
+    }
+    counts[taken ? 0 : 1]++;
+}
+let $rt_profileReceiver = (site, cls) => {
+    let histogram = $rt_profileReceivers.get(site);
+    if (typeof histogram === 'undefined') {
+        histogram = new teavm_globals.Map();
+        $rt_profileReceivers.set(site, histogram);
+    }
+    histogram.set(cls, (histogram.get(cls) || 0) + 1);
+    return $rt_profileClassNames.has(cls);
+}
+let $rt_profileClassName = (cls, name) => {
+    $rt_profileClassNames.set(cls, name);
+}
+let $rt_profileDump = () => {
+    let lines = [];
+    $rt_profileMethods.forEach((count, method) => {
+        lines.push("method " + $rt_ustr(method) + " " + count);
+    });
+    $rt_profileReceivers.forEach((histogram, site) => {
+        let siteName = $rt_ustr(site);
+        histogram.forEach((count, cls) => {
+            let name = $rt_profileClassNames.get(cls);
+            if (typeof name !== 'undefined') {
+                lines.push("receiver " + siteName + " " + name + " " + count);
+            }
+        });
+    });
+    $rt_profileBranches.forEach((counts, site) => {
+        lines.push("branch " + $rt_ustr(site) + " " + counts[0] + " " + counts[1]);
+    });
+    return lines.join("\n") + "\n";
+}
@@ -0,0 +1,36 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+"use strict";
+
+function enter(method) {
+    $rt_profileEnter(method);
+}
+
+function branch(site, taken) {
+    $rt_profileBranch(site, taken);
+}
+
+function recordReceiver(site, cls) {
+    return $rt_profileReceiver(site, cls);
+}
+
+function registerClassName(cls, name) {
+    $rt_profileClassName(cls, $rt_ustr(name));
+}
+
+function dump() {
+    return $rt_str($rt_profileDump());
+}
@@ -0,0 +1,45 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+"use strict";
+
+function load(name) {
+    let thread = $rt_nativeThread();
+    if (thread.isResuming()) {
+        thread.status = 0;
+        let error = thread.attribute;
+        thread.attribute = null;
+        if (error !== null) {
+            $rt_throw(teavm_javaConstructor("java.lang.IllegalStateException", "(Ljava/lang/String;)V")(
+                $rt_str(error)));
+        }
+        return;
+    }
+
+    let chunkName = $rt_ustr(name);
+    if ($rt_isChunkLoaded(chunkName)) {
+        return;
+    }
+    let javaThread = $rt_getThread();
+    let complete = error => {
+        thread.attribute = error;
+        $rt_setThread(javaThread);
+        thread.resume();
+    };
+    thread.suspend(() => {
+        $rt_loadChunk(chunkName).then(() => complete(null), e => complete("Failed to load chunk " + chunkName
+            + (e instanceof teavm_globals.Error ? ": " + e.message : "")));
+    });
+}
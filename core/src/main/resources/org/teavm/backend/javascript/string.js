@@ -25,6 +25,29 @@ let $rt_stringPool = strings => {
 }
 let $rt_s = index => $rt_stringPool_instance[index];
 
+let $rt_classStringLiterals = null;
+let $rt_classStringPool = strings => {
+    let instance = null;
+    return index => {
+        if (instance === null) {
+            $rt_stringClassInit();
+            if ($rt_classStringLiterals === null) {
+                $rt_classStringLiterals = teavm_globals.Object.create(null);
+            }
+            instance = new teavm_globals.Array(strings.length);
+            for (let i = 0; i < strings.length; ++i) {
+                let str = $rt_classStringLiterals[strings[i]];
+                if (typeof str === 'undefined') {
+                    str = $rt_intern($rt_str(strings[i]));
+                    $rt_classStringLiterals[strings[i]] = str;
+                }
+                instance[i] = str;
+            }
+        }
+        return instance[index];
+    };
+}
+
 let $rt_charArrayToString = (array, offset, count) => {
     let result = "";
     let limit = offset + count;
@@ -106,4 +106,32 @@ let $rt_currentNativeThread = null;
 let $rt_nativeThread = () => $rt_currentNativeThread;
 let $rt_invalidPointer = () => {
     throw new teavm_globals.Error("Invalid recorded state");
-}
\ No newline at end of file
+}
+let $rt_chunkScope = null;
+let $rt_chunkStates = new teavm_globals.Map();
+let $rt_chunks = (scope, data) => {
+    $rt_chunkScope = scope;
+    for (let i = 0; i < data.length; i += 2) {
+        $rt_chunkStates.set(data[i], { loader: data[i + 1], promise: null, loaded: false });
+    }
+}
+let $rt_isChunkLoaded = name => {
+    let state = $rt_chunkStates.get(name);
+    return typeof state === 'undefined' || state.loaded;
+}
+let $rt_loadChunk = name => {
+    let state = $rt_chunkStates.get(name);
+    if (typeof state === 'undefined') {
+        return teavm_globals.Promise.resolve();
+    }
+    if (state.promise === null) {
+        state.promise = state.loader().then(chunk => {
+            chunk.default($rt_chunkScope);
+            state.loaded = true;
+        }, e => {
+            state.promise = null;
+            throw e;
+        });
+    }
+    return state.promise;
+}
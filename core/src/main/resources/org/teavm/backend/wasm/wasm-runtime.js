@@ -173,6 +173,10 @@ TeaVM.wasm = function() {
     }
 
     function load(path, options) {
+        if (typeof fetch === "function" && typeof WebAssembly.instantiateStreaming === "function") {
+            return create(fetch(path), options);
+        }
+
         let xhr = new XMLHttpRequest();
         xhr.responseType = "arraybuffer";
         xhr.open("GET", path);
@@ -247,7 +251,7 @@ TeaVM.wasm = function() {
             ...importObj
         };
 
-        const { instance } = await WebAssembly.instantiate(data, imports);
+        const { instance } = await instantiate(data, imports);
 
         controller.instance = instance;
         let teavm = createTeaVM(instance);
@@ -255,6 +259,23 @@ TeaVM.wasm = function() {
         return teavm;
     }
 
+    // Compiles module while it's being downloaded, when data is a pending response
+    async function instantiate(data, imports) {
+        if (data instanceof ArrayBuffer) {
+            return WebAssembly.instantiate(data, imports);
+        }
+        const response = await data;
+        if (!response.ok) {
+            throw new Error("Error loading Wasm data: " + response.status);
+        }
+        try {
+            return await WebAssembly.instantiateStreaming(response.clone(), imports);
+        } catch (e) {
+            // Streaming compilation fails when server does not send application/wasm content type
+            return WebAssembly.instantiate(await response.arrayBuffer(), imports);
+        }
+    }
+
     function createMain(teavm, controller, wasi) {
         return function() {
             return new Promise((resolve, reject) => {
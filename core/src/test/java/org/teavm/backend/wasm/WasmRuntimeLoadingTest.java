@@ -0,0 +1,103 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Loads a module through {@code wasm-runtime.js} with Node.js, when available, replacing {@code fetch}
+ * and {@code XMLHttpRequest} with stubs. WASI shim is replaced with stubs as well.
+ */
+public class WasmRuntimeLoadingTest {
+    private static final String SHIM_PATH = "node_modules/@bjorn3/browser_wasi_shim/";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = tmp.newFolder("runtime");
+        write(SHIM_PATH + "package.json", "{ \"type\": \"module\" }");
+        write(SHIM_PATH + "src/fd.js", "export class Fd {}");
+        write(SHIM_PATH + "src/fs_fd.js", "export class PreopenDirectory {}");
+        write(SHIM_PATH + "src/wasi.js", "export default class WASI { constructor() { this.wasiImport = {}; } }");
+        write("run.js", resource("org/teavm/backend/wasm/wasm-runtime.js") + "\n"
+                + resource("org/teavm/backend/wasm/wasm-runtime-loading.js"));
+    }
+
+    @Test
+    public void compiledWhileStreaming() throws Exception {
+        assertEquals("loaded 1 0", run("streaming"));
+    }
+
+    @Test
+    public void fallsBackToBufferOnWrongContentType() throws Exception {
+        assertEquals("loaded 1 1", run("wrongContentType"));
+    }
+
+    @Test
+    public void downloadsBufferWithoutStreamingSupport() throws Exception {
+        assertEquals("loaded 0 1", run("noStreaming"));
+    }
+
+    @Test
+    public void reportsHttpError() throws Exception {
+        assertEquals("failed: Error loading Wasm data: 404", run("missing"));
+    }
+
+    private String run(String mode) throws IOException, InterruptedException {
+        Process process;
+        try {
+            process = new ProcessBuilder("node", "run.js", mode)
+                    .directory(directory)
+                    .redirectErrorStream(true)
+                    .start();
+        } catch (IOException e) {
+            Assume.assumeNoException("Node.js is not available", e);
+            throw e;
+        }
+        assertTrue("Node.js timed out", process.waitFor(60, TimeUnit.SECONDS));
+        var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals("Node.js failed:\n" + output, 0, process.exitValue());
+        return output.strip();
+    }
+
+    private void write(String path, String content) throws IOException {
+        var file = new File(directory, path);
+        file.getParentFile().mkdirs();
+        Files.writeString(file.toPath(), content);
+    }
+
+    private static String resource(String name) throws IOException {
+        try (InputStream input = WasmRuntimeLoadingTest.class.getClassLoader().getResourceAsStream(name)) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
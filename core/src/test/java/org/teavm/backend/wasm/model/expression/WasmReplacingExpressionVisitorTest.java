@@ -0,0 +1,69 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.model.expression;
+
+import static org.junit.Assert.assertSame;
+import java.util.List;
+import org.junit.Test;
+import org.teavm.backend.wasm.model.WasmArray;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmFunctionType;
+import org.teavm.backend.wasm.model.WasmGlobal;
+import org.teavm.backend.wasm.model.WasmLocal;
+import org.teavm.backend.wasm.model.WasmType;
+
+public class WasmReplacingExpressionVisitorTest {
+    private WasmFunction function = new WasmFunction(new WasmFunctionType(null, WasmType.INT32, List.of()));
+    private WasmLocal local = new WasmLocal(WasmType.INT32);
+    private WasmExpression original = new WasmInt32Constant(1);
+    private WasmExpression replacement = new WasmInt32Constant(2);
+
+    public WasmReplacingExpressionVisitorTest() {
+        function.add(local);
+    }
+
+    @Test
+    public void replacesValueOfSetLocal() {
+        var expression = new WasmSetLocal(local, original);
+        replace(expression);
+        assertSame(replacement, expression.getValue());
+    }
+
+    @Test
+    public void replacesValueOfSetGlobal() {
+        var global = new WasmGlobal("g", WasmType.INT32, new WasmInt32Constant(0));
+        var expression = new WasmSetGlobal(global, original);
+        replace(expression);
+        assertSame(replacement, expression.getValue());
+    }
+
+    @Test
+    public void replacesValueOfArraySet() {
+        var array = new WasmArray("a", WasmType.INT32.asStorage());
+        var instance = new WasmGetLocal(local);
+        var index = new WasmInt32Constant(3);
+        var expression = new WasmArraySet(array, instance, index, original);
+        replace(expression);
+        assertSame(instance, expression.getInstance());
+        assertSame(index, expression.getIndex());
+        assertSame(replacement, expression.getValue());
+    }
+
+    private void replace(WasmExpression expression) {
+        function.getBody().add(expression);
+        new WasmReplacingExpressionVisitor(e -> e == original ? replacement : e).replace(function);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import org.junit.Test;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmFunctionType;
+import org.teavm.backend.wasm.model.WasmLocal;
+import org.teavm.backend.wasm.model.WasmType;
+import org.teavm.backend.wasm.model.expression.WasmBlock;
+import org.teavm.backend.wasm.model.expression.WasmBranch;
+import org.teavm.backend.wasm.model.expression.WasmBreak;
+import org.teavm.backend.wasm.model.expression.WasmCall;
+import org.teavm.backend.wasm.model.expression.WasmDrop;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmGetLocal;
+import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
+import org.teavm.backend.wasm.model.expression.WasmReturn;
+
+public class BlockSimplificationTest {
+    private WasmFunction function = new WasmFunction(new WasmFunctionType(null, WasmType.INT32,
+            List.of(WasmType.INT32)));
+    private WasmLocal p = new WasmLocal(WasmType.INT32);
+
+    public BlockSimplificationTest() {
+        function.add(p);
+    }
+
+    @Test
+    public void removesCodeAfterReturn() {
+        var ret = new WasmReturn(get());
+        body(call(), ret, call());
+
+        assertTrue(optimize());
+        assertEquals(2, function.getBody().size());
+        assertEquals(ret, function.getBody().get(1));
+    }
+
+    @Test
+    public void removesCodeAfterBreak() {
+        var block = new WasmBlock(false);
+        var first = call();
+        var loop = new WasmBlock(true);
+        loop.getBody().add(new WasmBranch(get(), block));
+        loop.getBody().add(new WasmBreak(loop));
+        loop.getBody().add(call());
+        block.getBody().add(first);
+        block.getBody().add(loop);
+        body(block);
+
+        assertTrue(optimize());
+        assertEquals(List.of(block), function.getBody());
+        assertEquals(List.of(first, loop), block.getBody());
+        assertEquals(2, loop.getBody().size());
+    }
+
+    @Test
+    public void unwrapsBlockWithoutBranches() {
+        var first = call();
+        var second = call();
+        var block = new WasmBlock(false);
+        block.getBody().add(first);
+        block.getBody().add(second);
+        body(block);
+
+        assertTrue(optimize());
+        assertEquals(List.of(first, second), function.getBody());
+    }
+
+    @Test
+    public void unwrapsBlockAfterRemovingTrailingBreak() {
+        var first = call();
+        var block = new WasmBlock(false);
+        block.getBody().add(first);
+        block.getBody().add(new WasmBreak(block));
+        body(block);
+
+        assertTrue(optimize());
+        assertEquals(List.of(first), function.getBody());
+    }
+
+    @Test
+    public void keepsBranchTarget() {
+        var block = new WasmBlock(false);
+        var branch = new WasmBranch(get(), block);
+        block.getBody().add(branch);
+        block.getBody().add(call());
+        body(block);
+
+        assertFalse(optimize());
+        assertEquals(List.of(block), function.getBody());
+    }
+
+    @Test
+    public void keepsBlockWithResult() {
+        var block = new WasmBlock(false);
+        block.setType(WasmType.INT32);
+        block.getBody().add(get());
+        var drop = new WasmDrop(block);
+        body(drop);
+
+        assertFalse(optimize());
+        assertEquals(List.of(drop), function.getBody());
+    }
+
+    @Test
+    public void removesDropOfPureValue() {
+        var drop = new WasmDrop(call());
+        body(new WasmDrop(get()), drop, new WasmDrop(new WasmInt32Constant(1)));
+
+        assertTrue(optimize());
+        assertEquals(List.of(drop), function.getBody());
+    }
+
+    private boolean optimize() {
+        return new BlockSimplification().apply(function);
+    }
+
+    private void body(WasmExpression... expressions) {
+        function.getBody().addAll(List.of(expressions));
+    }
+
+    private WasmCall call() {
+        return new WasmCall(function);
+    }
+
+    private WasmGetLocal get() {
+        return new WasmGetLocal(p);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import org.junit.Test;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmFunctionType;
+import org.teavm.backend.wasm.model.WasmLocal;
+import org.teavm.backend.wasm.model.WasmNumType;
+import org.teavm.backend.wasm.model.WasmType;
+import org.teavm.backend.wasm.model.expression.WasmBlock;
+import org.teavm.backend.wasm.model.expression.WasmConditional;
+import org.teavm.backend.wasm.model.expression.WasmConversion;
+import org.teavm.backend.wasm.model.expression.WasmDrop;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmFloat64Constant;
+import org.teavm.backend.wasm.model.expression.WasmGetLocal;
+import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
+import org.teavm.backend.wasm.model.expression.WasmInt64Constant;
+import org.teavm.backend.wasm.model.expression.WasmIntBinary;
+import org.teavm.backend.wasm.model.expression.WasmIntBinaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmIntType;
+import org.teavm.backend.wasm.model.expression.WasmIntUnary;
+import org.teavm.backend.wasm.model.expression.WasmIntUnaryOperation;
+
+public class ConstantFoldingTest {
+    private WasmFunction function = new WasmFunction(new WasmFunctionType(null, WasmType.INT32,
+            List.of(WasmType.INT32)));
+    private WasmLocal p = new WasmLocal(WasmType.INT32);
+
+    public ConstantFoldingTest() {
+        function.add(p);
+    }
+
+    @Test
+    public void evaluatesArithmetic() {
+        assertEquals(5, int32(fold(binary(WasmIntBinaryOperation.ADD, 2, 3))));
+        assertEquals(-7, int32(fold(binary(WasmIntBinaryOperation.DIV_SIGNED, -15, 2))));
+        assertEquals(Integer.MAX_VALUE, int32(fold(binary(WasmIntBinaryOperation.DIV_UNSIGNED, -1, 2))));
+        assertEquals(0, int32(fold(binary(WasmIntBinaryOperation.REM_SIGNED, Integer.MIN_VALUE, -1))));
+        assertEquals(Integer.MIN_VALUE, int32(fold(binary(WasmIntBinaryOperation.SHL, 1, 31))));
+        assertEquals(1, int32(fold(binary(WasmIntBinaryOperation.LT_UNSIGNED, 1, -1))));
+        assertEquals(0, int32(fold(binary(WasmIntBinaryOperation.LT_SIGNED, 1, -1))));
+    }
+
+    @Test
+    public void evaluates64BitArithmetic() {
+        var expression = new WasmIntBinary(WasmIntType.INT64, WasmIntBinaryOperation.MUL,
+                new WasmInt64Constant(1L << 32), new WasmInt64Constant(3));
+        assertEquals(3L << 32, ((WasmInt64Constant) fold(expression)).getValue());
+    }
+
+    @Test
+    public void doesNotFoldTrappingOperations() {
+        assertNotFolded(binary(WasmIntBinaryOperation.DIV_SIGNED, 1, 0));
+        assertNotFolded(binary(WasmIntBinaryOperation.DIV_UNSIGNED, 1, 0));
+        assertNotFolded(binary(WasmIntBinaryOperation.REM_SIGNED, 1, 0));
+        assertNotFolded(binary(WasmIntBinaryOperation.REM_UNSIGNED, 1, 0));
+        assertNotFolded(binary(WasmIntBinaryOperation.DIV_SIGNED, Integer.MIN_VALUE, -1));
+        assertNotFolded(new WasmIntBinary(WasmIntType.INT64, WasmIntBinaryOperation.DIV_SIGNED,
+                new WasmInt64Constant(Long.MIN_VALUE), new WasmInt64Constant(-1)));
+    }
+
+    @Test
+    public void doesNotFoldFloatToIntConversion() {
+        // Out of range value traps
+        assertNotFolded(new WasmConversion(WasmNumType.FLOAT64, WasmNumType.INT32, true,
+                new WasmFloat64Constant(1e20)));
+    }
+
+    @Test
+    public void foldsIntegerConversions() {
+        assertEquals(-1L, int64(fold(new WasmConversion(WasmNumType.INT32, WasmNumType.INT64, true,
+                new WasmInt32Constant(-1)))));
+        assertEquals(0xFFFFFFFFL, int64(fold(new WasmConversion(WasmNumType.INT32, WasmNumType.INT64, false,
+                new WasmInt32Constant(-1)))));
+        assertEquals(1, int32(fold(new WasmConversion(WasmNumType.INT64, WasmNumType.INT32, false,
+                new WasmInt64Constant((1L << 32) + 1)))));
+    }
+
+    @Test
+    public void removesNeutralOperand() {
+        var operand = get();
+        assertSame(operand, fold(new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.ADD,
+                new WasmInt32Constant(0), operand)));
+        operand = get();
+        assertSame(operand, fold(new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.MUL,
+                operand, new WasmInt32Constant(1))));
+        operand = get();
+        assertSame(operand, fold(new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.AND,
+                operand, new WasmInt32Constant(-1))));
+    }
+
+    @Test
+    public void mergesAdditionsOfConstants() {
+        var operand = get();
+        var inner = new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.ADD, operand,
+                new WasmInt32Constant(1));
+        var result = (WasmIntBinary) fold(new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.SUB,
+                inner, new WasmInt32Constant(3)));
+        assertEquals(WasmIntBinaryOperation.ADD, result.getOperation());
+        assertSame(operand, result.getFirst());
+        assertEquals(-2, int32(result.getSecond()));
+    }
+
+    @Test
+    public void replacesNegatedComparison() {
+        var comparison = new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.LT_SIGNED, get(), get());
+        var result = fold(new WasmIntUnary(WasmIntType.INT32, WasmIntUnaryOperation.EQZ, comparison));
+        assertSame(comparison, result);
+        assertEquals(WasmIntBinaryOperation.GE_SIGNED, comparison.getOperation());
+    }
+
+    @Test
+    public void replacesConditionalWithConstantCondition() {
+        var conditional = new WasmConditional(new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.NE,
+                new WasmInt32Constant(2), new WasmInt32Constant(3)));
+        conditional.setType(WasmType.INT32);
+        conditional.getThenBlock().getBody().add(new WasmInt32Constant(1));
+        conditional.getElseBlock().getBody().add(new WasmInt32Constant(0));
+
+        var result = (WasmBlock) fold(conditional);
+        assertSame(conditional.getThenBlock(), result);
+        assertEquals(WasmType.INT32, result.getType());
+    }
+
+    private WasmExpression fold(WasmExpression expression) {
+        var drop = new WasmDrop(expression);
+        function.getBody().clear();
+        function.getBody().add(drop);
+        new ConstantFolding().apply(function);
+        return drop.getOperand();
+    }
+
+    private void assertNotFolded(WasmExpression expression) {
+        function.getBody().clear();
+        function.getBody().add(new WasmDrop(expression));
+        assertFalse(new ConstantFolding().apply(function));
+        assertSame(expression, ((WasmDrop) function.getBody().get(0)).getOperand());
+    }
+
+    private WasmGetLocal get() {
+        return new WasmGetLocal(p);
+    }
+
+    private static WasmIntBinary binary(WasmIntBinaryOperation operation, int a, int b) {
+        return new WasmIntBinary(WasmIntType.INT32, operation, new WasmInt32Constant(a), new WasmInt32Constant(b));
+    }
+
+    private static int int32(WasmExpression expression) {
+        assertTrue(expression instanceof WasmInt32Constant);
+        return ((WasmInt32Constant) expression).getValue();
+    }
+
+    private static long int64(WasmExpression expression) {
+        assertTrue(expression instanceof WasmInt64Constant);
+        return ((WasmInt64Constant) expression).getValue();
+    }
+}
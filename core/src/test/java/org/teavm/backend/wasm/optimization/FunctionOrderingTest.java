@@ -0,0 +1,85 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import static org.junit.Assert.assertEquals;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmFunctionType;
+import org.teavm.backend.wasm.model.WasmModule;
+import org.teavm.backend.wasm.model.WasmType;
+import org.teavm.backend.wasm.model.expression.WasmCall;
+
+public class FunctionOrderingTest {
+    private WasmModule module = new WasmModule();
+    private WasmFunctionType type = new WasmFunctionType(null, (WasmType) null, List.of());
+
+    @Test
+    public void startupCodeComesFirst() {
+        var log = function("log");
+        log.setImportModule("env");
+        log.setImportName("log");
+        var callbackB = function("callbackB");
+        var compute = function("compute");
+        var helper = function("helper");
+        var main = function("main");
+        main.setExportName("main");
+        var callbackA = function("callbackA");
+        var setup = function("setup");
+        var init = function("init");
+        module.setStartFunction(init);
+
+        call(init, setup);
+        call(setup, helper);
+        call(setup, log);
+        call(main, compute);
+        call(main, helper);
+        callbackA.setReferenced(true);
+        callbackB.setReferenced(true);
+        module.getFunctionTable().add(callbackA);
+        module.getFunctionTable().add(callbackB);
+
+        new FunctionOrdering(module).apply();
+
+        // Functions that are only called indirectly keep their original order
+        assertEquals(List.of("init", "setup", "helper", "main", "compute", "callbackB", "callbackA"), codeOrder());
+        // Imported functions always precede functions defined in module in index space
+        assertEquals(0, module.functions.indexOf(log));
+        assertEquals(1, module.functions.indexOf(init));
+        assertEquals(7, module.functions.indexOf(callbackA));
+    }
+
+    private WasmFunction function(String name) {
+        var function = new WasmFunction(type);
+        function.setName(name);
+        module.functions.add(function);
+        return function;
+    }
+
+    private static void call(WasmFunction caller, WasmFunction callee) {
+        caller.getBody().add(new WasmCall(callee));
+    }
+
+    // Code section contains bodies of functions defined in module in order of module's function list
+    private List<String> codeOrder() {
+        return module.functions.stream()
+                .filter(function -> function.getImportName() == null)
+                .map(WasmFunction::getName)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import org.junit.Test;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmFunctionType;
+import org.teavm.backend.wasm.model.WasmGlobal;
+import org.teavm.backend.wasm.model.WasmLocal;
+import org.teavm.backend.wasm.model.WasmNumType;
+import org.teavm.backend.wasm.model.WasmType;
+import org.teavm.backend.wasm.model.expression.WasmCall;
+import org.teavm.backend.wasm.model.expression.WasmConversion;
+import org.teavm.backend.wasm.model.expression.WasmDrop;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmGetLocal;
+import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
+import org.teavm.backend.wasm.model.expression.WasmIntBinary;
+import org.teavm.backend.wasm.model.expression.WasmIntBinaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmIntType;
+import org.teavm.backend.wasm.model.expression.WasmSetGlobal;
+import org.teavm.backend.wasm.model.expression.WasmSetLocal;
+
+public class LocalSimplificationTest {
+    private WasmFunctionType type = new WasmFunctionType(null, WasmType.INT32,
+            List.of(WasmType.INT32, WasmType.INT32, WasmType.FLOAT64));
+    private WasmFunction function = new WasmFunction(type);
+    private WasmFunction callee = new WasmFunction(type);
+    private WasmLocal p = local(WasmType.INT32);
+    private WasmLocal q = local(WasmType.INT32);
+    private WasmLocal d = local(WasmType.FLOAT64);
+    private WasmLocal x = local(WasmType.INT32);
+    private WasmLocal y = local(WasmType.INT32);
+
+    @Test
+    public void sinksValueIntoNextInstruction() {
+        var value = call();
+        var use = call(get(x));
+        body(set(x, value), use);
+
+        assertTrue(optimize());
+        assertEquals(List.of(use), function.getBody());
+        assertSame(value, use.getArguments().get(0));
+    }
+
+    @Test
+    public void sinksPastPureOperands() {
+        var value = call();
+        var use = call(get(p), new WasmInt32Constant(1), get(x));
+        body(set(x, value), use);
+
+        assertTrue(optimize());
+        assertEquals(List.of(use), function.getBody());
+        assertSame(value, use.getArguments().get(2));
+    }
+
+    @Test
+    public void keepsOrderOfSideEffects() {
+        // Sinking would move first call after the second one
+        body(set(x, call()), call(call(), get(x)));
+
+        assertFalse(optimize());
+        assertEquals(2, function.getBody().size());
+    }
+
+    @Test
+    public void doesNotMoveValuePastDivision() {
+        // Division may trap, so call must be performed before it
+        var division = new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.DIV_SIGNED, get(p), get(q));
+        body(set(x, call()), call(division, get(x)));
+
+        assertFalse(optimize());
+        assertEquals(2, function.getBody().size());
+    }
+
+    @Test
+    public void doesNotMoveValuePastRemainder() {
+        var remainder = new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.REM_UNSIGNED, get(p), get(q));
+        body(set(x, call()), call(remainder, get(x)));
+
+        assertFalse(optimize());
+        assertEquals(2, function.getBody().size());
+    }
+
+    @Test
+    public void movesValuePastNonTrappingArithmetic() {
+        var value = call();
+        var use = call(new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.ADD, get(p), get(q)), get(x));
+        body(set(x, value), use);
+
+        assertTrue(optimize());
+        assertSame(value, use.getArguments().get(1));
+    }
+
+    @Test
+    public void doesNotMoveValuePastFloatToIntConversion() {
+        var conversion = new WasmConversion(WasmNumType.FLOAT64, WasmNumType.INT32, true, get(d));
+        body(set(x, call()), call(conversion, get(x)));
+
+        assertFalse(optimize());
+        assertEquals(2, function.getBody().size());
+    }
+
+    @Test
+    public void movesValuePastReinterpretation() {
+        var conversion = new WasmConversion(WasmNumType.FLOAT64, WasmNumType.INT64, true, get(d));
+        conversion.setReinterpret(true);
+        var value = call();
+        var use = call(conversion, get(x));
+        body(set(x, value), use);
+
+        assertTrue(optimize());
+        assertSame(value, use.getArguments().get(1));
+    }
+
+    @Test
+    public void replacesDeadStoreWithDrop() {
+        var value = call();
+        body(set(x, value));
+
+        assertTrue(optimize());
+        assertEquals(1, function.getBody().size());
+        var drop = (WasmDrop) function.getBody().get(0);
+        assertSame(value, drop.getOperand());
+    }
+
+    @Test
+    public void removesDeadStoreOfPureValue() {
+        body(set(x, new WasmInt32Constant(1)), set(y, get(p)));
+
+        assertTrue(optimize());
+        assertEquals(List.of(), function.getBody());
+    }
+
+    @Test
+    public void keepsWritesToParameters() {
+        body(set(p, call()));
+
+        assertFalse(optimize());
+        assertEquals(1, function.getBody().size());
+    }
+
+    @Test
+    public void removesSelfAssignment() {
+        var use = call(get(x), get(x));
+        body(set(x, call()), set(x, get(x)), use);
+
+        assertTrue(optimize());
+        assertEquals(2, function.getBody().size());
+        assertSame(use, function.getBody().get(1));
+    }
+
+    @Test
+    public void sinksIntoSetLocal() {
+        var value = call();
+        var target = set(y, get(x));
+        body(set(x, value), target, call(get(y), get(y)));
+
+        assertTrue(optimize());
+        assertEquals(2, function.getBody().size());
+        assertSame(target, function.getBody().get(0));
+        assertSame(value, target.getValue());
+    }
+
+    @Test
+    public void sinksIntoSetGlobal() {
+        var value = call();
+        var target = new WasmSetGlobal(new WasmGlobal("g", WasmType.INT32, new WasmInt32Constant(0)), get(x));
+        body(set(x, value), target);
+
+        assertTrue(optimize());
+        assertEquals(List.of(target), function.getBody());
+        assertSame(value, target.getValue());
+    }
+
+    private boolean optimize() {
+        return new LocalSimplification().apply(function);
+    }
+
+    private WasmLocal local(WasmType type) {
+        var local = new WasmLocal(type);
+        function.add(local);
+        return local;
+    }
+
+    private void body(WasmExpression... expressions) {
+        function.getBody().addAll(List.of(expressions));
+    }
+
+    private WasmCall call(WasmExpression... arguments) {
+        return new WasmCall(callee, arguments);
+    }
+
+    private static WasmGetLocal get(WasmLocal local) {
+        return new WasmGetLocal(local);
+    }
+
+    private static WasmSetLocal set(WasmLocal local, WasmExpression value) {
+        return new WasmSetLocal(local, value);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.render;
+
+import static org.junit.Assert.assertArrayEquals;
+import java.util.List;
+import org.junit.Test;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmFunctionType;
+import org.teavm.backend.wasm.model.WasmLocal;
+import org.teavm.backend.wasm.model.WasmModule;
+import org.teavm.backend.wasm.model.WasmType;
+import org.teavm.backend.wasm.model.expression.WasmCall;
+import org.teavm.backend.wasm.model.expression.WasmConditional;
+import org.teavm.backend.wasm.model.expression.WasmDrop;
+import org.teavm.backend.wasm.model.expression.WasmGetLocal;
+import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
+import org.teavm.backend.wasm.model.expression.WasmIntBinary;
+import org.teavm.backend.wasm.model.expression.WasmIntBinaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmIntType;
+import org.teavm.backend.wasm.model.expression.WasmReturn;
+import org.teavm.backend.wasm.model.expression.WasmSetLocal;
+import org.teavm.backend.wasm.optimization.FunctionOptimization;
+
+public class WasmBinaryRendererTest {
+    private static final int FUNCTION_COUNT = 200;
+
+    @Test
+    public void parallelBuildProducesSameBinary() {
+        var expected = build(1);
+        for (var threads : new int[] { 2, 4, 8 }) {
+            assertArrayEquals("Binary differs when built with " + threads + " threads", expected, build(threads));
+        }
+    }
+
+    private static byte[] build(int threads) {
+        var module = createModule();
+
+        var optimization = new FunctionOptimization(module);
+        optimization.setThreads(threads);
+        optimization.apply();
+
+        var writer = new WasmBinaryWriter();
+        var renderer = new WasmBinaryRenderer(writer, WasmBinaryVersion.V_0x1, false, null, null, null, null,
+                WasmBinaryStatsCollector.EMPTY);
+        renderer.setThreads(threads);
+        renderer.render(module);
+        return writer.getData();
+    }
+
+    /*
+     * Each function gets a foldable constant expression, a conditional and a call to the previous one,
+     * so that optimization has something to rewrite and function indexes are encoded in bodies.
+     */
+    private static WasmModule createModule() {
+        var module = new WasmModule();
+        var type = new WasmFunctionType(null, WasmType.INT32, List.of(WasmType.INT32));
+        module.types.add(type);
+
+        var imported = new WasmFunction(type);
+        imported.setName("log");
+        module.functions.add(imported);
+        imported.setImportModule("env");
+        imported.setImportName("log");
+
+        var previous = imported;
+        for (var i = 0; i < FUNCTION_COUNT; ++i) {
+            var function = new WasmFunction(type);
+            function.setName("f" + i);
+            var parameter = new WasmLocal(WasmType.INT32);
+            var temp = new WasmLocal(WasmType.INT32);
+            function.add(parameter);
+            function.add(temp);
+
+            var constant = new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.MUL,
+                    new WasmInt32Constant(i), new WasmInt32Constant(3));
+            function.getBody().add(new WasmSetLocal(temp, new WasmIntBinary(WasmIntType.INT32,
+                    WasmIntBinaryOperation.ADD, new WasmGetLocal(parameter), constant)));
+            var conditional = new WasmConditional(new WasmIntBinary(WasmIntType.INT32,
+                    WasmIntBinaryOperation.LT_SIGNED, new WasmGetLocal(temp), new WasmInt32Constant(i)));
+            conditional.getThenBlock().getBody().add(new WasmDrop(new WasmCall(imported,
+                    new WasmGetLocal(temp))));
+            function.getBody().add(conditional);
+            function.getBody().add(new WasmReturn(new WasmCall(previous, new WasmGetLocal(temp))));
+
+            module.functions.add(function);
+            previous = function;
+        }
+        previous.setExportName("main");
+        return module;
+    }
+}
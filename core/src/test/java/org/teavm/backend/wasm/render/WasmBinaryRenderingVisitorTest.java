@@ -0,0 +1,103 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.render;
+
+import static org.junit.Assert.assertArrayEquals;
+import org.junit.Test;
+import org.teavm.backend.wasm.model.WasmModule;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
+import org.teavm.backend.wasm.model.expression.WasmLoadVector;
+import org.teavm.backend.wasm.model.expression.WasmStoreVector;
+import org.teavm.backend.wasm.model.expression.WasmVectorBinary;
+import org.teavm.backend.wasm.model.expression.WasmVectorBinaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmVectorShape;
+import org.teavm.backend.wasm.model.expression.WasmVectorSplat;
+
+public class WasmBinaryRenderingVisitorTest {
+    @Test
+    public void vectorLoad() {
+        assertRendered(new WasmLoadVector(16, new WasmInt32Constant(8)),
+                0x41, 0x08, 0xFD, 0x00, 0x04, 0x00);
+        assertRendered(new WasmLoadVector(4, new WasmInt32Constant(0), 128),
+                0x41, 0x00, 0xFD, 0x00, 0x02, 0x80, 0x01);
+    }
+
+    @Test
+    public void vectorStore() {
+        var store = new WasmStoreVector(16, new WasmInt32Constant(0),
+                new WasmLoadVector(16, new WasmInt32Constant(16)));
+        assertRendered(store,
+                0x41, 0x00,
+                0x41, 0x10, 0xFD, 0x00, 0x04, 0x00,
+                0xFD, 0x0B, 0x04, 0x00);
+    }
+
+    @Test
+    public void vectorSplat() {
+        assertRendered(new WasmVectorSplat(WasmVectorShape.INT8X16, new WasmInt32Constant(1)),
+                0x41, 0x01, 0xFD, 0x0F);
+        assertRendered(new WasmVectorSplat(WasmVectorShape.INT32X4, new WasmInt32Constant(1)),
+                0x41, 0x01, 0xFD, 0x11);
+    }
+
+    @Test
+    public void vectorBinaryOpcodes() {
+        assertBinaryOpcode(WasmVectorShape.INT32X4, WasmVectorBinaryOperation.AND, 0x4E);
+        assertBinaryOpcode(WasmVectorShape.INT8X16, WasmVectorBinaryOperation.ADD, 0x6E);
+        assertBinaryOpcode(WasmVectorShape.INT8X16, WasmVectorBinaryOperation.SUB_SAT_UNSIGNED, 0x73);
+        assertBinaryOpcode(WasmVectorShape.INT16X8, WasmVectorBinaryOperation.ADD, 0x8E, 0x01);
+        assertBinaryOpcode(WasmVectorShape.INT16X8, WasmVectorBinaryOperation.MUL, 0x95, 0x01);
+        assertBinaryOpcode(WasmVectorShape.INT32X4, WasmVectorBinaryOperation.ADD, 0xAE, 0x01);
+        assertBinaryOpcode(WasmVectorShape.INT32X4, WasmVectorBinaryOperation.MUL, 0xB5, 0x01);
+        assertBinaryOpcode(WasmVectorShape.INT64X2, WasmVectorBinaryOperation.SUB, 0xD1, 0x01);
+        assertBinaryOpcode(WasmVectorShape.FLOAT32X4, WasmVectorBinaryOperation.ADD, 0xE4, 0x01);
+        assertBinaryOpcode(WasmVectorShape.FLOAT64X2, WasmVectorBinaryOperation.DIV, 0xF3, 0x01);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedVectorOperation() {
+        render(new WasmVectorBinary(WasmVectorShape.INT8X16, WasmVectorBinaryOperation.MUL,
+                new WasmInt32Constant(0), new WasmInt32Constant(0)));
+    }
+
+    private void assertBinaryOpcode(WasmVectorShape shape, WasmVectorBinaryOperation operation, int... opcode) {
+        var expression = new WasmVectorBinary(shape, operation, new WasmInt32Constant(1), new WasmInt32Constant(2));
+        var expected = new int[4 + 1 + opcode.length];
+        expected[0] = 0x41;
+        expected[1] = 0x01;
+        expected[2] = 0x41;
+        expected[3] = 0x02;
+        expected[4] = 0xFD;
+        System.arraycopy(opcode, 0, expected, 5, opcode.length);
+        assertRendered(expression, expected);
+    }
+
+    private void assertRendered(WasmExpression expression, int... expected) {
+        var expectedBytes = new byte[expected.length];
+        for (var i = 0; i < expected.length; ++i) {
+            expectedBytes[i] = (byte) expected[i];
+        }
+        assertArrayEquals(expectedBytes, render(expression));
+    }
+
+    private byte[] render(WasmExpression expression) {
+        var writer = new WasmBinaryWriter();
+        var visitor = new WasmBinaryRenderingVisitor(writer, new WasmModule(), null, null, 0);
+        expression.acceptVisitor(visitor);
+        return writer.getData();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CacheArchiveTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void roundTripThroughDirectoryStore() throws IOException {
+        File source = tmp.newFolder("source");
+        write(new File(source, "symbols"), "foo");
+        write(new File(source, "java/lang/Object.teavm-cls"), "bar");
+
+        String key = new CacheKeyBuilder().add("target", "JAVASCRIPT").build();
+        RemoteCacheStore store = new DirectoryRemoteCacheStore(tmp.newFolder("store"));
+        assertNull(store.fetch(key));
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        CacheArchive.write(source, archive);
+        store.publish(key, new ByteArrayInputStream(archive.toByteArray()));
+
+        File target = new File(tmp.getRoot(), "target");
+        try (InputStream input = store.fetch(key)) {
+            assertTrue(CacheArchive.read(input, target));
+        }
+        assertEquals("foo", read(new File(target, "symbols")));
+        assertEquals("bar", read(new File(target, "java/lang/Object.teavm-cls")));
+    }
+
+    @Test
+    public void rejectsForeignArchive() throws IOException {
+        File target = tmp.newFolder("target");
+        assertFalse(CacheArchive.read(new ByteArrayInputStream(new byte[0]), target));
+    }
+
+    @Test
+    public void keyDependsOnValues() {
+        String first = new CacheKeyBuilder().add("a", 1).add("b", 2).build();
+        String second = new CacheKeyBuilder().add("b", 2).add("a", 1).build();
+        String third = new CacheKeyBuilder().add("a", 1).add("b", 3).build();
+        assertEquals(first, second);
+        assertNotEquals(first, third);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
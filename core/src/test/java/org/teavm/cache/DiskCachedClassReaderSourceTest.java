@@ -0,0 +1,154 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ReferenceCache;
+
+public class DiskCachedClassReaderSourceTest {
+    private static final String CLASS_NAME = "foo.Bar";
+    private static final Date OLD_DATE = new Date(0);
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File directory;
+    private ReferenceCache referenceCache = new ReferenceCache();
+    private InMemorySymbolTable symbolTable = new InMemorySymbolTable();
+    private InMemorySymbolTable fileTable = new InMemorySymbolTable();
+    private InMemorySymbolTable variableTable = new InMemorySymbolTable();
+
+    private String content;
+    private Date date;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = tmp.newFolder("cache");
+    }
+
+    @Test
+    public void hashModeReusesClassWithSameContent() throws IOException {
+        content = "v1";
+        build(true);
+
+        // Class file rewritten with identical bytes, e.g. after clean build
+        date = newDate();
+        DiskCachedClassReaderSource source = createSource(true);
+        assertFalse(source.isStaleClass(CLASS_NAME));
+        assertEquals("v1", source.get(CLASS_NAME).getParent());
+    }
+
+    @Test
+    public void hashModeDetectsChangedContent() throws IOException {
+        content = "v1";
+        build(true);
+
+        content = "v2";
+        DiskCachedClassReaderSource source = createSource(true);
+        assertTrue(source.isStaleClass(CLASS_NAME));
+        assertEquals("v2", source.get(CLASS_NAME).getParent());
+    }
+
+    @Test
+    public void dateModeComparesModificationDates() throws IOException {
+        content = "v1";
+        date = OLD_DATE;
+        build(false);
+
+        DiskCachedClassReaderSource source = createSource(false);
+        assertFalse(source.isStaleClass(CLASS_NAME));
+        assertEquals("v1", source.get(CLASS_NAME).getParent());
+
+        content = "v2";
+        date = newDate();
+        source = createSource(false);
+        assertTrue(source.isStaleClass(CLASS_NAME));
+        assertEquals("v2", source.get(CLASS_NAME).getParent());
+    }
+
+    @Test
+    public void hashWrittenInHashModeInvalidatedByDateMode() throws IOException {
+        content = "v1";
+        build(true);
+
+        // Class changed and cache entry rewritten while validating by dates
+        content = "v2";
+        date = newDate();
+        DiskCachedClassReaderSource source = build(false);
+        assertEquals("v2", source.get(CLASS_NAME).getParent());
+
+        // Class reverted to content which matches hash stored by first build,
+        // cache entry now holds another version, so it must not be reused
+        content = "v1";
+        source = createSource(true);
+        assertTrue(source.isStaleClass(CLASS_NAME));
+        assertEquals("v1", source.get(CLASS_NAME).getParent());
+    }
+
+    @Test
+    public void hashWrittenAfterSwitchingFromDateMode() throws IOException {
+        content = "v1";
+        date = OLD_DATE;
+        build(false);
+
+        // No hash stored yet, class can't be validated
+        DiskCachedClassReaderSource source = build(true);
+        assertTrue(source.isStaleClass(CLASS_NAME));
+
+        source = createSource(true);
+        assertFalse(source.isStaleClass(CLASS_NAME));
+        assertEquals("v1", source.get(CLASS_NAME).getParent());
+    }
+
+    private DiskCachedClassReaderSource build(boolean hashes) throws IOException {
+        DiskCachedClassReaderSource source = createSource(hashes);
+        source.get(CLASS_NAME);
+        source.flush();
+        return source;
+    }
+
+    private DiskCachedClassReaderSource createSource(boolean hashes) {
+        DiskCachedClassReaderSource source = new DiskCachedClassReaderSource(directory, referenceCache,
+                symbolTable, fileTable, variableTable, name -> name.equals(CLASS_NAME) ? createClass() : null,
+                name -> name.equals(CLASS_NAME) ? date : null);
+        if (hashes) {
+            source.setContentHashProvider(name -> name.equals(CLASS_NAME)
+                    ? content.getBytes(StandardCharsets.UTF_8) : null);
+        }
+        return source;
+    }
+
+    private ClassHolder createClass() {
+        ClassHolder cls = new ClassHolder(CLASS_NAME);
+        cls.setParent(content);
+        return cls;
+    }
+
+    private static Date newDate() {
+        return new Date(System.currentTimeMillis() + 60_000);
+    }
+}
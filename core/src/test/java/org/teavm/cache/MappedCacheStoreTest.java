@@ -0,0 +1,183 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedCacheStoreTest {
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws IOException {
+        File file = new File(tmp.getRoot(), "store");
+        MappedCacheStore store = new MappedCacheStore(file);
+        assertNull(store.get("foo"));
+
+        store.put("foo", bytes("first"));
+        store.put("bar", bytes("second"));
+        assertEquals("first", string(store.get("foo")));
+        store.flush();
+        assertEquals("first", string(store.get("foo")));
+
+        store = new MappedCacheStore(file);
+        assertNull(store.getDiscardReason());
+        assertEquals(2, store.getEntryCount());
+        assertEquals("first", string(store.get("foo")));
+        assertEquals("second", string(store.get("bar")));
+        assertNull(store.get("baz"));
+    }
+
+    @Test
+    public void overwriteLeavesDeadBytes() throws IOException {
+        File file = new File(tmp.getRoot(), "store");
+        MappedCacheStore store = new MappedCacheStore(file);
+        store.put("foo", bytes("first"));
+        store.flush();
+        long sizeAfterFirstFlush = file.length();
+        assertEquals(FILE_HEADER_SIZE + recordSize("foo", "first"), sizeAfterFirstFlush);
+
+        store.put("foo", bytes("updated"));
+        store.flush();
+        assertEquals(sizeAfterFirstFlush + recordSize("foo", "updated"), file.length());
+        assertEquals(recordSize("foo", "first"), store.getDeadBytes());
+
+        store = new MappedCacheStore(file);
+        assertEquals(1, store.getEntryCount());
+        assertEquals("updated", string(store.get("foo")));
+        assertEquals(recordSize("foo", "first"), store.getDeadBytes());
+    }
+
+    @Test
+    public void compactsWhenDeadSpaceDominates() throws IOException {
+        File file = new File(tmp.getRoot(), "store");
+        byte[] payload = new byte[600_000];
+        MappedCacheStore store = new MappedCacheStore(file);
+        store.put("small", bytes("kept"));
+        for (int i = 0; i < 3; ++i) {
+            Arrays.fill(payload, (byte) i);
+            store.put("large", payload.clone());
+            store.flush();
+        }
+
+        assertEquals(FILE_HEADER_SIZE + recordSize("small", "kept") + RECORD_HEADER_SIZE
+                + "large".length() + payload.length, file.length());
+        assertEquals(0, store.getDeadBytes());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        store = new MappedCacheStore(file);
+        assertEquals(2, store.getEntryCount());
+        assertEquals("kept", string(store.get("small")));
+        ByteBuffer large = store.get("large");
+        assertEquals(payload.length, large.remaining());
+        assertEquals(2, large.get(payload.length - 1));
+    }
+
+    @Test
+    public void truncatedTailIgnoredAndOverwritten() throws IOException {
+        File file = new File(tmp.getRoot(), "store");
+        MappedCacheStore store = new MappedCacheStore(file);
+        store.put("foo", bytes("first"));
+        store.put("bar", bytes("second"));
+        store.flush();
+
+        // Simulate build interrupted in the middle of writing the last record
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        store = new MappedCacheStore(file);
+        assertNull(store.getDiscardReason());
+        assertEquals(1, store.getEntryCount());
+        assertEquals("first", string(store.get("foo")));
+        assertNull(store.get("bar"));
+
+        store.put("baz", bytes("third"));
+        store.flush();
+        assertEquals(FILE_HEADER_SIZE + recordSize("foo", "first") + recordSize("baz", "third"), file.length());
+
+        store = new MappedCacheStore(file);
+        assertEquals(2, store.getEntryCount());
+        assertEquals("first", string(store.get("foo")));
+        assertEquals("third", string(store.get("baz")));
+        assertNull(store.get("bar"));
+    }
+
+    @Test
+    public void headerMismatchDiscardsFile() throws IOException {
+        File file = new File(tmp.getRoot(), "store");
+        Files.write(file.toPath(), bytes("this is not a cache file"));
+
+        MappedCacheStore store = new MappedCacheStore(file);
+        assertNotNull(store.getDiscardReason());
+        assertEquals(0, store.getEntryCount());
+
+        store.put("foo", bytes("first"));
+        store.flush();
+        assertEquals(FILE_HEADER_SIZE + recordSize("foo", "first"), file.length());
+
+        store = new MappedCacheStore(file);
+        assertNull(store.getDiscardReason());
+        assertEquals("first", string(store.get("foo")));
+    }
+
+    @Test
+    public void versionMismatchDiscardsFile() throws IOException {
+        File file = new File(tmp.getRoot(), "store");
+        MappedCacheStore store = new MappedCacheStore(file);
+        store.put("foo", bytes("first"));
+        store.flush();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(4);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+
+        store = new MappedCacheStore(file);
+        assertNotNull(store.getDiscardReason());
+        assertNull(store.get("foo"));
+    }
+
+    private static int recordSize(String key, String value) {
+        return RECORD_HEADER_SIZE + bytes(key).length + bytes(value).length;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return new String(result, StandardCharsets.UTF_8);
+    }
+}
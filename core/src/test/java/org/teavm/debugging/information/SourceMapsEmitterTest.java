@@ -0,0 +1,341 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.debugging.information;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import org.teavm.backend.javascript.codegen.LocationProvider;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.ReferenceCache;
+import org.teavm.model.ValueType;
+
+public class SourceMapsEmitterTest {
+    private static final String BASE64_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    private static final Pattern MAPPINGS = Pattern.compile("\"mappings\":\"([^\"]*)\"");
+    private static final Pattern SOURCES = Pattern.compile("\"sources\":\\[([^\\]]*)\\]");
+
+    @Test
+    public void plainLocations() throws IOException {
+        check(emitter -> {
+            emitter.at(0, 0).emitLocation("foo/A.java", 10);
+            emitter.at(0, 5).emitLocation("foo/A.java", 11);
+            emitter.at(0, 9).emitLocation("foo/A.java", 11);
+            emitter.at(1, 0).emitLocation("foo/A.java", 12);
+            emitter.at(3, 2).emitLocation("foo/B.java", 1);
+            emitter.at(3, 8).emitLocation("foo/A.java", 12);
+            emitter.at(3, 20).emitLocation(null, -1);
+            emitter.at(4, 0).emitLocation("foo/A.java", 1000);
+        });
+    }
+
+    @Test
+    public void lastLocationAtSamePositionWins() throws IOException {
+        check(emitter -> {
+            emitter.at(0, 0).emitLocation("foo/A.java", 10);
+            emitter.at(0, 4).emitLocation("foo/A.java", 11);
+            emitter.at(0, 4).emitLocation("foo/A.java", 15);
+            emitter.at(0, 4).emitLocation("foo/B.java", 2);
+            emitter.at(0, 12).emitLocation("foo/A.java", 16);
+        });
+    }
+
+    @Test
+    public void inlinedLocations() throws IOException {
+        check(emitter -> {
+            emitter.at(0, 0).emitLocation("foo/A.java", 10);
+            emitter.at(0, 4).enter("foo.B", "inlined");
+            emitter.at(0, 4).emitLocation("foo/B.java", 3);
+            emitter.at(0, 10).emitLocation("foo/B.java", 4);
+            emitter.at(1, 2).exitLocation();
+            emitter.at(1, 6).emitLocation("foo/A.java", 11);
+        });
+    }
+
+    @Test
+    public void inlinedCodeWithoutLocationUnmapped() throws IOException {
+        check(emitter -> {
+            emitter.at(0, 0).emitLocation("foo/A.java", 10);
+            emitter.at(0, 3).enter("foo.B", "withoutLocation");
+            emitter.at(0, 7).enter("foo.C", "inlined");
+            emitter.at(0, 7).emitLocation("foo/C.java", 30);
+            emitter.at(0, 15).exitLocation();
+            emitter.at(0, 20).exitLocation();
+            emitter.at(1, 0).emitLocation("foo/A.java", 12);
+        });
+    }
+
+    @Test
+    public void deeplyNestedLocations() throws IOException {
+        check(emitter -> {
+            emitter.at(0, 0).emitLocation("foo/A.java", 1);
+            for (int i = 0; i < 40; ++i) {
+                emitter.at(i, 1).enter("foo.N" + (i % 3), "method" + i);
+                emitter.at(i, 1).emitLocation("foo/N" + (i % 3) + ".java", i + 2);
+            }
+            for (int i = 0; i < 40; ++i) {
+                emitter.at(40 + i, 0).exitLocation();
+            }
+            emitter.at(80, 0).emitLocation("foo/A.java", 2);
+        });
+    }
+
+    @Test
+    public void sourcesWrittenAfterMappings() throws IOException {
+        var output = new StringWriter();
+        var emitter = new SourceMapsEmitter(output, "classes.js", "src");
+        emitter.addSourceResolver(name -> "resolved/" + name);
+        var locationProvider = new LocationProviderImpl();
+        emitter.setLocationProvider(locationProvider);
+        locationProvider.column = 3;
+        emitter.emitLocation("foo/A.java", 5);
+        emitter.finish();
+
+        var json = output.toString();
+        assertTrue(json, json.startsWith("{\"version\":3,\"file\":\"classes.js\",\"sourceRoot\":\"src\""));
+        assertTrue(json, json.indexOf("\"mappings\"") < json.indexOf("\"sources\""));
+        assertEquals(List.of("resolved/foo/A.java"), sources(json));
+        assertTrue(json, json.endsWith(",\"names\":[]}"));
+    }
+
+    @Test
+    public void emptyOutput() throws IOException {
+        var output = new StringWriter();
+        var emitter = new SourceMapsEmitter(output, "classes.js", "");
+        emitter.setLocationProvider(new LocationProviderImpl());
+        emitter.finish();
+        assertEquals("{\"version\":3,\"file\":\"classes.js\",\"sourceRoot\":\"\",\"mappings\":\"\",\"sources\":[],"
+                + "\"names\":[]}", output.toString());
+    }
+
+    private void check(Consumer<Events> events) throws IOException {
+        var builderLocation = new LocationProviderImpl();
+        var builder = new DebugInformationBuilder(new ReferenceCache());
+        builder.setLocationProvider(builderLocation);
+        var builderEvents = new Events(builder, builderLocation);
+        events.accept(builderEvents);
+        builderEvents.end();
+        var bufferedOutput = new StringWriter();
+        new SourceMapsWriter(bufferedOutput).write("classes.js", "", builder.getDebugInformation());
+
+        var emitterLocation = new LocationProviderImpl();
+        var streamingOutput = new StringWriter();
+        var emitter = new SourceMapsEmitter(streamingOutput, "classes.js", "");
+        emitter.setLocationProvider(emitterLocation);
+        var emitterEvents = new Events(emitter, emitterLocation);
+        events.accept(emitterEvents);
+        emitterEvents.end();
+        emitter.finish();
+
+        var expected = normalize(decode(bufferedOutput.toString()));
+        var actual = normalize(decode(streamingOutput.toString()));
+        assertTrue(expected.size() > 1);
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Decodes mappings into list of segments, replacing source indexes by file names.
+     */
+    private static List<Segment> decode(String json) {
+        var sources = sources(json);
+        Matcher matcher = MAPPINGS.matcher(json);
+        assertTrue(json, matcher.find());
+        var mappings = matcher.group(1);
+
+        var result = new ArrayList<Segment>();
+        var line = 0;
+        var column = 0;
+        var sourceFile = 0;
+        var sourceLine = 0;
+        var index = 0;
+        while (index < mappings.length()) {
+            var c = mappings.charAt(index);
+            if (c == ';') {
+                ++line;
+                column = 0;
+                ++index;
+                continue;
+            }
+            if (c == ',') {
+                ++index;
+                continue;
+            }
+            var fields = new ArrayList<Integer>();
+            while (index < mappings.length() && mappings.charAt(index) != ',' && mappings.charAt(index) != ';') {
+                var value = 0;
+                var shift = 0;
+                int digit;
+                do {
+                    digit = BASE64_CHARS.indexOf(mappings.charAt(index++));
+                    value |= (digit & 0x1F) << shift;
+                    shift += 5;
+                } while ((digit & 0x20) != 0);
+                fields.add((value & 1) != 0 ? -(value >>> 1) : value >>> 1);
+            }
+            column += fields.get(0);
+            if (fields.size() >= 4) {
+                sourceFile += fields.get(1);
+                sourceLine += fields.get(2);
+                result.add(new Segment(line, column, sources.get(sourceFile), sourceLine));
+            } else {
+                result.add(new Segment(line, column, null, -1));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Leaves only segments that affect lookup of source location by generated position, i.e. removes segments
+     * followed by another segment at the same position and segments that repeat source location
+     * of previous segment.
+     */
+    private static List<Segment> normalize(List<Segment> segments) {
+        var result = new ArrayList<Segment>();
+        for (var i = 0; i < segments.size(); ++i) {
+            var segment = segments.get(i);
+            if (i + 1 < segments.size() && segments.get(i + 1).samePosition(segment)) {
+                continue;
+            }
+            if (!result.isEmpty() && result.get(result.size() - 1).sameSource(segment)) {
+                continue;
+            }
+            result.add(segment);
+        }
+        return result;
+    }
+
+    private static List<String> sources(String json) {
+        Matcher matcher = SOURCES.matcher(json);
+        assertTrue(json, matcher.find());
+        var result = new ArrayList<String>();
+        for (var item : matcher.group(1).split(",")) {
+            if (!item.isEmpty()) {
+                result.add(item.substring(1, item.length() - 1));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sends the same events to emitter as renderer does, moving generated position before each event.
+     */
+    static class Events {
+        private final DebugInformationEmitter emitter;
+        private final LocationProviderImpl locationProvider;
+
+        Events(DebugInformationEmitter emitter, LocationProviderImpl locationProvider) {
+            this.emitter = emitter;
+            this.locationProvider = locationProvider;
+            emitter.emitClass("foo.A");
+            emitter.emitMethod(new MethodDescriptor("main", ValueType.VOID));
+        }
+
+        Events at(int line, int column) {
+            locationProvider.line = line;
+            locationProvider.column = column;
+            return this;
+        }
+
+        void emitLocation(String fileName, int line) {
+            emitter.emitLocation(fileName, line);
+        }
+
+        void enter(String className, String methodName) {
+            emitter.enterLocation();
+            emitter.emitClass(className);
+            emitter.emitMethod(new MethodDescriptor(methodName, ValueType.VOID));
+        }
+
+        void exitLocation() {
+            emitter.exitLocation();
+        }
+
+        void end() {
+            at(1000, 0);
+            emitter.emitMethod(null);
+            emitter.emitClass(null);
+        }
+    }
+
+    static class Segment {
+        final int line;
+        final int column;
+        final String file;
+        final int sourceLine;
+
+        Segment(int line, int column, String file, int sourceLine) {
+            this.line = line;
+            this.column = column;
+            this.file = file;
+            this.sourceLine = sourceLine;
+        }
+
+        boolean samePosition(Segment other) {
+            return line == other.line && column == other.column;
+        }
+
+        boolean sameSource(Segment other) {
+            return Objects.equals(file, other.file) && sourceLine == other.sourceLine;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Segment)) {
+                return false;
+            }
+            var other = (Segment) obj;
+            return samePosition(other) && sameSource(other);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(line, column, file, sourceLine);
+        }
+
+        @Override
+        public String toString() {
+            return line + ":" + column + " -> " + file + ":" + sourceLine;
+        }
+    }
+
+    static class LocationProviderImpl implements LocationProvider {
+        int line;
+        int column;
+
+        @Override
+        public int getLine() {
+            return line;
+        }
+
+        @Override
+        public int getColumn() {
+            return column;
+        }
+
+        @Override
+        public int getOffset() {
+            return 0;
+        }
+    }
+}
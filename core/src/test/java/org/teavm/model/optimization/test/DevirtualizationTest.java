@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization.test;
+
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import org.teavm.model.ClassHierarchy;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ListingParseUtils;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.MutableClassHolderSource;
+import org.teavm.model.Program;
+import org.teavm.model.optimization.Devirtualization;
+import org.teavm.model.text.ListingBuilder;
+
+public class DevirtualizationTest {
+    private static final String PREFIX = "model/optimization/devirtualization/";
+    private static final MethodReference METHOD = MethodReference.parse("Foo.test()I");
+    @Rule
+    public TestName name = new TestName();
+
+    @Test
+    public void bimorphic() {
+        doTest(TestDependencyInfo.hierarchy("A", "B"), "A", "B");
+    }
+
+    @Test
+    public void trimorphic() {
+        doTest(TestDependencyInfo.hierarchy("A", "B", "C"), "A", "B", "C");
+    }
+
+    @Test
+    public void tooManyImplementations() {
+        doTest(TestDependencyInfo.hierarchy("A", "B", "C", "D"), "A", "B", "C", "D");
+    }
+
+    @Test
+    public void fallback() {
+        // B1 and B2 share implementation of B, but B can't be checked, since C is its subclass
+        var classSource = TestDependencyInfo.hierarchy("B");
+        TestDependencyInfo.addClass(classSource, "B1", "B", false);
+        TestDependencyInfo.addClass(classSource, "B2", "B", false);
+        TestDependencyInfo.addClass(classSource, "C", "B", true);
+        doTest(classSource, "B1", "B2", "C");
+    }
+
+    @Test
+    public void invokeInMiddleOfBlock() {
+        doTest(TestDependencyInfo.hierarchy("A", "B"), "A", "B");
+    }
+
+    @Test
+    public void successorWithPhi() {
+        doTest(TestDependencyInfo.hierarchy("A", "B"), "A", "B");
+    }
+
+    private void doTest(MutableClassHolderSource classSource, String... types) {
+        String originalPath = PREFIX + name.getMethodName() + ".original.txt";
+        String expectedPath = PREFIX + name.getMethodName() + ".expected.txt";
+        Program original = ListingParseUtils.parseFromResource(originalPath);
+        Program expected = ListingParseUtils.parseFromResource(expectedPath);
+
+        var dependencyInfo = new TestDependencyInfo(classSource);
+        dependencyInfo.addMethod(METHOD, original, Map.of("a", types));
+        var method = new MethodHolder(METHOD.getDescriptor());
+        method.setProgram(original);
+        new ClassHolder(METHOD.getClassName()).addMethod(method);
+        new Devirtualization(dependencyInfo, new ClassHierarchy(classSource)).apply(method);
+
+        String originalText = new ListingBuilder().buildListing(original, "");
+        String expectedText = new ListingBuilder().buildListing(expected, "");
+        Assert.assertEquals(expectedText, originalText);
+    }
+}
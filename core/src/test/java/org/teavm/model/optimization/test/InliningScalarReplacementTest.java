@@ -0,0 +1,158 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization.test;
+
+import static org.junit.Assert.assertEquals;
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.Test;
+import org.teavm.dependency.DependencyInfo;
+import org.teavm.model.ClassHierarchy;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ClassReaderSource;
+import org.teavm.model.ElementModifier;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReader;
+import org.teavm.model.MethodReference;
+import org.teavm.model.MutableClassHolderSource;
+import org.teavm.model.Program;
+import org.teavm.model.analysis.InterproceduralEscapeAnalysis;
+import org.teavm.model.instructions.ConstructInstruction;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.optimization.DefaultInliningStrategy;
+import org.teavm.model.optimization.Inlining;
+import org.teavm.model.optimization.InliningFilterFactory;
+import org.teavm.model.optimization.MethodOptimizationContext;
+import org.teavm.model.optimization.ScalarReplacement;
+import org.teavm.model.text.ListingParseException;
+import org.teavm.model.text.ListingParser;
+
+public class InliningScalarReplacementTest {
+    private static final MethodReference CALLER = MethodReference.parse("Foo.caller()I");
+
+    @Test
+    public void allocationPassedToNonEscapingCalleeReplaced() {
+        var program = optimize(""
+                + "var @this as this\n"
+                + "var @p as p\n"
+                + "\n"
+                + "$start\n"
+                + "    @x := field Point.x @p as I\n"
+                + "    @y := field Point.y @p as I\n"
+                + "    @s := @x + @y as int\n"
+                + "    return @s\n");
+
+        assertEquals(0, count(program, InvokeInstruction.class));
+        assertEquals(0, count(program, ConstructInstruction.class));
+    }
+
+    @Test
+    public void allocationStoredByCalleeKept() {
+        var program = optimize(""
+                + "var @this as this\n"
+                + "var @p as p\n"
+                + "\n"
+                + "$start\n"
+                + "    field Foo.last := @p as `LPoint;`\n"
+                + "    @x := field Point.x @p as I\n"
+                + "    @y := field Point.y @p as I\n"
+                + "    @s := @x + @y as int\n"
+                + "    return @s\n");
+
+        assertEquals(1, count(program, ConstructInstruction.class));
+    }
+
+    private static Program optimize(String calleeListing) {
+        var classes = new MutableClassHolderSource();
+        var object = new ClassHolder("java.lang.Object");
+        object.setParent(null);
+        classes.putClassHolder(object);
+        classes.putClassHolder(new ClassHolder("Point"));
+
+        var cls = new ClassHolder("Foo");
+        var caller = addMethod(cls, CALLER.getDescriptor(), ""
+                + "var @this as this\n"
+                + "\n"
+                + "$start\n"
+                + "    @p := new Point\n"
+                + "    @a := 1\n"
+                + "    field Point.x @p := @a as I\n"
+                + "    @b := 2\n"
+                + "    field Point.y @p := @b as I\n"
+                + "    @r := invokeStatic `Foo.sum(LPoint;)I` @p\n"
+                + "    return @r\n");
+        addMethod(cls, MethodDescriptor.parse("sum(LPoint;)I"), calleeListing);
+        classes.putClassHolder(cls);
+
+        // Settings that TeaVM uses at FULL optimization level
+        var strategy = new DefaultInliningStrategy(20, 7, 3000, false);
+        var inlining = new Inlining(new ClassHierarchy(classes), new TestDependencyInfo(classes), strategy,
+                classes, m -> false, false, InliningFilterFactory.DEFAULT);
+        var escapeAnalysis = new InterproceduralEscapeAnalysis();
+        escapeAnalysis.analyze(classes);
+        inlining.setEscapeAnalysis(escapeAnalysis);
+
+        var program = caller.getProgram();
+        inlining.apply(program, CALLER);
+        new ScalarReplacement().optimize(new MethodOptimizationContext() {
+            @Override
+            public MethodReader getMethod() {
+                return caller;
+            }
+
+            @Override
+            public DependencyInfo getDependencyInfo() {
+                return null;
+            }
+
+            @Override
+            public ClassReaderSource getClassSource() {
+                return classes;
+            }
+
+            @Override
+            public ClassHierarchy getHierarchy() {
+                return null;
+            }
+        }, program);
+        return program;
+    }
+
+    private static MethodHolder addMethod(ClassHolder cls, MethodDescriptor descriptor, String listing) {
+        var method = new MethodHolder(descriptor);
+        method.getModifiers().add(ElementModifier.STATIC);
+        try {
+            method.setProgram(new ListingParser().parse(new StringReader(listing)));
+        } catch (IOException | ListingParseException e) {
+            throw new RuntimeException(e);
+        }
+        cls.addMethod(method);
+        return method;
+    }
+
+    private static int count(Program program, Class<?> instructionType) {
+        int result = 0;
+        for (var block : program.getBasicBlocks()) {
+            for (var instruction : block) {
+                if (instructionType.isInstance(instruction)) {
+                    ++result;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import org.junit.Test;
+import org.teavm.model.ClassHierarchy;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.ProgramReader;
+import org.teavm.model.ValueType;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.IsInstanceInstruction;
+import org.teavm.model.optimization.DefaultInliningStrategy;
+import org.teavm.model.optimization.Devirtualization;
+import org.teavm.model.optimization.InliningContext;
+import org.teavm.model.profile.ExecutionProfile;
+import org.teavm.model.text.ListingParseException;
+import org.teavm.model.text.ListingParser;
+
+public class ProfileGuidedOptimizationTest {
+    private static final MethodReference CALLER = MethodReference.parse("Foo.caller()I");
+    private static final MethodReference CALLEE = MethodReference.parse("Foo.callee()I");
+
+    @Test
+    public void dominantReceiverGuarded() throws IOException {
+        var profile = ExecutionProfile.read(new StringReader(""
+                + "method Foo.caller()I 100\n"
+                + "receiver Foo.caller()I run()I#0 A 95\n"
+                + "receiver Foo.caller()I run()I#0 B 5\n"));
+
+        var program = devirtualize(null);
+        assertEquals(0, count(program, IsInstanceInstruction.class));
+        assertEquals(0, countSpecial(program, "A"));
+
+        program = devirtualize(profile);
+        assertEquals(1, count(program, IsInstanceInstruction.class));
+        assertEquals(1, countSpecial(program, "A"));
+    }
+
+    @Test
+    public void hotCalleeInlined() throws IOException {
+        var profile = ExecutionProfile.read(new StringReader(""
+                + "method Foo.caller()I 10\n"
+                + "method Foo.callee()I 1000\n"));
+        var caller = parse(""
+                + "$start\n"
+                + "    @r := invokeStatic `Foo.callee()I`\n"
+                + "    return @r\n");
+        var callee = parse(""
+                + "$start\n"
+                + "    @a := 1\n"
+                + "    @b := 2\n"
+                + "    @c := @a + @b as int\n"
+                + "    @d := @c * @c as int\n"
+                + "    return @d\n");
+
+        assertNull(tryInline(caller, callee, null));
+        assertNotNull(tryInline(caller, callee, profile));
+    }
+
+    @Test
+    public void coldCallSiteNotInlined() throws IOException {
+        var profile = ExecutionProfile.read(new StringReader(""
+                + "method Foo.caller()I 10\n"
+                + "branch Foo.caller()I #0 0 10\n"));
+        var caller = parse(""
+                + "$start\n"
+                + "    @n := invokeStatic `Foo.count()I`\n"
+                + "    if @n == 0 then goto $rare else goto $common\n"
+                + "$rare\n"
+                + "    @r := invokeStatic `Foo.callee()I`\n"
+                + "    return @r\n"
+                + "$common\n"
+                + "    @z := 0\n"
+                + "    return @z\n");
+        var callee = parse(""
+                + "$start\n"
+                + "    @v := 1\n"
+                + "    return @v\n");
+
+        assertNotNull(tryInline(caller, callee, null));
+        assertNull(tryInline(caller, callee, profile));
+    }
+
+    @Test
+    public void coldMethodNotProcessed() throws IOException {
+        var profile = ExecutionProfile.read(new StringReader("method Foo.other()V 10\n"));
+        var caller = parse(""
+                + "$start\n"
+                + "    @r := invokeStatic `Foo.callee()I`\n"
+                + "    return @r\n");
+
+        assertNotNull(strategy(null).start(CALLER, caller));
+        assertNull(strategy(profile).start(CALLER, caller));
+    }
+
+    private static Program devirtualize(ExecutionProfile profile) {
+        var classSource = TestDependencyInfo.hierarchy("A", "B", "C", "D");
+        var program = parse(""
+                + "$start\n"
+                + "    @a := invokeStatic `Foo.get()LBase;`\n"
+                + "    @r := invokeVirtual `Base.run()I` @a\n"
+                + "    return @r\n");
+        var dependencyInfo = new TestDependencyInfo(classSource);
+        dependencyInfo.addMethod(CALLER, program, Map.of("a", new String[] { "A", "B", "C", "D" }));
+        if (profile != null) {
+            profile.attach(CALLER, program);
+        }
+
+        var method = new MethodHolder(CALLER.getDescriptor());
+        method.setProgram(program);
+        new ClassHolder(CALLER.getClassName()).addMethod(method);
+        var devirtualization = new Devirtualization(dependencyInfo, new ClassHierarchy(classSource));
+        devirtualization.setProfile(profile);
+        devirtualization.apply(method);
+        return program;
+    }
+
+    private static Object tryInline(Program caller, Program callee, ExecutionProfile profile) {
+        if (profile != null) {
+            profile.attach(CALLER, caller);
+        }
+        var step = strategy(profile).start(CALLER, caller);
+        assertNotNull(step);
+        var callSite = findInvoke(caller, CALLEE);
+        return step.tryInline(CALLEE, callee, new InliningContext() {
+            @Override
+            public boolean isUsedOnce(MethodReference method) {
+                return false;
+            }
+
+            @Override
+            public ProgramReader getProgram(MethodReference method) {
+                return method.equals(CALLEE) ? callee : null;
+            }
+
+            @Override
+            public int getDepth() {
+                return 0;
+            }
+
+            @Override
+            public InvokeInstruction getCallSite() {
+                return callSite;
+            }
+        });
+    }
+
+    // Settings that TeaVM uses at ADVANCED optimization level
+    private static DefaultInliningStrategy strategy(ExecutionProfile profile) {
+        var strategy = new DefaultInliningStrategy(100, 7, 300, true);
+        strategy.setProfile(profile);
+        return strategy;
+    }
+
+    private static InvokeInstruction findInvoke(Program program, MethodReference method) {
+        for (var block : program.getBasicBlocks()) {
+            for (var instruction : block) {
+                if (instruction instanceof InvokeInstruction
+                        && ((InvokeInstruction) instruction).getMethod().equals(method)) {
+                    return (InvokeInstruction) instruction;
+                }
+            }
+        }
+        throw new AssertionError("Invocation of " + method + " not found");
+    }
+
+    private static int count(Program program, Class<?> instructionType) {
+        int result = 0;
+        for (var block : program.getBasicBlocks()) {
+            for (var instruction : block) {
+                if (instructionType.isInstance(instruction)) {
+                    ++result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int countSpecial(Program program, String className) {
+        int result = 0;
+        for (var block : program.getBasicBlocks()) {
+            for (var instruction : block) {
+                if (instruction instanceof InvokeInstruction) {
+                    var invoke = (InvokeInstruction) instruction;
+                    if (invoke.getType() == InvocationType.SPECIAL
+                            && invoke.getMethod().equals(new MethodReference(className, "run", ValueType.INTEGER))) {
+                        ++result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Program parse(String listing) {
+        try {
+            return new ListingParser().parse(new StringReader(listing));
+        } catch (IOException | ListingParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
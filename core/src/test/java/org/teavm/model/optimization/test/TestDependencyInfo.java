@@ -0,0 +1,248 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization.test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.teavm.callgraph.CallGraph;
+import org.teavm.dependency.ClassDependencyInfo;
+import org.teavm.dependency.DependencyInfo;
+import org.teavm.dependency.FieldDependencyInfo;
+import org.teavm.dependency.MethodDependencyInfo;
+import org.teavm.dependency.ValueDependencyInfo;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ClassReaderSource;
+import org.teavm.model.ElementModifier;
+import org.teavm.model.FieldReference;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.MutableClassHolderSource;
+import org.teavm.model.Program;
+import org.teavm.model.ValueType;
+
+/**
+ * Dependency information for optimizations of programs parsed from listings. Types of variables are
+ * specified by their labels, implementations of methods are resolved through the class source.
+ */
+class TestDependencyInfo implements DependencyInfo {
+    private final ClassReaderSource classSource;
+    private final Map<MethodReference, MethodDependencyInfo> methods = new HashMap<>();
+
+    TestDependencyInfo(ClassReaderSource classSource) {
+        this.classSource = classSource;
+    }
+
+    /**
+     * Creates class {@code Base} with abstract method {@code run()I} and its subclasses, each of them
+     * overriding {@code run()I}.
+     */
+    static MutableClassHolderSource hierarchy(String... subclasses) {
+        var source = new MutableClassHolderSource();
+        var object = new ClassHolder("java.lang.Object");
+        object.setParent(null);
+        source.putClassHolder(object);
+        var base = new ClassHolder("Base");
+        var run = new MethodHolder("run", ValueType.INTEGER);
+        run.getModifiers().add(ElementModifier.ABSTRACT);
+        base.addMethod(run);
+        source.putClassHolder(base);
+        for (var name : subclasses) {
+            addClass(source, name, "Base", true);
+        }
+        return source;
+    }
+
+    static void addClass(MutableClassHolderSource source, String name, String parent, boolean overridesRun) {
+        var cls = new ClassHolder(name);
+        cls.setParent(parent);
+        if (overridesRun) {
+            cls.addMethod(new MethodHolder("run", ValueType.INTEGER));
+        }
+        source.putClassHolder(cls);
+    }
+
+    void addMethod(MethodReference method, Program program, Map<String, String[]> types) {
+        var variables = new ValueDependencyInfo[program.variableCount()];
+        for (int i = 0; i < variables.length; ++i) {
+            var label = program.variableAt(i).getLabel();
+            variables[i] = new ValueInfo(types.getOrDefault(label, new String[0]));
+        }
+        methods.put(method, new MethodInfo(method, variables));
+    }
+
+    @Override
+    public ClassReaderSource getClassSource() {
+        return classSource;
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return TestDependencyInfo.class.getClassLoader();
+    }
+
+    @Override
+    public Collection<MethodReference> getReachableMethods() {
+        return methods.keySet();
+    }
+
+    @Override
+    public Collection<FieldReference> getReachableFields() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Collection<String> getReachableClasses() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public FieldDependencyInfo getField(FieldReference fieldRef) {
+        return null;
+    }
+
+    @Override
+    public MethodDependencyInfo getMethod(MethodReference methodRef) {
+        return methods.get(methodRef);
+    }
+
+    @Override
+    public MethodDependencyInfo getMethodImplementation(MethodReference methodRef) {
+        var className = methodRef.getClassName();
+        while (className != null) {
+            var cls = classSource.get(className);
+            if (cls == null) {
+                return null;
+            }
+            var method = cls.getMethod(methodRef.getDescriptor());
+            if (method != null && !method.hasModifier(ElementModifier.ABSTRACT)) {
+                return new MethodInfo(method.getReference(), new ValueDependencyInfo[0]);
+            }
+            className = cls.getParent();
+        }
+        return null;
+    }
+
+    @Override
+    public ClassDependencyInfo getClass(String className) {
+        return null;
+    }
+
+    @Override
+    public CallGraph getCallGraph() {
+        return null;
+    }
+
+    static class MethodInfo implements MethodDependencyInfo {
+        private final MethodReference reference;
+        private final ValueDependencyInfo[] variables;
+
+        MethodInfo(MethodReference reference, ValueDependencyInfo[] variables) {
+            this.reference = reference;
+            this.variables = variables;
+        }
+
+        @Override
+        public ValueDependencyInfo[] getVariables() {
+            return variables.clone();
+        }
+
+        @Override
+        public int getVariableCount() {
+            return variables.length;
+        }
+
+        @Override
+        public ValueDependencyInfo getVariable(int index) {
+            return variables[index];
+        }
+
+        @Override
+        public int getParameterCount() {
+            return reference.parameterCount() + 1;
+        }
+
+        @Override
+        public ValueDependencyInfo getResult() {
+            return null;
+        }
+
+        @Override
+        public ValueDependencyInfo getThrown() {
+            return null;
+        }
+
+        @Override
+        public MethodReference getReference() {
+            return reference;
+        }
+
+        @Override
+        public boolean isUsed() {
+            return true;
+        }
+
+        @Override
+        public boolean isCalled() {
+            return true;
+        }
+
+        @Override
+        public boolean isMissing() {
+            return false;
+        }
+    }
+
+    static class ValueInfo implements ValueDependencyInfo {
+        private final String[] types;
+
+        ValueInfo(String[] types) {
+            this.types = types;
+        }
+
+        @Override
+        public String[] getTypes() {
+            return types.clone();
+        }
+
+        @Override
+        public boolean hasType(String type) {
+            return Arrays.asList(types).contains(type);
+        }
+
+        @Override
+        public boolean hasMoreTypesThan(int limit) {
+            return types.length > limit;
+        }
+
+        @Override
+        public boolean hasArrayType() {
+            return false;
+        }
+
+        @Override
+        public ValueDependencyInfo getArrayItem() {
+            return null;
+        }
+
+        @Override
+        public ValueDependencyInfo getClassValueNode() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.profile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Map;
+import org.junit.Test;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.text.ListingParseException;
+import org.teavm.model.text.ListingParser;
+
+public class ExecutionProfileTest {
+    private static final MethodReference METHOD = MethodReference.parse("Foo.bar()V");
+    private static final String PROFILE = ""
+            + "method Foo.bar()V 10\n"
+            + "receiver Foo.bar()V common()V#0 Foo 10\n"
+            + "branch Foo.bar()V #0 0 10\n";
+
+    @Test
+    public void roundTrip() throws IOException {
+        var profile = ExecutionProfile.read(new StringReader(PROFILE));
+        var output = new StringWriter();
+        profile.write(output);
+        assertEquals(PROFILE, output.toString());
+    }
+
+    @Test
+    public void resolvesSites() throws IOException, ListingParseException {
+        var program = parse(""
+                + "$start\n"
+                + "    @a := invokeStatic `Foo.getFoo()LFoo;`\n"
+                + "    @n := 0\n"
+                + "    if @n == 0 then goto $rare else goto $common\n"
+                + "$rare\n"
+                + "    invokeVirtual `Foo.rare()V` @a\n"
+                + "    goto $join\n"
+                + "$common\n"
+                + "    invokeVirtual `Foo.common()V` @a\n"
+                + "    goto $join\n"
+                + "$join\n"
+                + "    return\n");
+        var profile = ExecutionProfile.read(new StringReader(PROFILE));
+        profile.attach(METHOD, program);
+        var methodProfile = profile.getMethodProfile(METHOD);
+
+        var rare = findInvoke(program, "rare");
+        var common = findInvoke(program, "common");
+        assertTrue(methodProfile.isCold(rare));
+        assertFalse(methodProfile.isCold(common));
+        assertEquals(Map.of("Foo", 10L), methodProfile.getReceivers(common));
+        assertTrue(methodProfile.getReceivers(rare).isEmpty());
+
+        assertTrue(profile.isHot(METHOD));
+        assertTrue(profile.isCold(MethodReference.parse("Foo.baz()V")));
+        assertFalse(profile.isCold(MethodReference.parse("Bar.baz()V")));
+    }
+
+    @Test
+    public void hotMethodsDeterminedOnAttach() throws IOException, ListingParseException {
+        var profile = new ExecutionProfile();
+        var other = MethodReference.parse("Foo.baz()V");
+        profile.addInvocations(METHOD, 10);
+        assertFalse(profile.isHot(METHOD));
+
+        profile.attach(METHOD, parse("$start\n    return\n"));
+        assertTrue(profile.isHot(METHOD));
+
+        profile.addInvocations(other, 100);
+        assertTrue(profile.isHot(METHOD));
+
+        profile.attach(other, parse("$start\n    return\n"));
+        assertFalse(profile.isHot(METHOD));
+        assertTrue(profile.isHot(other));
+    }
+
+    private static Program parse(String listing) throws IOException, ListingParseException {
+        return new ListingParser().parse(new StringReader(listing));
+    }
+
+    private static InvokeInstruction findInvoke(Program program, String name) {
+        for (var block : program.getBasicBlocks()) {
+            for (var instruction : block) {
+                if (instruction instanceof InvokeInstruction
+                        && ((InvokeInstruction) instruction).getMethod().getName().equals(name)) {
+                    return (InvokeInstruction) instruction;
+                }
+            }
+        }
+        throw new AssertionError("Invocation of " + name + " not found");
+    }
+}
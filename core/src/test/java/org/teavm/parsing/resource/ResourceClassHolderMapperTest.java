@@ -0,0 +1,141 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.parsing.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.ReferenceCache;
+
+public class ResourceClassHolderMapperTest {
+    private static final String PREFIX = ResourceClassHolderMapperTest.class.getName() + "$";
+
+    @Test
+    public void unconsumedClassesEvicted() {
+        var mapper = createMapper(2, 100);
+        mapper.setPrefetchExecutor(Runnable::run);
+
+        assertNotNull(mapper.apply(PREFIX + "Root"));
+        assertEquals(2, mapper.getPrefetchedClassCount());
+
+        // Prefetching still works after limit reached, with older classes evicted
+        assertNotNull(mapper.apply(PREFIX + "Other"));
+        assertEquals(2, mapper.getPrefetchedClassCount());
+        assertNotNull(mapper.apply(PREFIX + "E"));
+    }
+
+    @Test
+    public void pendingClassesBounded() {
+        var mapper = createMapper(100, 2);
+        var queue = new ArrayList<Runnable>();
+        mapper.setPrefetchExecutor(queue::add);
+
+        assertNotNull(mapper.apply(PREFIX + "Root"));
+        assertEquals(2, queue.size());
+
+        queue.remove(0).run();
+        assertNotNull(mapper.apply(PREFIX + "Other"));
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void tasksDroppedByExecutorDontBlockRequests() {
+        var mapper = createMapper(100, 100);
+        List<Runnable> dropped = new ArrayList<>();
+        mapper.setPrefetchExecutor(dropped::add);
+        assertNotNull(mapper.apply(PREFIX + "Root"));
+        assertTrue(dropped.size() > 1);
+
+        // Tasks never run, as if executor was shut down, requests must not wait for them
+        ClassHolder cls = mapper.apply(PREFIX + "A");
+        assertNotNull(cls);
+        assertEquals(PREFIX + "A", cls.getName());
+
+        // Running task after class was loaded does nothing
+        for (Runnable runnable : dropped) {
+            runnable.run();
+        }
+        assertNotNull(mapper.apply(PREFIX + "B"));
+
+        var executor = Executors.newSingleThreadExecutor();
+        executor.shutdownNow();
+        mapper.setPrefetchExecutor(executor);
+        assertNotNull(mapper.apply(PREFIX + "Other"));
+        assertNotNull(mapper.apply(PREFIX + "E"));
+    }
+
+    @Test
+    public void classesParsedOnPrefetchThread() throws InterruptedException {
+        var mapper = createMapper(100, 100);
+        var executor = Executors.newSingleThreadExecutor();
+        mapper.setPrefetchExecutor(executor);
+        assertNotNull(mapper.apply(PREFIX + "Other"));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        ClassHolder cls = mapper.apply(PREFIX + "E");
+        assertEquals(PREFIX + "E", cls.getName());
+        MethodHolder constructor = cls.getMethod(new MethodDescriptor("<init>", void.class));
+        assertNotNull(constructor.getProgram());
+        assertTrue(constructor.getProgram().basicBlockCount() > 0);
+    }
+
+    private static ResourceClassHolderMapper createMapper(int maxPrefetched, int maxPending) {
+        var reader = new ClasspathResourceReader(ResourceClassHolderMapperTest.class.getClassLoader());
+        return new ResourceClassHolderMapper(reader, new ReferenceCache(), maxPrefetched, maxPending);
+    }
+
+    static class Root {
+        static Object[] create() {
+            return new Object[] { new A(), new B(), new C(), new D() };
+        }
+    }
+
+    static class Other {
+        static Object[] create() {
+            return new Object[] { new E(), new F(), new G() };
+        }
+    }
+
+    static class A {
+    }
+
+    static class B {
+    }
+
+    static class C {
+    }
+
+    static class D {
+    }
+
+    static class E {
+    }
+
+    static class F {
+    }
+
+    static class G {
+    }
+}
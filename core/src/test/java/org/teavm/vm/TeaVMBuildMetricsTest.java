@@ -0,0 +1,92 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.teavm.cache.CacheMetrics;
+
+public class TeaVMBuildMetricsTest {
+    @Test
+    public void lookupDoesNotRegister() {
+        var metrics = new TeaVMBuildMetrics();
+        assertNull(metrics.getCache("program"));
+        assertTrue(metrics.getCaches().isEmpty());
+
+        CacheMetrics program = metrics.registerCache("program");
+        assertSame(program, metrics.getCache("program"));
+        assertSame(program, metrics.registerCache("program"));
+        assertEquals(1, metrics.getCaches().size());
+    }
+
+    @Test
+    public void clearResetsPhasesAndCaches() {
+        var metrics = new TeaVMBuildMetrics();
+        CacheMetrics program = metrics.registerCache("program");
+        program.hit();
+        program.miss();
+        metrics.start(TeaVMBuildPhase.LINKING).finish(1, 2);
+
+        metrics.clear();
+
+        assertTrue(metrics.getPhases().isEmpty());
+        assertSame(program, metrics.getCache("program"));
+        assertEquals(0, program.getHits());
+        assertEquals(0, program.getMisses());
+    }
+
+    @Test
+    public void concurrentUpdatesCounted() throws InterruptedException {
+        var metrics = new CacheMetrics();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 4; ++i) {
+            executor.execute(() -> {
+                for (int j = 0; j < 10000; ++j) {
+                    metrics.hit();
+                    metrics.miss();
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(40000, metrics.getHits());
+        assertEquals(40000, metrics.getMisses());
+    }
+
+    @Test
+    public void writesPhasesAndCaches() throws IOException {
+        var metrics = new TeaVMBuildMetrics();
+        metrics.start(TeaVMBuildPhase.DEPENDENCY_ANALYSIS).finish(3, 5);
+        metrics.registerCache("ast").hit();
+
+        var writer = new StringWriter();
+        metrics.write(writer);
+        String json = writer.toString();
+
+        assertTrue(json, json.startsWith("{\"phases\":[{\"name\":\"DEPENDENCY_ANALYSIS\",\"wallTime\":"));
+        assertTrue(json, json.contains(",\"classes\":3,\"methods\":5}"));
+        assertTrue(json, json.endsWith("],\"caches\":{\"ast\":{\"hits\":1,\"misses\":0}}}"));
+    }
+}
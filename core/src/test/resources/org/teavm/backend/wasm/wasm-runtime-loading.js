@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+// Appended to wasm-runtime.js by WasmRuntimeLoadingTest. Loads an empty module in the way given by
+// the first argument and prints how many times streaming instantiation was attempted and how many times
+// the module was downloaded into a buffer.
+const mode = process.argv[2];
+const bytes = new Uint8Array([0x00, 0x61, 0x73, 0x6D, 0x01, 0x00, 0x00, 0x00]);
+const calls = { streaming: 0, buffer: 0 };
+const instantiateStreaming = WebAssembly.instantiateStreaming;
+WebAssembly.instantiateStreaming = (source, imports) => {
+    calls.streaming++;
+    return instantiateStreaming(source, imports);
+};
+globalThis.fetch = async path => {
+    const response = new Response(bytes, {
+        status: mode === "missing" ? 404 : 200,
+        headers: { "Content-Type": mode === "wrongContentType" ? "application/octet-stream" : "application/wasm" }
+    });
+    const arrayBuffer = response.arrayBuffer;
+    response.arrayBuffer = function() {
+        calls.buffer++;
+        return arrayBuffer.call(this);
+    };
+    return response;
+};
+if (mode === "noStreaming") {
+    delete WebAssembly.instantiateStreaming;
+    globalThis.XMLHttpRequest = class {
+        open(method, path) {
+        }
+        send() {
+            calls.buffer++;
+            this.response = bytes.buffer;
+            this.onload();
+        }
+    };
+}
+TeaVM.wasm.load("classes.wasm").then(
+    () => console.log("loaded " + calls.streaming + " " + calls.buffer),
+    e => console.log("failed: " + e.message));
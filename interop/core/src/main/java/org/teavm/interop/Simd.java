@@ -0,0 +1,186 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.interop;
+
+/**
+ * <p>Operations on 128-bit vectors, compiled to WebAssembly SIMD instructions. Vectors are not represented
+ * as Java values, instead each operation loads its operands from 16-byte blocks of memory and stores result
+ * to another block, for example</p>
+ *
+ * <pre>
+ * Address a = Address.ofData(first).add(i * 4);
+ * Address b = Address.ofData(second).add(i * 4);
+ * Simd.addInt32(a, a, b);
+ * </pre>
+ *
+ * <p>adds {@code second[i..i+3]} to {@code first[i..i+3]}. Blocks are not required to be aligned,
+ * and result may overlap with operands. Methods whose second operand is scalar apply operation
+ * to each lane and this value. Lanes of 8 and 16 bits take low bits of {@code int} scalar.</p>
+ *
+ * <p>Only supported by WebAssembly target.</p>
+ */
+@StaticInit
+@Unmanaged
+public final class Simd {
+    public static final int SIZE = 16;
+
+    private Simd() {
+    }
+
+    public static native void copy(Address result, Address source);
+
+    public static native void fillInt8(Address result, int value);
+
+    public static native void fillInt16(Address result, int value);
+
+    public static native void fillInt32(Address result, int value);
+
+    public static native void fillInt64(Address result, long value);
+
+    public static native void fillFloat32(Address result, float value);
+
+    public static native void fillFloat64(Address result, double value);
+
+    public static native void and(Address result, Address first, Address second);
+
+    public static native void andNot(Address result, Address first, Address second);
+
+    public static native void or(Address result, Address first, Address second);
+
+    public static native void xor(Address result, Address first, Address second);
+
+    public static native void andInt8(Address result, Address first, int second);
+
+    public static native void andInt16(Address result, Address first, int second);
+
+    public static native void andInt32(Address result, Address first, int second);
+
+    public static native void andInt64(Address result, Address first, long second);
+
+    public static native void orInt8(Address result, Address first, int second);
+
+    public static native void orInt16(Address result, Address first, int second);
+
+    public static native void orInt32(Address result, Address first, int second);
+
+    public static native void orInt64(Address result, Address first, long second);
+
+    public static native void xorInt8(Address result, Address first, int second);
+
+    public static native void xorInt16(Address result, Address first, int second);
+
+    public static native void xorInt32(Address result, Address first, int second);
+
+    public static native void xorInt64(Address result, Address first, long second);
+
+    public static native void addInt8(Address result, Address first, Address second);
+
+    public static native void addInt8(Address result, Address first, int second);
+
+    public static native void addInt16(Address result, Address first, Address second);
+
+    public static native void addInt16(Address result, Address first, int second);
+
+    public static native void addInt32(Address result, Address first, Address second);
+
+    public static native void addInt32(Address result, Address first, int second);
+
+    public static native void addInt64(Address result, Address first, Address second);
+
+    public static native void addInt64(Address result, Address first, long second);
+
+    public static native void addFloat32(Address result, Address first, Address second);
+
+    public static native void addFloat32(Address result, Address first, float second);
+
+    public static native void addFloat64(Address result, Address first, Address second);
+
+    public static native void addFloat64(Address result, Address first, double second);
+
+    public static native void subInt8(Address result, Address first, Address second);
+
+    public static native void subInt8(Address result, Address first, int second);
+
+    public static native void subInt16(Address result, Address first, Address second);
+
+    public static native void subInt16(Address result, Address first, int second);
+
+    public static native void subInt32(Address result, Address first, Address second);
+
+    public static native void subInt32(Address result, Address first, int second);
+
+    public static native void subInt64(Address result, Address first, Address second);
+
+    public static native void subInt64(Address result, Address first, long second);
+
+    public static native void subFloat32(Address result, Address first, Address second);
+
+    public static native void subFloat32(Address result, Address first, float second);
+
+    public static native void subFloat64(Address result, Address first, Address second);
+
+    public static native void subFloat64(Address result, Address first, double second);
+
+    public static native void mulInt16(Address result, Address first, Address second);
+
+    public static native void mulInt16(Address result, Address first, int second);
+
+    public static native void mulInt32(Address result, Address first, Address second);
+
+    public static native void mulInt32(Address result, Address first, int second);
+
+    public static native void mulInt64(Address result, Address first, Address second);
+
+    public static native void mulInt64(Address result, Address first, long second);
+
+    public static native void mulFloat32(Address result, Address first, Address second);
+
+    public static native void mulFloat32(Address result, Address first, float second);
+
+    public static native void mulFloat64(Address result, Address first, Address second);
+
+    public static native void mulFloat64(Address result, Address first, double second);
+
+    public static native void divFloat32(Address result, Address first, Address second);
+
+    public static native void divFloat32(Address result, Address first, float second);
+
+    public static native void divFloat64(Address result, Address first, Address second);
+
+    public static native void divFloat64(Address result, Address first, double second);
+
+    public static native void minInt32(Address result, Address first, Address second);
+
+    public static native void minUint8(Address result, Address first, Address second);
+
+    public static native void minFloat32(Address result, Address first, Address second);
+
+    public static native void minFloat64(Address result, Address first, Address second);
+
+    public static native void maxInt32(Address result, Address first, Address second);
+
+    public static native void maxUint8(Address result, Address first, Address second);
+
+    public static native void maxFloat32(Address result, Address first, Address second);
+
+    public static native void maxFloat64(Address result, Address first, Address second);
+
+    public static native void addSaturatedUint8(Address result, Address first, Address second);
+
+    public static native void subSaturatedUint8(Address result, Address first, Address second);
+
+    public static native void averageUint8(Address result, Address first, Address second);
+}
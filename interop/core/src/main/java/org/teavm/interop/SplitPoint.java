@@ -0,0 +1,39 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.interop;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Marks a static method as an entry point of lazily loaded code. When code splitting is enabled in
+ * JavaScript backend, code that is only reachable through split points is moved to separate ES modules,
+ * which are loaded by the first call to the split point.</p>
+ *
+ * <p>Calling a split point may suspend current thread, so it can't be called from a non-threading context,
+ * for example, directly from a JavaScript event handler.</p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface SplitPoint {
+    /**
+     * Name of the chunk. Split points with the same name share the chunk. When not specified,
+     * each split point gets its own chunk.
+     */
+    String value() default "";
+}
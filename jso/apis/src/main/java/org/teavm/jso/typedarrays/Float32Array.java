@@ -16,6 +16,7 @@
 package org.teavm.jso.typedarrays;
 
 import org.teavm.jso.JSBody;
+import org.teavm.jso.JSByRef;
 import org.teavm.jso.JSClass;
 import org.teavm.jso.JSIndexer;
 
@@ -61,4 +62,20 @@ public class Float32Array extends ArrayBufferView {
     @JSBody(params = { "buffer", "offset" }, script = "return new Float32Array(buffer, offset);")
     @Deprecated
     public static native Float32Array create(ArrayBuffer buffer, int offset);
+
+    /**
+     * Returns typed array that shares storage with the given Java array. No data is copied,
+     * so changes made through either of them are visible through the other one.
+     * Only works in the JavaScript backend, where {@link JSByRef} is supported.
+     */
+    @JSBody(params = "array", script = "return array;")
+    public static native Float32Array fromJavaArray(@JSByRef float[] array);
+
+    /**
+     * Returns Java array that shares storage with the given typed array. No data is copied.
+     * Only works in the JavaScript backend, where {@link JSByRef} is supported.
+     */
+    @JSBody(params = "array", script = "return array;")
+    @JSByRef
+    public static native float[] toJavaArray(Float32Array array);
 }
@@ -68,4 +68,20 @@ public class Int32Array extends ArrayBufferView {
     @JSBody(params = { "buffer", "offset" }, script = "return new Int32Array(buffer, offset);")
     @Deprecated
     public static native Int32Array create(ArrayBuffer buffer, int offset);
+
+    /**
+     * Returns typed array that shares storage with the given Java array. No data is copied,
+     * so changes made through either of them are visible through the other one.
+     * Only works in the JavaScript backend, where {@link JSByRef} is supported.
+     */
+    @JSBody(params = "array", script = "return array;")
+    public static native Int32Array fromJavaArray(@JSByRef int[] array);
+
+    /**
+     * Returns Java array that shares storage with the given typed array. No data is copied.
+     * Only works in the JavaScript backend, where {@link JSByRef} is supported.
+     */
+    @JSBody(params = "array", script = "return array;")
+    @JSByRef
+    public static native int[] toJavaArray(Int32Array array);
 }
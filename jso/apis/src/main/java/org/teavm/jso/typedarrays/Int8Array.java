@@ -16,6 +16,7 @@
 package org.teavm.jso.typedarrays;
 
 import org.teavm.jso.JSBody;
+import org.teavm.jso.JSByRef;
 import org.teavm.jso.JSClass;
 import org.teavm.jso.JSIndexer;
 
@@ -61,4 +62,38 @@ public class Int8Array extends ArrayBufferView {
     @JSBody(params = { "buffer", "offset" }, script = "return new Int8Array(buffer, offset);")
     @Deprecated
     public static native Int8Array create(ArrayBuffer buffer, int offset);
+
+    /**
+     * Returns typed array that shares storage with the given Java array. No data is copied,
+     * so changes made through either of them are visible through the other one.
+     * Only works in the JavaScript backend, where {@link JSByRef} is supported.
+     */
+    @JSBody(params = "array", script = "return array;")
+    public static native Int8Array fromJavaArray(@JSByRef byte[] array);
+
+    /**
+     * Returns Java array that shares storage with the given typed array. No data is copied.
+     * Only works in the JavaScript backend, where {@link JSByRef} is supported.
+     */
+    @JSBody(params = "array", script = "return array;")
+    @JSByRef
+    public static native byte[] toJavaArray(Int8Array array);
+
+    /**
+     * Returns Java array that uses the given buffer as its storage. No data is copied.
+     * Only works in the JavaScript backend, where {@link JSByRef} is supported.
+     */
+    @JSBody(params = "buffer", script = "return new Int8Array(buffer);")
+    @JSByRef
+    public static native byte[] toJavaArray(ArrayBuffer buffer);
+
+    /**
+     * Returns Java array of {@code length} elements that uses the given buffer as its storage, starting
+     * at {@code offset} bytes. No data is copied.
+     * Only works in the JavaScript backend, where {@link JSByRef} is supported.
+     */
+    @JSBody(params = { "buffer", "offset", "length" },
+            script = "return new Int8Array(buffer, offset, length);")
+    @JSByRef
+    public static native byte[] toJavaArray(ArrayBuffer buffer, int offset, int length);
 }
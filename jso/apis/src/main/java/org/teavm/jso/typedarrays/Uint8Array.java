@@ -16,6 +16,7 @@
 package org.teavm.jso.typedarrays;
 
 import org.teavm.jso.JSBody;
+import org.teavm.jso.JSByRef;
 import org.teavm.jso.JSClass;
 import org.teavm.jso.JSIndexer;
 
@@ -61,4 +62,22 @@ public class Uint8Array extends ArrayBufferView {
     @JSBody(params = { "buffer", "offset" }, script = "return new Uint8Array(buffer, offset);")
     @Deprecated
     public static native Uint8Array create(ArrayBuffer buffer, int offset);
+
+    /**
+     * Returns typed array that shares storage with the given Java array. No data is copied,
+     * so changes made through either of them are visible through the other one.
+     * Elements are reinterpreted as unsigned.
+     * Only works in the JavaScript backend, where {@link JSByRef} is supported.
+     */
+    @JSBody(params = "array", script = "return new Uint8Array(array.buffer, array.byteOffset, array.length);")
+    public static native Uint8Array fromJavaArray(@JSByRef byte[] array);
+
+    /**
+     * Returns Java array that shares storage with the given typed array. No data is copied.
+     * Elements are reinterpreted as signed.
+     * Only works in the JavaScript backend, where {@link JSByRef} is supported.
+     */
+    @JSBody(params = "array", script = "return new Int8Array(array.buffer, array.byteOffset, array.length);")
+    @JSByRef
+    public static native byte[] toJavaArray(Uint8Array array);
 }
@@ -49,6 +49,7 @@ include("tools:idea")
 include("tools:maven:plugin")
 include("tools:maven:webapp")
 include("tools:classlib-comparison-gen")
+include("tools:benchmarks")
 include("tests")
 include("extras-slf4j")
 
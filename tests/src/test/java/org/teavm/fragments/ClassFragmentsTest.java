@@ -0,0 +1,180 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.fragments;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.teavm.backend.javascript.JSModuleType;
+import org.teavm.backend.javascript.JavaScriptTarget;
+import org.teavm.fragments.data.Main;
+import org.teavm.fragments.data.Stable;
+import org.teavm.fragments.data.Unrelated;
+import org.teavm.fragments.data.UnrelatedNew;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ClassHolderSource;
+import org.teavm.model.ReferenceCache;
+import org.teavm.model.util.ModelUtils;
+import org.teavm.parsing.ClasspathClassHolderSource;
+import org.teavm.vm.DirectoryBuildTarget;
+import org.teavm.vm.TeaVM;
+import org.teavm.vm.TeaVMBuilder;
+
+/**
+ * Builds a program with each class written to a separate module and runs it with Node.js, when available.
+ */
+public class ClassFragmentsTest {
+    private static final String FILE_NAME = "classes.js";
+    private static final List<String> EXPECTED_OUTPUT = List.of(
+            "main",
+            "Base.<clinit>",
+            "Derived.<clinit>",
+            "hello from derived",
+            "Stable.<clinit>",
+            "stable",
+            "unrelated v1",
+            "identity: true",
+            "constant: true"
+    );
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void fragmentStableWhenUnrelatedClassChanges() throws IOException {
+        var original = build(true, false);
+        var modified = build(true, true);
+
+        var stableFile = fragmentFile(original, Stable.class);
+        var stableFileAfterChange = fragmentFile(modified, Stable.class);
+        assertEquals(stableFile.getName(), stableFileAfterChange.getName());
+        assertEquals(Files.readString(stableFile.toPath()), Files.readString(stableFileAfterChange.toPath()));
+
+        assertNotEquals(fragmentFile(original, Unrelated.class).getName(),
+                fragmentFile(modified, Unrelated.class).getName());
+    }
+
+    @Test
+    public void initializationOrderMatchesSingleFile() throws Exception {
+        var singleFile = build(false, false);
+        assertEquals("Single file build must not produce fragments", 1, singleFile.list().length);
+        assertEquals(EXPECTED_OUTPUT, run(singleFile));
+
+        var fragments = build(true, false);
+        assertNotNull(fragmentFile(fragments, Main.class.getPackageName() + ".Derived"));
+        assertEquals(EXPECTED_OUTPUT, run(fragments));
+    }
+
+    @Test
+    public void stringIdentityPreservedAcrossFragments() throws Exception {
+        var directory = build(true, true);
+        var stableCode = Files.readString(fragmentFile(directory, Stable.class).toPath());
+        var unrelatedCode = Files.readString(fragmentFile(directory, Unrelated.class).toPath());
+        assertTrue(stableCode.contains("shared literal"));
+        assertTrue(unrelatedCode.contains("shared literal"));
+
+        var output = run(directory);
+        assertTrue(output.toString(), output.contains("unrelated v2"));
+        assertTrue(output.toString(), output.contains("identity: true"));
+        assertTrue(output.toString(), output.contains("constant: true"));
+    }
+
+    private File build(boolean classFragments, boolean modified) throws IOException {
+        var directory = tmp.newFolder();
+        var target = new JavaScriptTarget();
+        target.setObfuscated(false);
+        target.setStrict(true);
+        target.setModuleType(JSModuleType.ES2015);
+        target.setClassFragments(classFragments);
+        var classLoader = ClassFragmentsTest.class.getClassLoader();
+        var classSource = new ClasspathClassHolderSource(classLoader, new ReferenceCache());
+        TeaVM vm = new TeaVMBuilder(target)
+                .setClassLoader(classLoader)
+                .setClassSource(modified ? new ModifiedClassSource(classSource) : classSource)
+                .build();
+        vm.setEntryPoint(Main.class.getName());
+        vm.installPlugins();
+        vm.build(new DirectoryBuildTarget(directory), FILE_NAME);
+        assertTrue("Compilation failed: " + vm.getProblemProvider().getSevereProblems(),
+                vm.getProblemProvider().getSevereProblems().isEmpty());
+        return directory;
+    }
+
+    private static File fragmentFile(File directory, Class<?> cls) {
+        return fragmentFile(directory, cls.getName());
+    }
+
+    private static File fragmentFile(File directory, String className) {
+        var prefix = FILE_NAME.substring(0, FILE_NAME.length() - 3) + "-" + className + "-";
+        var files = directory.listFiles((dir, name) -> name.startsWith(prefix));
+        assertEquals("Expected single module of " + className, 1, files.length);
+        return files[0];
+    }
+
+    private List<String> run(File directory) throws IOException, InterruptedException {
+        Files.writeString(new File(directory, "package.json").toPath(), "{ \"type\": \"module\" }");
+        Files.writeString(new File(directory, "run.js").toPath(),
+                "import { main } from \"./" + FILE_NAME + "\";\nmain([]);\n");
+        Process process;
+        try {
+            process = new ProcessBuilder("node", "run.js")
+                    .directory(directory)
+                    .redirectErrorStream(true)
+                    .start();
+        } catch (IOException e) {
+            Assume.assumeNoException("Node.js is not available", e);
+            throw e;
+        }
+        assertTrue("Node.js timed out", process.waitFor(60, TimeUnit.SECONDS));
+        var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals("Node.js failed:\n" + output, 0, process.exitValue());
+        var lines = new ArrayList<String>();
+        for (var line : output.split("\n")) {
+            if (!line.isBlank()) {
+                lines.add(line.strip());
+            }
+        }
+        return lines;
+    }
+
+    static class ModifiedClassSource implements ClassHolderSource {
+        private ClassHolderSource underlying;
+
+        ModifiedClassSource(ClassHolderSource underlying) {
+            this.underlying = underlying;
+        }
+
+        @Override
+        public ClassHolder get(String name) {
+            if (name.equals(Unrelated.class.getName())) {
+                return ModelUtils.copyClass(underlying.get(UnrelatedNew.class.getName()), new ClassHolder(name));
+            }
+            return underlying.get(name);
+        }
+    }
+}
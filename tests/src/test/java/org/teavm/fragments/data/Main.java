@@ -0,0 +1,31 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.fragments.data;
+
+public final class Main {
+    private Main() {
+    }
+
+    public static void main(String[] args) {
+        System.out.println("main");
+        Base base = new Derived();
+        System.out.println(base.greet());
+        System.out.println(Stable.greeting());
+        System.out.println(Unrelated.message());
+        System.out.println("identity: " + (Stable.literal() == Unrelated.literal()));
+        System.out.println("constant: " + (Stable.literal() == "shared literal"));
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.fragments.data;
+
+public final class Stable {
+    private static final String GREETING;
+
+    static {
+        System.out.println("Stable.<clinit>");
+        GREETING = new StringBuilder("stable").reverse().reverse().toString();
+    }
+
+    private Stable() {
+    }
+
+    static String greeting() {
+        return GREETING;
+    }
+
+    static String literal() {
+        return "shared literal";
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.fragments.data;
+
+/**
+ * Replaces {@link Unrelated} in the second build, to simulate modification of a class.
+ */
+public final class UnrelatedNew {
+    private UnrelatedNew() {
+    }
+
+    static String message() {
+        return "unrelated v2";
+    }
+
+    static String literal() {
+        return "shared literal";
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.jslong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
+import org.teavm.backend.javascript.JSLongRepresentation;
+import org.teavm.backend.javascript.JavaScriptTarget;
+import org.teavm.diagnostics.DefaultProblemTextConsumer;
+import org.teavm.diagnostics.Problem;
+import org.teavm.jslong.data.LongAllocations;
+import org.teavm.jslong.data.LongOperations;
+import org.teavm.jslong.data.Main;
+import org.teavm.model.ReferenceCache;
+import org.teavm.parsing.ClasspathClassHolderSource;
+import org.teavm.vm.BuildTarget;
+import org.teavm.vm.TeaVM;
+import org.teavm.vm.TeaVMBuilder;
+import org.teavm.vm.TeaVMOptimizationLevel;
+
+/**
+ * Runs {@link LongOperations} compiled with {@link JSLongRepresentation#INT_PAIR} and compares every
+ * computed value with one computed by JVM. Also checks how many {@code Long} objects are created
+ * by {@link LongAllocations}.
+ */
+public class LongPairTest {
+    private static final String FILE_NAME = "classes.js";
+    private static String script;
+    private static List<String> expected;
+    private static List<String> actual;
+    private static List<String> allocations;
+
+    @BeforeClass
+    public static void build() {
+        JavaScriptTarget target = new JavaScriptTarget();
+        TeaVM vm = new TeaVMBuilder(target)
+                .setClassLoader(LongPairTest.class.getClassLoader())
+                .setClassSource(new ClasspathClassHolderSource(LongPairTest.class.getClassLoader(),
+                        new ReferenceCache()))
+                .build();
+        vm.setOptimizationLevel(TeaVMOptimizationLevel.ADVANCED);
+        target.setObfuscated(false);
+        target.setStrict(true);
+        target.setLongRepresentation(JSLongRepresentation.INT_PAIR);
+        vm.setEntryPoint(Main.class.getName());
+        vm.installPlugins();
+        BuildTargetImpl buildTarget = new BuildTargetImpl();
+        vm.build(buildTarget, FILE_NAME);
+        List<Problem> problems = vm.getProblemProvider().getSevereProblems();
+        if (!problems.isEmpty()) {
+            DefaultProblemTextConsumer consumer = new DefaultProblemTextConsumer();
+            StringBuilder sb = new StringBuilder();
+            for (Problem problem : problems) {
+                consumer.clear();
+                problem.render(consumer);
+                sb.append(consumer.getText()).append('\n');
+            }
+            fail("Compiler error\n" + sb);
+        }
+        script = buildTarget.get();
+
+        expected = Arrays.asList(LongOperations.run().split("\n"));
+        runScript(script);
+    }
+
+    @Test
+    public void intPairRuntimeUsed() {
+        assertTrue(script.contains("Long_hiResult"));
+    }
+
+    @Test
+    public void arithmeticCarries() {
+        check("add", "sub", "mul", "div", "rem", "udiv", "urem", "inc", "dec");
+    }
+
+    @Test
+    public void bitwise() {
+        check("and", "or", "xor", "not");
+    }
+
+    @Test
+    public void shifts() {
+        check("shl", "shr", "shru", "shl32", "shr32", "shru32", "shl1", "shr63", "shru63");
+    }
+
+    @Test
+    public void negation() {
+        check("neg");
+    }
+
+    @Test
+    public void minValueEdgeCases() {
+        check("minNeg", "minMinusOne", "minDivMinusOne", "minRemMinusOne", "minMulMinusOne", "minAbs",
+                "maxPlusOne", "minString", "minHex", "minParse");
+    }
+
+    @Test
+    public void comparisons() {
+        check("cmp", "compare", "ucompare", "zero", "max");
+    }
+
+    @Test
+    public void casts() {
+        check("toInt", "hiToInt", "toShort", "toDouble", "toFloat", "fromDouble", "fromFloat", "fromInt",
+                "fromIntUnsigned", "intProduct", "doubleToLong");
+    }
+
+    @Test
+    public void parametersAndReturns() {
+        check("param", "varargs", "staticField", "instanceField", "array", "arraySum", "boxed", "unboxed",
+                "equals", "hoistedField", "hoistedArray", "widened", "copied");
+    }
+
+    @Test
+    public void selfAssignment() {
+        check("self", "selfY", "loopSum", "swap");
+    }
+
+    @Test
+    public void allOperationsChecked() {
+        assertEquals(expected.size(), actual.size());
+    }
+
+    @Test
+    public void arithmeticDoesNotAllocate() {
+        checkAllocations("arithmetic", 0);
+    }
+
+    @Test
+    public void storedVariableBoxedOncePerDefinition() {
+        checkAllocations("storeTwice", LongAllocations.ITERATIONS);
+    }
+
+    @Test
+    public void parameterNotBoxedAgain() {
+        checkAllocations("storeParameter", 0);
+    }
+
+    @Test
+    public void returnedValueBoxedOnce() {
+        checkAllocations("storeReturned", LongAllocations.ITERATIONS);
+    }
+
+    private static void check(String... names) {
+        List<String> expectedLines = filter(expected, names);
+        assertFalse(expectedLines.isEmpty());
+        assertEquals(String.join("\n", expectedLines), String.join("\n", filter(actual, names)));
+    }
+
+    private static void checkAllocations(String name, int count) {
+        String line = allocations.stream()
+                .filter(candidate -> candidate.startsWith(name + "="))
+                .findFirst()
+                .orElse(null);
+        assertEquals(name + "=" + count, line);
+    }
+
+    private static List<String> filter(List<String> lines, String... names) {
+        List<String> prefixes = new ArrayList<>();
+        for (String name : names) {
+            prefixes.add(name + "[");
+        }
+        return lines.stream()
+                .filter(line -> prefixes.stream().anyMatch(line::startsWith))
+                .collect(Collectors.toList());
+    }
+
+    private static void runScript(String script) {
+        Context context = Context.enter();
+        try {
+            context.setOptimizationLevel(-1);
+            context.setLanguageVersion(Context.VERSION_ES6);
+            ScriptableObject rootScope = context.initStandardObjects();
+            Scriptable scope = new NativeObject();
+            scope.setParentScope(rootScope);
+            scope.setPrototype(rootScope);
+            context.evaluateString(scope, script, FILE_NAME, 1, null);
+            Function main = (Function) scope.get("main", scope);
+            ScriptRuntime.doTopCall(main, context, scope, scope,
+                    new Object[] { new NativeArray(0), Undefined.instance });
+            actual = Arrays.asList(main.get("result", main).toString().split("\n"));
+            allocations = Arrays.asList(main.get("allocations", main).toString().split("\n"));
+        } finally {
+            Context.exit();
+        }
+    }
+
+    static class BuildTargetImpl implements BuildTarget {
+        private ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        String get() {
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public OutputStream createResource(String fileName) {
+            return out;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.jslong;
+
+import org.teavm.backend.javascript.spi.Injector;
+import org.teavm.backend.javascript.spi.InjectorContext;
+import org.teavm.model.FieldReference;
+import org.teavm.model.MethodReference;
+
+public class ResultInjector implements Injector {
+    @Override
+    public void generate(InjectorContext context, MethodReference methodRef) {
+        switch (methodRef.getName()) {
+            case "saveResult":
+                saveString(context, "result");
+                break;
+            case "saveAllocations":
+                saveString(context, "allocations");
+                break;
+            case "startCounting":
+                // Wraps Long_create once and resets the counter on every subsequent call
+                context.getWriter().append("(main.allocationCount = 0, main.create = main.create || ")
+                        .appendFunction("Long_create").append(", ").appendFunction("Long_create")
+                        .append(" = (lo, hi) => (++main.allocationCount, main.create(lo, hi)))");
+                break;
+            case "allocationCount":
+                context.getWriter().append("main.allocationCount");
+                break;
+        }
+    }
+
+    private void saveString(InjectorContext context, String property) {
+        context.getWriter().append("main.").append(property).append(" = (");
+        context.writeExpr(context.getArgument(0));
+        context.getWriter().append(").").appendField(new FieldReference("java.lang.String", "nativeString"));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.jslong.data;
+
+import org.teavm.backend.javascript.spi.InjectedBy;
+import org.teavm.jslong.ResultInjector;
+
+/**
+ * Counts {@code Long} objects created by boxing of long local variables. Every kernel appends a line
+ * {@code name=count} to the result. Kernels are written so that the count does not depend on whether
+ * they were inlined.
+ */
+public final class LongAllocations {
+    public static final int ITERATIONS = 10;
+    private static long first;
+    private static long second;
+    private static int sink;
+
+    private LongAllocations() {
+    }
+
+    public static String run() {
+        StringBuilder sb = new StringBuilder();
+
+        startCounting();
+        sink += arithmetic(ITERATIONS);
+        line(sb, "arithmetic");
+
+        startCounting();
+        storeTwice(ITERATIONS);
+        line(sb, "storeTwice");
+
+        startCounting();
+        storeParameter(LongOperations.VALUES[3], ITERATIONS);
+        line(sb, "storeParameter");
+
+        startCounting();
+        storeReturned(ITERATIONS);
+        line(sb, "storeReturned");
+
+        sink += (int) (first ^ second);
+        return sb.toString();
+    }
+
+    private static int arithmetic(int n) {
+        long acc = LongOperations.VALUES[7];
+        for (int i = 0; i < n; ++i) {
+            acc = acc * 31 + LongOperations.VALUES[i];
+            acc ^= acc >>> 17;
+            if (acc < 0) {
+                acc = -acc;
+            }
+        }
+        return (int) acc ^ (int) (acc >>> 32);
+    }
+
+    private static void storeTwice(int n) {
+        long x = LongOperations.VALUES[5];
+        for (int i = 0; i < n; ++i) {
+            x = x * 31 + i;
+            first = x;
+            second = x;
+        }
+    }
+
+    private static void storeParameter(long value, int n) {
+        for (int i = 0; i < n; ++i) {
+            first = value;
+            second = value;
+        }
+    }
+
+    private static void storeReturned(int n) {
+        long x = LongOperations.VALUES[6];
+        for (int i = 0; i < n; ++i) {
+            x = next(x);
+            first = x;
+            second = x;
+        }
+    }
+
+    private static long next(long value) {
+        return value * 6364136223846793005L + 1442695040888963407L;
+    }
+
+    private static void line(StringBuilder sb, String name) {
+        sb.append(name).append('=').append(allocationCount()).append('\n');
+    }
+
+    @InjectedBy(ResultInjector.class)
+    private static native void startCounting();
+
+    @InjectedBy(ResultInjector.class)
+    private static native int allocationCount();
+}
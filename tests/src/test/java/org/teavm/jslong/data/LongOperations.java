@@ -0,0 +1,259 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.jslong.data;
+
+/**
+ * Exercises long arithmetic. Every operation appends a line {@code name[i,j]=value} to the result, where
+ * {@code i} and {@code j} are indexes of operands, so that result produced by JavaScript can be compared
+ * with result produced by JVM line by line. Operands are read from arrays, so that compiler can't fold them.
+ */
+public final class LongOperations {
+    static final long[] VALUES = {
+            0, 1, -1, 2, -2, 3, -7,
+            0xFFFFFFFFL, 0x80000000L, 0x7FFFFFFFL, -0x80000000L, 0x100000000L, -0x100000000L, 0x1FFFFFFFFL,
+            Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1, Long.MAX_VALUE - 1,
+            1L << 52, -(1L << 52), (1L << 53) + 1,
+            123456789012345L, -987654321098765L, 0x0123456789ABCDEFL, 0xFEDCBA9876543210L
+    };
+    static final int[] SHIFTS = { 0, 1, 7, 31, 32, 33, 63, 64, 65, -1 };
+    static final int[] INTS = { 0, 1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE, 123456789 };
+
+    private static long staticField;
+    private long instanceField;
+
+    private LongOperations() {
+    }
+
+    public static String run() {
+        StringBuilder sb = new StringBuilder();
+        binary(sb);
+        unary(sb);
+        shifts(sb);
+        comparisons(sb);
+        casts(sb);
+        minValue(sb);
+        selfAssignment(sb);
+        boxing(sb);
+        return sb.toString();
+    }
+
+    private static void binary(StringBuilder sb) {
+        for (int i = 0; i < VALUES.length; ++i) {
+            for (int j = 0; j < VALUES.length; ++j) {
+                long a = VALUES[i];
+                long b = VALUES[j];
+                line(sb, "add", i, j, a + b);
+                line(sb, "sub", i, j, a - b);
+                line(sb, "mul", i, j, a * b);
+                line(sb, "and", i, j, a & b);
+                line(sb, "or", i, j, a | b);
+                line(sb, "xor", i, j, a ^ b);
+                if (b != 0) {
+                    line(sb, "div", i, j, a / b);
+                    line(sb, "rem", i, j, a % b);
+                    line(sb, "udiv", i, j, Long.divideUnsigned(a, b));
+                    line(sb, "urem", i, j, Long.remainderUnsigned(a, b));
+                }
+            }
+        }
+    }
+
+    private static void unary(StringBuilder sb) {
+        for (int i = 0; i < VALUES.length; ++i) {
+            long a = VALUES[i];
+            line(sb, "neg", i, 0, -a);
+            line(sb, "not", i, 0, ~a);
+            line(sb, "inc", i, 0, a + 1);
+            line(sb, "dec", i, 0, a - 1);
+        }
+    }
+
+    private static void shifts(StringBuilder sb) {
+        for (int i = 0; i < VALUES.length; ++i) {
+            for (int j = 0; j < SHIFTS.length; ++j) {
+                long a = VALUES[i];
+                int shift = SHIFTS[j];
+                line(sb, "shl", i, j, a << shift);
+                line(sb, "shr", i, j, a >> shift);
+                line(sb, "shru", i, j, a >>> shift);
+            }
+            long a = VALUES[i];
+            line(sb, "shl32", i, 0, a << 32);
+            line(sb, "shr32", i, 0, a >> 32);
+            line(sb, "shru32", i, 0, a >>> 32);
+            line(sb, "shl1", i, 0, a << 1);
+            line(sb, "shr63", i, 0, a >> 63);
+            line(sb, "shru63", i, 0, a >>> 63);
+        }
+    }
+
+    private static void comparisons(StringBuilder sb) {
+        for (int i = 0; i < VALUES.length; ++i) {
+            for (int j = 0; j < VALUES.length; ++j) {
+                long a = VALUES[i];
+                long b = VALUES[j];
+                int flags = (a < b ? 1 : 0) | (a <= b ? 2 : 0) | (a == b ? 4 : 0) | (a != b ? 8 : 0)
+                        | (a > b ? 16 : 0) | (a >= b ? 32 : 0);
+                line(sb, "cmp", i, j, flags);
+                line(sb, "compare", i, j, Long.compare(a, b));
+                line(sb, "ucompare", i, j, Long.compareUnsigned(a, b));
+            }
+            long a = VALUES[i];
+            line(sb, "zero", i, 0, (a == 0 ? 1 : 0) | (a < 0 ? 2 : 0) | (a > 0 ? 4 : 0));
+            line(sb, "max", i, 0, a < 0x100000000L ? 1 : 0);
+        }
+    }
+
+    private static void casts(StringBuilder sb) {
+        for (int i = 0; i < VALUES.length; ++i) {
+            long a = VALUES[i];
+            line(sb, "toInt", i, 0, (int) a);
+            line(sb, "hiToInt", i, 0, (int) (a >>> 32));
+            line(sb, "toShort", i, 0, (short) a);
+            line(sb, "toDouble", i, 0, Double.doubleToLongBits((double) a));
+            line(sb, "toFloat", i, 0, Float.floatToIntBits((float) a));
+            line(sb, "fromDouble", i, 0, (long) (double) a);
+            line(sb, "fromFloat", i, 0, (long) (float) a);
+        }
+        for (int i = 0; i < INTS.length; ++i) {
+            int n = INTS[i];
+            line(sb, "fromInt", i, 0, (long) n);
+            line(sb, "fromIntUnsigned", i, 0, n & 0xFFFFFFFFL);
+            line(sb, "intProduct", i, 0, (long) n * n);
+        }
+        double[] doubles = { 0.5, -0.5, 1e18, -1e18, 1e19, -1e19, 9.3e18, Double.NaN,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 4294967296.75, -4294967296.75 };
+        for (int i = 0; i < doubles.length; ++i) {
+            line(sb, "doubleToLong", i, 0, (long) doubles[i]);
+        }
+    }
+
+    private static void minValue(StringBuilder sb) {
+        long min = VALUES[15];
+        long minusOne = VALUES[2];
+        line(sb, "minNeg", 0, 0, -min);
+        line(sb, "minMinusOne", 0, 0, min - 1);
+        line(sb, "minDivMinusOne", 0, 0, min / minusOne);
+        line(sb, "minRemMinusOne", 0, 0, min % minusOne);
+        line(sb, "minMulMinusOne", 0, 0, min * minusOne);
+        line(sb, "minAbs", 0, 0, Math.abs(min));
+        line(sb, "maxPlusOne", 0, 0, VALUES[14] + 1);
+        line(sb, "minString", 0, 0, Long.toString(min));
+        line(sb, "minHex", 0, 0, Long.toHexString(min));
+        line(sb, "minParse", 0, 0, Long.parseLong("-9223372036854775808"));
+    }
+
+    private static void selfAssignment(StringBuilder sb) {
+        long x = 1;
+        long y = VALUES[7];
+        for (int i = 0; i < VALUES.length; ++i) {
+            x = x + y;
+            x = x * 31 + VALUES[i];
+            x ^= x >>> 7;
+            x = x - (x << 3);
+            y = y + x;
+            y = -y;
+            x += i;
+            x = x >> 1;
+            line(sb, "self", i, 0, x);
+            line(sb, "selfY", i, 0, y);
+        }
+
+        long sum = 0;
+        for (long v = VALUES[11] - 5; v < VALUES[11] + 5; ++v) {
+            sum += v;
+        }
+        line(sb, "loopSum", 0, 0, sum);
+
+        long swapA = VALUES[13];
+        long swapB = VALUES[22];
+        long tmp = swapA;
+        swapA = swapB;
+        swapB = tmp;
+        line(sb, "swap", 0, 0, swapA - swapB);
+    }
+
+    private static void boxing(StringBuilder sb) {
+        LongOperations instance = new LongOperations();
+        LongOperations[] instances = { instance };
+        long[] array = new long[VALUES.length];
+        long[] reversed = new long[VALUES.length];
+        for (int i = 0; i < VALUES.length; ++i) {
+            long a = VALUES[i];
+            long b = VALUES[VALUES.length - 1 - i];
+            line(sb, "param", i, 0, combine(a, i, b));
+            line(sb, "varargs", i, 0, sumAll(a, b, a));
+
+            staticField = a;
+            staticField += b;
+            line(sb, "staticField", i, 0, staticField);
+            instance.instanceField = b;
+            instance.instanceField -= a;
+            line(sb, "instanceField", i, 0, instance.instanceField);
+
+            array[i] = a;
+            array[i] *= 3;
+            line(sb, "array", i, 0, array[i]);
+
+            Long boxed = a;
+            line(sb, "boxed", i, 0, boxed.hashCode());
+            line(sb, "unboxed", i, 0, boxed + 1);
+            line(sb, "equals", i, 0, boxed.equals(b) ? 1 : 0);
+
+            instances[i - i].instanceField = a + b;
+            line(sb, "hoistedField", i, 0, instance.instanceField);
+            reversed[VALUES.length - 1 - i] = a ^ b;
+            line(sb, "hoistedArray", i, 0, reversed[VALUES.length - 1 - i]);
+            line(sb, "widened", i, 0, widen((int) a));
+            long copy = a;
+            staticField = copy;
+            copy = b;
+            line(sb, "copied", i, 0, staticField - copy);
+        }
+        long total = 0;
+        for (long value : array) {
+            total += value;
+        }
+        line(sb, "arraySum", 0, 0, total);
+    }
+
+    private static long combine(long a, int shift, long b) {
+        long result = a;
+        result ^= b >>> shift;
+        result += (long) shift << 40;
+        return result;
+    }
+
+    private static long widen(int value) {
+        return value;
+    }
+
+    private static long sumAll(long... values) {
+        long result = 0;
+        for (long value : values) {
+            result += value;
+        }
+        return result;
+    }
+
+    private static void line(StringBuilder sb, String name, int i, int j, long value) {
+        sb.append(name).append('[').append(i).append(',').append(j).append("]=").append(value).append('\n');
+    }
+
+    private static void line(StringBuilder sb, String name, int i, int j, String value) {
+        sb.append(name).append('[').append(i).append(',').append(j).append("]=").append(value).append('\n');
+    }
+}
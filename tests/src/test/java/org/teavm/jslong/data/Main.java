@@ -0,0 +1,35 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.jslong.data;
+
+import org.teavm.backend.javascript.spi.InjectedBy;
+import org.teavm.jslong.ResultInjector;
+
+public final class Main {
+    private Main() {
+    }
+
+    public static void main(String[] args) {
+        saveResult(LongOperations.run());
+        saveAllocations(LongAllocations.run());
+    }
+
+    @InjectedBy(ResultInjector.class)
+    private static native void saveResult(String result);
+
+    @InjectedBy(ResultInjector.class)
+    private static native void saveAllocations(String allocations);
+}
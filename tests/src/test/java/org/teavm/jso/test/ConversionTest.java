@@ -26,6 +26,9 @@ import org.teavm.jso.JSByRef;
 import org.teavm.jso.JSObject;
 import org.teavm.jso.JSProperty;
 import org.teavm.jso.core.JSString;
+import org.teavm.jso.typedarrays.ArrayBuffer;
+import org.teavm.jso.typedarrays.Int8Array;
+import org.teavm.jso.typedarrays.Uint8Array;
 import org.teavm.junit.EachTestCompiledSeparately;
 import org.teavm.junit.OnlyPlatform;
 import org.teavm.junit.SkipJVM;
@@ -173,6 +176,28 @@ public class ConversionTest {
         assertEquals(99, first[0]);
     }
 
+    @Test
+    public void typedArrayViewSharesJavaArrayStorage() {
+        byte[] array = { 1, -1 };
+        Uint8Array view = Uint8Array.fromJavaArray(array);
+        assertEquals(255, view.get(1));
+        view.set(0, (short) 200);
+        assertEquals(-56, array[0]);
+
+        byte[] wrapped = Uint8Array.toJavaArray(view);
+        wrapped[1] = 5;
+        assertEquals(5, array[1]);
+    }
+
+    @Test
+    public void wrapsArrayBufferWithoutCopying() {
+        ArrayBuffer buffer = new ArrayBuffer(4);
+        byte[] array = Int8Array.toJavaArray(buffer, 1, 2);
+        assertEquals(2, array.length);
+        array[0] = 42;
+        assertEquals(42, new Int8Array(buffer).get(1));
+    }
+
     @JSBody(params = { "a", "b", "c", "d", "e", "f", "g", "h" }, script = ""
             + "return '' + a + ':' + b + ':' + c + ':' + d + ':' + e + ':' + f.toFixed(1) + ':'"
                     + "+ g.toFixed(1) + ':' + h;")
@@ -0,0 +1,101 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.parallel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.junit.Test;
+import org.teavm.backend.javascript.JavaScriptTarget;
+import org.teavm.model.ClassHolderSource;
+import org.teavm.model.ReferenceCache;
+import org.teavm.parallel.data.Main;
+import org.teavm.parsing.ClasspathClassHolderSource;
+import org.teavm.vm.BuildTarget;
+import org.teavm.vm.TeaVM;
+import org.teavm.vm.TeaVMBuilder;
+import org.teavm.vm.TeaVMOptimizationLevel;
+
+/**
+ * Checks that generated code does not depend on number of threads used by parallel phases of compiler.
+ */
+public class ParallelBuildTest {
+    private static final int THREADS = 4;
+    private static final String FILE_NAME = "classes.js";
+    private static ClassHolderSource classSource = new ClasspathClassHolderSource(
+            ParallelBuildTest.class.getClassLoader(), new ReferenceCache());
+
+    @Test
+    public void optimizationThreads() {
+        String serial = build(TeaVMOptimizationLevel.ADVANCED, builder -> { }, target -> { });
+        for (int i = 0; i < 3; ++i) {
+            String parallel = build(TeaVMOptimizationLevel.ADVANCED,
+                    builder -> builder.setOptimizationThreads(THREADS), target -> { });
+            assertEquals(serial, parallel);
+        }
+    }
+
+    @Test
+    public void decompilationThreads() {
+        String serial = build(TeaVMOptimizationLevel.SIMPLE, builder -> { }, target -> { });
+        for (int i = 0; i < 3; ++i) {
+            String parallel = build(TeaVMOptimizationLevel.SIMPLE, builder -> { },
+                    target -> target.setDecompilationThreads(THREADS));
+            assertEquals(serial, parallel);
+        }
+    }
+
+    private String build(TeaVMOptimizationLevel level, Consumer<TeaVMBuilder> builderConfig,
+            Consumer<JavaScriptTarget> targetConfig) {
+        var target = new JavaScriptTarget();
+        target.setObfuscated(false);
+        target.setStrict(true);
+        targetConfig.accept(target);
+        var builder = new TeaVMBuilder(target)
+                .setClassLoader(ParallelBuildTest.class.getClassLoader())
+                .setClassSource(classSource);
+        builderConfig.accept(builder);
+        TeaVM vm = builder.build();
+        vm.setOptimizationLevel(level);
+        vm.setEntryPoint(Main.class.getName());
+        vm.installPlugins();
+        var buildTarget = new BuildTargetImpl();
+        vm.build(buildTarget, FILE_NAME);
+        assertTrue("Compilation failed: " + vm.getProblemProvider().getSevereProblems(),
+                vm.getProblemProvider().getSevereProblems().isEmpty());
+        return buildTarget.get(FILE_NAME);
+    }
+
+    static class BuildTargetImpl implements BuildTarget {
+        private Map<String, ByteArrayOutputStream> fs = new HashMap<>();
+
+        String get(String name) {
+            return new String(fs.get(name).toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public OutputStream createResource(String fileName) {
+            var out = new ByteArrayOutputStream();
+            fs.put(fileName, out);
+            return out;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.parallel.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+public final class Main {
+    private Main() {
+    }
+
+    public static void main(String[] args) {
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            shapes.add(i % 2 == 0 ? new Square(i) : new Circle(i));
+        }
+        Map<String, Double> areas = new HashMap<>();
+        for (Shape shape : shapes) {
+            areas.merge(shape.name(), shape.area(), Double::sum);
+        }
+        System.out.println(areas);
+
+        IntFunction<int[]> squares = n -> {
+            int[] result = new int[n];
+            for (int i = 0; i < n; ++i) {
+                result[i] = i * i;
+            }
+            return result;
+        };
+        long sum = 0;
+        for (int value : squares.apply(args.length + 20)) {
+            sum += value;
+        }
+        System.out.println(sum);
+
+        System.out.println(shapes.stream()
+                .filter(shape -> shape.area() > 10)
+                .map(Shape::name)
+                .collect(Collectors.joining(",")));
+
+        StringBuilder sb = new StringBuilder();
+        try {
+            sb.append(Integer.parseInt(args.length > 0 ? args[0] : "x"));
+        } catch (NumberFormatException e) {
+            sb.append("not a number: ").append(e.getMessage());
+        }
+        System.out.println(sb);
+    }
+
+    interface Shape {
+        double area();
+
+        String name();
+    }
+
+    static class Square implements Shape {
+        private final int side;
+
+        Square(int side) {
+            this.side = side;
+        }
+
+        @Override
+        public double area() {
+            return side * side;
+        }
+
+        @Override
+        public String name() {
+            return "square";
+        }
+    }
+
+    static class Circle implements Shape {
+        private final int radius;
+
+        Circle(int radius) {
+            this.radius = radius;
+        }
+
+        @Override
+        public double area() {
+            return Math.PI * radius * radius;
+        }
+
+        @Override
+        public String name() {
+            return "circle";
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.splitting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.teavm.backend.javascript.JSModuleType;
+import org.teavm.backend.javascript.JavaScriptTarget;
+import org.teavm.model.ReferenceCache;
+import org.teavm.parsing.ClasspathClassHolderSource;
+import org.teavm.splitting.data.Main;
+import org.teavm.vm.DirectoryBuildTarget;
+import org.teavm.vm.TeaVM;
+import org.teavm.vm.TeaVMBuilder;
+
+/**
+ * Builds a program with a split point into ES modules and runs it with Node.js, when available.
+ */
+public class CodeSplittingTest {
+    private static final String FILE_NAME = "classes.js";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File directory;
+    private File chunkFile;
+
+    @Before
+    public void build() throws IOException {
+        directory = tmp.newFolder("output");
+        var target = new JavaScriptTarget();
+        target.setObfuscated(false);
+        target.setStrict(true);
+        target.setModuleType(JSModuleType.ES2015);
+        target.setCodeSplitting(true);
+        TeaVM vm = new TeaVMBuilder(target)
+                .setClassLoader(CodeSplittingTest.class.getClassLoader())
+                .setClassSource(new ClasspathClassHolderSource(CodeSplittingTest.class.getClassLoader(),
+                        new ReferenceCache()))
+                .build();
+        vm.setEntryPoint(Main.class.getName());
+        vm.installPlugins();
+        vm.build(new DirectoryBuildTarget(directory), FILE_NAME);
+        assertTrue("Compilation failed: " + vm.getProblemProvider().getSevereProblems(),
+                vm.getProblemProvider().getSevereProblems().isEmpty());
+
+        var files = directory.listFiles((dir, name) -> !name.equals(FILE_NAME));
+        assertEquals("Expected exactly one chunk: " + Arrays.toString(files), 1, files.length);
+        chunkFile = files[0];
+
+        Files.writeString(new File(directory, "package.json").toPath(), "{ \"type\": \"module\" }");
+        Files.writeString(new File(directory, "run.js").toPath(),
+                "import { main } from \"./" + FILE_NAME + "\";\nmain([]);\n");
+    }
+
+    @Test
+    public void chunkContainsCodeOnlyReachableFromSplitPoint() throws IOException {
+        var mainCode = Files.readString(new File(directory, FILE_NAME).toPath());
+        var chunkCode = Files.readString(chunkFile.toPath());
+        assertTrue(mainCode.contains(chunkFile.getName()));
+        assertTrue(chunkCode.contains("export default function"));
+        assertTrue(chunkCode.contains("Report"));
+    }
+
+    @Test
+    public void chunkLoadedOnFirstCall() throws Exception {
+        assertEquals(List.of("start", "report: 1 4 9 16 25", "report: 1 4 9 16 25 36", "end"), run());
+    }
+
+    @Test
+    public void loadFailureThrowsJavaException() throws Exception {
+        assertTrue(chunkFile.delete());
+        var output = run();
+        assertEquals(3, output.size());
+        assertEquals("start", output.get(0));
+        assertTrue(output.get(1), output.get(1).startsWith("failed: Failed to load chunk "));
+        assertEquals("end", output.get(2));
+    }
+
+    private List<String> run() throws IOException, InterruptedException {
+        Process process;
+        try {
+            process = new ProcessBuilder("node", "run.js")
+                    .directory(directory)
+                    .redirectErrorStream(true)
+                    .start();
+        } catch (IOException e) {
+            Assume.assumeNoException("Node.js is not available", e);
+            throw e;
+        }
+        assertTrue("Node.js timed out", process.waitFor(60, TimeUnit.SECONDS));
+        var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals("Node.js failed:\n" + output, 0, process.exitValue());
+        var lines = new ArrayList<String>();
+        for (var line : output.split("\n")) {
+            if (!line.isBlank()) {
+                lines.add(line.strip());
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.splitting.data;
+
+class Report {
+    private int size;
+
+    Report(int size) {
+        this.size = size;
+    }
+
+    String render() {
+        StringBuilder sb = new StringBuilder("report:");
+        for (int i = 1; i <= size; ++i) {
+            sb.append(' ').append(i * i);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tooling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.teavm.common.json.JsonArrayValue;
+import org.teavm.common.json.JsonObjectValue;
+import org.teavm.common.json.JsonParser;
+import org.teavm.common.json.JsonValueParserVisitor;
+import org.teavm.common.json.JsonValueProvider;
+import org.teavm.common.json.JsonVisitingConsumer;
+import org.teavm.vm.TeaVMOptimizationLevel;
+
+public class BuildMetricsTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void phasesCollected() throws Exception {
+        File metricsFile = temporaryFolder.newFile("metrics.json");
+        TeaVMTool tool = createTool(metricsFile);
+        tool.setOptimizationLevel(TeaVMOptimizationLevel.ADVANCED);
+        tool.generate();
+
+        JsonObjectValue metrics = read(metricsFile);
+        JsonArrayValue phases = (JsonArrayValue) metrics.get("phases");
+        List<String> phaseNames = new ArrayList<>();
+        for (int i = 0; i < phases.size(); ++i) {
+            JsonObjectValue phase = phases.get(i).asObject();
+            phaseNames.add(phase.get("name").asString());
+            assertTrue(phase.get("wallTime").asIntNumber() > 0);
+        }
+        assertEquals(List.of("DEPENDENCY_ANALYSIS", "LINKING", "DEVIRTUALIZATION", "INLINING", "OPTIMIZATION",
+                "RENDERING"), phaseNames);
+
+        JsonObjectValue dependencyPhase = phases.get(0).asObject();
+        assertTrue(dependencyPhase.get("classes").asIntNumber() > 0);
+        assertTrue(dependencyPhase.get("methods").asIntNumber() > 0);
+
+        JsonObjectValue programCache = metrics.get("caches").asObject().get("program").asObject();
+        assertEquals(0, programCache.get("hits").asIntNumber());
+    }
+
+    @Test
+    public void cacheMetricsReportedPerBuild() throws Exception {
+        File cacheDirectory = temporaryFolder.newFolder("cache");
+        File firstMetricsFile = temporaryFolder.newFile("first.json");
+        TeaVMTool tool = createTool(firstMetricsFile);
+        tool.setIncremental(true);
+        tool.setCacheDirectory(cacheDirectory);
+        tool.generate();
+
+        JsonObjectValue firstCaches = read(firstMetricsFile).get("caches").asObject();
+        assertEquals(0, firstCaches.get("program").asObject().get("hits").asIntNumber());
+        assertNotNull(firstCaches.get("ast"));
+
+        File secondMetricsFile = temporaryFolder.newFile("second.json");
+        tool.setBuildMetricsFile(secondMetricsFile);
+        tool.generate();
+
+        JsonObjectValue secondCaches = read(secondMetricsFile).get("caches").asObject();
+        assertTrue(secondCaches.get("program").asObject().get("hits").asIntNumber() > 0);
+        assertTrue(secondCaches.get("ast").asObject().get("hits").asIntNumber() > 0);
+    }
+
+    private TeaVMTool createTool(File metricsFile) throws IOException {
+        TeaVMTool tool = new TeaVMTool();
+        tool.setClassLoader(BuildMetricsTest.class.getClassLoader());
+        tool.setTargetDirectory(temporaryFolder.newFolder("out"));
+        tool.setMainClass(Main.class.getName());
+        tool.setObfuscated(false);
+        tool.setBuildMetricsFile(metricsFile);
+        return tool;
+    }
+
+    private static JsonObjectValue read(File file) throws IOException {
+        var provider = new JsonValueProvider();
+        var parser = new JsonParser(new JsonVisitingConsumer(JsonValueParserVisitor.create(provider)));
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            parser.parse(reader);
+        }
+        return provider.getValue().asObject();
+    }
+
+    public static final class Main {
+        private Main() {
+        }
+
+        public static void main(String[] args) {
+            StringBuilder sb = new StringBuilder();
+            for (String arg : args) {
+                sb.append(arg.length());
+            }
+            System.out.println(sb);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tooling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import java.util.function.Consumer;
+import org.junit.Test;
+import org.teavm.backend.javascript.JSLongRepresentation;
+import org.teavm.backend.javascript.JSModuleType;
+import org.teavm.vm.TeaVMOptimizationLevel;
+
+public class RemoteCacheKeyTest {
+    @Test
+    public void sameOptionsGiveSameKey() {
+        assertEquals(key(tool -> { }), key(tool -> { }));
+        assertEquals(key(tool -> tool.setOptimizationLevel(TeaVMOptimizationLevel.FULL)),
+                key(tool -> tool.setOptimizationLevel(TeaVMOptimizationLevel.FULL)));
+    }
+
+    @Test
+    public void optionsAffectingProgramsChangeKey() {
+        String base = key(tool -> { });
+        assertNotEquals(base, key(tool -> tool.setOptimizationLevel(TeaVMOptimizationLevel.FULL)));
+        assertNotEquals(base, key(tool -> tool.setFastDependencyAnalysis(true)));
+        assertNotEquals(base, key(tool -> tool.setJsLongRepresentation(JSLongRepresentation.INT_PAIR)));
+        assertNotEquals(base, key(tool -> tool.setJsModuleType(JSModuleType.ES2015)));
+        assertNotEquals(base, key(tool -> tool.setJsCodeSplitting(true)));
+        assertNotEquals(base, key(tool -> tool.setStrict(true)));
+    }
+
+    @Test
+    public void wasmOptionsChangeKey() {
+        String base = key(tool -> tool.setTargetType(TeaVMTargetType.WEBASSEMBLY));
+        assertNotEquals(base, key(tool -> {
+            tool.setTargetType(TeaVMTargetType.WEBASSEMBLY);
+            tool.setWasmSimdUsed(true);
+        }));
+    }
+
+    private static String key(Consumer<TeaVMTool> options) {
+        TeaVMTool tool = new TeaVMTool();
+        options.accept(tool);
+        return tool.getRemoteCacheKey();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.EachTestCompiledSeparately;
+import org.teavm.junit.TeaVMProperties;
+import org.teavm.junit.TeaVMProperty;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+@EachTestCompiledSeparately
+@TeaVMProperties(@TeaVMProperty(key = TeaVM.GUARDED_DEVIRTUALIZATION_PROPERTY, value = "true"))
+public class GuardedDevirtualizationTest {
+    @Test
+    public void bimorphicCall() {
+        Shape[] shapes = { new Square(2), new Rectangle(2, 3), new Square(3) };
+        int sum = 0;
+        for (Shape shape : shapes) {
+            sum += shape.area();
+        }
+        assertEquals(4 + 6 + 9, sum);
+    }
+
+    @Test
+    public void trimorphicCallWithResultUsedLater() {
+        Animal[] animals = { new Dog(), new Cat(), new Cow(), new Cat() };
+        StringBuilder sb = new StringBuilder();
+        for (Animal animal : animals) {
+            String sound = animal.sound();
+            sb.append(sound.length()).append(sound);
+        }
+        assertEquals("4woof4meow3moo4meow", sb.toString());
+    }
+
+    @Test
+    public void subclassSharesImplementation() {
+        Counter[] counters = { new Counter(), new LoggingCounter(), new DoubleCounter(), new LoggingCounter() };
+        int total = 0;
+        for (Counter counter : counters) {
+            total = counter.next(total);
+        }
+        assertEquals(5, total);
+    }
+
+    @Test
+    public void guardedCallInsideCondition() {
+        Shape[] shapes = { new Square(1), new Rectangle(1, 5) };
+        int result = 0;
+        for (int i = 0; i < 4; ++i) {
+            Shape shape = shapes[i % 2];
+            result = i > 1 ? result + shape.area() : result - shape.area();
+        }
+        assertEquals(0, result);
+    }
+
+    interface Shape {
+        int area();
+    }
+
+    static class Square implements Shape {
+        private final int side;
+
+        Square(int side) {
+            this.side = side;
+        }
+
+        @Override
+        public int area() {
+            return side * side;
+        }
+    }
+
+    static class Rectangle implements Shape {
+        private final int width;
+        private final int height;
+
+        Rectangle(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public int area() {
+            return width * height;
+        }
+    }
+
+    abstract static class Animal {
+        abstract String sound();
+    }
+
+    static class Dog extends Animal {
+        @Override
+        String sound() {
+            return "woof";
+        }
+    }
+
+    static class Cat extends Animal {
+        @Override
+        String sound() {
+            return "meow";
+        }
+    }
+
+    static class Cow extends Animal {
+        @Override
+        String sound() {
+            return "moo";
+        }
+    }
+
+    static class Counter {
+        int next(int value) {
+            return value + 1;
+        }
+    }
+
+    // Shares implementation of Counter, but Counter itself can't be checked, since DoubleCounter extends it
+    static class LoggingCounter extends Counter {
+        @Override
+        public String toString() {
+            return "LoggingCounter";
+        }
+    }
+
+    static class DoubleCounter extends Counter {
+        @Override
+        int next(int value) {
+            return value + 2;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+plugins {
+    java
+}
+
+description = "JMH benchmarks for compiler hot paths"
+
+dependencies {
+    implementation(project(":core"))
+    implementation(project(":classlib"))
+    implementation(libs.jmh.core)
+    annotationProcessor(libs.jmh.generator.annprocess)
+}
+
+val runBenchmarks by tasks.registering(JavaExec::class) {
+    group = "benchmark"
+    description = "Runs compiler benchmarks. Use -PjmhArgs=\"...\" to pass options to JMH, e.g. to select benchmarks"
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass = "org.openjdk.jmh.Main"
+    val jmhArgs = providers.gradleProperty("jmhArgs").orNull
+    if (jmhArgs != null) {
+        args(jmhArgs.split(" ").filter { it.isNotEmpty() })
+    }
+    args("-rf", "json", "-rff", layout.buildDirectory.file("jmh-result.json").get().asFile.absolutePath)
+}
@@ -0,0 +1,98 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tools.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teavm.backend.javascript.JavaScriptTarget;
+import org.teavm.backend.wasm.WasmRuntimeType;
+import org.teavm.backend.wasm.WasmTarget;
+import org.teavm.model.ClassReaderSource;
+import org.teavm.model.ReferenceCache;
+import org.teavm.vm.MemoryBuildTarget;
+import org.teavm.vm.TeaVM;
+import org.teavm.vm.TeaVMBuilder;
+import org.teavm.vm.TeaVMOptimizationLevel;
+import org.teavm.vm.TeaVMTarget;
+
+/**
+ * Compiles a corpus program to JavaScript or WebAssembly in memory, i.e. covers the whole pipeline except
+ * class parsing; use {@link TeaVM#getBuildMetrics()} to see how time is split between phases.
+ * {@link StatementRendererBenchmark} and {@link WasmBinaryRendererBenchmark} measure renderers alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BackendBenchmark {
+    @Param({ CompilerCorpus.HELLO, CompilerCorpus.COLLECTIONS, CompilerCorpus.PI })
+    public String corpus;
+
+    @Param({ "javascript", "wasm" })
+    public String target;
+
+    @Param({ "SIMPLE", "ADVANCED" })
+    public String level;
+
+    private ClassReaderSource classSource;
+
+    @Setup
+    public void setup() {
+        classSource = CompilerCorpus.createClassSource(new ReferenceCache());
+        build();
+    }
+
+    @Benchmark
+    public MemoryBuildTarget build() {
+        var vm = new TeaVMBuilder(createTarget())
+                .setClassLoader(CompilerCorpus.getClassLoader())
+                .setClassSource(classSource)
+                .build();
+        vm.setOptimizationLevel(TeaVMOptimizationLevel.valueOf(level));
+        vm.installPlugins();
+        vm.setEntryPoint(CompilerCorpus.getEntryPoint(corpus));
+        var buildTarget = new MemoryBuildTarget();
+        vm.build(buildTarget, "classes");
+        CompilerCorpus.checkProblems(vm);
+        return buildTarget;
+    }
+
+    private TeaVMTarget createTarget() {
+        switch (target) {
+            case "javascript":
+                return new JavaScriptTarget();
+            case "wasm": {
+                var wasmTarget = new WasmTarget();
+                wasmTarget.setRuntimeType(WasmRuntimeType.TEAVM);
+                return wasmTarget;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown target: " + target);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tools.benchmarks;
+
+import org.teavm.dependency.DependencyInfo;
+import org.teavm.model.ClassHierarchy;
+import org.teavm.model.ClassReaderSource;
+import org.teavm.model.MethodReader;
+import org.teavm.model.optimization.MethodOptimizationContext;
+
+class BenchmarkOptimizationContext implements MethodOptimizationContext {
+    private MethodReader method;
+    private DependencyInfo dependencyInfo;
+    private ClassHierarchy hierarchy;
+
+    BenchmarkOptimizationContext(MethodReader method, DependencyInfo dependencyInfo, ClassHierarchy hierarchy) {
+        this.method = method;
+        this.dependencyInfo = dependencyInfo;
+        this.hierarchy = hierarchy;
+    }
+
+    @Override
+    public MethodReader getMethod() {
+        return method;
+    }
+
+    @Override
+    public DependencyInfo getDependencyInfo() {
+        return dependencyInfo;
+    }
+
+    @Override
+    public ClassReaderSource getClassSource() {
+        return dependencyInfo.getClassSource();
+    }
+
+    @Override
+    public ClassHierarchy getHierarchy() {
+        return hierarchy;
+    }
+}
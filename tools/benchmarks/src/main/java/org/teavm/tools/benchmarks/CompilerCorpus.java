@@ -0,0 +1,142 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tools.benchmarks;
+
+import java.util.List;
+import org.teavm.backend.javascript.JavaScriptTarget;
+import org.teavm.dependency.DependencyAnalyzerFactory;
+import org.teavm.dependency.DependencyInfo;
+import org.teavm.dependency.FastDependencyAnalyzer;
+import org.teavm.dependency.Linker;
+import org.teavm.dependency.PreciseDependencyAnalyzer;
+import org.teavm.diagnostics.Problem;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ClassReader;
+import org.teavm.model.ClassReaderSource;
+import org.teavm.model.MutableClassHolderSource;
+import org.teavm.model.PreOptimizingClassHolderSource;
+import org.teavm.model.ReferenceCache;
+import org.teavm.model.util.ModelUtils;
+import org.teavm.parsing.ClasspathClassHolderSource;
+import org.teavm.tools.benchmarks.corpus.CollectionsProgram;
+import org.teavm.tools.benchmarks.corpus.HelloProgram;
+import org.teavm.tools.benchmarks.corpus.PiProgram;
+import org.teavm.vm.MemoryBuildTarget;
+import org.teavm.vm.TeaVM;
+import org.teavm.vm.TeaVMBuilder;
+import org.teavm.vm.TeaVMPhase;
+import org.teavm.vm.TeaVMProgressFeedback;
+import org.teavm.vm.TeaVMProgressListener;
+
+/**
+ * Fixed programs that benchmarks compile, together with helpers that bring them to the state expected
+ * by a particular compiler pass. Programs are compiled against the class library on the benchmark classpath.
+ * {@link #PI} is a port of the {@code pi} sample.
+ */
+public final class CompilerCorpus {
+    public static final String HELLO = "hello";
+    public static final String COLLECTIONS = "collections";
+    public static final String PI = "pi";
+
+    private CompilerCorpus() {
+    }
+
+    public static String getEntryPoint(String corpus) {
+        switch (corpus) {
+            case HELLO:
+                return HelloProgram.class.getName();
+            case COLLECTIONS:
+                return CollectionsProgram.class.getName();
+            case PI:
+                return PiProgram.class.getName();
+            default:
+                throw new IllegalArgumentException("Unknown corpus: " + corpus);
+        }
+    }
+
+    public static DependencyAnalyzerFactory getDependencyAnalyzerFactory(String analyzer) {
+        switch (analyzer) {
+            case "precise":
+                return PreciseDependencyAnalyzer::new;
+            case "fast":
+                return FastDependencyAnalyzer::new;
+            default:
+                throw new IllegalArgumentException("Unknown dependency analyzer: " + analyzer);
+        }
+    }
+
+    public static ClassLoader getClassLoader() {
+        return CompilerCorpus.class.getClassLoader();
+    }
+
+    public static ClassReaderSource createClassSource(ReferenceCache referenceCache) {
+        return new PreOptimizingClassHolderSource(new ClasspathClassHolderSource(getClassLoader(), referenceCache));
+    }
+
+    /**
+     * Runs dependency analysis of the given corpus and stops the build right after it.
+     */
+    public static TeaVM analyzeDependencies(ClassReaderSource classSource, String corpus,
+            DependencyAnalyzerFactory analyzerFactory) {
+        var vm = new TeaVMBuilder(new JavaScriptTarget())
+                .setClassLoader(getClassLoader())
+                .setClassSource(classSource)
+                .setDependencyAnalyzerFactory(analyzerFactory)
+                .build();
+        vm.setProgressListener(new TeaVMProgressListener() {
+            @Override
+            public TeaVMProgressFeedback phaseStarted(TeaVMPhase phase, int count) {
+                return phase == TeaVMPhase.DEPENDENCY_ANALYSIS
+                        ? TeaVMProgressFeedback.CONTINUE
+                        : TeaVMProgressFeedback.CANCEL;
+            }
+
+            @Override
+            public TeaVMProgressFeedback progressReached(int progress) {
+                return TeaVMProgressFeedback.CONTINUE;
+            }
+        });
+        vm.installPlugins();
+        vm.setEntryPoint(getEntryPoint(corpus));
+        vm.build(new MemoryBuildTarget(), "classes.js");
+        checkProblems(vm);
+        return vm;
+    }
+
+    /**
+     * Produces reachable classes with linked method bodies, i.e. input of devirtualization and inlining.
+     */
+    public static MutableClassHolderSource link(DependencyInfo dependencyInfo) {
+        var linker = new Linker(dependencyInfo);
+        var classes = new MutableClassHolderSource();
+        for (String className : dependencyInfo.getReachableClasses()) {
+            ClassReader cls = dependencyInfo.getClassSource().get(className);
+            if (cls != null) {
+                ClassHolder copy = ModelUtils.copyClass(cls);
+                classes.putClassHolder(copy);
+                linker.link(copy);
+            }
+        }
+        return classes;
+    }
+
+    public static void checkProblems(TeaVM vm) {
+        List<Problem> problems = vm.getProblemProvider().getSevereProblems();
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Could not compile benchmark corpus: " + problems.get(0).getText());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tools.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.teavm.ast.decompilation.Decompiler;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MutableClassHolderSource;
+import org.teavm.model.ReferenceCache;
+import org.teavm.model.util.DefaultVariableCategoryProvider;
+import org.teavm.model.util.RegisterAllocator;
+
+/**
+ * Decompiles all linked methods of a corpus program into AST, which includes AST optimizations performed
+ * by {@code Optimizer}/{@code OptimizingVisitor}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DecompilerBenchmark {
+    @Param({ CompilerCorpus.HELLO, CompilerCorpus.COLLECTIONS, CompilerCorpus.PI })
+    public String corpus;
+
+    private MutableClassHolderSource classes;
+    private List<MethodHolder> methods = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        var classSource = CompilerCorpus.createClassSource(new ReferenceCache());
+        var vm = CompilerCorpus.analyzeDependencies(classSource, corpus,
+                CompilerCorpus.getDependencyAnalyzerFactory("precise"));
+        classes = CompilerCorpus.link(vm.getDependencyInfo());
+        var registerAllocator = new RegisterAllocator(new DefaultVariableCategoryProvider());
+        for (String className : classes.getClassNames()) {
+            for (MethodHolder method : classes.get(className).getMethods()) {
+                if (method.getProgram() != null && method.getProgram().basicBlockCount() > 0) {
+                    registerAllocator.allocateRegisters(method.getReference(), method.getProgram(), false);
+                    methods.add(method);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void decompile(Blackhole blackhole) {
+        var decompiler = new Decompiler(classes, new HashSet<>(), false);
+        for (MethodHolder method : methods) {
+            blackhole.consume(decompiler.decompileRegular(method));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tools.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teavm.dependency.DependencyAnalyzerFactory;
+import org.teavm.model.ClassReaderSource;
+import org.teavm.model.ReferenceCache;
+
+/**
+ * Runs dependency analysis (including type propagation) of a corpus program. Parsed classes are shared
+ * between invocations, so class parsing is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DependencyAnalysisBenchmark {
+    @Param({ CompilerCorpus.HELLO, CompilerCorpus.COLLECTIONS, CompilerCorpus.PI })
+    public String corpus;
+
+    @Param({ "precise", "fast" })
+    public String analyzer;
+
+    private ClassReaderSource classSource;
+    private DependencyAnalyzerFactory analyzerFactory;
+
+    @Setup
+    public void setup() {
+        classSource = CompilerCorpus.createClassSource(new ReferenceCache());
+        analyzerFactory = CompilerCorpus.getDependencyAnalyzerFactory(analyzer);
+        CompilerCorpus.analyzeDependencies(classSource, corpus, analyzerFactory);
+    }
+
+    @Benchmark
+    public int analyze() {
+        var vm = CompilerCorpus.analyzeDependencies(classSource, corpus, analyzerFactory);
+        return vm.getDependencyInfo().getReachableMethods().size();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tools.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teavm.dependency.DependencyInfo;
+import org.teavm.model.ClassHierarchy;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.MutableClassHolderSource;
+import org.teavm.model.ReferenceCache;
+import org.teavm.model.optimization.DefaultInliningStrategy;
+import org.teavm.model.optimization.Inlining;
+import org.teavm.model.optimization.InliningFilterFactory;
+
+/**
+ * Inlines all linked methods of a corpus program with the same strategies that TeaVM uses for
+ * advanced and full optimization levels.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class InliningBenchmark {
+    @Param({ CompilerCorpus.HELLO, CompilerCorpus.COLLECTIONS, CompilerCorpus.PI })
+    public String corpus;
+
+    @Param({ "ADVANCED", "FULL" })
+    public String level;
+
+    private DependencyInfo dependencyInfo;
+    private MutableClassHolderSource classes;
+
+    @Setup
+    public void setup() {
+        var classSource = CompilerCorpus.createClassSource(new ReferenceCache());
+        var vm = CompilerCorpus.analyzeDependencies(classSource, corpus,
+                CompilerCorpus.getDependencyAnalyzerFactory("precise"));
+        dependencyInfo = vm.getDependencyInfo();
+    }
+
+    @Setup(Level.Invocation)
+    public void link() {
+        classes = CompilerCorpus.link(dependencyInfo);
+    }
+
+    @Benchmark
+    public MutableClassHolderSource inline() {
+        boolean full = level.equals("FULL");
+        var strategy = full
+                ? new DefaultInliningStrategy(20, 7, 3000, false)
+                : new DefaultInliningStrategy(100, 7, 300, true);
+        var inlining = new Inlining(new ClassHierarchy(classes), dependencyInfo, strategy, classes,
+                method -> false, full, InliningFilterFactory.DEFAULT);
+        for (MethodReference methodReference : inlining.getOrder()) {
+            ClassHolder cls = classes.get(methodReference.getClassName());
+            if (cls == null) {
+                continue;
+            }
+            MethodHolder method = cls.getMethod(methodReference.getDescriptor());
+            if (method != null && method.getProgram() != null) {
+                inlining.apply(method.getProgram(), methodReference);
+            }
+        }
+        return classes;
+    }
+}
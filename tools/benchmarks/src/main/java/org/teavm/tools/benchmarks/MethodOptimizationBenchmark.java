@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tools.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teavm.dependency.DependencyInfo;
+import org.teavm.model.ClassHierarchy;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MutableClassHolderSource;
+import org.teavm.model.Program;
+import org.teavm.model.ReferenceCache;
+import org.teavm.model.optimization.ConstantConditionElimination;
+import org.teavm.model.optimization.GlobalValueNumbering;
+import org.teavm.model.optimization.LoopInvariantMotion;
+import org.teavm.model.optimization.MethodOptimization;
+import org.teavm.model.optimization.RedundantNullCheckElimination;
+import org.teavm.model.optimization.RepeatedFieldReadElimination;
+import org.teavm.model.optimization.ScalarReplacement;
+import org.teavm.model.optimization.UnusedVariableElimination;
+import org.teavm.model.util.ProgramUtils;
+
+/**
+ * Runs a single method optimization over all linked methods of a corpus program.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MethodOptimizationBenchmark {
+    @Param({ CompilerCorpus.HELLO, CompilerCorpus.COLLECTIONS, CompilerCorpus.PI })
+    public String corpus;
+
+    @Param({ "GlobalValueNumbering", "LoopInvariantMotion", "RedundantNullCheckElimination",
+            "ConstantConditionElimination", "RepeatedFieldReadElimination", "ScalarReplacement",
+            "UnusedVariableElimination" })
+    public String optimization;
+
+    private DependencyInfo dependencyInfo;
+    private ClassHierarchy hierarchy;
+    private List<MethodHolder> methods = new ArrayList<>();
+    private List<Program> programs = new ArrayList<>();
+    private Supplier<MethodOptimization> optimizationFactory;
+
+    @Setup
+    public void setup() {
+        var classSource = CompilerCorpus.createClassSource(new ReferenceCache());
+        var vm = CompilerCorpus.analyzeDependencies(classSource, corpus,
+                CompilerCorpus.getDependencyAnalyzerFactory("precise"));
+        dependencyInfo = vm.getDependencyInfo();
+        hierarchy = new ClassHierarchy(dependencyInfo.getClassSource());
+        MutableClassHolderSource classes = CompilerCorpus.link(dependencyInfo);
+        for (String className : classes.getClassNames()) {
+            for (MethodHolder method : classes.get(className).getMethods()) {
+                if (method.getProgram() != null && method.getProgram().basicBlockCount() > 0) {
+                    methods.add(method);
+                }
+            }
+        }
+        optimizationFactory = getOptimizationFactory(optimization);
+    }
+
+    @Setup(Level.Invocation)
+    public void copyPrograms() {
+        programs.clear();
+        for (MethodHolder method : methods) {
+            programs.add(ProgramUtils.copy(method.getProgram()));
+        }
+    }
+
+    @Benchmark
+    public int optimize() {
+        int changed = 0;
+        for (int i = 0; i < methods.size(); ++i) {
+            var context = new BenchmarkOptimizationContext(methods.get(i), dependencyInfo, hierarchy);
+            if (optimizationFactory.get().optimize(context, programs.get(i))) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private static Supplier<MethodOptimization> getOptimizationFactory(String name) {
+        switch (name) {
+            case "GlobalValueNumbering":
+                return () -> new GlobalValueNumbering(false);
+            case "LoopInvariantMotion":
+                return LoopInvariantMotion::new;
+            case "RedundantNullCheckElimination":
+                return RedundantNullCheckElimination::new;
+            case "ConstantConditionElimination":
+                return ConstantConditionElimination::new;
+            case "RepeatedFieldReadElimination":
+                return RepeatedFieldReadElimination::new;
+            case "ScalarReplacement":
+                return ScalarReplacement::new;
+            case "UnusedVariableElimination":
+                return UnusedVariableElimination::new;
+            default:
+                throw new IllegalArgumentException("Unknown optimization: " + name);
+        }
+    }
+}
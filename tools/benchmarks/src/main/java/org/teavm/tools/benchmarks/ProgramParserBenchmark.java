@@ -0,0 +1,67 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tools.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.teavm.model.ReferenceCache;
+import org.teavm.parsing.ClasspathClassHolderSource;
+
+/**
+ * Parses all classes reachable from a corpus program from class files into TeaVM model,
+ * which includes bytecode to SSA conversion in {@code ProgramParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ProgramParserBenchmark {
+    @Param({ CompilerCorpus.HELLO, CompilerCorpus.COLLECTIONS, CompilerCorpus.PI })
+    public String corpus;
+
+    private List<String> classNames;
+
+    @Setup
+    public void setup() {
+        var classSource = CompilerCorpus.createClassSource(new ReferenceCache());
+        var vm = CompilerCorpus.analyzeDependencies(classSource, corpus,
+                CompilerCorpus.getDependencyAnalyzerFactory("precise"));
+        classNames = new ArrayList<>(vm.getDependencyInfo().getReachableClasses());
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        var classSource = new ClasspathClassHolderSource(CompilerCorpus.getClassLoader(), new ReferenceCache());
+        for (String className : classNames) {
+            blackhole.consume(classSource.get(className));
+        }
+    }
+}
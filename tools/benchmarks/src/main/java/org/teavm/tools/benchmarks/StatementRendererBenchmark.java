@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tools.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teavm.ast.RegularMethodNode;
+import org.teavm.ast.decompilation.Decompiler;
+import org.teavm.backend.javascript.JSLongRepresentation;
+import org.teavm.backend.javascript.codegen.DefaultAliasProvider;
+import org.teavm.backend.javascript.codegen.DefaultNamingStrategy;
+import org.teavm.backend.javascript.codegen.RememberedSource;
+import org.teavm.backend.javascript.codegen.RememberingSourceWriter;
+import org.teavm.backend.javascript.rendering.MethodBodyRenderer;
+import org.teavm.backend.javascript.rendering.RenderingContext;
+import org.teavm.debugging.information.DummyDebugInformationEmitter;
+import org.teavm.diagnostics.AccumulationDiagnostics;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MutableClassHolderSource;
+import org.teavm.model.ReferenceCache;
+import org.teavm.model.analysis.ClassInitializerInfo;
+import org.teavm.model.util.DefaultVariableCategoryProvider;
+import org.teavm.model.util.RegisterAllocator;
+import org.teavm.vm.TeaVM;
+
+/**
+ * Renders decompiled methods of a corpus program to JavaScript. Methods are decompiled in setup, so this
+ * measures {@code StatementRenderer} together with {@link MethodBodyRenderer}, which declares variables
+ * and delegates method bodies to it. See {@link DecompilerBenchmark} for decompilation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StatementRendererBenchmark {
+    @Param({ CompilerCorpus.HELLO, CompilerCorpus.COLLECTIONS, CompilerCorpus.PI })
+    public String corpus;
+
+    @Param({ "BIGINT", "INT_PAIR" })
+    public String longRepresentation;
+
+    private TeaVM vm;
+    private MutableClassHolderSource classes;
+    private List<RegularMethodNode> methods = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        var classSource = CompilerCorpus.createClassSource(new ReferenceCache());
+        vm = CompilerCorpus.analyzeDependencies(classSource, corpus,
+                CompilerCorpus.getDependencyAnalyzerFactory("precise"));
+        classes = CompilerCorpus.link(vm.getDependencyInfo());
+        var registerAllocator = new RegisterAllocator(new DefaultVariableCategoryProvider());
+        var decompiler = new Decompiler(classes, new HashSet<>(), false);
+        for (String className : classes.getClassNames()) {
+            for (MethodHolder method : classes.get(className).getMethods()) {
+                if (method.getProgram() != null && method.getProgram().basicBlockCount() > 0) {
+                    registerAllocator.allocateRegisters(method.getReference(), method.getProgram(), false);
+                    methods.add(decompiler.decompileRegular(method));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public RememberedSource render() {
+        var dependencyInfo = vm.getDependencyInfo();
+        var naming = new DefaultNamingStrategy(new DefaultAliasProvider(Integer.MAX_VALUE),
+                dependencyInfo.getClassSource());
+        var context = new RenderingContext(new DummyDebugInformationEmitter(), dependencyInfo.getClassSource(),
+                classes, CompilerCorpus.getClassLoader(), vm, new Properties(), naming, dependencyInfo,
+                m -> true, m -> false, ClassInitializerInfo.EMPTY, false) {
+            @Override
+            public String importModule(String name) {
+                return name;
+            }
+        };
+        context.setLongRepresentation(JSLongRepresentation.valueOf(longRepresentation));
+        var writer = new RememberingSourceWriter(false);
+        var renderer = new MethodBodyRenderer(context, new AccumulationDiagnostics(), false, Set.of(), writer);
+        for (RegularMethodNode method : methods) {
+            renderer.setCurrentMethod(method);
+            renderer.render(method, false);
+        }
+        return writer.save();
+    }
+}
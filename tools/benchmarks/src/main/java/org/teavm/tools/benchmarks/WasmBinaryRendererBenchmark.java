@@ -0,0 +1,84 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tools.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teavm.backend.wasm.WasmRuntimeType;
+import org.teavm.backend.wasm.WasmTarget;
+import org.teavm.backend.wasm.model.WasmModule;
+import org.teavm.backend.wasm.render.WasmBinaryRenderer;
+import org.teavm.backend.wasm.render.WasmBinaryVersion;
+import org.teavm.backend.wasm.render.WasmBinaryWriter;
+import org.teavm.model.ReferenceCache;
+import org.teavm.vm.MemoryBuildTarget;
+import org.teavm.vm.TeaVMBuilder;
+import org.teavm.vm.TeaVMOptimizationLevel;
+
+/**
+ * Encodes the WebAssembly module of a corpus program in binary format. The module is generated once
+ * by {@link WasmTarget}, so only {@link WasmBinaryRenderer} is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class WasmBinaryRendererBenchmark {
+    @Param({ CompilerCorpus.HELLO, CompilerCorpus.COLLECTIONS, CompilerCorpus.PI })
+    public String corpus;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    private WasmModule module;
+
+    @Setup
+    public void setup() {
+        var target = new WasmTarget();
+        target.setRuntimeType(WasmRuntimeType.TEAVM);
+        target.setModuleListener(m -> module = m);
+        var vm = new TeaVMBuilder(target)
+                .setClassLoader(CompilerCorpus.getClassLoader())
+                .setClassSource(CompilerCorpus.createClassSource(new ReferenceCache()))
+                .build();
+        vm.setOptimizationLevel(TeaVMOptimizationLevel.ADVANCED);
+        vm.installPlugins();
+        vm.setEntryPoint(CompilerCorpus.getEntryPoint(corpus));
+        vm.build(new MemoryBuildTarget(), "classes.wasm");
+        CompilerCorpus.checkProblems(vm);
+    }
+
+    @Benchmark
+    public byte[] render() {
+        var writer = new WasmBinaryWriter();
+        var renderer = new WasmBinaryRenderer(writer, WasmBinaryVersion.V_0x1, false, null, null, null, null, null);
+        renderer.setThreads(threads);
+        renderer.render(module);
+        return writer.getData();
+    }
+}
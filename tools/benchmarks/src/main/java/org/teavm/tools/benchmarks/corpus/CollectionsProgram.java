@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tools.benchmarks.corpus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Exercises a representative part of the class library: collections, streams, lambdas, string formatting,
+ * exceptions and virtual calls with several receivers.
+ */
+public final class CollectionsProgram {
+    private CollectionsProgram() {
+    }
+
+    public static void main(String[] args) {
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            shapes.add(i % 3 == 0 ? new Circle(i) : i % 3 == 1 ? new Square(i) : new Rectangle(i, i + 1));
+        }
+
+        Map<String, List<Shape>> byName = shapes.stream().collect(Collectors.groupingBy(Shape::name));
+        Map<String, Double> totalArea = new TreeMap<>();
+        for (var entry : byName.entrySet()) {
+            totalArea.put(entry.getKey(), entry.getValue().stream().mapToDouble(Shape::area).sum());
+        }
+        for (var entry : totalArea.entrySet()) {
+            System.out.println(String.format("%s: %.2f", entry.getKey(), entry.getValue()));
+        }
+
+        var counts = new HashMap<Character, Integer>();
+        for (char c : String.join(" ", args).toCharArray()) {
+            counts.merge(c, 1, Integer::sum);
+        }
+        var keys = new ArrayList<>(counts.keySet());
+        Collections.sort(keys);
+        System.out.println(keys + " " + new LinkedHashSet<>(Arrays.asList(args)));
+
+        Optional<Shape> largest = shapes.stream().max((a, b) -> Double.compare(a.area(), b.area()));
+        System.out.println(largest.map(Shape::name).orElse("none"));
+
+        try {
+            System.out.println(Integer.parseInt(args.length > 0 ? args[0] : "not a number"));
+        } catch (NumberFormatException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    interface Shape {
+        double area();
+
+        String name();
+    }
+
+    static class Circle implements Shape {
+        private final double radius;
+
+        Circle(double radius) {
+            this.radius = radius;
+        }
+
+        @Override
+        public double area() {
+            return Math.PI * radius * radius;
+        }
+
+        @Override
+        public String name() {
+            return "circle";
+        }
+    }
+
+    static class Square implements Shape {
+        private final double side;
+
+        Square(double side) {
+            this.side = side;
+        }
+
+        @Override
+        public double area() {
+            return side * side;
+        }
+
+        @Override
+        public String name() {
+            return "square";
+        }
+    }
+
+    static class Rectangle implements Shape {
+        private final double width;
+        private final double height;
+
+        Rectangle(double width, double height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public double area() {
+            return width * height;
+        }
+
+        @Override
+        public String name() {
+            return "rectangle";
+        }
+    }
+}
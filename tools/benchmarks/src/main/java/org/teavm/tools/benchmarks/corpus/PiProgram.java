@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tools.benchmarks.corpus;
+
+import java.math.BigInteger;
+
+/**
+ * Port of the {@code pi} sample: digits of pi computed by a spigot algorithm over {@link BigInteger}.
+ * Samples are separate Gradle builds, so they can't be put on the benchmark classpath directly.
+ */
+public final class PiProgram {
+    private static final int LINE_LENGTH = 10;
+
+    private PiProgram() {
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int j = 0;
+        var digits = new PiDigitSpigot();
+        while (n > 0) {
+            int count = Math.min(n, LINE_LENGTH);
+            var sb = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                sb.append(digits.next());
+            }
+            for (int i = count; i < LINE_LENGTH; i++) {
+                sb.append(' ');
+            }
+            j += count;
+            System.out.println(sb.append("\t:").append(j));
+            n -= LINE_LENGTH;
+        }
+    }
+
+    static class PiDigitSpigot {
+        private Transformation z = new Transformation(1, 0, 0, 1);
+        private Transformation x = new Transformation(0, 0, 0, 0);
+        private Transformation inverse = new Transformation(0, 0, 0, 0);
+
+        int next() {
+            while (true) {
+                int y = z.extract(3);
+                if (y == z.extract(4)) {
+                    z = inverse.qrst(10, -10 * y, 0, 1).compose(z);
+                    return y;
+                }
+                z = z.compose(x.next());
+            }
+        }
+    }
+
+    static class Transformation {
+        private BigInteger q;
+        private BigInteger r;
+        private BigInteger s;
+        private BigInteger t;
+        private int k;
+
+        Transformation(int q, int r, int s, int t) {
+            qrst(q, r, s, t);
+        }
+
+        private Transformation(BigInteger q, BigInteger r, BigInteger s, BigInteger t) {
+            this.q = q;
+            this.r = r;
+            this.s = s;
+            this.t = t;
+        }
+
+        Transformation next() {
+            k++;
+            q = BigInteger.valueOf(k);
+            r = BigInteger.valueOf(4 * k + 2);
+            s = BigInteger.ZERO;
+            t = BigInteger.valueOf(2 * k + 1);
+            return this;
+        }
+
+        int extract(int j) {
+            var bigj = BigInteger.valueOf(j);
+            var numerator = q.multiply(bigj).add(r);
+            var denominator = s.multiply(bigj).add(t);
+            return numerator.divide(denominator).intValue();
+        }
+
+        Transformation qrst(int q, int r, int s, int t) {
+            this.q = BigInteger.valueOf(q);
+            this.r = BigInteger.valueOf(r);
+            this.s = BigInteger.valueOf(s);
+            this.t = BigInteger.valueOf(t);
+            k = 0;
+            return this;
+        }
+
+        Transformation compose(Transformation a) {
+            return new Transformation(
+                    q.multiply(a.q),
+                    q.multiply(a.r).add(r.multiply(a.t)),
+                    s.multiply(a.q).add(t.multiply(a.s)),
+                    s.multiply(a.r).add(t.multiply(a.t)));
+        }
+    }
+}
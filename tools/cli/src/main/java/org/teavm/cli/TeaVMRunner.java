@@ -28,8 +28,10 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.teavm.backend.javascript.JSLongRepresentation;
 import org.teavm.backend.javascript.JSModuleType;
 import org.teavm.backend.wasm.render.WasmBinaryVersion;
+import org.teavm.cache.DirectoryRemoteCacheStore;
 import org.teavm.tooling.ConsoleTeaVMToolLog;
 import org.teavm.tooling.TeaVMProblemRenderer;
 import org.teavm.tooling.TeaVMTargetType;
@@ -87,6 +89,36 @@ public final class TeaVMRunner {
                 .hasArg()
                 .argName("number")
                 .build());
+        options.addOption(Option.builder()
+                .longOpt("optimization-threads")
+                .argName("number")
+                .hasArg()
+                .desc("Number of threads used to optimize methods (1 by default)")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("decompilation-threads")
+                .argName("number")
+                .hasArg()
+                .desc("Number of threads used to decompile methods to JavaScript (1 by default)")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("wasm-function-threads")
+                .argName("number")
+                .hasArg()
+                .desc("Number of threads used to optimize and encode WebAssembly functions (1 by default)")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("class-prefetch-threads")
+                .argName("number")
+                .hasArg()
+                .desc("Number of threads used to load classes ahead of dependency analysis (0 by default)")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("build-metrics")
+                .argName("file")
+                .hasArg()
+                .desc("Write timing, allocation and cache statistics of compiler phases to JSON file")
+                .build());
         options.addOption(Option.builder("g")
                 .desc("Generate debug information")
                 .longOpt("debug")
@@ -105,6 +137,24 @@ public final class TeaVMRunner {
                 .desc("Incremental build cache directory")
                 .longOpt("cachedir")
                 .build());
+        options.addOption(Option.builder()
+                .desc("Store incremental build cache of methods in a single memory-mapped file")
+                .longOpt("single-file-cache")
+                .build());
+        options.addOption(Option.builder()
+                .desc("Detect changed classes in incremental build cache by content instead of modification date")
+                .longOpt("content-hash-cache")
+                .build());
+        options.addOption(Option.builder()
+                .argName("directory")
+                .hasArg()
+                .desc("Shared directory to seed incremental build cache from")
+                .longOpt("remote-cache")
+                .build());
+        options.addOption(Option.builder()
+                .desc("Publish incremental build cache to shared directory after build")
+                .longOpt("publish-remote-cache")
+                .build());
         options.addOption(Option.builder("w")
                 .desc("Wait for command after compilation, in order to enable hot recompilation")
                 .longOpt("wait")
@@ -131,6 +181,15 @@ public final class TeaVMRunner {
                 .longOpt("wasm-use-exceptions")
                 .desc("Specifies that WebAssembly exception handling instructions can be used")
                 .build());
+        options.addOption(Option.builder()
+                .longOpt("wasm-use-simd")
+                .desc("Specifies that WebAssembly SIMD instructions can be used to vectorize loops over arrays")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("wasm-startup-order")
+                .desc("Places WebAssembly functions in order they are expected to be called, so that startup "
+                        + "code is compiled first while module is streamed")
+                .build());
         options.addOption(Option.builder("e")
                 .longOpt("entry-point")
                 .argName("name")
@@ -155,6 +214,31 @@ public final class TeaVMRunner {
                 .hasArg()
                 .desc("JavaScript module type (umd, common-js, none, es2015).")
                 .build());
+        options.addOption(Option.builder()
+                .longOpt("js-code-splitting")
+                .desc("Move code reachable from @SplitPoint methods to lazily loaded modules (requires es2015)")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("js-class-fragments")
+                .desc("Write each class to a separate content-addressed module, so that incremental builds "
+                        + "rewrite only changed classes (requires es2015)")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("js-long-representation")
+                .argName("representation")
+                .hasArg()
+                .desc("Representation of Java long values in JavaScript (bigint, int-pair).")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("js-profile-instrumentation")
+                .desc("Collect execution profile in generated JavaScript, available via JSProfiler.dump()")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("profile")
+                .argName("file")
+                .hasArg()
+                .desc("Use execution profile collected by instrumented build to guide optimizations")
+                .build());
     }
 
     private TeaVMRunner(CommandLine commandLine) {
@@ -239,12 +323,19 @@ public final class TeaVMRunner {
         if (commandLine.hasOption("f")) {
             tool.setTargetFileName(commandLine.getOptionValue("f"));
         }
+        if (commandLine.hasOption("build-metrics")) {
+            tool.setBuildMetricsFile(new File(commandLine.getOptionValue("build-metrics")));
+        }
+        if (commandLine.hasOption("profile")) {
+            tool.setProfileFile(new File(commandLine.getOptionValue("profile")));
+        }
     }
 
     private void parseGenerationOptions() {
         tool.setObfuscated(commandLine.hasOption("m"));
         tool.setStrict(commandLine.hasOption("strict"));
         parseJsModuleOption();
+        parseJsLongOption();
 
         if (commandLine.hasOption("max-toplevel-names")) {
             try {
@@ -257,6 +348,15 @@ public final class TeaVMRunner {
     }
 
     private void parseJsModuleOption() {
+        if (commandLine.hasOption("js-code-splitting")) {
+            tool.setJsCodeSplitting(true);
+        }
+        if (commandLine.hasOption("js-class-fragments")) {
+            tool.setJsClassFragments(true);
+        }
+        if (commandLine.hasOption("js-profile-instrumentation")) {
+            tool.setJsProfileInstrumentation(true);
+        }
         if (!commandLine.hasOption("js-module-type")) {
             return;
         }
@@ -279,6 +379,23 @@ public final class TeaVMRunner {
         }
     }
 
+    private void parseJsLongOption() {
+        if (!commandLine.hasOption("js-long-representation")) {
+            return;
+        }
+        switch (commandLine.getOptionValue("js-long-representation")) {
+            case "bigint":
+                tool.setJsLongRepresentation(JSLongRepresentation.BIGINT);
+                break;
+            case "int-pair":
+                tool.setJsLongRepresentation(JSLongRepresentation.INT_PAIR);
+                break;
+            default:
+                System.err.print("Wrong JS long representation");
+                printUsage();
+        }
+    }
+
     private void parseDebugOptions() {
         if (commandLine.hasOption('g')) {
             tool.setDebugInformationGenerated(true);
@@ -319,6 +436,62 @@ public final class TeaVMRunner {
                     printUsage();
             }
         }
+        if (commandLine.hasOption("optimization-threads")) {
+            int threads;
+            try {
+                threads = Integer.parseInt(commandLine.getOptionValue("optimization-threads"));
+            } catch (NumberFormatException e) {
+                threads = 0;
+            }
+            if (threads < 1) {
+                System.err.print("Wrong number of optimization threads");
+                printUsage();
+                return;
+            }
+            tool.setOptimizationThreads(threads);
+        }
+        if (commandLine.hasOption("decompilation-threads")) {
+            int threads;
+            try {
+                threads = Integer.parseInt(commandLine.getOptionValue("decompilation-threads"));
+            } catch (NumberFormatException e) {
+                threads = 0;
+            }
+            if (threads < 1) {
+                System.err.print("Wrong number of decompilation threads");
+                printUsage();
+                return;
+            }
+            tool.setDecompilationThreads(threads);
+        }
+        if (commandLine.hasOption("wasm-function-threads")) {
+            int threads;
+            try {
+                threads = Integer.parseInt(commandLine.getOptionValue("wasm-function-threads"));
+            } catch (NumberFormatException e) {
+                threads = 0;
+            }
+            if (threads < 1) {
+                System.err.print("Wrong number of WebAssembly function threads");
+                printUsage();
+                return;
+            }
+            tool.setWasmFunctionThreads(threads);
+        }
+        if (commandLine.hasOption("class-prefetch-threads")) {
+            int threads;
+            try {
+                threads = Integer.parseInt(commandLine.getOptionValue("class-prefetch-threads"));
+            } catch (NumberFormatException e) {
+                threads = -1;
+            }
+            if (threads < 0) {
+                System.err.print("Wrong number of class prefetch threads");
+                printUsage();
+                return;
+            }
+            tool.setClassPrefetchThreads(threads);
+        }
     }
 
     private void parseIncrementalOptions() {
@@ -330,6 +503,17 @@ public final class TeaVMRunner {
         } else {
             tool.setCacheDirectory(new File(tool.getTargetDirectory(), "teavm-cache"));
         }
+        if (commandLine.hasOption("single-file-cache")) {
+            tool.setSingleFileCache(true);
+        }
+        if (commandLine.hasOption("content-hash-cache")) {
+            tool.setContentHashCacheValidation(true);
+        }
+        if (commandLine.hasOption("remote-cache")) {
+            tool.setRemoteCacheStore(new DirectoryRemoteCacheStore(new File(
+                    commandLine.getOptionValue("remote-cache"))));
+            tool.setRemoteCachePublished(commandLine.hasOption("publish-remote-cache"));
+        }
     }
 
     private void parseClassPathOptions() {
@@ -359,6 +543,12 @@ public final class TeaVMRunner {
         if (commandLine.hasOption("wasm-use-exceptions")) {
             tool.setWasmExceptionsUsed(true);
         }
+        if (commandLine.hasOption("wasm-use-simd")) {
+            tool.setWasmSimdUsed(true);
+        }
+        if (commandLine.hasOption("wasm-startup-order")) {
+            tool.setWasmStartupOrdering(true);
+        }
     }
 
     private void parseCOptions() {
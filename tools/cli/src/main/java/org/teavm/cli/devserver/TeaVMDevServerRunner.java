@@ -87,6 +87,11 @@ public final class TeaVMDevServerRunner {
                 .longOpt("js-module-type")
                 .desc("JS module type (umd, common-js, es2015 or none)")
                 .build());
+        options.addOption(Option.builder()
+                .longOpt("js-class-fragments")
+                .desc("Write each class to a separate module, so that browser reloads only changed classes "
+                        + "(requires es2015)")
+                .build());
         options.addOption(Option.builder()
                 .argName("number")
                 .hasArg()
@@ -201,6 +206,7 @@ public final class TeaVMDevServerRunner {
             }
             devServer.setJsModuleType(type);
         }
+        devServer.setJsClassFragments(commandLine.hasOption("js-class-fragments"));
 
         if (commandLine.hasOption("proxy-url")) {
             devServer.setProxyUrl(commandLine.getOptionValue("proxy-url"));
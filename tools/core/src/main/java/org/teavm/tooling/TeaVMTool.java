@@ -15,16 +15,24 @@
  */
 package org.teavm.tooling;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.Flushable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Writer;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -32,24 +40,39 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.teavm.backend.c.CTarget;
 import org.teavm.backend.c.generate.CNameProvider;
 import org.teavm.backend.c.generate.ShorteningFileNameProvider;
 import org.teavm.backend.c.generate.SimpleFileNameProvider;
+import org.teavm.backend.javascript.JSLongRepresentation;
 import org.teavm.backend.javascript.JSModuleType;
 import org.teavm.backend.javascript.JavaScriptTarget;
 import org.teavm.backend.wasm.WasmRuntimeType;
 import org.teavm.backend.wasm.WasmTarget;
 import org.teavm.backend.wasm.render.WasmBinaryVersion;
 import org.teavm.cache.AlwaysStaleCacheStatus;
+import org.teavm.cache.CacheArchive;
+import org.teavm.cache.CacheKeyBuilder;
+import org.teavm.cache.CacheMetrics;
 import org.teavm.cache.CacheStatus;
+import org.teavm.cache.CountingMethodNodeCache;
 import org.teavm.cache.DiskCachedClassReaderSource;
 import org.teavm.cache.DiskMethodNodeCache;
 import org.teavm.cache.DiskProgramCache;
 import org.teavm.cache.EmptyProgramCache;
 import org.teavm.cache.FileSymbolTable;
+import org.teavm.cache.MappedCacheStore;
+import org.teavm.cache.MappedMethodNodeCache;
+import org.teavm.cache.MappedProgramCache;
+import org.teavm.cache.MethodNodeCache;
+import org.teavm.cache.RemoteCacheStore;
 import org.teavm.debugging.information.DebugInformation;
 import org.teavm.debugging.information.DebugInformationBuilder;
+import org.teavm.debugging.information.SourceFileResolver;
+import org.teavm.debugging.information.SourceMapsEmitter;
 import org.teavm.debugging.information.SourceMapsWriter;
 import org.teavm.dependency.DependencyInfo;
 import org.teavm.dependency.FastDependencyAnalyzer;
@@ -59,13 +82,17 @@ import org.teavm.model.ClassHolderSource;
 import org.teavm.model.ClassHolderTransformer;
 import org.teavm.model.ClassReader;
 import org.teavm.model.PreOptimizingClassHolderSource;
+import org.teavm.model.ProgramCache;
 import org.teavm.model.ReferenceCache;
+import org.teavm.model.profile.ExecutionProfile;
 import org.teavm.model.transformation.AssertionRemoval;
 import org.teavm.parsing.ClasspathClassHolderSource;
 import org.teavm.tooling.sources.SourceFileProvider;
 import org.teavm.vm.BuildTarget;
 import org.teavm.vm.DirectoryBuildTarget;
+import org.teavm.vm.IncrementalDirectoryBuildTarget;
 import org.teavm.vm.TeaVM;
+import org.teavm.vm.TeaVMBuildMetrics;
 import org.teavm.vm.TeaVMBuilder;
 import org.teavm.vm.TeaVMOptimizationLevel;
 import org.teavm.vm.TeaVMProgressListener;
@@ -73,10 +100,16 @@ import org.teavm.vm.TeaVMTarget;
 
 public class TeaVMTool {
     private File targetDirectory = new File(".");
+    private IncrementalDirectoryBuildTarget fragmentBuildTarget;
     private TeaVMTargetType targetType = TeaVMTargetType.JAVASCRIPT;
     private String targetFileName = "";
     private boolean obfuscated = true;
     private JSModuleType jsModuleType = JSModuleType.UMD;
+    private boolean jsCodeSplitting;
+    private boolean jsClassFragments;
+    private JSLongRepresentation jsLongRepresentation = JSLongRepresentation.BIGINT;
+    private boolean jsProfileInstrumentation;
+    private File profileFile;
     private boolean strict;
     private int maxTopLevelNames = 80_000;
     private String mainClass;
@@ -92,8 +125,13 @@ public class TeaVMTool {
     private TeaVMToolLog log = new EmptyTeaVMToolLog();
     private ClassLoader classLoader = TeaVMTool.class.getClassLoader();
     private DiskCachedClassReaderSource cachedClassSource;
-    private DiskProgramCache programCache;
-    private DiskMethodNodeCache astCache;
+    private boolean singleFileCache;
+    private boolean contentHashCacheValidation;
+    private RemoteCacheStore remoteCacheStore;
+    private boolean remoteCachePublished;
+    private ProgramCache programCache;
+    private MethodNodeCache astCache;
+    private List<Flushable> methodCaches = new ArrayList<>();
     private FileSymbolTable symbolTable;
     private FileSymbolTable fileTable;
     private FileSymbolTable variableTable;
@@ -102,12 +140,21 @@ public class TeaVMTool {
     private TeaVM vm;
     private boolean fastDependencyAnalysis;
     private TeaVMOptimizationLevel optimizationLevel = TeaVMOptimizationLevel.SIMPLE;
+    private int optimizationThreads = 1;
+    private int decompilationThreads = 1;
+    private int wasmFunctionThreads = 1;
+    private int classPrefetchThreads;
+    private File buildMetricsFile;
     private List<SourceFileProvider> sourceFileProviders = new ArrayList<>();
     private DebugInformationBuilder debugEmitter;
+    private SourceMapsEmitter sourceMapsEmitter;
+    private Writer sourceMapsOutput;
     private JavaScriptTarget javaScriptTarget;
     private WasmTarget webAssemblyTarget;
     private WasmBinaryVersion wasmVersion = WasmBinaryVersion.V_0x1;
     private boolean wasmExceptionsUsed;
+    private boolean wasmSimdUsed;
+    private boolean wasmStartupOrdering;
     private CTarget cTarget;
     private Set<File> generatedFiles = new HashSet<>();
     private int minHeapSize = 4 * (1 << 20);
@@ -123,6 +170,7 @@ public class TeaVMTool {
 
     public void setTargetDirectory(File targetDirectory) {
         this.targetDirectory = targetDirectory;
+        fragmentBuildTarget = null;
     }
 
     public void setTargetFileName(String targetFileName) {
@@ -137,6 +185,54 @@ public class TeaVMTool {
         this.jsModuleType = jsModuleType;
     }
 
+    public boolean isJsCodeSplitting() {
+        return jsCodeSplitting;
+    }
+
+    public void setJsCodeSplitting(boolean jsCodeSplitting) {
+        this.jsCodeSplitting = jsCodeSplitting;
+    }
+
+    public boolean isJsClassFragments() {
+        return jsClassFragments;
+    }
+
+    public void setJsClassFragments(boolean jsClassFragments) {
+        this.jsClassFragments = jsClassFragments;
+    }
+
+    public JSLongRepresentation getJsLongRepresentation() {
+        return jsLongRepresentation;
+    }
+
+    public void setJsLongRepresentation(JSLongRepresentation jsLongRepresentation) {
+        this.jsLongRepresentation = jsLongRepresentation;
+    }
+
+    public boolean isJsProfileInstrumentation() {
+        return jsProfileInstrumentation;
+    }
+
+    /**
+     * Specifies whether generated JavaScript should collect execution profile, see
+     * {@link org.teavm.backend.javascript.profile.JSProfiler}.
+     */
+    public void setJsProfileInstrumentation(boolean jsProfileInstrumentation) {
+        this.jsProfileInstrumentation = jsProfileInstrumentation;
+    }
+
+    public File getProfileFile() {
+        return profileFile;
+    }
+
+    /**
+     * Sets file with execution profile collected by an instrumented build, which guides
+     * devirtualization and inlining. Ignored by builds that don't optimize.
+     */
+    public void setProfileFile(File profileFile) {
+        this.profileFile = profileFile;
+    }
+
     public void setStrict(boolean strict) {
         this.strict = strict;
     }
@@ -181,6 +277,42 @@ public class TeaVMTool {
         this.cacheDirectory = cacheDirectory;
     }
 
+    public boolean isSingleFileCache() {
+        return singleFileCache;
+    }
+
+    public void setSingleFileCache(boolean singleFileCache) {
+        this.singleFileCache = singleFileCache;
+    }
+
+    public boolean isContentHashCacheValidation() {
+        return contentHashCacheValidation;
+    }
+
+    public void setContentHashCacheValidation(boolean contentHashCacheValidation) {
+        this.contentHashCacheValidation = contentHashCacheValidation;
+    }
+
+    public RemoteCacheStore getRemoteCacheStore() {
+        return remoteCacheStore;
+    }
+
+    /**
+     * Sets shared store of incremental build caches. When local cache directory is empty, it's seeded
+     * from the store. Since seeded cache comes from another machine, classes are validated by content.
+     */
+    public void setRemoteCacheStore(RemoteCacheStore remoteCacheStore) {
+        this.remoteCacheStore = remoteCacheStore;
+    }
+
+    public boolean isRemoteCachePublished() {
+        return remoteCachePublished;
+    }
+
+    public void setRemoteCachePublished(boolean remoteCachePublished) {
+        this.remoteCachePublished = remoteCachePublished;
+    }
+
     public boolean isSourceMapsFileGenerated() {
         return sourceMapsFileGenerated;
     }
@@ -244,6 +376,54 @@ public class TeaVMTool {
         this.optimizationLevel = optimizationLevel;
     }
 
+    public int getOptimizationThreads() {
+        return optimizationThreads;
+    }
+
+    public void setOptimizationThreads(int optimizationThreads) {
+        this.optimizationThreads = optimizationThreads;
+    }
+
+    public int getDecompilationThreads() {
+        return decompilationThreads;
+    }
+
+    public void setDecompilationThreads(int decompilationThreads) {
+        this.decompilationThreads = decompilationThreads;
+    }
+
+    public int getWasmFunctionThreads() {
+        return wasmFunctionThreads;
+    }
+
+    public void setWasmFunctionThreads(int wasmFunctionThreads) {
+        this.wasmFunctionThreads = wasmFunctionThreads;
+    }
+
+    public int getClassPrefetchThreads() {
+        return classPrefetchThreads;
+    }
+
+    public void setClassPrefetchThreads(int classPrefetchThreads) {
+        this.classPrefetchThreads = classPrefetchThreads;
+    }
+
+    public File getBuildMetricsFile() {
+        return buildMetricsFile;
+    }
+
+    /**
+     * Sets file to write build metrics to in JSON format (see {@link TeaVMBuildMetrics}).
+     * If {@code null}, metrics are only available through {@link #getBuildMetrics()}.
+     */
+    public void setBuildMetricsFile(File buildMetricsFile) {
+        this.buildMetricsFile = buildMetricsFile;
+    }
+
+    public TeaVMBuildMetrics getBuildMetrics() {
+        return vm != null ? vm.getBuildMetrics() : null;
+    }
+
     public boolean isFastDependencyAnalysis() {
         return fastDependencyAnalysis;
     }
@@ -280,6 +460,14 @@ public class TeaVMTool {
         this.wasmExceptionsUsed = wasmExceptionsUsed;
     }
 
+    public void setWasmSimdUsed(boolean wasmSimdUsed) {
+        this.wasmSimdUsed = wasmSimdUsed;
+    }
+
+    public void setWasmStartupOrdering(boolean wasmStartupOrdering) {
+        this.wasmStartupOrdering = wasmStartupOrdering;
+    }
+
     public void setHeapDump(boolean heapDump) {
         this.heapDump = heapDump;
     }
@@ -347,11 +535,16 @@ public class TeaVMTool {
         javaScriptTarget.setObfuscated(obfuscated);
         javaScriptTarget.setStrict(strict);
         javaScriptTarget.setMaxTopLevelNames(maxTopLevelNames);
+        javaScriptTarget.setDecompilationThreads(decompilationThreads);
 
-        debugEmitter = debugInformationGenerated || sourceMapsFileGenerated
-                ? new DebugInformationBuilder(referenceCache) : null;
+        debugEmitter = debugInformationGenerated ? new DebugInformationBuilder(referenceCache) : null;
+        sourceMapsEmitter = null;
         javaScriptTarget.setDebugEmitter(debugEmitter);
         javaScriptTarget.setModuleType(jsModuleType);
+        javaScriptTarget.setCodeSplitting(jsCodeSplitting);
+        javaScriptTarget.setClassFragments(jsClassFragments);
+        javaScriptTarget.setLongRepresentation(jsLongRepresentation);
+        javaScriptTarget.setProfileInstrumentation(jsProfileInstrumentation);
 
         return javaScriptTarget;
     }
@@ -366,6 +559,9 @@ public class TeaVMTool {
         webAssemblyTarget.setMaxHeapSize(maxHeapSize);
         webAssemblyTarget.setObfuscated(obfuscated);
         webAssemblyTarget.setExceptionsUsed(wasmExceptionsUsed);
+        webAssemblyTarget.setSimdUsed(wasmSimdUsed);
+        webAssemblyTarget.setFunctionThreads(wasmFunctionThreads);
+        webAssemblyTarget.setStartupOrdering(wasmStartupOrdering);
         return webAssemblyTarget;
     }
 
@@ -395,29 +591,41 @@ public class TeaVMTool {
     }
 
     public void generate() throws TeaVMToolException {
+        ExecutorService prefetchExecutor = classPrefetchThreads > 0
+                ? Executors.newFixedThreadPool(classPrefetchThreads, runnable -> {
+                    var thread = new Thread(runnable, "teavm-class-prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
         try {
             cancelled = false;
             log.info("Running TeaVM");
             referenceCache = new ReferenceCache();
             TeaVMBuilder vmBuilder = new TeaVMBuilder(prepareTarget());
             CacheStatus cacheStatus;
+            CacheMetrics astCacheMetrics = null;
             vmBuilder.setReferenceCache(referenceCache);
             if (incremental) {
+                seedCacheFromRemoteStore();
                 cacheDirectory.mkdirs();
                 symbolTable = new FileSymbolTable(new File(cacheDirectory, "symbols"));
                 fileTable = new FileSymbolTable(new File(cacheDirectory, "files"));
                 variableTable = new FileSymbolTable(new File(cacheDirectory, "variables"));
                 ClasspathClassHolderSource innerClassSource = new ClasspathClassHolderSource(classLoader,
-                        referenceCache);
+                        referenceCache, prefetchExecutor);
                 ClassHolderSource classSource = new PreOptimizingClassHolderSource(innerClassSource);
                 cachedClassSource = new DiskCachedClassReaderSource(cacheDirectory, referenceCache, symbolTable,
                         fileTable, variableTable, classSource, innerClassSource);
-                programCache = new DiskProgramCache(cacheDirectory, referenceCache, symbolTable, fileTable,
-                        variableTable);
+                if (contentHashCacheValidation || remoteCacheStore != null) {
+                    cachedClassSource.setContentHashProvider(innerClassSource);
+                }
+                methodCaches.clear();
+                createProgramCache();
                 if (targetType == TeaVMTargetType.JAVASCRIPT) {
-                    astCache = new DiskMethodNodeCache(cacheDirectory, referenceCache, symbolTable, fileTable,
-                            variableTable);
-                    javaScriptTarget.setAstCache(astCache);
+                    createAstCache();
+                    astCacheMetrics = new CacheMetrics();
+                    javaScriptTarget.setAstCache(new CountingMethodNodeCache(astCache, astCacheMetrics));
                 }
                 try {
                     symbolTable.update();
@@ -430,7 +638,7 @@ public class TeaVMTool {
                 cacheStatus = cachedClassSource;
             } else {
                 vmBuilder.setClassLoader(classLoader).setClassSource(new PreOptimizingClassHolderSource(
-                        new ClasspathClassHolderSource(classLoader, referenceCache)));
+                        new ClasspathClassHolderSource(classLoader, referenceCache, prefetchExecutor)));
                 cacheStatus = AlwaysStaleCacheStatus.INSTANCE;
             }
 
@@ -439,6 +647,7 @@ public class TeaVMTool {
                     : PreciseDependencyAnalyzer::new);
             vmBuilder.setObfuscated(obfuscated);
             vmBuilder.setStrict(strict);
+            vmBuilder.setOptimizationThreads(optimizationThreads);
 
             vm = vmBuilder.build();
             if (progressListener != null) {
@@ -458,6 +667,12 @@ public class TeaVMTool {
             if (incremental) {
                 vm.addVirtualMethods(m -> true);
             }
+            if (profileFile != null) {
+                try (Reader reader = new InputStreamReader(new FileInputStream(profileFile),
+                        StandardCharsets.UTF_8)) {
+                    vm.setProfile(ExecutionProfile.read(reader));
+                }
+            }
 
             vm.installPlugins();
             for (ClassHolderTransformer transformer : resolveTransformers()) {
@@ -476,9 +691,18 @@ public class TeaVMTool {
                 System.exit(-1);
             }
 
-            BuildTarget buildTarget = new DirectoryBuildTarget(targetDirectory);
             String outputName = getResolvedTargetFileName();
+            if (targetType == TeaVMTargetType.JAVASCRIPT && sourceMapsFileGenerated && !debugInformationGenerated) {
+                startSourceMaps();
+            }
+            BuildTarget buildTarget = createBuildTarget(outputName);
             vm.build(buildTarget, outputName);
+            if (fragmentBuildTarget != null) {
+                fragmentBuildTarget.reset();
+            }
+            if (astCacheMetrics != null) {
+                vm.getBuildMetrics().addCache("ast", astCacheMetrics);
+            }
             if (vm.wasCancelled()) {
                 log.info("Build cancelled");
                 cancelled = true;
@@ -505,23 +729,196 @@ public class TeaVMTool {
             }
 
             if (incremental) {
-                programCache.flush();
-                if (astCache != null) {
-                    astCache.flush();
+                for (Flushable cache : methodCaches) {
+                    cache.flush();
                 }
                 cachedClassSource.flush();
                 symbolTable.flush();
                 fileTable.flush();
                 variableTable.flush();
                 log.info("Cache updated");
+                if (remoteCacheStore != null && remoteCachePublished) {
+                    publishCacheToRemoteStore();
+                }
             }
 
             printStats();
+            writeBuildMetrics();
         } catch (IOException e) {
             throw new TeaVMToolException("IO error occurred", e);
+        } finally {
+            if (prefetchExecutor != null) {
+                // Dropped tasks are never waited for, class mapper loads such classes on requesting thread
+                prefetchExecutor.shutdownNow();
+            }
+            closeSourceMaps();
+        }
+    }
+
+    /**
+     * Returns key which identifies cache produced by this tool in {@link RemoteCacheStore}. The key covers
+     * every option that affects content of cached classes, programs and ASTs, so that builds with
+     * different options never share a remote cache.
+     */
+    public String getRemoteCacheKey() {
+        CacheKeyBuilder key = new CacheKeyBuilder()
+                .add("teavm", TeaVMTool.class.getPackage().getImplementationVersion())
+                .add("target", targetType)
+                .add("strict", strict)
+                .add("obfuscated", obfuscated)
+                .add("assertionsRemoved", assertionsRemoved)
+                .add("singleFileCache", singleFileCache)
+                .add("transformers", transformers)
+                .add("optimizationLevel", optimizationLevel)
+                .add("fastDependencyAnalysis", fastDependencyAnalysis)
+                .add("debugInformation", debugInformationGenerated);
+        if (profileFile != null) {
+            key.add("profile", digestFile(profileFile));
+        }
+        switch (targetType) {
+            case JAVASCRIPT:
+                key.add("jsModuleType", jsModuleType)
+                        .add("jsLongRepresentation", jsLongRepresentation)
+                        .add("jsCodeSplitting", jsCodeSplitting)
+                        .add("jsClassFragments", jsClassFragments)
+                        .add("jsProfileInstrumentation", jsProfileInstrumentation)
+                        .add("maxTopLevelNames", maxTopLevelNames);
+                break;
+            case WEBASSEMBLY:
+            case WEBASSEMBLY_WASI:
+                key.add("wasmVersion", wasmVersion)
+                        .add("wasmExceptions", wasmExceptionsUsed)
+                        .add("wasmSimd", wasmSimdUsed);
+                break;
+            default:
+                break;
+        }
+        for (String name : new TreeSet<>(properties.stringPropertyNames())) {
+            key.add("property:" + name, properties.getProperty(name));
+        }
+        return key.build();
+    }
+
+    private static String digestFile(File file) {
+        try {
+            return new CacheKeyBuilder().add("content", new String(Files.readAllBytes(file.toPath()),
+                    StandardCharsets.ISO_8859_1)).build();
+        } catch (IOException e) {
+            // Build fails later anyway, when trying to read the file
+            return "unreadable:" + file.getAbsolutePath();
+        }
+    }
+
+    private void seedCacheFromRemoteStore() {
+        if (remoteCacheStore == null || new File(cacheDirectory, "symbols").exists()) {
+            return;
+        }
+        String key = getRemoteCacheKey();
+        try (InputStream input = remoteCacheStore.fetch(key)) {
+            if (input == null) {
+                log.info("Remote cache " + key + " not found");
+                return;
+            }
+            if (CacheArchive.read(new BufferedInputStream(input), cacheDirectory)) {
+                log.info("Cache seeded from remote cache " + key);
+            } else {
+                log.warning("Remote cache " + key + " has incompatible format");
+            }
+        } catch (IOException e) {
+            log.warning("Could not fetch remote cache " + key + ": " + e.getMessage());
+        }
+    }
+
+    private void publishCacheToRemoteStore() {
+        String key = getRemoteCacheKey();
+        File archive = null;
+        try {
+            archive = File.createTempFile("teavm-cache", ".zip");
+            try (OutputStream output = new BufferedOutputStream(new FileOutputStream(archive))) {
+                CacheArchive.write(cacheDirectory, output);
+            }
+            try (InputStream input = new BufferedInputStream(new FileInputStream(archive))) {
+                remoteCacheStore.publish(key, input);
+            }
+            log.info("Cache published to remote cache " + key);
+        } catch (IOException e) {
+            log.warning("Could not publish remote cache " + key + ": " + e.getMessage());
+        } finally {
+            if (archive != null) {
+                archive.delete();
+            }
+        }
+    }
+
+    private void createProgramCache() throws IOException {
+        if (singleFileCache) {
+            MappedProgramCache cache = new MappedProgramCache(
+                    openCacheStore("programs.teavm-store"),
+                    referenceCache, symbolTable, fileTable, variableTable);
+            methodCaches.add(cache::flush);
+            programCache = cache;
+        } else {
+            DiskProgramCache cache = new DiskProgramCache(cacheDirectory, referenceCache, symbolTable, fileTable,
+                    variableTable);
+            methodCaches.add(cache::flush);
+            programCache = cache;
+        }
+    }
+
+    private void createAstCache() throws IOException {
+        if (singleFileCache) {
+            MappedMethodNodeCache cache = new MappedMethodNodeCache(
+                    openCacheStore("ast.teavm-store"),
+                    referenceCache, symbolTable, fileTable, variableTable);
+            methodCaches.add(cache::flush);
+            astCache = cache;
+        } else {
+            DiskMethodNodeCache cache = new DiskMethodNodeCache(cacheDirectory, referenceCache, symbolTable,
+                    fileTable, variableTable);
+            methodCaches.add(cache::flush);
+            astCache = cache;
+        }
+    }
+
+    private MappedCacheStore openCacheStore(String fileName) throws IOException {
+        File file = new File(cacheDirectory, fileName);
+        MappedCacheStore store = new MappedCacheStore(file);
+        if (store.getDiscardReason() != null) {
+            log.info("Discarding cache file " + file + ": " + store.getDiscardReason());
+        }
+        return store;
+    }
+
+    private void writeBuildMetrics() throws IOException {
+        if (buildMetricsFile == null) {
+            return;
+        }
+        File parent = buildMetricsFile.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(buildMetricsFile),
+                StandardCharsets.UTF_8)) {
+            vm.getBuildMetrics().write(writer);
         }
     }
 
+    private BuildTarget createBuildTarget(String outputName) {
+        var directoryTarget = new DirectoryBuildTarget(targetDirectory);
+        if (targetType != TeaVMTargetType.JAVASCRIPT || !jsClassFragments) {
+            fragmentBuildTarget = null;
+            return directoryTarget;
+        }
+        if (fragmentBuildTarget == null) {
+            fragmentBuildTarget = new IncrementalDirectoryBuildTarget(targetDirectory);
+        }
+        // Main file gets additional output appended after build, so it can't be compared with previous content
+        var incrementalTarget = fragmentBuildTarget;
+        return fileName -> fileName.equals(outputName)
+                ? directoryTarget.createResource(fileName)
+                : incrementalTarget.createResource(fileName);
+    }
+
     private String getResolvedTargetFileName() {
         if (targetFileName.isEmpty()) {
             switch (targetType) {
@@ -551,14 +948,18 @@ public class TeaVMTool {
             log.info("Debug information successfully written");
         }
         if (sourceMapsFileGenerated) {
-            assert debugEmitter != null;
-            DebugInformation debugInfo = debugEmitter.getDebugInformation();
             String sourceMapsFileName = getResolvedTargetFileName() + ".map";
             writer.append("\n//# sourceMappingURL=").append(sourceMapsFileName);
             File sourceMapsFile = new File(targetDirectory, sourceMapsFileName);
-            try (Writer sourceMapsOut = new OutputStreamWriter(new FileOutputStream(sourceMapsFile),
-                    StandardCharsets.UTF_8)) {
-                writeSourceMaps(sourceMapsOut, debugInfo);
+            if (sourceMapsEmitter != null) {
+                finishSourceMaps();
+            } else {
+                assert debugEmitter != null;
+                DebugInformation debugInfo = debugEmitter.getDebugInformation();
+                try (Writer sourceMapsOut = new OutputStreamWriter(new FileOutputStream(sourceMapsFile),
+                        StandardCharsets.UTF_8)) {
+                    writeSourceMaps(sourceMapsOut, debugInfo);
+                }
             }
             generatedFiles.add(sourceMapsFile);
             log.info("Source maps successfully written");
@@ -571,30 +972,9 @@ public class TeaVMTool {
             provider.open();
         }
 
-        var targetDir = new File(targetDirectory, "src");
-        if (sourceFilePolicy != TeaVMSourceFilePolicy.DO_NOTHING) {
-            sourceMapWriter.addSourceResolver(fileName -> {
-                for (var provider : sourceFileProviders) {
-                    var sourceFile = provider.getSourceFile(fileName);
-                    if (sourceFile != null) {
-                        if (sourceFilePolicy == TeaVMSourceFilePolicy.COPY || sourceFile.getFile() == null) {
-                            var outputFile = new File(targetDir, fileName);
-                            outputFile.getParentFile().mkdirs();
-                            try (var input = sourceFile.open();
-                                    var output = new FileOutputStream(outputFile)) {
-                                input.transferTo(output);
-                            }
-                            if (sourceFilePolicy == TeaVMSourceFilePolicy.LINK_LOCAL_FILES) {
-                                return "file://" + outputFile.getCanonicalPath();
-                            }
-                        } else {
-                            return "file://" + sourceFile.getFile().getCanonicalPath();
-                        }
-                        break;
-                    }
-                }
-                return null;
-            });
+        var resolver = createSourceFileResolver();
+        if (resolver != null) {
+            sourceMapWriter.addSourceResolver(resolver);
         }
         sourceMapWriter.write(getResolvedTargetFileName(), "src", debugInfo);
 
@@ -603,6 +983,77 @@ public class TeaVMTool {
         }
     }
 
+    /**
+     * Opens source maps file before JavaScript is generated, so that mappings are written as soon as
+     * generated code is produced, instead of being collected in {@link DebugInformationBuilder} first.
+     */
+    private void startSourceMaps() throws IOException {
+        File sourceMapsFile = new File(targetDirectory, getResolvedTargetFileName() + ".map");
+        sourceMapsOutput = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(sourceMapsFile),
+                StandardCharsets.UTF_8));
+        sourceMapsEmitter = new SourceMapsEmitter(sourceMapsOutput, getResolvedTargetFileName(), "src");
+        var resolver = createSourceFileResolver();
+        if (resolver != null) {
+            sourceMapsEmitter.addSourceResolver(resolver);
+        }
+        javaScriptTarget.setDebugEmitter(sourceMapsEmitter);
+    }
+
+    private void finishSourceMaps() throws IOException {
+        for (var provider : sourceFileProviders) {
+            provider.open();
+        }
+        try {
+            sourceMapsEmitter.finish();
+        } finally {
+            for (var provider : sourceFileProviders) {
+                provider.close();
+            }
+            closeSourceMaps();
+        }
+    }
+
+    private void closeSourceMaps() {
+        if (sourceMapsOutput == null) {
+            return;
+        }
+        try {
+            sourceMapsOutput.close();
+        } catch (IOException e) {
+            log.error("Error closing source maps file", e);
+        }
+        sourceMapsOutput = null;
+    }
+
+    private SourceFileResolver createSourceFileResolver() {
+        if (sourceFilePolicy == TeaVMSourceFilePolicy.DO_NOTHING) {
+            return null;
+        }
+        var targetDir = new File(targetDirectory, "src");
+        return fileName -> {
+            for (var provider : sourceFileProviders) {
+                var sourceFile = provider.getSourceFile(fileName);
+                if (sourceFile != null) {
+                    if (sourceFilePolicy == TeaVMSourceFilePolicy.COPY || sourceFile.getFile() == null) {
+                        var outputFile = new File(targetDir, fileName);
+                        outputFile.getParentFile().mkdirs();
+                        try (var input = sourceFile.open();
+                                var output = new FileOutputStream(outputFile)) {
+                            input.transferTo(output);
+                        }
+                        if (sourceFilePolicy == TeaVMSourceFilePolicy.LINK_LOCAL_FILES) {
+                            return "file://" + outputFile.getCanonicalPath();
+                        }
+                    } else {
+                        return "file://" + sourceFile.getFile().getCanonicalPath();
+                    }
+                    break;
+                }
+            }
+            return null;
+        };
+    }
+
     private void printStats() {
         if (vm == null || vm.getWrittenClasses() == null) {
             return;
@@ -28,7 +28,6 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLClassLoader;
 import java.nio.channels.Channels;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
@@ -124,6 +123,7 @@ public class CodeServlet extends HttpServlet {
     private Map<String, String> properties = new LinkedHashMap<>();
     private List<String> preservedClasses = new ArrayList<>();
     private JSModuleType jsModuleType;
+    private boolean jsClassFragments;
 
     private Map<String, Supplier<InputStream>> sourceFileCache = new HashMap<>();
 
@@ -133,6 +133,8 @@ public class CodeServlet extends HttpServlet {
     private InMemoryProgramCache programCache;
     private InMemoryMethodNodeCache astCache;
     private int lastReachedClasses;
+    private boolean lastBuildReusable;
+    private TrackingClassLoader lastClassLoader;
     private boolean firstTime = true;
 
     private final Object contentLock = new Object();
@@ -229,6 +231,10 @@ public class CodeServlet extends HttpServlet {
         this.jsModuleType = jsModuleType;
     }
 
+    public void setJsClassFragments(boolean jsClassFragments) {
+        this.jsClassFragments = jsClassFragments;
+    }
+
     public void setLogBuildErrors(boolean logBuildErrors) {
         this.logBuildErrors = logBuildErrors;
     }
@@ -267,6 +273,7 @@ public class CodeServlet extends HttpServlet {
             astCache.invalidate();
             programCache.invalidate();
             classSource.invalidate();
+            lastBuildReusable = false;
             symbolTable.invalidate();
             fileSymbolTable.invalidate();
         }
@@ -381,7 +388,12 @@ public class CodeServlet extends HttpServlet {
                             resp.setHeader("Access-Control-Allow-Methods", "GET");
                         } else {
                             resp.setContentType(chooseContentType(fileName));
-                            noCache(resp);
+                            if (isClassFragment(fileName)) {
+                                // Name of class module contains hash of its content
+                                resp.setHeader("Cache-Control", "public, max-age=31536000, immutable");
+                            } else {
+                                noCache(resp);
+                            }
                             resp.getOutputStream().write(fileContent);
                         }
                         resp.getOutputStream().flush();
@@ -807,7 +819,8 @@ public class CodeServlet extends HttpServlet {
                     log.info("Build triggered by user");
                 }
 
-                List<String> staleClasses = getChangedClasses(watcher.grabChangedFiles());
+                List<String> changedResources = getChangedResources(watcher.grabChangedFiles());
+                List<String> staleClasses = getChangedClasses(changedResources);
                 if (staleClasses.size() > 15) {
                     List<String> displayedStaleClasses = staleClasses.subList(0, 10);
                     log.debug("Following classes changed (" + staleClasses.size() + "): "
@@ -817,8 +830,9 @@ public class CodeServlet extends HttpServlet {
                             + String.join(", ", staleClasses));
                 }
 
+                hasJob = !staleClasses.isEmpty() && affectsLastBuild(staleClasses)
+                        || isReadByLastBuild(changedResources);
                 classSource.evict(staleClasses);
-                hasJob = !staleClasses.isEmpty();
             }
             log.info("Build process stopped");
         } catch (Throwable e) {
@@ -828,6 +842,37 @@ public class CodeServlet extends HttpServlet {
         }
     }
 
+    private boolean affectsLastBuild(List<String> staleClasses) {
+        synchronized (statusLock) {
+            if (!lastBuildReusable) {
+                return true;
+            }
+        }
+        // Every class that compiler looked at during last build, including missing ones, was requested
+        // either from class source or, by plugins and metaprogramming, from class loader.
+        // If none of changed classes were requested, dependency analysis would reach exactly the same set
+        // of classes and produce the same output, so there's no need to run it.
+        for (String className : staleClasses) {
+            if (classSource.isRequested(className)
+                    || lastClassLoader.isRequested(className.replace('.', '/') + ".class")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isReadByLastBuild(List<String> changedResources) {
+        if (lastClassLoader == null) {
+            return false;
+        }
+        for (String resource : changedResources) {
+            if (!resource.endsWith(".class") && lastClassLoader.isRequested(resource)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void initBuilder() throws IOException {
         watcher = new FileSystemWatcher(classPath);
 
@@ -864,7 +909,8 @@ public class CodeServlet extends HttpServlet {
         reportProgress(0);
 
         DebugInformationBuilder debugInformationBuilder = new DebugInformationBuilder(referenceCache);
-        ClassLoader classLoader = initClassLoader();
+        TrackingClassLoader classLoader = initClassLoader();
+        lastClassLoader = classLoader;
         ClasspathResourceReader reader = new ClasspathResourceReader(classLoader);
         ResourceClassHolderMapper rawMapper = new ResourceClassHolderMapper(reader, referenceCache);
         Function<String, ClassHolder> classPathMapper = new ClasspathResourceMapper(classLoader, referenceCache,
@@ -891,6 +937,7 @@ public class CodeServlet extends HttpServlet {
         if (jsModuleType != null) {
             jsTarget.setModuleType(jsModuleType);
         }
+        jsTarget.setClassFragments(jsClassFragments);
         jsTarget.setStrict(true);
         vm.setOptimizationLevel(TeaVMOptimizationLevel.SIMPLE);
         vm.setCacheStatus(classSource);
@@ -903,6 +950,9 @@ public class CodeServlet extends HttpServlet {
         }
         vm.getProperties().putAll(properties);
 
+        synchronized (statusLock) {
+            lastBuildReusable = false;
+        }
         vm.setLastKnownClasses(lastReachedClasses);
         vm.setEntryPoint(mainClass);
 
@@ -918,7 +968,7 @@ public class CodeServlet extends HttpServlet {
 
     private void emptyBuild() {
         fireBuildStarted();
-        log.info("No files changed, nothing to do");
+        log.info("No files used by the last build changed, nothing to do");
         fireBuildCompleteWithResult(null);
     }
 
@@ -988,6 +1038,9 @@ public class CodeServlet extends HttpServlet {
                 log.info("Build complete successfully");
                 saveNewResult();
                 lastReachedClasses = vm.getDependencyInfo().getReachableClasses().size();
+                synchronized (statusLock) {
+                    lastBuildReusable = true;
+                }
                 classSource.commit();
                 programCache.commit();
                 astCache.commit();
@@ -1038,15 +1091,22 @@ public class CodeServlet extends HttpServlet {
         }
     }
 
-    private List<String> getChangedClasses(Collection<File> changedFiles) {
+    private List<String> getChangedClasses(List<String> changedResources) {
+        List<String> result = new ArrayList<>();
+        for (String path : changedResources) {
+            if (path.endsWith(".class")) {
+                result.add(path.substring(0, path.length() - ".class".length()).replace('/', '.'));
+            }
+        }
+        return result;
+    }
+
+    private List<String> getChangedResources(Collection<File> changedFiles) {
         List<String> result = new ArrayList<>();
         String[] prefixes = Arrays.stream(classPath).map(s -> s.replace('\\', '/')).toArray(String[]::new);
 
         for (File file : changedFiles) {
             String path = file.getPath().replace('\\', '/');
-            if (!path.endsWith(".class")) {
-                continue;
-            }
 
             String prefix = Arrays.stream(prefixes)
                     .filter(path::startsWith)
@@ -1057,14 +1117,13 @@ public class CodeServlet extends HttpServlet {
                 ++start;
             }
 
-            path = path.substring(start, path.length() - ".class".length()).replace('/', '.');
-            result.add(path);
+            result.add(path.substring(start));
         }
 
         return result;
     }
 
-    private ClassLoader initClassLoader() {
+    private TrackingClassLoader initClassLoader() {
         URL[] urls = new URL[classPath.length];
         try {
             for (int i = 0; i < classPath.length; i++) {
@@ -1073,7 +1132,7 @@ public class CodeServlet extends HttpServlet {
         } catch (MalformedURLException e) {
             throw new RuntimeException(e);
         }
-        return new URLClassLoader(urls, CodeServlet.class.getClassLoader());
+        return new TrackingClassLoader(urls, CodeServlet.class.getClassLoader());
     }
 
     private void reportProgress(double progress) {
@@ -1214,6 +1273,11 @@ public class CodeServlet extends HttpServlet {
         return path;
     }
 
+    private boolean isClassFragment(String fileName) {
+        return jsClassFragments && jsModuleType == JSModuleType.ES2015 && !fileName.equals(this.fileName)
+                && fileName.endsWith(".js");
+    }
+
     static void noCache(HttpServletResponse response) {
         response.setHeader("Cache-Control", "no-cache, no-store, must-revalidate");
     }
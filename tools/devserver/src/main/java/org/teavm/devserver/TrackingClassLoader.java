@@ -0,0 +1,58 @@
+/*
+ *  Copyright 2024 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.devserver;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class loader over the watched class path which remembers every class and resource looked up in it,
+ * including ones that were not found. Compiler, plugins and metaprogramming load classes and read resources
+ * through this loader, bypassing class source, so these lookups are dependencies of the build as well.
+ */
+class TrackingClassLoader extends URLClassLoader {
+    private final Set<String> requestedResources = ConcurrentHashMap.newKeySet();
+
+    TrackingClassLoader(URL[] urls, ClassLoader parent) {
+        super(urls, parent);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        requestedResources.add(name.replace('.', '/') + ".class");
+        return super.findClass(name);
+    }
+
+    @Override
+    public URL findResource(String name) {
+        requestedResources.add(name);
+        return super.findResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        requestedResources.add(name);
+        return super.findResources(name);
+    }
+
+    boolean isRequested(String resourceName) {
+        return requestedResources.contains(resourceName);
+    }
+}